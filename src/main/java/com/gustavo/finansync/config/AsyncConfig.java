@@ -0,0 +1,107 @@
+package com.gustavo.finansync.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Pools de threads usados por tarefas que não devem ocupar as threads do Tomcat
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Pool usado para baixar mensagens e anexos do Gmail em paralelo nas chamadas em que o
+     * usuário espera a resposta (análise de importação). O tamanho do pool é o limite de
+     * requisições simultâneas desse pool ao Gmail. A fila é limitada: cheia, quem enfileira
+     * executa o download na própria thread, o que segura o ritmo de quem está pedindo demais.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor gmailFetchExecutor(
+            @Value("${finansync.gmail.fetch-concurrency:8}") int concurrency,
+            @Value("${finansync.gmail.fetch-queue-capacity:100}") int queueCapacity) {
+        return gmailFetchPool("gmail-fetch-", concurrency, queueCapacity);
+    }
+
+    /**
+     * Pool dos downloads do Gmail feitos em segundo plano (jobs de importação e sincronização
+     * automática), separado do interativo para que uma sincronização grande não atrase a
+     * análise que um usuário está esperando. Mesma fila limitada do pool interativo.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor gmailBackgroundFetchExecutor(
+            @Value("${finansync.gmail.background-fetch-concurrency:4}") int concurrency,
+            @Value("${finansync.gmail.background-fetch-queue-capacity:100}") int queueCapacity) {
+        return gmailFetchPool("gmail-background-fetch-", concurrency, queueCapacity);
+    }
+
+    /**
+     * Pool dos jobs de importação em segundo plano. A fila é limitada: quando está cheia
+     * novos jobs são recusados em vez de se acumularem sem limite.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importJobExecutor(
+            @Value("${finansync.import.job-workers:2}") int workers,
+            @Value("${finansync.import.job-queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("import-job-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool da sincronização automática do Gmail. O agendador nunca ocupa mais threads do que
+     * o limite global de sincronizações simultâneas.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor gmailSyncExecutor(
+            @Value("${finansync.gmail.sync.max-concurrent:4}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("gmail-sync-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool das respostas em streaming (exportação das transações). Cada resposta ocupa
+     * uma thread e uma conexão do banco enquanto é escrita, então o pool é pequeno e a
+     * fila é limitada.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor responseStreamExecutor(
+            @Value("${finansync.transactions.stream-workers:4}") int workers,
+            @Value("${finansync.transactions.stream-queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("response-stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    private static ThreadPoolTaskExecutor gmailFetchPool(String threadNamePrefix, int concurrency, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        // Fila cheia: roda na thread de quem enfileirou; pool encerrado: falha em vez de descartar
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) throw new RejectedExecutionException("Pool " + threadNamePrefix + " encerrado");
+            task.run();
+        });
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
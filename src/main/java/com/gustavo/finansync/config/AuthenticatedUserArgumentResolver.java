@@ -0,0 +1,57 @@
+package com.gustavo.finansync.config;
+
+import com.gustavo.finansync.dto.AuthenticatedUser;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.service.UserService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolve parâmetros {@link AuthenticatedUser} dos controllers a partir do JWT da requisição:
+ * o id vem da claim {@code userId} gravada por {@code JwtTokenService.generateToken}, então
+ * nenhuma consulta ao banco é feita. Tokens sem a claim recaem na busca pelo e-mail.
+ */
+@Component
+public class AuthenticatedUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    static final String USER_ID_CLAIM = "userId";
+
+    private final UserService userService;
+
+    public AuthenticatedUserArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return AuthenticatedUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public AuthenticatedUser resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                             NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new AuthenticationCredentialsNotFoundException("Usuário não autenticado");
+        }
+        if (authentication instanceof JwtAuthenticationToken jwt) {
+            Object userId = jwt.getToken().getClaims().get(USER_ID_CLAIM);
+            if (userId instanceof Number number) {
+                return new AuthenticatedUser(number.longValue(), authentication.getName());
+            }
+            if (userId instanceof String text && !text.isBlank()) {
+                return new AuthenticatedUser(Long.valueOf(text), authentication.getName());
+            }
+        }
+        User user = userService.findByEmail(authentication.getName());
+        return new AuthenticatedUser(user.getId(), user.getEmail());
+    }
+}
@@ -0,0 +1,38 @@
+package com.gustavo.finansync.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Configuração do Spring MVC: respostas assíncronas (StreamingResponseBody) são escritas
+ * no pool próprio em vez de uma thread nova por requisição, e o usuário autenticado é
+ * injetado nos controllers a partir do JWT ({@link AuthenticatedUserArgumentResolver})
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor responseStreamExecutor;
+    private final AuthenticatedUserArgumentResolver authenticatedUserResolver;
+
+    public WebMvcConfig(@Qualifier("responseStreamExecutor") ThreadPoolTaskExecutor responseStreamExecutor,
+                        AuthenticatedUserArgumentResolver authenticatedUserResolver) {
+        this.responseStreamExecutor = responseStreamExecutor;
+        this.authenticatedUserResolver = authenticatedUserResolver;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(responseStreamExecutor);
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authenticatedUserResolver);
+    }
+}
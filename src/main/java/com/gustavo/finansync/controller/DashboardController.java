@@ -0,0 +1,94 @@
+package com.gustavo.finansync.controller;
+
+import com.gustavo.finansync.dto.AuthenticatedUser;
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.service.TransactionLedgerCache;
+import com.gustavo.finansync.service.TransactionRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Dashboard servido pelos totais mensais ({@link TransactionRollupService}): o custo depende
+ * do número de meses e categorias do período, não da quantidade de transações.
+ * Os períodos são meses no formato {@code yyyy-MM}; sem eles vale o ano corrente.
+ * As consultas por dia, categoria e tipo ({@code /analytics}) vêm do {@link TransactionLedgerCache}.
+ */
+@RestController
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+
+    private final TransactionRollupService rollupService;
+    private final TransactionLedgerCache ledgerCache;
+
+    public DashboardController(TransactionRollupService rollupService, TransactionLedgerCache ledgerCache) {
+        this.rollupService = rollupService;
+        this.ledgerCache = ledgerCache;
+    }
+
+    /**
+     * Receitas, despesas e saldo do período, no total e mês a mês
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<DashboardDTOs.Summary> summary(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth end,
+            AuthenticatedUser current) {
+        YearMonth[] period = period(start, end);
+        if (period == null) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(rollupService.summary(current.id(), period[0], period[1]));
+    }
+
+    /**
+     * Totais por categoria do período (gráfico por categoria)
+     */
+    @GetMapping("/categories")
+    public ResponseEntity<List<DashboardDTOs.CategoryTotal>> categories(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth end,
+            @RequestParam(required = false) TransactionType type,
+            AuthenticatedUser current) {
+        YearMonth[] period = period(start, end);
+        if (period == null) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(rollupService.categories(current.id(), period[0], period[1], type));
+    }
+
+    /**
+     * Totais de um período em dias, filtrados por categoria ("" para sem categoria) e tipo,
+     * e os totais por categoria do mesmo período. Sem datas vale todo o histórico.
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<DashboardDTOs.Analytics> analytics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) TransactionType type,
+            AuthenticatedUser current) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(ledgerCache.analytics(current.id(), startDate, endDate, category, type));
+    }
+
+    /**
+     * Recalcula os totais do usuário a partir das transações
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild(AuthenticatedUser current) {
+        rollupService.rebuild(current.id());
+        return ResponseEntity.noContent().build();
+    }
+
+    // [início, fim] com os padrões do ano corrente; null se o início vier depois do fim
+    private static YearMonth[] period(YearMonth start, YearMonth end) {
+        YearMonth now = YearMonth.now();
+        YearMonth from = start != null ? start : YearMonth.of(now.getYear(), 1);
+        YearMonth to = end != null ? end : YearMonth.of(now.getYear(), 12);
+        return from.isAfter(to) ? null : new YearMonth[]{from, to};
+    }
+}
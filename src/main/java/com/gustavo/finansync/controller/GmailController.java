@@ -1,6 +1,13 @@
 package com.gustavo.finansync.controller;
 
+import com.gustavo.finansync.dto.GmailClientMetricsDTO;
+import com.gustavo.finansync.dto.GmailSyncSchedulerMetricsDTO;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.UserRepository;
 import com.gustavo.finansync.service.GmailAuthService;
+import com.gustavo.finansync.service.GmailRequestExecutor;
+import com.gustavo.finansync.service.GmailSyncScheduler;
+import com.gustavo.finansync.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -9,6 +16,7 @@ import org.springframework.web.servlet.view.RedirectView;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.security.Principal;
+import java.util.Collections;
 import java.util.Map;
 
 @RestController
@@ -18,6 +26,54 @@ public class GmailController {
     @Autowired
     private GmailAuthService gmailAuthService;
 
+    @Autowired
+    private GmailRequestExecutor gmailRequestExecutor;
+
+    @Autowired
+    private GmailSyncScheduler gmailSyncScheduler;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Métricas de uso do Gmail: requisições, repetições, recusas por cota/concorrência e tempos de espera
+     */
+    @GetMapping("/metrics")
+    public GmailClientMetricsDTO metrics() {
+        return gmailRequestExecutor.metrics();
+    }
+
+    /**
+     * Métricas da sincronização automática: fila, sincronizações em andamento e atraso em relação ao agendado
+     */
+    @GetMapping("/sync/metrics")
+    public GmailSyncSchedulerMetricsDTO syncMetrics() {
+        return gmailSyncScheduler.metrics();
+    }
+
+    /**
+     * Define o intervalo da sincronização automática do usuário logado.
+     * Sem o parâmetro volta ao intervalo padrão; 0 desliga a sincronização automática.
+     */
+    @PutMapping("/sync/interval")
+    public ResponseEntity<Map<String, Integer>> setSyncInterval(
+            @RequestParam(required = false) Integer minutes, Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (minutes != null && minutes < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userService.findByEmail(principal.getName());
+        user.setGmailSyncIntervalMinutes(minutes);
+        userRepository.save(user);
+        userService.evict(user.getId());
+        return ResponseEntity.ok(Collections.singletonMap("minutes", minutes));
+    }
+
     @GetMapping("/authorize-url")
     public ResponseEntity<String> authorizeUrl(Principal principal) {
         if (principal == null) {
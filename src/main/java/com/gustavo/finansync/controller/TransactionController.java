@@ -1,19 +1,28 @@
 package com.gustavo.finansync.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gustavo.finansync.dto.AuthenticatedUser;
+import com.gustavo.finansync.dto.BalanceDTOs;
+import com.gustavo.finansync.dto.CursorPageDTO;
 import com.gustavo.finansync.dto.TransactionDTO;
 import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.service.BalanceService;
 import com.gustavo.finansync.service.TransactionService;
 import com.gustavo.finansync.service.UserService;
+import com.gustavo.finansync.util.JsonStreamWriter;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -21,39 +30,54 @@ public class TransactionController {
 
     private final TransactionService transactionService;
     private final UserService userService;
+    private final BalanceService balanceService;
+    private final ObjectMapper objectMapper;
 
-    public TransactionController(TransactionService transactionService, UserService userService) {
+    public TransactionController(TransactionService transactionService, UserService userService,
+                                 BalanceService balanceService, ObjectMapper objectMapper) {
         this.transactionService = transactionService;
         this.userService = userService;
+        this.balanceService = balanceService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
-    public ResponseEntity<TransactionDTO> createTransaction(@RequestBody TransactionDTO dto, Authentication authentication) {
-        // Supondo que o 'name' do Principal é o email do usuário
-        String userEmail = authentication.getName();
-        // Você precisará de um método no UserService para buscar por email
-        User user = userService.findByEmail(userEmail);
-
-        TransactionDTO createdDto = transactionService.create(dto, user.getId());
+    public ResponseEntity<TransactionDTO> createTransaction(@RequestBody TransactionDTO dto, AuthenticatedUser current) {
+        TransactionDTO createdDto = transactionService.create(dto, current.id());
         return ResponseEntity.status(HttpStatus.CREATED).body(createdDto);
     }
 
-    @GetMapping("/all")
-    public ResponseEntity<List<TransactionDTO>> getAllFilteredTransactions(
+    /**
+     * Todas as transações filtradas, escritas na resposta à medida que são lidas do banco.
+     * Com {@code Accept: application/x-ndjson} cada transação vem em uma linha (NDJSON);
+     * caso contrário a resposta é o mesmo array JSON de sempre, enviado em partes.
+     */
+    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> getAllFilteredTransactions(
             @RequestParam(required = false, defaultValue = "") String description,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
-            Authentication authentication) {
-
-        User user = userService.findByEmail(authentication.getName());
-        List<TransactionDTO> transactions = transactionService.findAllByUserNoPagination(user, description, startDate, endDate);
-        return ResponseEntity.ok(transactions);
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            AuthenticatedUser current) {
+
+        User user = userService.reference(current.id());
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+        StreamingResponseBody body = out -> {
+            JsonStreamWriter<TransactionDTO> writer = new JsonStreamWriter<>(out, objectMapper, ndjson);
+            transactionService.streamAllByUser(user, description, startDate, endDate, writer);
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
 
     @PutMapping("/{id}")
-    public ResponseEntity<TransactionDTO> updateTransaction(@PathVariable Long id, @RequestBody TransactionDTO dto, Authentication authentication) {
-        User user = userService.findByEmail(authentication.getName());
+    public ResponseEntity<TransactionDTO> updateTransaction(@PathVariable Long id, @RequestBody TransactionDTO dto, AuthenticatedUser current) {
+        User user = userService.reference(current.id());
         try {
             TransactionDTO updatedDto = transactionService.updateForUser(id, dto, user);
             return ResponseEntity.ok(updatedDto);
@@ -63,8 +87,8 @@ public class TransactionController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteTransaction(@PathVariable Long id,Authentication authentication) {
-        User user = userService.findByEmail(authentication.getName());
+    public ResponseEntity<Void> deleteTransaction(@PathVariable Long id,AuthenticatedUser current) {
+        User user = userService.reference(current.id());
         try {
             transactionService.deleteForUser(id, user);
             return ResponseEntity.noContent().build();
@@ -80,14 +104,109 @@ public class TransactionController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            Authentication authentication) {
+            AuthenticatedUser current) {
 
-        User user = userService.findByEmail(authentication.getName());
+        User user = userService.reference(current.id());
         Page<TransactionDTO> transactions = transactionService.findByDateRange(
                 user, description, startDate, endDate, page, size
         );
         return ResponseEntity.ok(transactions);
     }
 
-}
+    /**
+     * Listagem paginada sem total (rolagem infinita): só informa se há próxima página.
+     * O total, quando necessário, vem de {@code GET /api/transactions/count}.
+     */
+    @GetMapping("/slice")
+    public ResponseEntity<Slice<TransactionDTO>> getTransactionsSlice(
+            @RequestParam(required = false, defaultValue = "") String description,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            AuthenticatedUser current) {
+
+        User user = userService.reference(current.id());
+        return ResponseEntity.ok(transactionService.findByDateRangeSlice(
+                user, description, startDate, endDate, page, size));
+    }
+
+    /**
+     * Total de transações que atendem aos filtros
+     */
+    @GetMapping("/count")
+    public ResponseEntity<Map<String, Long>> countTransactions(
+            @RequestParam(required = false, defaultValue = "") String description,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            AuthenticatedUser current) {
+
+        User user = userService.reference(current.id());
+        return ResponseEntity.ok(Map.of("total",
+                transactionService.countByDateRange(user, description, startDate, endDate)));
+    }
+
+    /**
+     * Listagem por keyset: envie o nextCursor da resposta anterior para obter a próxima página.
+     * O custo é o mesmo em qualquer posição e não há contagem total.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDTO<TransactionDTO>> getTransactionsByCursor(
+            @RequestParam(required = false, defaultValue = "") String description,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            AuthenticatedUser current) {
+
+        User user = userService.reference(current.id());
+        try {
+            return ResponseEntity.ok(transactionService.findByDateRangeAfter(
+                    user, description, startDate, endDate, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Busca por trechos da descrição, sem diferenciar maiúsculas nem acentos,
+     * com as transações mais relevantes primeiro.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Page<TransactionDTO>> searchTransactions(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            AuthenticatedUser current) {
 
+        User user = userService.reference(current.id());
+        return ResponseEntity.ok(transactionService.search(user, q, page, size));
+    }
+
+    /**
+     * Saldo ao fim do dia informado (hoje, se omitido)
+     */
+    @GetMapping("/balance")
+    public ResponseEntity<BalanceDTOs.Balance> getBalance(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            AuthenticatedUser current) {
+
+        return ResponseEntity.ok(balanceService.balanceAt(current.id(), date != null ? date : LocalDate.now()));
+    }
+
+    /**
+     * Evolução do saldo no período: saldo inicial, final e a cada dia com transações
+     */
+    @GetMapping("/balance/series")
+    public ResponseEntity<BalanceDTOs.Series> getBalanceSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            AuthenticatedUser current) {
+
+        if (endDate.isBefore(startDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(balanceService.series(current.id(), startDate, endDate));
+    }
+
+}
@@ -1,62 +1,182 @@
 package com.gustavo.finansync.controller;
 
 import com.google.api.services.gmail.Gmail;
-import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.dto.AuthenticatedUser;
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.ImportJobStatusDTO;
+import com.gustavo.finansync.dto.ImportStagingDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
 import com.gustavo.finansync.entity.User;
 import com.gustavo.finansync.service.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/transactions/import")
 public class TransactionImportController {
 
-    private final GmailService gmailService;
+    private final GmailSyncService gmailSyncService;
     private final CsvParsingService csvParsingService;
     private final UserService userService;
     private final TransactionService transactionService;
     private final GmailAuthService gmailAuthService;
+    private final ImportJobService importJobService;
+    private final ImportStagingService importStagingService;
+    private final AttachmentCacheService attachmentCacheService;
 
-    public TransactionImportController(GmailService gmailService, CsvParsingService csvParsingService, UserService userService,
-                                       TransactionService transactionService, GmailAuthService gmailAuthService) {
-        this.gmailService = gmailService;
+    public TransactionImportController(GmailSyncService gmailSyncService, CsvParsingService csvParsingService, UserService userService,
+                                       TransactionService transactionService, GmailAuthService gmailAuthService,
+                                       ImportJobService importJobService, ImportStagingService importStagingService,
+                                       AttachmentCacheService attachmentCacheService) {
+        this.gmailSyncService = gmailSyncService;
         this.csvParsingService = csvParsingService;
         this.userService = userService;
         this.transactionService = transactionService;
         this.gmailAuthService = gmailAuthService;
+        this.importJobService = importJobService;
+        this.importStagingService = importStagingService;
+        this.attachmentCacheService = attachmentCacheService;
     }
 
+    /**
+     * Busca e lê os extratos do Gmail, guardando as linhas na área de staging do servidor.
+     * Devolve o token da importação e a primeira página da prévia.
+     */
     @GetMapping("/analyze")
-    public List<TransactionDTO> analyze(
+    public ImportStagingDTO analyze(
             @RequestParam String remetente,
             @RequestParam String assunto,
-            Authentication authentication
+            @RequestParam(defaultValue = "false") boolean fullScan,
+            @RequestParam(defaultValue = "50") int size,
+            AuthenticatedUser current
     ) throws Exception {
-        String userEmail = authentication.getName();
+        User user = userService.reference(current.id());
         // Obtenha o Gmail autenticado para o usuário
-        Gmail gmail = gmailAuthService.getGmailService(userEmail);
+        Gmail gmail = gmailAuthService.getGmailService(current.email());
 
-        // Busque os anexos usando o Gmail autenticado
-        List<InputStream> anexos = gmailService.buscarAnexosCsv(gmail, "me", remetente, assunto);
+        // Apenas mensagens novas desde a última sincronização são baixadas (fullScan=true força a varredura completa).
+        // Os anexos são baixados em paralelo e gravados no staging por esta thread, à medida que chegam.
+        // As mensagens só contam como processadas quando a importação for confirmada
+        ImportStagingService.Handle staging = importStagingService.create(user);
+        GmailSyncService.Sincronizacao sync = gmailSyncService.sincronizar(gmail, user, remetente, assunto, fullScan, anexo -> {
+            try (ImportStagingService.DocumentWriter writer = staging.openDocument(anexo.messageId(), anexo.sourceDocument())) {
+                csvParsingService.parse(anexo.content(), writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
 
-        List<TransactionDTO> allTransactions = new ArrayList<>();
-        for (InputStream csv : anexos) {
-            allTransactions.addAll(csvParsingService.parseCsv(csv));
-        }
+        return importStagingService.finish(staging, size, sync.checkpoint());
+    }
+
+    /**
+     * Reprocessa os anexos já guardados no cache local, sem acessar o Gmail (por exemplo,
+     * depois de uma correção no parser). O resultado vai para a área de staging como no analyze.
+     */
+    @PostMapping("/cache/reparse")
+    public ImportStagingDTO reparseFromCache(
+            @RequestParam(defaultValue = "50") int size,
+            AuthenticatedUser current
+    ) throws IOException {
+        ImportStagingService.Handle staging = importStagingService.create(userService.reference(current.id()));
+        attachmentCacheService.forEachCached(current.id(), anexo -> {
+            try (ImportStagingService.DocumentWriter writer = staging.openDocument(anexo.messageId(), anexo.sourceDocument())) {
+                csvParsingService.parse(anexo.content(), writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return importStagingService.finish(staging, size);
+    }
+
+    @GetMapping("/staging/{token}")
+    public ResponseEntity<ImportStagingDTO> getStagingPage(
+            @PathVariable String token,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            AuthenticatedUser current) {
+        User user = userService.reference(current.id());
+        return ResponseEntity.of(importStagingService.page(token, user, page, size));
+    }
 
-        return allTransactions;
+    /**
+     * Confirma uma importação analisada: basta o token e, opcionalmente, as linhas a excluir.
+     */
+    @PostMapping("/staging/{token}/confirm")
+    public ResponseEntity<BulkImportResult> confirmStaging(
+            @PathVariable String token,
+            @RequestBody(required = false) ImportStagingDTO.ConfirmRequest request,
+            AuthenticatedUser current) {
+        User user = userService.reference(current.id());
+        List<Integer> excluded = request != null ? request.excludedRows() : null;
+        return ResponseEntity.of(importStagingService.confirm(token, user, excluded));
     }
 
     @PostMapping("/confirm")
-    public ResponseEntity<Void> confirmImport(@RequestBody List<TransactionDTO> transactions, Authentication authentication) {
-        String userEmail = authentication.getName();
-        User user = userService.findByEmail(userEmail);
-        transactionService.saveImportedTransactions(transactions, user);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<BulkImportResult> confirmImport(@RequestBody List<ImportedTransactionDTO> transactions, AuthenticatedUser current) {
+        User user = userService.reference(current.id());
+        BulkImportResult result = transactionService.saveImportedTransactions(transactions, user);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Inicia a importação do Gmail em segundo plano (busca, leitura e gravação) e
+     * devolve o ID do job imediatamente.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ImportJobStatusDTO> startImportJob(
+            @RequestParam String remetente,
+            @RequestParam String assunto,
+            @RequestParam(defaultValue = "false") boolean fullScan,
+            AuthenticatedUser current) {
+        // O job roda depois da requisição e lê o cadastro: usa o usuário completo (em cache)
+        User user = userService.findCached(current.id());
+        try {
+            ImportJobStatusDTO job = importJobService.startGmailImport(user, remetente, assunto, fullScan);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ImportJobStatusDTO> getImportJob(@PathVariable String jobId, AuthenticatedUser current) {
+        return ResponseEntity.of(importJobService.status(jobId, current.id()));
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamImportJob(@PathVariable String jobId, AuthenticatedUser current) {
+        return ResponseEntity.of(importJobService.subscribe(jobId, current.id()));
+    }
+
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<ImportJobStatusDTO> cancelImportJob(@PathVariable String jobId, AuthenticatedUser current) {
+        return ResponseEntity.of(importJobService.cancel(jobId, current.id()));
+    }
+
+    /**
+     * Outra sincronização do mesmo remetente/assunto (análise, job ou agendador) ainda está rodando
+     */
+    @ExceptionHandler(GmailSyncService.SyncInProgressException.class)
+    public ResponseEntity<String> sincronizacaoEmAndamento(GmailSyncService.SyncInProgressException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    /**
+     * Cota do Gmail esgotada ou acesso ao Gmail saturado: o cliente deve tentar mais tarde
+     */
+    @ExceptionHandler(GmailRequestExecutor.RejectedException.class)
+    public ResponseEntity<String> gmailIndisponivel(GmailRequestExecutor.RejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(e.getMessage());
     }
 }
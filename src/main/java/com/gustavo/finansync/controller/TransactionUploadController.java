@@ -0,0 +1,41 @@
+package com.gustavo.finansync.controller;
+
+import com.gustavo.finansync.dto.AuthenticatedUser;
+import com.gustavo.finansync.dto.CsvUploadResultDTO;
+import com.gustavo.finansync.service.CsvUploadService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/transactions/import")
+public class TransactionUploadController {
+
+    private final CsvUploadService csvUploadService;
+
+    public TransactionUploadController(CsvUploadService csvUploadService) {
+        this.csvUploadService = csvUploadService;
+    }
+
+    /**
+     * Importa um extrato CSV enviado como multipart (campo "file"), gravando as transações
+     * à medida que o arquivo é lido.
+     */
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<CsvUploadResultDTO> upload(@RequestParam("file") MultipartFile file,
+                                                     AuthenticatedUser current) throws IOException {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        String filename = StringUtils.hasText(file.getOriginalFilename()) ? file.getOriginalFilename() : "extrato.csv";
+
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.ok(csvUploadService.importCsv(content, filename, current.id()));
+        }
+    }
+}
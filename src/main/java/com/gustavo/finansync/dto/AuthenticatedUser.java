@@ -0,0 +1,9 @@
+package com.gustavo.finansync.dto;
+
+/**
+ * Usuário da requisição, lido das claims do JWT (sem consulta ao banco).
+ * Recebido pelos controllers como parâmetro (ver {@code AuthenticatedUserArgumentResolver}).
+ * @param id Claim userId
+ * @param email Subject do token
+ */
+public record AuthenticatedUser(Long id, String email) {}
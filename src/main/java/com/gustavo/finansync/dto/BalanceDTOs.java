@@ -0,0 +1,17 @@
+package com.gustavo.finansync.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public class BalanceDTOs {
+    // Saldo ao fim do dia informado
+    public record Balance(LocalDate date, BigDecimal balance) {}
+
+    // Dia com transações: líquido do dia e saldo ao fim dele
+    public record Point(LocalDate date, BigDecimal net, BigDecimal balance) {}
+
+    // Saldo antes do período, ao fim dele e a cada dia com transações no meio
+    public record Series(LocalDate startDate, LocalDate endDate, BigDecimal openingBalance,
+                         BigDecimal closingBalance, List<Point> points) {}
+}
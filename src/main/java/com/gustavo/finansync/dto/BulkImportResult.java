@@ -0,0 +1,33 @@
+package com.gustavo.finansync.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de uma gravação em massa de transações importadas.
+ *
+ * @param accepted      Linhas gravadas
+ * @param duplicates    Linhas ignoradas por já existirem (mesma impressão digital)
+ * @param rejected      Linhas recusadas (validação ou erro de banco)
+ * @param chunks        Resultado de cada lote confirmado
+ * @param elapsedMillis Tempo total da gravação
+ * @param rowsPerSecond Vazão média (linhas processadas por segundo)
+ */
+public record BulkImportResult(
+        long accepted,
+        long duplicates,
+        long rejected,
+        List<ChunkResult> chunks,
+        long elapsedMillis,
+        double rowsPerSecond
+) {
+
+    /**
+     * Resultado de um lote (um commit)
+     * @param index         Posição do lote, começando em 0
+     * @param accepted      Linhas gravadas no lote
+     * @param duplicates    Linhas do lote que já existiam
+     * @param rejected      Linhas recusadas no lote
+     * @param elapsedMillis Tempo de gravação do lote
+     */
+    public record ChunkResult(int index, int accepted, int duplicates, int rejected, long elapsedMillis) {}
+}
@@ -0,0 +1,30 @@
+package com.gustavo.finansync.dto;
+
+import java.util.List;
+
+/**
+ * Resumo do processamento de um arquivo CSV de extrato.
+ * Guarda apenas uma amostra limitada das linhas rejeitadas, para que o relatório
+ * tenha tamanho fixo independentemente do tamanho do arquivo.
+ *
+ * @param linesRead       Total de linhas lidas (incluindo cabeçalho)
+ * @param parsedRows      Linhas convertidas em transação com sucesso
+ * @param rejectedRows    Total de linhas rejeitadas
+ * @param errors          Amostra das linhas rejeitadas (no máximo o limite configurado)
+ * @param errorsTruncated true se houve mais erros do que os guardados na amostra
+ */
+public record CsvParseReport(
+        long linesRead,
+        long parsedRows,
+        long rejectedRows,
+        List<RowError> errors,
+        boolean errorsTruncated
+) {
+
+    /**
+     * Linha rejeitada pelo parser
+     * @param lineNumber Número da linha no arquivo (começando em 1)
+     * @param reason     Motivo da rejeição
+     */
+    public record RowError(long lineNumber, String reason) {}
+}
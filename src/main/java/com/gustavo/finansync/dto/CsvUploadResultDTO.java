@@ -0,0 +1,20 @@
+package com.gustavo.finansync.dto;
+
+/**
+ * Resultado da importação de um extrato CSV enviado por upload.
+ *
+ * @param filename      Nome do arquivo enviado
+ * @param bytesRead     Bytes lidos do arquivo
+ * @param parse         Relatório do parser (linhas lidas, convertidas e rejeitadas)
+ * @param result        Resultado da gravação (gravadas, duplicadas, rejeitadas e vazão)
+ * @param elapsedMillis Tempo total, da leitura do primeiro byte ao último commit
+ * @param rowsPerSecond Linhas convertidas por segundo no tempo total
+ */
+public record CsvUploadResultDTO(
+        String filename,
+        long bytesRead,
+        CsvParseReport parse,
+        BulkImportResult result,
+        long elapsedMillis,
+        double rowsPerSecond
+) {}
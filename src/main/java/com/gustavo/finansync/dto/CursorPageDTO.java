@@ -0,0 +1,18 @@
+package com.gustavo.finansync.dto;
+
+import java.util.List;
+
+/**
+ * Página de uma listagem por keyset
+ *
+ * @param content    Itens da página
+ * @param size       Tamanho de página solicitado
+ * @param hasNext    Se há mais itens depois desta página
+ * @param nextCursor Cursor a enviar para buscar a próxima página (null na última)
+ */
+public record CursorPageDTO<T>(
+        List<T> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+) {}
@@ -0,0 +1,29 @@
+package com.gustavo.finansync.dto;
+
+import com.gustavo.finansync.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+public class DashboardDTOs {
+    // Receitas, despesas (valores negativos) e saldo de um mês
+    public record MonthTotal(YearMonth month, BigDecimal income, BigDecimal expenses, BigDecimal balance,
+                             long transactionCount) {}
+
+    // Totais do período e a evolução mês a mês
+    public record Summary(YearMonth start, YearMonth end, BigDecimal income, BigDecimal expenses, BigDecimal balance,
+                          long transactionCount, List<MonthTotal> months) {}
+
+    // Total de uma categoria no período (category null = sem categoria)
+    public record CategoryTotal(String category, TransactionType type, BigDecimal total, long transactionCount,
+                                BigDecimal minAmount, BigDecimal maxAmount) {}
+
+    // Totais de um período em dias (minAmount/maxAmount null quando não há transações)
+    public record PeriodTotal(LocalDate startDate, LocalDate endDate, BigDecimal total, long transactionCount,
+                              BigDecimal minAmount, BigDecimal maxAmount) {}
+
+    // Totais do período filtrado e por categoria
+    public record Analytics(PeriodTotal totals, List<CategoryTotal> categories) {}
+}
@@ -0,0 +1,30 @@
+package com.gustavo.finansync.dto;
+
+/**
+ * Métricas do acesso ao Gmail desde a inicialização
+ *
+ * @param requests            Requisições enviadas (inclusive tentativas repetidas)
+ * @param bytesReceived       Bytes de resposta recebidos
+ * @param retries             Novas tentativas após 429/5xx/limite de taxa
+ * @param throttledResponses  Respostas 429 ou 403 de limite de taxa recebidas do Gmail
+ * @param quotaRejections     Chamadas recusadas porque a espera pela cota passaria do limite
+ * @param bulkheadRejections  Chamadas recusadas porque o limite de requisições simultâneas estava ocupado
+ * @param quotaWaitMillis     Tempo total de espera pela cota
+ * @param maxQuotaWaitMillis  Maior espera pela cota
+ * @param bulkheadWaitMillis  Tempo total de espera por uma vaga de execução
+ * @param inFlight            Requisições em andamento agora
+ * @param maxConcurrent       Limite de requisições simultâneas
+ */
+public record GmailClientMetricsDTO(
+        long requests,
+        long bytesReceived,
+        long retries,
+        long throttledResponses,
+        long quotaRejections,
+        long bulkheadRejections,
+        long quotaWaitMillis,
+        long maxQuotaWaitMillis,
+        long bulkheadWaitMillis,
+        int inFlight,
+        int maxConcurrent
+) {}
@@ -0,0 +1,22 @@
+package com.gustavo.finansync.dto;
+
+import java.math.BigInteger;
+
+/**
+ * Resultado de uma sincronização com o Gmail
+ *
+ * @param incremental      true se usou a History API, false se fez varredura completa
+ * @param messagesFetched  Mensagens novas baixadas
+ * @param attachments      Anexos CSV entregues para processamento
+ * @param historyId        historyId salvo para a próxima sincronização
+ * @param requests         Requisições feitas ao Gmail
+ * @param bytesReceived    Bytes recebidos do Gmail
+ */
+public record GmailSyncResult(
+        boolean incremental,
+        int messagesFetched,
+        int attachments,
+        BigInteger historyId,
+        long requests,
+        long bytesReceived
+) {}
@@ -0,0 +1,36 @@
+package com.gustavo.finansync.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Métricas da sincronização automática do Gmail desde a inicialização
+ *
+ * @param enabled            Se a sincronização automática está ligada neste nó
+ * @param queueDepth         Sincronizações na fila, aguardando uma vaga
+ * @param dueBacklog         Sincronizações vencidas no banco na última rodada (inclui as da fila)
+ * @param inFlight           Sincronizações em andamento agora
+ * @param maxConcurrent      Limite global de sincronizações simultâneas
+ * @param completed          Sincronizações concluídas
+ * @param failed             Sincronizações com erro (reagendadas com backoff)
+ * @param invalidCredentials Sincronizações abandonadas porque a credencial do usuário foi revogada
+ * @param rowsImported       Transações novas gravadas pela sincronização automática
+ * @param lastLagMillis      Atraso da última sincronização iniciada em relação ao horário agendado
+ * @param maxLagMillis       Maior atraso observado
+ * @param avgLagMillis       Atraso médio
+ * @param lastTickAt         Última rodada do agendador
+ */
+public record GmailSyncSchedulerMetricsDTO(
+        boolean enabled,
+        int queueDepth,
+        long dueBacklog,
+        int inFlight,
+        int maxConcurrent,
+        long completed,
+        long failed,
+        long invalidCredentials,
+        long rowsImported,
+        long lastLagMillis,
+        long maxLagMillis,
+        long avgLagMillis,
+        LocalDateTime lastTickAt
+) {}
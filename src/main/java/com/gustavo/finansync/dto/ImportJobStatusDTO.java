@@ -0,0 +1,53 @@
+package com.gustavo.finansync.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Situação de um job de importação em segundo plano
+ *
+ * @param jobId          Identificador do job
+ * @param state          Estado atual
+ * @param attachments    Anexos já processados
+ * @param rowsParsed     Linhas lidas dos CSVs
+ * @param rowsAccepted   Linhas gravadas
+ * @param rowsDuplicated Linhas ignoradas por já existirem
+ * @param rowsRejected   Linhas inválidas (recusadas pela leitura do CSV ou pela gravação)
+ * @param rejectedSample Amostra das linhas recusadas pela leitura do CSV, limitada por job
+ * @param rowsPerSecond  Vazão média desde o início
+ * @param error          Mensagem de erro (quando FAILED)
+ * @param gmailSync      Resumo da sincronização com o Gmail, inclusive requisições e bytes (após a busca)
+ */
+public record ImportJobStatusDTO(
+        String jobId,
+        State state,
+        long attachments,
+        long rowsParsed,
+        long rowsAccepted,
+        long rowsDuplicated,
+        long rowsRejected,
+        List<RejectedRow> rejectedSample,
+        double rowsPerSecond,
+        String error,
+        GmailSyncResult gmailSync,
+        LocalDateTime createdAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+
+    /**
+     * Linha recusada pela leitura do CSV
+     * @param sourceDocument Anexo de origem
+     * @param lineNumber     Linha no arquivo
+     * @param reason         Motivo da recusa
+     */
+    public record RejectedRow(String sourceDocument, long lineNumber, String reason) {}
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+}
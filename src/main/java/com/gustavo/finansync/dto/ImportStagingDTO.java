@@ -0,0 +1,35 @@
+package com.gustavo.finansync.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Importação analisada e guardada no servidor aguardando confirmação.
+ * Nas linhas, {@code id} é o índice da linha na importação (usado para excluí-la na confirmação).
+ *
+ * @param token         Token usado para paginar a prévia e confirmar
+ * @param totalRows     Linhas válidas guardadas
+ * @param duplicateRows Linhas que o usuário já possui
+ * @param rejectedRows  Linhas inválidas, descartadas na análise
+ * @param expiresAt     Prazo para confirmar
+ * @param page          Página atual da prévia
+ * @param size          Tamanho da página
+ * @param rows          Linhas da página
+ */
+public record ImportStagingDTO(
+        String token,
+        long totalRows,
+        long duplicateRows,
+        long rejectedRows,
+        LocalDateTime expiresAt,
+        int page,
+        int size,
+        List<ImportedTransactionDTO> rows
+) {
+
+    /**
+     * Corpo da confirmação
+     * @param excludedRows Índices das linhas que não devem ser importadas
+     */
+    public record ConfirmRequest(List<Integer> excludedRows) {}
+}
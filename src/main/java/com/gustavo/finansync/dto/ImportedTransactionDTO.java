@@ -0,0 +1,40 @@
+package com.gustavo.finansync.dto;
+
+import com.gustavo.finansync.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Linha de um extrato importado (prévia e confirmação da importação)
+ *
+ * @param emailMessageId  ID da mensagem do Gmail de onde a linha veio (null para uploads)
+ * @param sourceDocument  Identificador do arquivo de origem, usado na deduplicação
+ * @param alreadyImported true se a linha já existe nas transações do usuário
+ */
+public record ImportedTransactionDTO(
+        Long id,
+        String description,
+        String category,
+        BigDecimal amount,
+        LocalDate transactionDate,
+        TransactionType type,
+        String emailMessageId,
+        String sourceDocument,
+        boolean alreadyImported
+) {
+
+    public static ImportedTransactionDTO of(TransactionDTO dto, String emailMessageId, String sourceDocument) {
+        return new ImportedTransactionDTO(dto.id(), dto.description(), dto.category(), dto.amount(),
+                dto.transactionDate(), dto.type(), emailMessageId, sourceDocument, false);
+    }
+
+    public ImportedTransactionDTO withAlreadyImported(boolean alreadyImported) {
+        return new ImportedTransactionDTO(id, description, category, amount, transactionDate, type,
+                emailMessageId, sourceDocument, alreadyImported);
+    }
+
+    public TransactionDTO toTransactionDTO() {
+        return new TransactionDTO(id, description, category, amount, transactionDate, type);
+    }
+}
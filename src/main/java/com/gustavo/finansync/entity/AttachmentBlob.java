@@ -0,0 +1,100 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Entidade AttachmentBlob - Conteúdo de um anexo guardado no cache local, identificado
+ * pelo SHA-256 do conteúdo decodificado (arquivos iguais são guardados uma única vez) e pelo
+ * volume (diretório do cache) onde o arquivo está: cada nó tem o seu disco
+ */
+@Entity
+@Table(name = "attachment_blobs",
+        indexes = @Index(name = "idx_attachment_blobs_volume_last_accessed", columnList = "volume, last_accessed_at"))
+@IdClass(AttachmentBlob.Key.class)
+public class AttachmentBlob {
+
+    @Id
+    @Column(name = "volume", length = 36)
+    private String volume;
+
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    // Tamanho do conteúdo decodificado
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    // Tamanho do arquivo comprimido em disco (conta para o limite do cache)
+    @Column(name = "stored_bytes", nullable = false)
+    private long storedBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private LocalDateTime lastAccessedAt;
+
+    // Construtores
+    public AttachmentBlob() {}
+
+    public AttachmentBlob(String volume, String sha256, long sizeBytes, long storedBytes) {
+        this.volume = volume;
+        this.sha256 = sha256;
+        this.sizeBytes = sizeBytes;
+        this.storedBytes = storedBytes;
+        this.createdAt = LocalDateTime.now();
+        this.lastAccessedAt = this.createdAt;
+    }
+
+    // Getters e Setters
+    public String getVolume() { return volume; }
+    public void setVolume(String volume) { this.volume = volume; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public long getStoredBytes() { return storedBytes; }
+    public void setStoredBytes(long storedBytes) { this.storedBytes = storedBytes; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getLastAccessedAt() { return lastAccessedAt; }
+    public void setLastAccessedAt(LocalDateTime lastAccessedAt) { this.lastAccessedAt = lastAccessedAt; }
+
+    /**
+     * Chave composta (volume, sha256)
+     */
+    public static class Key implements Serializable {
+
+        private String volume;
+        private String sha256;
+
+        public Key() {}
+
+        public Key(String volume, String sha256) {
+            this.volume = volume;
+            this.sha256 = sha256;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(volume, key.volume) && Objects.equals(sha256, key.sha256);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(volume, sha256);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade CachedAttachment - Índice do cache de anexos: liga um anexo de uma mensagem
+ * do Gmail de um usuário ao conteúdo guardado em {@link AttachmentBlob}.
+ * A chave é (usuário, mensagem, nome do arquivo, volume), pois o attachmentId do Gmail muda a
+ * cada consulta e cada nó indexa apenas os arquivos do seu disco.
+ */
+@Entity
+@Table(name = "cached_attachments",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cached_attachment_volume",
+                columnNames = {"user_id", "message_id", "filename", "volume"}),
+        indexes = @Index(name = "idx_cached_attachments_volume_sha256", columnList = "volume, sha256"))
+public class CachedAttachment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Diretório do cache onde está o conteúdo
+    @Column(name = "volume", nullable = false, length = 36)
+    private String volume;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "message_id", nullable = false, length = 64)
+    private String messageId;
+
+    @Column(name = "attachment_id", length = 1024)
+    private String attachmentId;
+
+    @Column(name = "filename", nullable = false)
+    private String filename;
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    // Quantidade de anexos CSV da mensagem: a mensagem só é servida do cache se todos estiverem guardados
+    @Column(name = "message_attachments", nullable = false)
+    private int messageAttachments;
+
+    @Column(name = "cached_at", nullable = false)
+    private LocalDateTime cachedAt;
+
+    // Construtores
+    public CachedAttachment() {}
+
+    public CachedAttachment(String volume, User user, String messageId, String attachmentId, String filename,
+                            String sha256, int messageAttachments) {
+        this.volume = volume;
+        this.user = user;
+        this.messageId = messageId;
+        this.attachmentId = attachmentId;
+        this.filename = filename;
+        this.sha256 = sha256;
+        this.messageAttachments = messageAttachments;
+        this.cachedAt = LocalDateTime.now();
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getVolume() { return volume; }
+    public void setVolume(String volume) { this.volume = volume; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+
+    public String getAttachmentId() { return attachmentId; }
+    public void setAttachmentId(String attachmentId) { this.attachmentId = attachmentId; }
+
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public int getMessageAttachments() { return messageAttachments; }
+    public void setMessageAttachments(int messageAttachments) { this.messageAttachments = messageAttachments; }
+
+    public LocalDateTime getCachedAt() { return cachedAt; }
+    public void setCachedAt(LocalDateTime cachedAt) { this.cachedAt = cachedAt; }
+}
@@ -0,0 +1,48 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade ClusterLease - Concessão com prazo de um recurso do cluster (a liderança ou
+ * uma partição dos usuários) a um nó. O fencing token aumenta a cada novo dono, para que
+ * um nó que perdeu a concessão sem perceber seja recusado ao validar o token.
+ */
+@Entity
+@Table(name = "cluster_leases")
+public class ClusterLease {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner_node_id", length = 100)
+    private String ownerNodeId;
+
+    @Column(name = "fencing_token", nullable = false)
+    private long fencingToken;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    // Construtores
+    public ClusterLease() {}
+
+    public ClusterLease(String name) {
+        this.name = name;
+    }
+
+    // Getters e Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getOwnerNodeId() { return ownerNodeId; }
+    public void setOwnerNodeId(String ownerNodeId) { this.ownerNodeId = ownerNodeId; }
+
+    public long getFencingToken() { return fencingToken; }
+    public void setFencingToken(long fencingToken) { this.fencingToken = fencingToken; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
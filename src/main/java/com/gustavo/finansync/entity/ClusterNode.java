@@ -0,0 +1,43 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade ClusterNode - Instância da aplicação em execução. Cada nó atualiza seu
+ * heartbeat periodicamente; nós sem heartbeat recente são considerados mortos.
+ */
+@Entity
+@Table(name = "cluster_nodes", indexes = @Index(name = "idx_cluster_nodes_heartbeat", columnList = "last_heartbeat_at"))
+public class ClusterNode {
+
+    @Id
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "last_heartbeat_at", nullable = false)
+    private LocalDateTime lastHeartbeatAt;
+
+    // Construtores
+    public ClusterNode() {}
+
+    public ClusterNode(String nodeId, LocalDateTime now) {
+        this.nodeId = nodeId;
+        this.startedAt = now;
+        this.lastHeartbeatAt = now;
+    }
+
+    // Getters e Setters
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getLastHeartbeatAt() { return lastHeartbeatAt; }
+    public void setLastHeartbeatAt(LocalDateTime lastHeartbeatAt) { this.lastHeartbeatAt = lastHeartbeatAt; }
+}
@@ -0,0 +1,51 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade GmailProcessedMessage - Mensagem do Gmail já baixada e processada
+ * para um usuário (evita baixar o mesmo e-mail novamente em uma varredura completa)
+ */
+@Entity
+@Table(name = "gmail_processed_messages",
+        uniqueConstraints = @UniqueConstraint(name = "uk_gmail_processed_user_message", columnNames = {"user_id", "message_id"}))
+public class GmailProcessedMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "message_id", nullable = false, length = 64)
+    private String messageId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+    // Construtores
+    public GmailProcessedMessage() {}
+
+    public GmailProcessedMessage(User user, String messageId) {
+        this.user = user;
+        this.messageId = messageId;
+        this.processedAt = LocalDateTime.now();
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public void setProcessedAt(LocalDateTime processedAt) { this.processedAt = processedAt; }
+}
@@ -0,0 +1,104 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Entidade GmailSyncState - Ponto de sincronização do Gmail de um usuário para
+ * um par remetente/assunto. Guarda o último historyId processado para que as
+ * próximas sincronizações busquem apenas mensagens novas.
+ */
+@Entity
+@Table(name = "gmail_sync_states",
+        uniqueConstraints = @UniqueConstraint(name = "uk_gmail_sync_user_query", columnNames = {"user_id", "sender", "subject"}),
+        indexes = @Index(name = "idx_gmail_sync_next", columnList = "next_sync_at"))
+public class GmailSyncState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "sender", nullable = false, length = 150)
+    private String sender;
+
+    @Column(name = "subject", nullable = false, length = 255)
+    private String subject;
+
+    @Column(name = "history_id", precision = 20)
+    private BigInteger historyId;
+
+    @Column(name = "last_sync_at")
+    private LocalDateTime lastSyncAt;
+
+    @Column(name = "last_full_scan_at")
+    private LocalDateTime lastFullScanAt;
+
+    // Próxima sincronização automática (null: ainda não agendada)
+    @Column(name = "next_sync_at")
+    private LocalDateTime nextSyncAt;
+
+    @Column(name = "consecutive_failures", nullable = false)
+    private int consecutiveFailures;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    // Sincronização em andamento: quem a detém e até quando (alterados só por UPDATE condicional)
+    @Column(name = "sync_owner", length = 36)
+    private String syncOwner;
+
+    @Column(name = "sync_locked_until")
+    private LocalDateTime syncLockedUntil;
+
+    // Construtores
+    public GmailSyncState() {}
+
+    public GmailSyncState(User user, String sender, String subject) {
+        this.user = user;
+        this.sender = sender;
+        this.subject = subject;
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getSender() { return sender; }
+    public void setSender(String sender) { this.sender = sender; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public BigInteger getHistoryId() { return historyId; }
+    public void setHistoryId(BigInteger historyId) { this.historyId = historyId; }
+
+    public LocalDateTime getLastSyncAt() { return lastSyncAt; }
+    public void setLastSyncAt(LocalDateTime lastSyncAt) { this.lastSyncAt = lastSyncAt; }
+
+    public LocalDateTime getLastFullScanAt() { return lastFullScanAt; }
+    public void setLastFullScanAt(LocalDateTime lastFullScanAt) { this.lastFullScanAt = lastFullScanAt; }
+
+    public LocalDateTime getNextSyncAt() { return nextSyncAt; }
+    public void setNextSyncAt(LocalDateTime nextSyncAt) { this.nextSyncAt = nextSyncAt; }
+
+    public int getConsecutiveFailures() { return consecutiveFailures; }
+    public void setConsecutiveFailures(int consecutiveFailures) { this.consecutiveFailures = consecutiveFailures; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getSyncOwner() { return syncOwner; }
+    public void setSyncOwner(String syncOwner) { this.syncOwner = syncOwner; }
+
+    public LocalDateTime getSyncLockedUntil() { return syncLockedUntil; }
+    public void setSyncLockedUntil(LocalDateTime syncLockedUntil) { this.syncLockedUntil = syncLockedUntil; }
+}
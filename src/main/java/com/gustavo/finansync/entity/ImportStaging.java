@@ -0,0 +1,89 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Entidade ImportStaging - Importação analisada e ainda não confirmada.
+ * As linhas ficam em {@link ImportStagingRow} até a confirmação ou a expiração do token.
+ */
+@Entity
+@Table(name = "import_stagings")
+public class ImportStaging {
+
+    @Id
+    @Column(name = "token", length = 36)
+    private String token;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "total_rows", nullable = false)
+    private long totalRows;
+
+    @Column(name = "duplicate_rows", nullable = false)
+    private long duplicateRows;
+
+    @Column(name = "rejected_rows", nullable = false)
+    private long rejectedRows;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Ponto de sincronização do Gmail aplicado na confirmação (null: importação sem Gmail)
+    @Column(name = "sync_state_id")
+    private Long syncStateId;
+
+    @Column(name = "sync_history_id", precision = 20)
+    private BigInteger syncHistoryId;
+
+    @Column(name = "sync_full_scan", nullable = false)
+    private boolean syncFullScan;
+
+    // Construtores
+    public ImportStaging() {}
+
+    public ImportStaging(String token, User user, LocalDateTime expiresAt) {
+        this.token = token;
+        this.user = user;
+        this.createdAt = LocalDateTime.now();
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters e Setters
+    public String getToken() { return token; }
+    public void setToken(String token) { this.token = token; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public long getTotalRows() { return totalRows; }
+    public void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+
+    public long getDuplicateRows() { return duplicateRows; }
+    public void setDuplicateRows(long duplicateRows) { this.duplicateRows = duplicateRows; }
+
+    public long getRejectedRows() { return rejectedRows; }
+    public void setRejectedRows(long rejectedRows) { this.rejectedRows = rejectedRows; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+
+    public Long getSyncStateId() { return syncStateId; }
+    public void setSyncStateId(Long syncStateId) { this.syncStateId = syncStateId; }
+
+    public BigInteger getSyncHistoryId() { return syncHistoryId; }
+    public void setSyncHistoryId(BigInteger syncHistoryId) { this.syncHistoryId = syncHistoryId; }
+
+    public boolean isSyncFullScan() { return syncFullScan; }
+    public void setSyncFullScan(boolean syncFullScan) { this.syncFullScan = syncFullScan; }
+}
@@ -0,0 +1,101 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Entidade ImportStagingRow - Linha de uma importação analisada, aguardando confirmação.
+ * Gravada e promovida para {@code transactions} via SQL em massa; a entidade é usada
+ * apenas para paginar a prévia.
+ */
+@Entity
+@Table(name = "import_staging_rows",
+        uniqueConstraints = @UniqueConstraint(name = "uk_staging_row", columnNames = {"staging_token", "row_index"}))
+public class ImportStagingRow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "staging_token", nullable = false, length = 36)
+    private String stagingToken;
+
+    @Column(name = "row_index", nullable = false)
+    private int rowIndex;
+
+    @Column(name = "description", nullable = false)
+    private String description;
+
+    @Column(name = "category")
+    private String category;
+
+    @Column(name = "amount", nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private TransactionType type;
+
+    @Column(name = "transaction_date", nullable = false)
+    private LocalDate transactionDate;
+
+    @Column(name = "email_message_id")
+    private String emailMessageId;
+
+    @Column(name = "source_document")
+    private String sourceDocument;
+
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    @Column(name = "already_imported", nullable = false)
+    private boolean alreadyImported;
+
+    @Column(name = "excluded", nullable = false)
+    private boolean excluded;
+
+    // Construtores
+    public ImportStagingRow() {}
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getStagingToken() { return stagingToken; }
+    public void setStagingToken(String stagingToken) { this.stagingToken = stagingToken; }
+
+    public int getRowIndex() { return rowIndex; }
+    public void setRowIndex(int rowIndex) { this.rowIndex = rowIndex; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public BigDecimal getAmount() { return amount; }
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public TransactionType getType() { return type; }
+    public void setType(TransactionType type) { this.type = type; }
+
+    public LocalDate getTransactionDate() { return transactionDate; }
+    public void setTransactionDate(LocalDate transactionDate) { this.transactionDate = transactionDate; }
+
+    public String getEmailMessageId() { return emailMessageId; }
+    public void setEmailMessageId(String emailMessageId) { this.emailMessageId = emailMessageId; }
+
+    public String getSourceDocument() { return sourceDocument; }
+    public void setSourceDocument(String sourceDocument) { this.sourceDocument = sourceDocument; }
+
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public boolean isAlreadyImported() { return alreadyImported; }
+    public void setAlreadyImported(boolean alreadyImported) { this.alreadyImported = alreadyImported; }
+
+    public boolean isExcluded() { return excluded; }
+    public void setExcluded(boolean excluded) { this.excluded = excluded; }
+}
@@ -14,7 +14,13 @@ import java.time.LocalDateTime;
  * Entidade Transaction - Representa as transações financeiras
  */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_transactions_fingerprint", columnNames = "fingerprint"),
+        indexes = {
+                @Index(name = "idx_transactions_user_date_id", columnList = "user_id, transaction_date, id"),
+                @Index(name = "idx_transactions_user_type_date", columnList = "user_id, type, transaction_date"),
+                @Index(name = "idx_transactions_email_message", columnList = "email_message_id")
+        })
 @EntityListeners(AuditingEntityListener.class)
 public class Transaction {
 
@@ -46,6 +52,14 @@ public class Transaction {
     @Column(name = "email_message_id")
     private String emailMessageId;
 
+    // Impressão digital das transações importadas (ver TransactionFingerprinter); null nas manuais
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    // Descrição normalizada para a busca; gravada pelo TransactionSearchService junto com os trigramas
+    @Column(name = "search_text", insertable = false, updatable = false)
+    private String searchText;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -63,6 +77,18 @@ public class Transaction {
     @Column(name = "category", nullable = true)
     private String category;
 
+    // Valores como estão no banco (lidos ou gravados por último), para desfazer a contribuição
+    // antiga da transação nos totais derivados quando ela é alterada ou excluída
+    @Transient
+    private Snapshot persisted;
+
+    /**
+     * Campos da transação que entram nos totais derivados (ver TransactionWriteListener).
+     * O id é null nas linhas gravadas via JDBC.
+     */
+    public record Snapshot(Long id, Long userId, LocalDate transactionDate, String category, TransactionType type,
+                           BigDecimal amount) {}
+
     // Construtores
     public Transaction() {}
 
@@ -109,6 +135,11 @@ public class Transaction {
     public String getEmailMessageId() { return emailMessageId; }
     public void setEmailMessageId(String emailMessageId) { this.emailMessageId = emailMessageId; }
 
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public String getSearchText() { return searchText; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -118,4 +149,15 @@ public class Transaction {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
+    public Snapshot snapshot() {
+        return new Snapshot(id, user.getId(), transactionDate, category, type, amount);
+    }
+
+    /**
+     * Estado gravado no banco; null se a transação ainda não foi lida nem gravada
+     */
+    public Snapshot getPersisted() { return persisted; }
+
+    public void markPersisted() { this.persisted = snapshot(); }
+
 }
\ No newline at end of file
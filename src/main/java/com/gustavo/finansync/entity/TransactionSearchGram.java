@@ -0,0 +1,79 @@
+package com.gustavo.finansync.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Entidade TransactionSearchGram - Entrada do índice invertido da busca: um trigrama do texto
+ * normalizado da descrição de uma transação. Gravada via JDBC pelo TransactionSearchService;
+ * mapeada apenas para ser usada nas subconsultas das Specifications.
+ */
+@Entity
+@Table(name = "transaction_search_grams")
+@IdClass(TransactionSearchGram.Key.class)
+public class TransactionSearchGram {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "gram", nullable = false, length = 3)
+    private String gram;
+
+    @Id
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    // Construtores
+    public TransactionSearchGram() {}
+
+    public TransactionSearchGram(Long userId, String gram, Long transactionId) {
+        this.userId = userId;
+        this.gram = gram;
+        this.transactionId = transactionId;
+    }
+
+    // Getters e Setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getGram() { return gram; }
+    public void setGram(String gram) { this.gram = gram; }
+
+    public Long getTransactionId() { return transactionId; }
+    public void setTransactionId(Long transactionId) { this.transactionId = transactionId; }
+
+    /**
+     * Chave composta (user_id, gram, transaction_id)
+     */
+    public static class Key implements Serializable {
+
+        private Long userId;
+        private String gram;
+        private Long transactionId;
+
+        public Key() {}
+
+        public Key(Long userId, String gram, Long transactionId) {
+            this.userId = userId;
+            this.gram = gram;
+            this.transactionId = transactionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(userId, key.userId) && Objects.equals(gram, key.gram)
+                    && Objects.equals(transactionId, key.transactionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, gram, transactionId);
+        }
+    }
+}
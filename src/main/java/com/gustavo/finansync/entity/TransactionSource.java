@@ -5,7 +5,8 @@ package com.gustavo.finansync.entity;
  */
 public enum TransactionSource {
     MANUAL("Manual"),
-    EMAIL_IMPORT("Importação por Email");
+    EMAIL_IMPORT("Importação por Email"),
+    FILE_UPLOAD("Upload de Arquivo");
 
     private final String displayName;
 
@@ -44,6 +44,17 @@ public class User {
     @Column(name = "gmail_refresh_token", columnDefinition = "TEXT")
     private String gmailRefreshToken;
 
+    @Column(name = "gmail_access_token", columnDefinition = "TEXT")
+    private String gmailAccessToken;
+
+    // Expiração do access token do Gmail (epoch em milissegundos)
+    @Column(name = "gmail_token_expires_at")
+    private Long gmailTokenExpiresAt;
+
+    // Intervalo da sincronização automática do Gmail (null usa o padrão; 0 desliga)
+    @Column(name = "gmail_sync_interval_minutes")
+    private Integer gmailSyncIntervalMinutes;
+
     @Column(name = "is_active")
     private Boolean isActive = true;
 
@@ -87,6 +98,15 @@ public class User {
     public String getGmailRefreshToken() { return gmailRefreshToken; }
     public void setGmailRefreshToken(String gmailRefreshToken) { this.gmailRefreshToken = gmailRefreshToken; }
 
+    public String getGmailAccessToken() { return gmailAccessToken; }
+    public void setGmailAccessToken(String gmailAccessToken) { this.gmailAccessToken = gmailAccessToken; }
+
+    public Long getGmailTokenExpiresAt() { return gmailTokenExpiresAt; }
+    public void setGmailTokenExpiresAt(Long gmailTokenExpiresAt) { this.gmailTokenExpiresAt = gmailTokenExpiresAt; }
+
+    public Integer getGmailSyncIntervalMinutes() { return gmailSyncIntervalMinutes; }
+    public void setGmailSyncIntervalMinutes(Integer gmailSyncIntervalMinutes) { this.gmailSyncIntervalMinutes = gmailSyncIntervalMinutes; }
+
     public Boolean getIsActive() { return isActive; }
     public void setIsActive(Boolean isActive) { this.isActive = isActive; }
 
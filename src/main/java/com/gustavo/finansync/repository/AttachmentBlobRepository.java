@@ -0,0 +1,48 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.AttachmentBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository dos conteúdos guardados no cache de anexos
+ */
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, AttachmentBlob.Key> {
+
+    /**
+     * Espaço ocupado em disco pelo cache de um volume
+     * @param volume Diretório do cache
+     * @return Soma dos tamanhos comprimidos
+     */
+    @Query("SELECT COALESCE(SUM(b.storedBytes), 0) FROM AttachmentBlob b WHERE b.volume = :volume")
+    long sumStoredBytes(@Param("volume") String volume);
+
+    /**
+     * Conteúdos do volume menos usados recentemente (candidatos à remoção)
+     * @param volume Diretório do cache
+     * @param pageable Quantidade de itens
+     * @return Blobs em ordem de último acesso
+     */
+    List<AttachmentBlob> findByVolumeOrderByLastAccessedAtAsc(String volume, Pageable pageable);
+
+    /**
+     * Atualiza o último acesso dos conteúdos lidos
+     * @param volume Diretório do cache
+     * @param shas Hashes lidos
+     * @param now Momento do acesso
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AttachmentBlob b SET b.lastAccessedAt = :now WHERE b.volume = :volume AND b.sha256 IN :shas")
+    int touch(@Param("volume") String volume, @Param("shas") Collection<String> shas, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,43 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.CachedAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository do índice do cache de anexos por usuário/mensagem
+ */
+@Repository
+public interface CachedAttachmentRepository extends JpaRepository<CachedAttachment, Long> {
+
+    List<CachedAttachment> findByVolumeAndUserIdAndMessageId(String volume, Long userId, String messageId);
+
+    Optional<CachedAttachment> findByVolumeAndUserIdAndMessageIdAndFilename(String volume, Long userId, String messageId,
+                                                                            String filename);
+
+    /**
+     * Todos os anexos em cache de um usuário no volume, na ordem em que foram guardados
+     * @param volume Diretório do cache
+     * @param userId ID do usuário
+     * @return Entradas do índice
+     */
+    List<CachedAttachment> findByVolumeAndUserIdOrderByCachedAtAscIdAsc(String volume, Long userId);
+
+    /**
+     * Remove as entradas do volume que apontam para um conteúdo removido do cache
+     * @param volume Diretório do cache
+     * @param sha256 Hash do conteúdo
+     * @return Número de entradas removidas
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CachedAttachment c WHERE c.volume = :volume AND c.sha256 = :sha256")
+    int deleteByVolumeAndSha256(@Param("volume") String volume, @Param("sha256") String sha256);
+}
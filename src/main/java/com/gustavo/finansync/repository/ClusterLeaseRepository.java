@@ -0,0 +1,58 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.ClusterLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository para as concessões (leases) do cluster. Todas as trocas de dono são um único
+ * UPDATE condicional, então dois nós nunca obtêm a mesma concessão ao mesmo tempo.
+ */
+@Repository
+public interface ClusterLeaseRepository extends JpaRepository<ClusterLease, String> {
+
+    /**
+     * Obtém uma concessão livre ou vencida, incrementando o fencing token
+     * @return 1 se o nó passou a ser o dono, 0 se outro nó ainda a detém
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ClusterLease l SET l.ownerNodeId = :nodeId, l.fencingToken = l.fencingToken + 1, " +
+            "l.expiresAt = :expiresAt WHERE l.name = :name AND (l.ownerNodeId IS NULL OR l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("nodeId") String nodeId,
+                @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Prorroga uma concessão ainda válida do nó, mantendo o fencing token
+     * @return 1 se prorrogada, 0 se o nó já não é o dono com esse token
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ClusterLease l SET l.expiresAt = :expiresAt WHERE l.name = :name AND l.ownerNodeId = :nodeId " +
+            "AND l.fencingToken = :token AND l.expiresAt >= :now")
+    int renew(@Param("name") String name, @Param("nodeId") String nodeId, @Param("token") long token,
+              @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Devolve uma concessão para que outro nó possa obtê-la imediatamente
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ClusterLease l SET l.ownerNodeId = NULL WHERE l.name = :name AND l.ownerNodeId = :nodeId " +
+            "AND l.fencingToken = :token")
+    int release(@Param("name") String name, @Param("nodeId") String nodeId, @Param("token") long token);
+
+    /**
+     * Verifica se o nó ainda detém a concessão com o fencing token informado
+     */
+    @Query("SELECT CASE WHEN COUNT(l) > 0 THEN true ELSE false END FROM ClusterLease l WHERE l.name = :name " +
+            "AND l.ownerNodeId = :nodeId AND l.fencingToken = :token AND l.expiresAt >= :now")
+    boolean isHeld(@Param("name") String name, @Param("nodeId") String nodeId, @Param("token") long token,
+                   @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,42 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.ClusterNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository para os nós do cluster e seus heartbeats
+ */
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    /**
+     * Atualiza o heartbeat de um nó
+     * @return Quantidade de linhas atualizadas (0 se o nó ainda não foi registrado)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ClusterNode n SET n.lastHeartbeatAt = :now WHERE n.nodeId = :nodeId")
+    int heartbeat(@Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * IDs dos nós com heartbeat desde o instante informado, em ordem
+     */
+    @Query("SELECT n.nodeId FROM ClusterNode n WHERE n.lastHeartbeatAt >= :since ORDER BY n.nodeId")
+    List<String> findLiveNodeIds(@Param("since") LocalDateTime since);
+
+    /**
+     * Remove os nós sem heartbeat desde o instante informado
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ClusterNode n WHERE n.lastHeartbeatAt < :before")
+    int deleteDeadBefore(@Param("before") LocalDateTime before);
+}
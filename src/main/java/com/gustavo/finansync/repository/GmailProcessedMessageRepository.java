@@ -0,0 +1,28 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.GmailProcessedMessage;
+import com.gustavo.finansync.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Repository das mensagens do Gmail já processadas por usuário
+ */
+@Repository
+public interface GmailProcessedMessageRepository extends JpaRepository<GmailProcessedMessage, Long> {
+
+    /**
+     * Retorna, dentre os IDs informados, os que já foram processados para o usuário
+     * (uma única consulta para o lote inteiro)
+     * @param user Usuário proprietário
+     * @param messageIds IDs de mensagens do Gmail
+     * @return IDs já processados
+     */
+    @Query("SELECT m.messageId FROM GmailProcessedMessage m WHERE m.user = :user AND m.messageId IN :messageIds")
+    Set<String> findProcessedIds(@Param("user") User user, @Param("messageIds") Collection<String> messageIds);
+}
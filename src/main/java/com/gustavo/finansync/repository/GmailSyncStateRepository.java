@@ -0,0 +1,102 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository para o estado de sincronização incremental do Gmail
+ */
+@Repository
+public interface GmailSyncStateRepository extends JpaRepository<GmailSyncState, Long> {
+
+    /**
+     * Busca o ponto de sincronização de um usuário para um remetente/assunto
+     * @param user Usuário proprietário
+     * @param sender Remetente usado na busca
+     * @param subject Assunto usado na busca
+     * @return Optional com o estado, se já houve sincronização
+     */
+    Optional<GmailSyncState> findByUserAndSenderAndSubject(User user, String sender, String subject);
+
+    /**
+     * Sincronizações automáticas vencidas (ou ainda não agendadas), das mais atrasadas para as mais recentes.
+     * Usuários sem credencial do Gmail ou com a sincronização automática desligada ficam de fora.
+     * @param now Instante de referência
+     * @param shardCount Número de partições dos usuários no cluster
+     * @param shards Partições deste nó ({@code userId % shardCount})
+     * @param pageable Quantidade máxima de estados
+     */
+    @Query("SELECT s FROM GmailSyncState s JOIN FETCH s.user u WHERE u.gmailRefreshToken IS NOT NULL " +
+            "AND (u.gmailSyncIntervalMinutes IS NULL OR u.gmailSyncIntervalMinutes > 0) " +
+            "AND MOD(u.id, :shardCount) IN :shards " +
+            "AND (s.nextSyncAt IS NULL OR s.nextSyncAt <= :now) ORDER BY s.nextSyncAt, s.id")
+    List<GmailSyncState> findDueForSync(@Param("now") LocalDateTime now, @Param("shardCount") int shardCount,
+                                        @Param("shards") Collection<Integer> shards, Pageable pageable);
+
+    /**
+     * Conta as sincronizações automáticas vencidas, com os mesmos filtros de {@link #findDueForSync}
+     */
+    @Query("SELECT COUNT(s) FROM GmailSyncState s JOIN s.user u WHERE u.gmailRefreshToken IS NOT NULL " +
+            "AND (u.gmailSyncIntervalMinutes IS NULL OR u.gmailSyncIntervalMinutes > 0) " +
+            "AND MOD(u.id, :shardCount) IN :shards " +
+            "AND (s.nextSyncAt IS NULL OR s.nextSyncAt <= :now)")
+    long countDueForSync(@Param("now") LocalDateTime now, @Param("shardCount") int shardCount,
+                         @Param("shards") Collection<Integer> shards);
+
+    /**
+     * Agenda a próxima sincronização automática, sem tocar no historyId gravado pela sincronização
+     * @return Quantidade de linhas atualizadas
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GmailSyncState s SET s.nextSyncAt = :nextSyncAt, s.consecutiveFailures = :failures, " +
+            "s.lastError = :error WHERE s.id = :id")
+    int reschedule(@Param("id") Long id, @Param("nextSyncAt") LocalDateTime nextSyncAt,
+                   @Param("failures") int failures, @Param("error") String error);
+
+    /**
+     * Obtém a trava de sincronização de um estado livre ou com a trava vencida
+     * @return 1 se obtida, 0 se outra sincronização do mesmo remetente/assunto está em andamento
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GmailSyncState s SET s.syncOwner = :owner, s.syncLockedUntil = :lockedUntil " +
+            "WHERE s.id = :id AND (s.syncOwner IS NULL OR s.syncLockedUntil < :now)")
+    int lock(@Param("id") Long id, @Param("owner") String owner,
+             @Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Libera a trava de sincronização, se ainda for do mesmo dono
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GmailSyncState s SET s.syncOwner = NULL, s.syncLockedUntil = NULL " +
+            "WHERE s.id = :id AND s.syncOwner = :owner")
+    int unlock(@Param("id") Long id, @Param("owner") String owner);
+
+    /**
+     * Avança o historyId depois que as mensagens da sincronização foram gravadas. O historyId
+     * nunca volta: uma confirmação antiga que chegue depois de uma mais nova não o altera.
+     * @param fullScanAt Momento da varredura completa (null se a sincronização foi incremental)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GmailSyncState s SET s.historyId = CASE WHEN s.historyId IS NULL OR s.historyId < :historyId " +
+            "THEN :historyId ELSE s.historyId END, s.lastSyncAt = :now, " +
+            "s.lastFullScanAt = COALESCE(:fullScanAt, s.lastFullScanAt) WHERE s.id = :id")
+    int advance(@Param("id") Long id, @Param("historyId") BigInteger historyId, @Param("now") LocalDateTime now,
+                @Param("fullScanAt") LocalDateTime fullScanAt);
+}
@@ -0,0 +1,29 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.ImportStaging;
+import com.gustavo.finansync.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository das importações analisadas aguardando confirmação
+ */
+@Repository
+public interface ImportStagingRepository extends JpaRepository<ImportStaging, String> {
+
+    Optional<ImportStaging> findByTokenAndUser(String token, User user);
+
+    /**
+     * Tokens expirados (limpeza periódica)
+     * @param now Momento atual
+     * @return Tokens cujo prazo já passou
+     */
+    @Query("SELECT s.token FROM ImportStaging s WHERE s.expiresAt < :now")
+    List<String> findExpiredTokens(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,22 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.ImportStagingRow;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository das linhas em staging (usado para paginar a prévia da importação)
+ */
+@Repository
+public interface ImportStagingRowRepository extends JpaRepository<ImportStagingRow, Long> {
+
+    /**
+     * Página da prévia, na ordem em que as linhas foram lidas
+     * @param stagingToken Token da importação
+     * @param pageable Configuração de paginação
+     * @return Página de linhas
+     */
+    Page<ImportStagingRow> findByStagingTokenOrderByRowIndex(String stagingToken, Pageable pageable);
+}
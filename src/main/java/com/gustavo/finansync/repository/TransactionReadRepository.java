@@ -0,0 +1,30 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.Transaction;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Leituras das listagens projetadas direto em TransactionDTO: só as colunas do DTO são
+ * selecionadas e nenhuma entidade entra no contexto de persistência (sem snapshots para
+ * dirty checking nem proxies de User). Implementado em {@link TransactionReadRepositoryImpl}.
+ */
+public interface TransactionReadRepository {
+
+    /**
+     * Linhas que atendem à Specification, na ordem pedida
+     * @param offset Linhas a pular
+     * @param limit Máximo de linhas (também usado como fetch size do JDBC)
+     */
+    List<TransactionDTO> findDTOs(Specification<Transaction> spec, Sort sort, long offset, int limit);
+
+    /**
+     * Mesmo resultado de {@link #findDTOs} sem limite, lido por um cursor somente-avanço em
+     * blocos de {@code fetchSize} linhas. Deve ser fechado e consumido dentro da transação.
+     */
+    Stream<TransactionDTO> streamDTOs(Specification<Transaction> spec, Sort sort, int fetchSize);
+}
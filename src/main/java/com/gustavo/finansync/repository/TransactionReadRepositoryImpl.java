@@ -0,0 +1,49 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+class TransactionReadRepositoryImpl implements TransactionReadRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionDTO> findDTOs(Specification<Transaction> spec, Sort sort, long offset, int limit) {
+        return query(spec, sort, limit)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<TransactionDTO> streamDTOs(Specification<Transaction> spec, Sort sort, int fetchSize) {
+        return query(spec, sort, fetchSize).getResultStream();
+    }
+
+    private TypedQuery<TransactionDTO> query(Specification<Transaction> spec, Sort sort, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionDTO> query = cb.createQuery(TransactionDTO.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        query.select(cb.construct(TransactionDTO.class, root.get("id"), root.get("description"),
+                        root.get("category"), root.get("amount"), root.get("transactionDate"), root.get("type")))
+                .where(spec.toPredicate(root, query, cb))
+                .orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+}
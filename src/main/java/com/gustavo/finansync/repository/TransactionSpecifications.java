@@ -0,0 +1,113 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionSearchGram;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.util.TextNormalizer;
+import com.gustavo.finansync.util.TransactionCursor;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consultas dinâmicas de transações: uma única Specification cobre qualquer combinação de
+ * filtros, no lugar de um método derivado por combinação.
+ */
+public final class TransactionSpecifications {
+
+    /**
+     * Ordem da listagem. O id desempata transações do mesmo dia, o que torna a ordem total
+     * (necessário para a paginação por keyset) e casa com o índice (user_id, transaction_date, id).
+     */
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("transactionDate"), Sort.Order.desc("id"));
+
+    private TransactionSpecifications() {}
+
+    /**
+     * Transações do usuário; os demais filtros são opcionais (null ou vazio não filtra)
+     * @param user Usuário proprietário
+     * @param description Trechos da descrição, sem diferenciar maiúsculas nem acentos (usa o índice de busca)
+     * @param startDate Data inicial (inclusive)
+     * @param endDate Data final (inclusive)
+     * @param type Tipo da transação
+     */
+    public static Specification<Transaction> filtered(User user, String description, LocalDate startDate,
+                                                      LocalDate endDate, TransactionType type) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+            String normalized = TextNormalizer.normalize(description);
+            if (!normalized.isEmpty()) {
+                predicates.addAll(describedAs(user, normalized, root, query, cb));
+            }
+            if (startDate != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("transactionDate"), startDate));
+            }
+            if (endDate != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("transactionDate"), endDate));
+            }
+            if (type != null) {
+                predicates.add(cb.equal(root.get("type"), type));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    public static Specification<Transaction> filtered(User user, String description, LocalDate startDate, LocalDate endDate) {
+        return filtered(user, description, startDate, endDate, null);
+    }
+
+    /**
+     * Transações posteriores ao cursor na ordem {@link #NEWEST_FIRST}:
+     * {@code transactionDate < data OR (transactionDate = data AND id < id)}
+     */
+    public static Specification<Transaction> after(TransactionCursor cursor) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("transactionDate"), cursor.transactionDate()),
+                cb.and(cb.equal(root.get("transactionDate"), cursor.transactionDate()),
+                        cb.lessThan(root.get("id"), cursor.id())));
+    }
+
+    /**
+     * Cada palavra da busca deve aparecer no texto normalizado da descrição (search_text).
+     * As transações candidatas vêm do índice de trigramas: só as que têm todos os trigramas
+     * das palavras, o que evita comparar o LIKE com todas as linhas do usuário. Buscas só com
+     * palavras de uma ou duas letras não têm trigramas e recaem no LIKE. As transações antigas
+     * são indexadas na migração, então o filtro não deixa linhas de fora.
+     */
+    private static List<Predicate> describedAs(User user, String normalized, Root<Transaction> root,
+                                               CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Predicate> predicates = new ArrayList<>();
+        Set<String> grams = TextNormalizer.trigrams(normalized);
+        if (!grams.isEmpty()) {
+            Subquery<Long> candidates = query.subquery(Long.class);
+            Root<TransactionSearchGram> gram = candidates.from(TransactionSearchGram.class);
+            candidates.select(gram.get("transactionId"))
+                    .where(cb.equal(gram.get("userId"), user.getId()), gram.get("gram").in(grams))
+                    .groupBy(gram.get("transactionId"))
+                    .having(cb.equal(cb.count(gram.get("gram")), (long) grams.size()));
+            predicates.add(root.get("id").in(candidates));
+        }
+        for (String word : normalized.split(" ")) {
+            predicates.add(cb.like(root.get("searchText"), "%" + escapeLike(word) + "%", '\\'));
+        }
+        return predicates;
+    }
+
+    /**
+     * Escapa os curingas do LIKE (escape '\\') para que o texto do usuário seja comparado literalmente
+     */
+    public static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,11 +1,15 @@
 package com.gustavo.finansync.repository;
 
 import com.gustavo.finansync.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -50,4 +54,32 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT COUNT(u) FROM User u WHERE u.isActive = true")
     long countActiveUsers();
+
+    /**
+     * E-mails dos usuários com credencial do Gmail salva
+     * @return E-mails (chaves do armazenamento de credenciais)
+     */
+    @Query("SELECT u.email FROM User u WHERE u.gmailRefreshToken IS NOT NULL")
+    List<String> findEmailsWithGmailCredential();
+
+    /**
+     * Usuários com credencial do Gmail cujo access token expira antes do limite, os mais urgentes primeiro
+     * @param limit Instante limite (epoch em milissegundos)
+     * @param pageable Quantidade máxima de usuários
+     * @return E-mails dos usuários
+     */
+    @Query("SELECT u.email FROM User u WHERE u.gmailRefreshToken IS NOT NULL " +
+            "AND (u.gmailTokenExpiresAt IS NULL OR u.gmailTokenExpiresAt < :limit) ORDER BY u.gmailTokenExpiresAt")
+    List<String> findEmailsWithGmailTokenExpiringBefore(@Param("limit") long limit, Pageable pageable);
+
+    /**
+     * Grava a credencial do Gmail do usuário sem carregar a entidade
+     * @return Número de usuários atualizados (0 se o e-mail não existir)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.gmailAccessToken = :accessToken, u.gmailRefreshToken = :refreshToken, " +
+            "u.gmailTokenExpiresAt = :expiresAt WHERE u.email = :email")
+    int updateGmailCredential(@Param("email") String email, @Param("accessToken") String accessToken,
+                              @Param("refreshToken") String refreshToken, @Param("expiresAt") Long expiresAt);
 }
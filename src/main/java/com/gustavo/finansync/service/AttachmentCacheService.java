@@ -0,0 +1,333 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.entity.AttachmentBlob;
+import com.gustavo.finansync.entity.CachedAttachment;
+import com.gustavo.finansync.repository.AttachmentBlobRepository;
+import com.gustavo.finansync.repository.CachedAttachmentRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache local dos anexos CSV baixados do Gmail.
+ *
+ * O conteúdo decodificado é guardado comprimido (gzip) em disco, endereçado pelo SHA-256:
+ * anexos idênticos ocupam um único arquivo. O índice (usuário, mensagem, arquivo) fica no
+ * banco, o que permite servir uma mensagem sem chamar a API e reprocessar o histórico do
+ * usuário depois de uma correção no parser. O espaço em disco é limitado por
+ * {@code finansync.attachment-cache.max-bytes}; ao passar do limite os conteúdos usados há
+ * mais tempo são removidos (LRU), exceto os que estão sendo lidos.
+ *
+ * Cada diretório de cache é um volume, identificado pelo arquivo {@code volume.id} criado na
+ * primeira vez que o diretório é usado. As linhas do índice são do volume: cada nó só lê, conta
+ * no limite e remove os arquivos do seu disco. Um arquivo que sumiu do disco é só uma falta
+ * local: a mensagem é baixada de novo e o download regrava o arquivo, sem apagar as linhas.
+ *
+ * O cache é uma otimização: falhas de disco são registradas e a importação segue pela API.
+ */
+@Service
+public class AttachmentCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentCacheService.class);
+    private static final int EVICTION_BATCH = 100;
+    private static final String VOLUME_FILE = "volume.id";
+
+    private final AttachmentBlobRepository blobRepository;
+    private final CachedAttachmentRepository cachedAttachmentRepository;
+    private final UserRepository userRepository;
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean enabled;
+
+    // Sob synchronized (this): volume do diretório e leituras em andamento por conteúdo
+    private String volume;
+    private final Map<String, Integer> leases = new HashMap<>();
+
+    public AttachmentCacheService(AttachmentBlobRepository blobRepository,
+                                  CachedAttachmentRepository cachedAttachmentRepository,
+                                  UserRepository userRepository,
+                                  @Value("${finansync.attachment-cache.dir:${java.io.tmpdir}/finansync/attachments}") String directory,
+                                  @Value("${finansync.attachment-cache.max-bytes:1073741824}") long maxBytes,
+                                  @Value("${finansync.attachment-cache.enabled:true}") boolean enabled) {
+        this.blobRepository = blobRepository;
+        this.cachedAttachmentRepository = cachedAttachmentRepository;
+        this.userRepository = userRepository;
+        this.directory = Path.of(directory);
+        this.maxBytes = maxBytes;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Anexos CSV de uma mensagem já guardados no cache.
+     * @return Os anexos (o conteúdo é aberto sob demanda e deve ser fechado por quem lê; até lá
+     *         não é removido do cache), ou vazio se a mensagem não estiver completa no cache
+     */
+    public Optional<List<GmailService.CsvAttachment>> lookup(Long userId, String messageId) {
+        if (!enabled || userId == null) return Optional.empty();
+        try {
+            String volume = volume();
+            List<CachedAttachment> entries = cachedAttachmentRepository.findByVolumeAndUserIdAndMessageId(volume, userId, messageId);
+            if (entries.isEmpty() || entries.size() < entries.get(0).getMessageAttachments()) return Optional.empty();
+            List<GmailService.CsvAttachment> attachments = lease(entries);
+            if (attachments == null) return Optional.empty();
+            blobRepository.touch(volume, entries.stream().map(CachedAttachment::getSha256).distinct().toList(), LocalDateTime.now());
+            return Optional.of(attachments);
+        } catch (IOException e) {
+            logger.warn("Não foi possível ler o cache de anexos em {}", directory, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Guarda um anexo baixado, lendo o conteúdo em streaming (comprimido e com o hash
+     * calculado durante a cópia). Erros são apenas registrados.
+     * @param content            Conteúdo decodificado; é consumido e fechado
+     * @param messageAttachments Total de anexos CSV da mensagem
+     * @return O anexo servido a partir do cache, ou vazio se não foi possível guardá-lo
+     *         (o conteúdo original já foi consumido)
+     */
+    public Optional<GmailService.CsvAttachment> store(Long userId, String messageId, String attachmentId, String filename,
+                                                      InputStream content, int messageAttachments) {
+        if (!enabled || userId == null) return Optional.empty();
+        try (content) {
+            String volume = volume();
+            String sha256 = storeBlob(volume, content);
+            CachedAttachment entry = cachedAttachmentRepository
+                    .findByVolumeAndUserIdAndMessageIdAndFilename(volume, userId, messageId, filename)
+                    .orElseGet(() -> new CachedAttachment(volume, userRepository.getReferenceById(userId), messageId,
+                            attachmentId, filename, sha256, messageAttachments));
+            entry.setAttachmentId(attachmentId);
+            entry.setSha256(sha256);
+            entry.setMessageAttachments(messageAttachments);
+            cachedAttachmentRepository.save(entry);
+            evictToBudget();
+            List<GmailService.CsvAttachment> leased = lease(List.of(entry));
+            return leased == null ? Optional.empty() : Optional.of(leased.get(0));
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Não foi possível guardar o anexo {} da mensagem {} no cache", filename, messageId, e);
+        } catch (DataIntegrityViolationException e) {
+            // Outro download guardou o mesmo anexo ao mesmo tempo
+            logger.debug("Anexo {} da mensagem {} já estava no cache", filename, messageId);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Entrega ao handler, em sequência, todos os anexos em cache do usuário
+     * (reprocessamento sem acessar o Gmail). O conteúdo é fechado após o handler.
+     * @return Número de anexos entregues
+     */
+    public int forEachCached(Long userId, Consumer<GmailService.CsvAttachment> handler) throws IOException {
+        String volume = volume();
+        int count = 0;
+        for (CachedAttachment entry : cachedAttachmentRepository.findByVolumeAndUserIdOrderByCachedAtAscIdAsc(volume, userId)) {
+            List<GmailService.CsvAttachment> leased = lease(List.of(entry));
+            if (leased == null) {
+                logger.debug("Anexo {} da mensagem {} não está no disco deste nó", entry.getFilename(), entry.getMessageId());
+                continue;
+            }
+            GmailService.CsvAttachment attachment = leased.get(0);
+            InputStream content = attachment.content();
+            try (content) {
+                handler.accept(attachment);
+            }
+            blobRepository.touch(volume, List.of(entry.getSha256()), LocalDateTime.now());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Remove conteúdos do volume, do menos para o mais recentemente usado, até caber no limite.
+     * Os conteúdos em leitura ficam, mesmo que o cache siga acima do limite.
+     */
+    synchronized void evictToBudget() throws IOException {
+        String volume = volume();
+        long used = blobRepository.sumStoredBytes(volume);
+        while (used > maxBytes) {
+            // Os conteúdos em leitura aparecem na página sem serem removidos: a página os compensa
+            List<AttachmentBlob> oldest = blobRepository.findByVolumeOrderByLastAccessedAtAsc(volume,
+                    PageRequest.of(0, EVICTION_BATCH + leases.size()));
+            boolean removed = false;
+            for (AttachmentBlob blob : oldest) {
+                if (used <= maxBytes) break;
+                if (leases.containsKey(blob.getSha256())) continue;
+                forget(volume, blob.getSha256());
+                used -= blob.getStoredBytes();
+                removed = true;
+                logger.debug("Anexo {} removido do cache ({} bytes)", blob.getSha256(), blob.getStoredBytes());
+            }
+            if (!removed) return;
+        }
+    }
+
+    /**
+     * Identificador do diretório do cache, criado no primeiro uso e mantido entre reinícios
+     */
+    synchronized String volume() throws IOException {
+        if (volume == null) {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(VOLUME_FILE);
+            try {
+                Files.writeString(file, UUID.randomUUID().toString(), StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                // Diretório já usado antes (ou por outro processo no mesmo disco)
+            }
+            volume = Files.readString(file).trim();
+        }
+        return volume;
+    }
+
+    /**
+     * Abre os anexos para leitura, impedindo a remoção dos conteúdos até o fechamento
+     * @return Os anexos, ou null se algum arquivo não estiver no disco (falta local)
+     */
+    private synchronized List<GmailService.CsvAttachment> lease(List<CachedAttachment> entries) {
+        for (CachedAttachment entry : entries) {
+            if (!Files.exists(blobPath(entry.getSha256()))) return null;
+        }
+        List<GmailService.CsvAttachment> attachments = new ArrayList<>(entries.size());
+        for (CachedAttachment entry : entries) {
+            String sha256 = entry.getSha256();
+            leases.merge(sha256, 1, Integer::sum);
+            attachments.add(new GmailService.CsvAttachment(entry.getMessageId(), entry.getAttachmentId(),
+                    entry.getFilename(), new LazyBlobInputStream(blobPath(sha256), () -> release(sha256))));
+        }
+        return attachments;
+    }
+
+    private synchronized void release(String sha256) {
+        leases.computeIfPresent(sha256, (sha, count) -> count == 1 ? null : count - 1);
+    }
+
+    private String storeBlob(String volume, InputStream content) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "blob", ".tmp");
+        try {
+            // Comprime e calcula o hash em uma única passada, fora do lock
+            MessageDigest digest = newDigest();
+            long sizeBytes;
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                sizeBytes = new DigestInputStream(content, digest).transferTo(out);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            Path target = blobPath(sha256);
+            long storedBytes = Files.size(temp);
+
+            synchronized (this) {
+                if (blobRepository.existsById(new AttachmentBlob.Key(volume, sha256)) && Files.exists(target)) {
+                    blobRepository.touch(volume, List.of(sha256), LocalDateTime.now());
+                } else {
+                    // Conteúdo novo, ou falta local: o arquivo é regravado sobre a linha existente
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    blobRepository.save(new AttachmentBlob(volume, sha256, sizeBytes, storedBytes));
+                }
+            }
+            return sha256;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized void forget(String volume, String sha256) {
+        cachedAttachmentRepository.deleteByVolumeAndSha256(volume, sha256);
+        blobRepository.deleteById(new AttachmentBlob.Key(volume, sha256));
+        try {
+            Files.deleteIfExists(blobPath(sha256));
+        } catch (IOException e) {
+            logger.warn("Não foi possível remover o arquivo do cache {}", sha256, e);
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return directory.resolve(sha256.substring(0, 2)).resolve(sha256 + ".gz");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    /**
+     * Abre o arquivo comprimido apenas na primeira leitura, para que listas de anexos
+     * não mantenham arquivos abertos antes de serem processadas. O fechamento devolve a leitura
+     * do conteúdo ao cache.
+     */
+    private static final class LazyBlobInputStream extends InputStream {
+
+        private final Path path;
+        private final Runnable onClose;
+        private InputStream delegate;
+        private boolean closed;
+
+        private LazyBlobInputStream(Path path, Runnable onClose) {
+            this.path = path;
+            this.onClose = onClose;
+        }
+
+        private InputStream delegate() throws IOException {
+            if (delegate == null) {
+                delegate = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path)), 8192);
+            }
+            return delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (delegate != null) delegate.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+}
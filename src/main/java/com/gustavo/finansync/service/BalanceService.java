@@ -0,0 +1,219 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BalanceDTOs;
+import com.gustavo.finansync.entity.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Saldo dos usuários ao longo do tempo, em {@code daily_balances}: o líquido de cada dia com
+ * transações e o saldo acumulado até ele (soma de prefixo). O saldo em uma data é uma busca
+ * pela chave primária (o último dia até a data) e a série de um período é uma leitura por
+ * faixa da chave, sem somar as transações.
+ *
+ * Os saldos são corrigidos na mesma transação de cada gravação, como os totais mensais
+ * (ver {@link TransactionRollupService}): o líquido do dia muda e o acumulado é somado ao dia
+ * e aos seguintes, então uma transação retroativa só toca os dias posteriores a ela. As
+ * importações recalculam o acumulado uma única vez a partir do dia mais antigo do lote.
+ *
+ * Usuários sem linha em {@code daily_balance_state} têm os saldos recalculados a partir das
+ * transações na primeira leitura.
+ */
+@Service
+public class BalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceService.class);
+
+    private static final String ADD_NET_SQL =
+            "UPDATE daily_balances SET net_amount = net_amount + ? WHERE user_id = ? AND balance_date = ?";
+    private static final String INSERT_DAY_SQL = "INSERT INTO daily_balances " +
+            "(net_amount, running_balance, user_id, balance_date) VALUES (?, ?, ?, ?)";
+    private static final String SHIFT_SQL = "UPDATE daily_balances SET running_balance = running_balance + ? " +
+            "WHERE user_id = ? AND balance_date >= ?";
+    private static final String DELETE_EMPTY_SQL =
+            "DELETE FROM daily_balances WHERE user_id = ? AND balance_date = ? AND net_amount = 0";
+    private static final String BALANCE_AT_SQL = "SELECT running_balance FROM daily_balances " +
+            "WHERE user_id = ? AND balance_date <= ? ORDER BY balance_date DESC LIMIT 1";
+    private static final String BALANCE_BEFORE_SQL = "SELECT running_balance FROM daily_balances " +
+            "WHERE user_id = ? AND balance_date < ? ORDER BY balance_date DESC LIMIT 1";
+    private static final String DAYS_FROM_SQL = "SELECT balance_date, net_amount, running_balance FROM daily_balances " +
+            "WHERE user_id = ? AND balance_date >= ? ORDER BY balance_date";
+    private static final String SERIES_SQL = "SELECT balance_date, net_amount, running_balance FROM daily_balances " +
+            "WHERE user_id = ? AND balance_date BETWEEN ? AND ? ORDER BY balance_date";
+    private static final String SET_RUNNING_SQL =
+            "UPDATE daily_balances SET running_balance = ? WHERE user_id = ? AND balance_date = ?";
+    private static final String REBUILD_SOURCE_SQL = "SELECT transaction_date, SUM(amount) AS net_amount " +
+            "FROM transactions WHERE user_id = ? GROUP BY transaction_date ORDER BY transaction_date";
+    private static final String MARK_BUILT_SQL = "UPDATE daily_balance_state SET rebuilt_at = ? WHERE user_id = ?";
+    private static final String INSERT_STATE_SQL = "INSERT INTO daily_balance_state (rebuilt_at, user_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate rebuildTemplate;
+
+    public BalanceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Roda em transação própria: a reconstrução pode ser disparada por leituras somente leitura
+        this.rebuildTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Soma a transação ao saldo do dia dela e dos seguintes (participa da transação em andamento)
+     */
+    public void add(Transaction.Snapshot transaction) {
+        apply(transaction.userId(), transaction.transactionDate(), transaction.amount());
+    }
+
+    /**
+     * Retira a transação do saldo do dia dela e dos seguintes (participa da transação em andamento)
+     */
+    public void remove(Transaction.Snapshot transaction) {
+        apply(transaction.userId(), transaction.transactionDate(), transaction.amount().negate());
+    }
+
+    /**
+     * Soma um lote de transações: o líquido de cada dia é ajustado e o acumulado de cada usuário
+     * é recalculado uma vez, a partir do dia mais antigo do lote (participa da transação em andamento)
+     */
+    public void addAll(Collection<Transaction.Snapshot> transactions) {
+        Map<Long, TreeMap<LocalDate, BigDecimal>> netByUser = new LinkedHashMap<>();
+        for (Transaction.Snapshot t : transactions) {
+            netByUser.computeIfAbsent(t.userId(), u -> new TreeMap<>())
+                    .merge(t.transactionDate(), t.amount(), BigDecimal::add);
+        }
+        netByUser.forEach((userId, netByDay) -> {
+            if (netByDay.size() == 1) {
+                apply(userId, netByDay.firstKey(), netByDay.firstEntry().getValue());
+                return;
+            }
+            netByDay.forEach((day, net) -> {
+                if (jdbcTemplate.update(ADD_NET_SQL, net, userId, Date.valueOf(day)) == 0) {
+                    insertDay(userId, day, net);
+                }
+            });
+            recomputeFrom(userId, netByDay.firstKey());
+        });
+    }
+
+    /**
+     * Saldo ao fim do dia informado
+     */
+    public BalanceDTOs.Balance balanceAt(Long userId, LocalDate date) {
+        ensureBuilt(userId);
+        return new BalanceDTOs.Balance(date, runningBalance(BALANCE_AT_SQL, userId, date));
+    }
+
+    /**
+     * Saldo antes do período, ao fim dele e a cada dia com transações no período
+     */
+    public BalanceDTOs.Series series(Long userId, LocalDate startDate, LocalDate endDate) {
+        ensureBuilt(userId);
+        BigDecimal opening = runningBalance(BALANCE_BEFORE_SQL, userId, startDate);
+        List<BalanceDTOs.Point> points = jdbcTemplate.query(SERIES_SQL, (rs, rowNum) -> new BalanceDTOs.Point(
+                rs.getDate("balance_date").toLocalDate(), rs.getBigDecimal("net_amount"),
+                rs.getBigDecimal("running_balance")), userId, Date.valueOf(startDate), Date.valueOf(endDate));
+        BigDecimal closing = points.isEmpty() ? opening : points.get(points.size() - 1).balance();
+        return new BalanceDTOs.Series(startDate, endDate, opening, closing, points);
+    }
+
+    /**
+     * Refaz os saldos do usuário a partir das transações
+     */
+    public void rebuild(Long userId) {
+        long start = System.nanoTime();
+        List<Object[]> rows = new ArrayList<>();
+        rebuildTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM daily_balances WHERE user_id = ?", userId);
+            BigDecimal[] running = {BigDecimal.ZERO};
+            jdbcTemplate.query(REBUILD_SOURCE_SQL, rs -> {
+                BigDecimal net = rs.getBigDecimal("net_amount");
+                running[0] = running[0].add(net);
+                rows.add(new Object[]{net, running[0], userId, rs.getDate("transaction_date")});
+            }, userId);
+            jdbcTemplate.batchUpdate(INSERT_DAY_SQL, rows);
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            if (jdbcTemplate.update(MARK_BUILT_SQL, now, userId) == 0) {
+                jdbcTemplate.update(INSERT_STATE_SQL, now, userId);
+            }
+        });
+        logger.info("Saldos diários do usuário {} recalculados: {} dias em {} ms",
+                userId, rows.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void apply(Long userId, LocalDate day, BigDecimal delta) {
+        if (delta.signum() == 0) return;
+        Date date = Date.valueOf(day);
+        if (jdbcTemplate.update(ADD_NET_SQL, delta, userId, date) == 0) {
+            insertDay(userId, day, delta);
+        }
+        jdbcTemplate.update(SHIFT_SQL, delta, userId, date);
+        jdbcTemplate.update(DELETE_EMPTY_SQL, userId, date);
+    }
+
+    /**
+     * Cria o dia com o saldo do dia anterior; o acumulado do próprio dia é ajustado em seguida
+     */
+    private void insertDay(Long userId, LocalDate day, BigDecimal net) {
+        try {
+            jdbcTemplate.update(INSERT_DAY_SQL, net, runningBalance(BALANCE_BEFORE_SQL, userId, day), userId, Date.valueOf(day));
+        } catch (DuplicateKeyException e) {
+            // Criado por outra transação entre o UPDATE e o INSERT
+            jdbcTemplate.update(ADD_NET_SQL, net, userId, Date.valueOf(day));
+        }
+    }
+
+    /**
+     * Recalcula o acumulado a partir do dia informado (soma de prefixo sobre os líquidos)
+     */
+    private void recomputeFrom(Long userId, LocalDate day) {
+        BigDecimal running = runningBalance(BALANCE_BEFORE_SQL, userId, day);
+        List<Object[]> changed = new ArrayList<>();
+        List<Object[]> empty = new ArrayList<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(DAYS_FROM_SQL, userId, Date.valueOf(day))) {
+            BigDecimal net = (BigDecimal) row.get("net_amount");
+            running = running.add(net);
+            if (net.signum() == 0) {
+                empty.add(new Object[]{userId, row.get("balance_date")});
+            } else if (running.compareTo((BigDecimal) row.get("running_balance")) != 0) {
+                changed.add(new Object[]{running, userId, row.get("balance_date")});
+            }
+        }
+        if (!changed.isEmpty()) jdbcTemplate.batchUpdate(SET_RUNNING_SQL, changed);
+        if (!empty.isEmpty()) jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, empty);
+    }
+
+    private BigDecimal runningBalance(String sql, Long userId, LocalDate date) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(sql, BigDecimal.class, userId, Date.valueOf(date));
+        return balance.isEmpty() ? BigDecimal.ZERO : balance.get(0);
+    }
+
+    private void ensureBuilt(Long userId) {
+        Integer built = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM daily_balance_state WHERE user_id = ?", Integer.class, userId);
+        if (built != null && built > 0) return;
+        try {
+            rebuild(userId);
+        } catch (DuplicateKeyException e) {
+            // Outra requisição reconstruiu os saldos ao mesmo tempo
+        }
+    }
+}
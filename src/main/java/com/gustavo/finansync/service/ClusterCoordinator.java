@@ -0,0 +1,301 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.entity.ClusterLease;
+import com.gustavo.finansync.entity.ClusterNode;
+import com.gustavo.finansync.repository.ClusterLeaseRepository;
+import com.gustavo.finansync.repository.ClusterNodeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Coordenação entre as instâncias da aplicação usando o próprio banco de dados.
+ *
+ * Cada nó registra um heartbeat em {@code cluster_nodes}. Os usuários são divididos em
+ * partições fixas ({@code userId % shards}) e cada partição é uma concessão com prazo em
+ * {@code cluster_leases}: os nós vivos dividem as partições em partes iguais, devolvem as que
+ * passam da sua parte quando um nó entra e assumem as vencidas quando um nó morre. Uma
+ * concessão separada elege o líder, que executa as tarefas globais.
+ *
+ * Um nó só considera uma concessão sua enquanto o prazo local não venceu. Como um nó pausado
+ * pode não perceber que perdeu a concessão, o trabalho deve validar o fencing token
+ * ({@link #isValid(Fence)}) antes de começar. Os relógios dos nós devem estar sincronizados.
+ *
+ * O heartbeat roda em uma thread própria, e não no agendador compartilhado do Spring: uma
+ * tarefa agendada demorada não pode atrasar a renovação e fazer o nó perder as concessões.
+ *
+ * Desligado ({@code finansync.cluster.enabled=false}), o nó é líder e dono de tudo.
+ */
+@Service
+public class ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+    private static final String LEADER = "leader";
+    private static final String SHARD_PREFIX = "shard-";
+    // Nós sem heartbeat por este múltiplo do prazo são removidos da tabela
+    private static final int DEAD_NODE_RETENTION_FACTOR = 10;
+
+    /**
+     * Configuração da coordenação
+     * @param enabled  Liga a coordenação (desligada, o nó trabalha sozinho)
+     * @param nodeId   Identificador deste nó
+     * @param shards   Número de partições dos usuários
+     * @param leaseTtl Prazo das concessões e do heartbeat
+     * @param heartbeatInterval Intervalo entre heartbeats (deve ser bem menor que o prazo)
+     */
+    public record Settings(boolean enabled, String nodeId, int shards, Duration leaseTtl, Duration heartbeatInterval) {}
+
+    /**
+     * Concessão mantida por um nó, usada para validar o trabalho antes de executá-lo
+     */
+    public record Fence(String lease, long token) {}
+
+    private record Held(long token, long validUntilNanos) {}
+
+    private final ClusterNodeRepository nodeRepository;
+    private final ClusterLeaseRepository leaseRepository;
+    private final Settings settings;
+
+    // Concessões deste nó; substituído inteiro a cada heartbeat
+    private volatile Map<String, Held> held = Map.of();
+    private volatile int liveNodes = 1;
+    private ScheduledExecutorService heartbeatScheduler;
+
+    @Autowired
+    public ClusterCoordinator(ClusterNodeRepository nodeRepository, ClusterLeaseRepository leaseRepository,
+                              @Value("${finansync.cluster.enabled:true}") boolean enabled,
+                              @Value("${finansync.cluster.node-id:}") String nodeId,
+                              @Value("${finansync.cluster.shards:16}") int shards,
+                              @Value("${finansync.cluster.lease-ttl-ms:30000}") long leaseTtlMillis,
+                              @Value("${finansync.cluster.heartbeat-ms:10000}") long heartbeatMillis) {
+        this(nodeRepository, leaseRepository, new Settings(enabled, nodeId.isBlank() ? defaultNodeId() : nodeId,
+                shards, Duration.ofMillis(leaseTtlMillis), Duration.ofMillis(heartbeatMillis)));
+    }
+
+    public ClusterCoordinator(ClusterNodeRepository nodeRepository, ClusterLeaseRepository leaseRepository,
+                              Settings settings) {
+        this.nodeRepository = nodeRepository;
+        this.leaseRepository = leaseRepository;
+        this.settings = settings;
+    }
+
+    /**
+     * Coordenador de um nó único, dono de todos os usuários
+     */
+    public static ClusterCoordinator standalone() {
+        return new ClusterCoordinator(null, null, new Settings(false, "local", 1, Duration.ZERO, Duration.ZERO));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!settings.enabled()) return;
+        criarConcessoes();
+        heartbeat();
+        logger.info("Nó {} entrou no cluster ({} nós vivos, partições {})", settings.nodeId(), liveNodes, ownedShards());
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.heartbeatInterval().toMillis();
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeatAgendado, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registra o heartbeat, prorroga as concessões deste nó e reequilibra as partições
+     * de acordo com o número de nós vivos.
+     */
+    public synchronized void heartbeat() {
+        if (!settings.enabled()) return;
+        long inicio = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(settings.leaseTtl());
+        long validUntil = inicio + settings.leaseTtl().toNanos();
+
+        if (nodeRepository.heartbeat(settings.nodeId(), now) == 0) {
+            nodeRepository.save(new ClusterNode(settings.nodeId(), now));
+        }
+        nodeRepository.deleteDeadBefore(now.minus(settings.leaseTtl().multipliedBy(DEAD_NODE_RETENTION_FACTOR)));
+        List<String> vivos = nodeRepository.findLiveNodeIds(now.minus(settings.leaseTtl()));
+        liveNodes = Math.max(1, vivos.size());
+        int parteJusta = (settings.shards() + liveNodes - 1) / liveNodes;
+
+        Map<String, Held> mantidas = new HashMap<>();
+        for (Map.Entry<String, Held> entry : held.entrySet()) {
+            if (leaseRepository.renew(entry.getKey(), settings.nodeId(), entry.getValue().token(), now, expiresAt) == 1) {
+                mantidas.put(entry.getKey(), new Held(entry.getValue().token(), validUntil));
+            } else {
+                logger.warn("Nó {} perdeu a concessão {}", settings.nodeId(), entry.getKey());
+            }
+        }
+
+        // Um nó novo entrou: devolve as partições que passam da parte justa
+        List<Integer> minhas = new ArrayList<>(shardsOf(mantidas));
+        Collections.sort(minhas, Collections.reverseOrder());
+        for (int i = 0; minhas.size() - i > parteJusta; i++) {
+            String lease = SHARD_PREFIX + minhas.get(i);
+            leaseRepository.release(lease, settings.nodeId(), mantidas.remove(lease).token());
+        }
+
+        // Assume partições livres ou vencidas até completar a parte justa, começando de
+        // um ponto diferente em cada nó para reduzir a disputa
+        int posicao = Math.max(0, vivos.indexOf(settings.nodeId()));
+        for (int i = 0; i < settings.shards() && shardsOf(mantidas).size() < parteJusta; i++) {
+            int shard = (posicao * parteJusta + i) % settings.shards();
+            adquirir(SHARD_PREFIX + shard, now, expiresAt, validUntil, mantidas);
+        }
+        if (!mantidas.containsKey(LEADER)) {
+            adquirir(LEADER, now, expiresAt, validUntil, mantidas);
+        }
+        held = Map.copyOf(mantidas);
+    }
+
+    /**
+     * Devolve as concessões ao desligar, para que os outros nós as assumam sem esperar o prazo
+     */
+    @PreDestroy
+    public void shutdown() {
+        // Um heartbeat em andamento termina antes da devolução (ambos sincronizados)
+        if (heartbeatScheduler != null) heartbeatScheduler.shutdown();
+        devolverConcessoes();
+    }
+
+    private synchronized void devolverConcessoes() {
+        if (!settings.enabled()) return;
+        held.forEach((lease, h) -> leaseRepository.release(lease, settings.nodeId(), h.token()));
+        held = Map.of();
+        nodeRepository.deleteById(settings.nodeId());
+    }
+
+    public String getNodeId() {
+        return settings.nodeId();
+    }
+
+    public int shardCount() {
+        return settings.shards();
+    }
+
+    public int shardOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) settings.shards());
+    }
+
+    /**
+     * Se este nó é o líder (executa as tarefas globais do cluster)
+     */
+    public boolean isLeader() {
+        return !settings.enabled() || valida(LEADER) != null;
+    }
+
+    /**
+     * Partições dos usuários atribuídas a este nó
+     */
+    public List<Integer> ownedShards() {
+        if (!settings.enabled()) return IntStream.range(0, settings.shards()).boxed().toList();
+        List<Integer> shards = new ArrayList<>();
+        for (int shard = 0; shard < settings.shards(); shard++) {
+            if (valida(SHARD_PREFIX + shard) != null) shards.add(shard);
+        }
+        return shards;
+    }
+
+    public boolean ownsUser(Long userId) {
+        return fence(userId).isPresent();
+    }
+
+    /**
+     * Concessão da partição do usuário, se for deste nó
+     */
+    public Optional<Fence> fence(Long userId) {
+        if (!settings.enabled()) return Optional.of(new Fence(SHARD_PREFIX + 0, 0));
+        String lease = SHARD_PREFIX + shardOf(userId);
+        Held h = valida(lease);
+        return h != null ? Optional.of(new Fence(lease, h.token())) : Optional.empty();
+    }
+
+    /**
+     * Confere no banco se a concessão continua deste nó com o mesmo fencing token
+     */
+    public boolean isValid(Fence fence) {
+        if (!settings.enabled()) return true;
+        return leaseRepository.isHeld(fence.lease(), settings.nodeId(), fence.token(), LocalDateTime.now());
+    }
+
+    public int liveNodes() {
+        return liveNodes;
+    }
+
+    private Held valida(String lease) {
+        Held h = held.get(lease);
+        return h != null && System.nanoTime() - h.validUntilNanos() < 0 ? h : null;
+    }
+
+    private void heartbeatAgendado() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            // Uma exceção cancelaria as próximas execuções: o nó tenta de novo no próximo intervalo
+            logger.warn("Falha no heartbeat do nó {}: {}", settings.nodeId(), e.getMessage());
+        }
+    }
+
+    private void adquirir(String lease, LocalDateTime now, LocalDateTime expiresAt, long validUntil,
+                          Map<String, Held> mantidas) {
+        if (leaseRepository.acquire(lease, settings.nodeId(), now, expiresAt) == 0) return;
+        leaseRepository.findById(lease)
+                .filter(l -> settings.nodeId().equals(l.getOwnerNodeId()))
+                .ifPresent(l -> mantidas.put(lease, new Held(l.getFencingToken(), validUntil)));
+    }
+
+    private void criarConcessoes() {
+        List<String> nomes = new ArrayList<>();
+        nomes.add(LEADER);
+        for (int shard = 0; shard < settings.shards(); shard++) nomes.add(SHARD_PREFIX + shard);
+        for (String nome : nomes) {
+            if (leaseRepository.existsById(nome)) continue;
+            try {
+                leaseRepository.save(new ClusterLease(nome));
+            } catch (DataIntegrityViolationException e) {
+                // Outro nó criou a mesma concessão ao mesmo tempo
+            }
+        }
+    }
+
+    private static List<Integer> shardsOf(Map<String, Held> leases) {
+        List<Integer> shards = new ArrayList<>();
+        for (String lease : leases.keySet()) {
+            if (lease.startsWith(SHARD_PREFIX)) shards.add(Integer.parseInt(lease.substring(SHARD_PREFIX.length())));
+        }
+        return shards;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -1,58 +1,312 @@
 package com.gustavo.finansync.service;
 
+import com.gustavo.finansync.dto.CsvParseReport;
 import com.gustavo.finansync.dto.TransactionDTO;
 import com.gustavo.finansync.entity.TransactionType;
-import com.opencsv.CSVReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Parser dos extratos CSV do banco (campos separados por ";").
+ *
+ * O arquivo é lido em streaming: cada linha é tokenizada sobre um buffer de caracteres
+ * reaproveitado e entregue ao consumidor assim que é convertida, então o uso de memória
+ * não depende do tamanho do arquivo. Campos entre aspas podem conter ";" e quebras de linha.
+ */
 @Service
 public class CsvParsingService {
-    public List<TransactionDTO> parseCsv(InputStream csvInputStream) throws Exception {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvParsingService.class);
+
+    // 4 linhas de metadados + cabeçalho + linha em branco do layout do banco
+    private static final int HEADER_LINES = 6;
+    private static final int MIN_FIELDS = 5;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final char SEPARATOR = ';';
+
+    /**
+     * Lê o CSV inteiro para uma lista. Mantido para chamadores que precisam do resultado
+     * completo; para arquivos grandes prefira {@link #parse(InputStream, Consumer)}.
+     */
+    public List<TransactionDTO> parseCsv(InputStream csvInputStream) throws IOException {
         List<TransactionDTO> transactions = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(csvInputStream, StandardCharsets.UTF_8));
-        String line;
-        int lineNumber = 0;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        while ((line = reader.readLine()) != null) {
-            lineNumber++;
-            // Pule as 5 primeiras linhas (4 metadados + 1 cabeçalho)
-            if (lineNumber <= 6) continue;
-            if (line.trim().isEmpty()) continue;
-            String[] fields = line.split(";");
-            if (fields.length < 5) continue;
-            try {
-                String dataStr = fields[0].trim();
-                String historico = fields[1].trim();
-                String descricao = fields[2].trim();
-                String valorStr = fields[3].replace(".", "").replace(",", ".").trim();
-                String fullDescription = historico + " - " + descricao;
-                LocalDate date = LocalDate.parse(dataStr, formatter);
-                BigDecimal amount = new BigDecimal(valorStr);
-                TransactionType type = amount.signum() >= 0 ? TransactionType.RECEITA : TransactionType.DESPESA;
-                transactions.add(new TransactionDTO(
-                        null, // id
-                        fullDescription,
-                        null,
-                        amount,
-                        date,
-                        type
-                ));
-            } catch (Exception e) {
-                System.out.println("Erro ao processar linha: " + line);
-                e.printStackTrace();
+        parse(csvInputStream, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Converte o CSV entregando cada transação ao {@code sink} assim que ela é lida.
+     * Linhas inválidas não interrompem o processamento: são contadas e uma amostra
+     * (com número da linha e motivo) é devolvida no relatório.
+     *
+     * @param csvInputStream Conteúdo do arquivo (UTF-8). Não é fechado por este método.
+     * @param sink           Destino das transações convertidas
+     * @return Relatório com contadores e amostra de erros
+     */
+    public CsvParseReport parse(InputStream csvInputStream, Consumer<TransactionDTO> sink) throws IOException {
+        LineParser parser = new LineParser(sink);
+        Reader reader = new InputStreamReader(csvInputStream, StandardCharsets.UTF_8);
+
+        char[] buffer = new char[8192];
+        char[] line = new char[256];
+        int lineLength = 0;
+        boolean lineTooLong = false;
+        boolean previousWasCr = false;
+        // Aspas só abrem no início de um campo; dentro delas ";" e quebras de linha são conteúdo
+        boolean atFieldStart = true;
+        boolean inQuotes = false;
+        boolean quoteClosed = false;
+        long lines = 0;
+        long recordLine = 1;
+        int read;
+
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    // "\r\n" encerra uma única linha
+                    boolean crlf = c == '\n' && previousWasCr;
+                    previousWasCr = c == '\r';
+                    if (!crlf) lines++;
+                    quoteClosed = false;
+                    if (!inQuotes) {
+                        if (crlf) continue;
+                        parser.accept(recordLine, line, lineLength, lineTooLong);
+                        recordLine = lines + 1;
+                        lineLength = 0;
+                        lineTooLong = false;
+                        atFieldStart = true;
+                        continue;
+                    }
+                } else {
+                    previousWasCr = false;
+                    if (inQuotes) {
+                        inQuotes = c != '"';
+                        quoteClosed = !inQuotes;
+                    } else if (c == '"' && (atFieldStart || quoteClosed)) {
+                        // Aspas duplicadas ("") dentro de um campo entre aspas
+                        inQuotes = true;
+                        atFieldStart = false;
+                        quoteClosed = false;
+                    } else {
+                        quoteClosed = false;
+                        if (c == SEPARATOR) atFieldStart = true;
+                        else if (!Character.isWhitespace(c)) atFieldStart = false;
+                    }
+                }
+                if (lineLength == line.length) {
+                    if (line.length >= MAX_LINE_LENGTH) {
+                        lineTooLong = true;
+                        continue;
+                    }
+                    char[] grown = new char[Math.min(line.length * 2, MAX_LINE_LENGTH)];
+                    System.arraycopy(line, 0, grown, 0, lineLength);
+                    line = grown;
+                }
+                line[lineLength++] = c;
             }
         }
-        System.out.println("Total de transações parseadas: " + transactions.size());
-        return transactions;
+        if (lineLength > 0 || lineTooLong) {
+            lines++;
+            parser.accept(recordLine, line, lineLength, lineTooLong);
+        }
+
+        CsvParseReport report = parser.report(lines);
+        logger.info("CSV processado: {} transações, {} linhas rejeitadas", report.parsedRows(), report.rejectedRows());
+        return report;
+    }
+
+    /**
+     * Estado do processamento de um arquivo. Os buffers de campos e de descrição são
+     * reaproveitados entre as linhas.
+     */
+    private static final class LineParser {
+
+        private final Consumer<TransactionDTO> sink;
+        private final int[] fieldStart = new int[MIN_FIELDS];
+        private final int[] fieldEnd = new int[MIN_FIELDS];
+        private final StringBuilder description = new StringBuilder(128);
+        private final List<CsvParseReport.RowError> errors = new ArrayList<>();
+
+        private long lineNumber;
+        private long parsedRows;
+        private long rejectedRows;
+
+        private LineParser(Consumer<TransactionDTO> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Processa um registro do arquivo
+         * @param firstLine Linha do arquivo em que o registro começa (um campo entre aspas pode
+         *                  continuar nas linhas seguintes)
+         */
+        void accept(long firstLine, char[] line, int length, boolean tooLong) {
+            lineNumber = firstLine;
+            if (lineNumber <= HEADER_LINES) return;
+            if (tooLong) {
+                reject("Linha excede " + MAX_LINE_LENGTH + " caracteres");
+                return;
+            }
+            if (isBlank(line, 0, length)) return;
+
+            int fields = tokenize(line, length);
+            // Linhas com menos colunas são rodapés/totais do extrato e são ignoradas
+            if (fields < MIN_FIELDS) return;
+
+            LocalDate date = parseDate(line, fieldStart[0], fieldEnd[0]);
+            if (date == null) {
+                reject("Data inválida: '" + new String(line, fieldStart[0], fieldEnd[0] - fieldStart[0]) + "'");
+                return;
+            }
+            BigDecimal amount = parseAmount(line, fieldStart[3], fieldEnd[3]);
+            if (amount == null) {
+                reject("Valor inválido: '" + new String(line, fieldStart[3], fieldEnd[3] - fieldStart[3]) + "'");
+                return;
+            }
+
+            description.setLength(0);
+            description.append(line, fieldStart[1], fieldEnd[1] - fieldStart[1])
+                    .append(" - ")
+                    .append(line, fieldStart[2], fieldEnd[2] - fieldStart[2]);
+
+            TransactionType type = amount.signum() >= 0 ? TransactionType.RECEITA : TransactionType.DESPESA;
+            sink.accept(new TransactionDTO(null, description.toString(), null, amount, date, type));
+            parsedRows++;
+        }
+
+        CsvParseReport report(long linesRead) {
+            return new CsvParseReport(linesRead, parsedRows, rejectedRows, List.copyOf(errors),
+                    rejectedRows > errors.size());
+        }
+
+        /**
+         * Registra as posições (já sem espaços nas bordas) dos primeiros campos da linha.
+         * Campos entre aspas perdem as aspas e têm as aspas duplicadas ("") reduzidas a uma,
+         * regravando os caracteres na própria linha.
+         * @return Número de campos encontrados, limitado a {@link #MIN_FIELDS}
+         */
+        private int tokenize(char[] line, int length) {
+            int count = 0;
+            int i = 0;
+            int w = 0;
+            while (count < MIN_FIELDS) {
+                while (i < length && line[i] != SEPARATOR && Character.isWhitespace(line[i])) i++;
+                int s = w;
+                int quotedEnd = w;
+                if (i < length && line[i] == '"') {
+                    i++;
+                    while (i < length) {
+                        char c = line[i++];
+                        if (c != '"') {
+                            line[w++] = c;
+                        } else if (i < length && line[i] == '"') {
+                            line[w++] = '"';
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    quotedEnd = w;
+                }
+                while (i < length && line[i] != SEPARATOR) line[w++] = line[i++];
+                int e = w;
+                while (e > quotedEnd && Character.isWhitespace(line[e - 1])) e--;
+                fieldStart[count] = s;
+                fieldEnd[count] = e;
+                count++;
+                if (i >= length) break;
+                i++;
+            }
+            return count;
+        }
+
+        private void reject(String reason) {
+            rejectedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new CsvParseReport.RowError(lineNumber, reason));
+            }
+        }
+    }
+
+    /**
+     * Converte "dd/MM/yyyy" diretamente dos caracteres da linha.
+     * @return A data, ou null se o campo não estiver no formato esperado
+     */
+    static LocalDate parseDate(char[] chars, int start, int end) {
+        if (end - start != 10 || chars[start + 2] != '/' || chars[start + 5] != '/') return null;
+        int day = digits(chars, start, 2);
+        int month = digits(chars, start + 3, 2);
+        int year = digits(chars, start + 6, 4);
+        if (day < 0 || month < 0 || year < 0) return null;
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converte valores no formato brasileiro ("-1.234,56") sem criar strings intermediárias.
+     * Pontos são separadores de milhar e a vírgula separa as casas decimais.
+     * @return O valor, ou null se o campo não for um número válido
+     */
+    static BigDecimal parseAmount(char[] chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int scale = 0;
+        int digitCount = 0;
+        boolean decimalPart = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                // 18 dígitos cabem em um long sem risco de overflow
+                if (++digitCount > 18) return null;
+                unscaled = unscaled * 10 + (c - '0');
+                if (decimalPart) scale++;
+            } else if (c == ',' && !decimalPart) {
+                decimalPart = true;
+            } else if (c != '.' || decimalPart) {
+                return null;
+            }
+        }
+        if (digitCount == 0) return null;
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    private static int digits(char[] chars, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isBlank(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(chars[i])) return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,101 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.CsvParseReport;
+import com.gustavo.finansync.dto.CsvUploadResultDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Importação de extratos CSV enviados diretamente pelo usuário.
+ *
+ * O arquivo é lido em streaming pelo parser e cada transação vai direto para uma sessão
+ * de gravação em lotes: nem o arquivo nem a lista de transações ficam em memória.
+ * Arquivos grandes são mantidos pelo container em arquivo temporário
+ * ({@code spring.servlet.multipart.file-size-threshold}) e lidos do disco.
+ */
+@Service
+public class CsvUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvUploadService.class);
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final CsvParsingService csvParsingService;
+    private final TransactionBulkInsertService bulkInsertService;
+
+    public CsvUploadService(CsvParsingService csvParsingService, TransactionBulkInsertService bulkInsertService) {
+        this.csvParsingService = csvParsingService;
+        this.bulkInsertService = bulkInsertService;
+    }
+
+    /**
+     * Lê o CSV e grava as transações do usuário em lotes. Lotes já confirmados são mantidos
+     * mesmo que a leitura falhe no meio do arquivo.
+     * @param content  Conteúdo do arquivo. Não é fechado por este método.
+     * @param filename Nome do arquivo, usado como documento de origem na impressão digital
+     *                 (reenviar o mesmo arquivo não duplica as transações)
+     * @param userId   Dono das transações
+     */
+    public CsvUploadResultDTO importCsv(InputStream content, String filename, Long userId) throws IOException {
+        long start = System.nanoTime();
+        String sourceDocument = "upload:" + filename;
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(content, READ_BUFFER));
+        TransactionBulkInsertService.Session session = bulkInsertService.openSession(userId, TransactionSource.FILE_UPLOAD);
+
+        CsvParseReport report;
+        BulkImportResult result;
+        try {
+            report = csvParsingService.parse(counting, dto -> session.add(dto, null, sourceDocument));
+        } finally {
+            result = session.finish();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        double seconds = elapsedNanos / 1_000_000_000d;
+        double rowsPerSecond = seconds > 0 ? report.parsedRows() / seconds : 0;
+        logger.info("Upload '{}' do usuário {}: {} bytes, {} linhas em {} ms ({} linhas/s)",
+                filename, userId, counting.count, report.parsedRows(), elapsedMillis, Math.round(rowsPerSecond));
+        return new CsvUploadResultDTO(filename, counting.count, report, result, elapsedMillis, rowsPerSecond);
+    }
+
+    /**
+     * Conta os bytes lidos, sem copiar o conteúdo
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -2,21 +2,30 @@ package com.gustavo.finansync.service;
 
 import com.google.api.client.auth.oauth2.AuthorizationCodeFlow;
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.DataStore;
 import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.GmailScopes;
+import com.gustavo.finansync.repository.UserRepository;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
 import jakarta.annotation.PostConstruct;
 import java.io.File;
@@ -24,6 +33,8 @@ import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class GmailAuthService {
@@ -38,9 +49,44 @@ public class GmailAuthService {
     @Value("${spring.security.oauth2.client.registration.google.client-secret}")
     private String clientSecret;
 
+    @Value("${finansync.gmail.connect-timeout-ms:10000}")
+    private int connectTimeoutMillis;
+
+    @Value("${finansync.gmail.read-timeout-ms:30000}")
+    private int readTimeoutMillis;
+
+    // Antecedência com que o refresher renova o access token
+    @Value("${finansync.gmail.token-refresh-ahead-ms:300000}")
+    private long refreshAheadMillis;
+
+    @Value("${finansync.gmail.token-refresh-batch:100}")
+    private int refreshBatch;
+
+    @Value("${finansync.gmail.token-refresh.enabled:true}")
+    private boolean refreshEnabled;
+
+    @Autowired
+    private GmailRequestExecutor requestExecutor;
+
+    @Autowired
+    private GmailCredentialStoreFactory credentialStoreFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
     private AuthorizationCodeFlow flow;
     private NetHttpTransport httpTransport;
 
+    /**
+     * Cliente Gmail de um usuário, reaproveitado entre as requisições
+     */
+    private record UserClient(Credential credential, Gmail gmail) {}
+
+    private final Map<String, UserClient> clients = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
         try {
@@ -59,11 +105,12 @@ public class GmailAuthService {
 
             flow = new GoogleAuthorizationCodeFlow.Builder(
                     httpTransport, JSON_FACTORY, clientSecrets, scopes)
-                    .setDataStoreFactory(new FileDataStoreFactory(new File(TOKENS_DIRECTORY_PATH)))
+                    .setDataStoreFactory(credentialStoreFactory)
                     .setAccessType("offline")
                     .setApprovalPrompt("force") // Garante que o refresh_token seja enviado sempre
                     .build();
 
+            migrarCredenciaisDoArquivo(new File(TOKENS_DIRECTORY_PATH));
             logger.info("Fluxo de autorização do Gmail inicializado com sucesso.");
 
         } catch (GeneralSecurityException | IOException e) {
@@ -87,22 +134,138 @@ public class GmailAuthService {
                 flow.newTokenRequest(code).setRedirectUri(redirectUri).execute(),
                 userId
         );
+        // Uma nova autorização substitui o cliente em cache
+        clients.remove(userId);
         logger.info("Token para o usuário '{}' armazenado com sucesso.", userId);
     }
 
     public Credential getCredential(String userId) throws IOException {
-        return flow.loadCredential(userId);
+        UserClient client = clients.get(userId);
+        return client != null ? client.credential() : flow.loadCredential(userId);
     }
 
+    /**
+     * Cliente Gmail do usuário. O cliente (e seu Credential) é criado uma vez e reaproveitado;
+     * o access token é mantido válido pelo {@link #refreshExpiringTokens()} do líder. Perto de
+     * vencer, o token do cliente em cache é recarregado do banco, onde o líder grava o renovado.
+     * @throws IOException se o usuário ainda não autorizou o acesso ao Gmail
+     */
     public Gmail getGmailService(String userId) throws IOException, GeneralSecurityException {
-        Credential credential = getCredential(userId);
-        if (credential == null || (credential.getExpiresInSeconds() != null && credential.getExpiresInSeconds() <= 60)) {
-            // Se a credencial não existir ou estiver prestes a expirar, o fluxo de autorização é necessário.
+        UserClient client = clients.get(userId);
+        if (client != null && recarregarSeVencendo(userId, client)) return client.gmail();
+
+        Credential credential = flow.loadCredential(userId);
+        if (credential == null || credential.getRefreshToken() == null) {
             throw new IOException("Credencial do Gmail inválida ou expirada. Por favor, autorize novamente.");
         }
-
-        return new Gmail.Builder(httpTransport, JSON_FACTORY, credential)
+        // Timeouts curtos: uma resposta lenta do Gmail não pode segurar a thread indefinidamente
+        HttpRequestInitializer initializer = request -> {
+            credential.initialize(request);
+            request.setConnectTimeout(connectTimeoutMillis);
+            request.setReadTimeout(readTimeoutMillis);
+        };
+        Gmail gmail = new Gmail.Builder(httpTransport, JSON_FACTORY, initializer)
                 .setApplicationName("FinanSync")
                 .build();
+        // As requisições deste cliente consomem a cota do usuário
+        requestExecutor.register(gmail, userId);
+        UserClient existing = clients.putIfAbsent(userId, new UserClient(credential, gmail));
+        return existing != null ? existing.gmail() : gmail;
+    }
+
+    /**
+     * Renova, antes de expirarem, os access tokens que vencem dentro da antecedência configurada.
+     * Assim as importações não pagam pela renovação nem falham por token vencido.
+     * Em um cluster, apenas o líder renova; desligada com {@code finansync.gmail.token-refresh.enabled=false}.
+     */
+    @Scheduled(fixedDelayString = "${finansync.gmail.token-refresh-interval-ms:60000}")
+    public void refreshExpiringTokens() {
+        if (!refreshEnabled || !clusterCoordinator.isLeader()) return;
+        long limit = System.currentTimeMillis() + refreshAheadMillis;
+        List<String> expiring = userRepository.findEmailsWithGmailTokenExpiringBefore(limit, PageRequest.of(0, refreshBatch));
+        for (String email : expiring) {
+            try {
+                Credential credential = getCredential(email);
+                if (credential == null || credential.getRefreshToken() == null) continue;
+                // O listener do fluxo grava o novo token no armazenamento
+                credential.refreshToken();
+            } catch (TokenResponseException e) {
+                if (e.getDetails() != null && "invalid_grant".equals(e.getDetails().getError())) {
+                    // Acesso revogado pelo usuário: a credencial é descartada até nova autorização
+                    logger.warn("Credencial do Gmail de '{}' foi revogada; é preciso autorizar novamente", email);
+                    revogar(email);
+                } else {
+                    logger.warn("Falha ao renovar o token do Gmail de '{}': {}", email, e.getMessage());
+                }
+            } catch (IOException e) {
+                logger.warn("Falha ao renovar o token do Gmail de '{}': {}", email, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Troca o access token do cliente em cache pelo gravado no banco, se o do banco vence depois.
+     * Os nós que não são o líder não renovam os tokens: sem isso o cliente ficaria com o token
+     * vencido até o Credential renovar sozinho.
+     * @return false se a credencial foi descartada no banco (o cliente sai do cache)
+     */
+    private boolean recarregarSeVencendo(String email, UserClient client) throws IOException {
+        Credential credential = client.credential();
+        Long expiresAt = credential.getExpirationTimeMilliseconds();
+        if (expiresAt == null || expiresAt > System.currentTimeMillis() + refreshAheadMillis) return true;
+        StoredCredential stored = credentialStoreFactory.reload(email);
+        if (stored == null || stored.getRefreshToken() == null) {
+            clients.remove(email, client);
+            return false;
+        }
+        Long storedExpiresAt = stored.getExpirationTimeMilliseconds();
+        if (storedExpiresAt != null && storedExpiresAt > expiresAt) {
+            credential.setAccessToken(stored.getAccessToken());
+            credential.setRefreshToken(stored.getRefreshToken());
+            credential.setExpirationTimeMilliseconds(storedExpiresAt);
+        }
+        return true;
+    }
+
+    /**
+     * Descarta a credencial e o cliente em cache do usuário (acesso revogado no Google)
+     */
+    public void revogar(String email) {
+        clients.remove(email);
+        try {
+            flow.getCredentialDataStore().delete(email);
+        } catch (IOException e) {
+            logger.warn("Falha ao descartar a credencial do Gmail de '{}': {}", email, e.getMessage());
+        }
+    }
+
+    /**
+     * Copia para o banco as credenciais que ainda estão no armazenamento em arquivo antigo e,
+     * se todas foram copiadas, apaga o arquivo (os refresh tokens ficavam nele em texto puro).
+     * Se alguma falhar, o arquivo fica para a próxima inicialização.
+     */
+    void migrarCredenciaisDoArquivo(File tokens) throws IOException {
+        if (!tokens.isDirectory()) return;
+        DataStore<StoredCredential> arquivo = StoredCredential.getDefaultDataStore(new FileDataStoreFactory(tokens));
+        DataStore<StoredCredential> banco = flow.getCredentialDataStore();
+        boolean completa = true;
+        for (String email : arquivo.keySet()) {
+            if (banco.get(email) != null) continue;
+            try {
+                banco.set(email, arquivo.get(email));
+                logger.info("Credencial do Gmail de '{}' migrada do arquivo para o banco", email);
+            } catch (IOException e) {
+                completa = false;
+                logger.warn("Credencial do Gmail de '{}' não migrada: {}", email, e.getMessage());
+            }
+        }
+        if (!completa) return;
+        try {
+            FileSystemUtils.deleteRecursively(tokens.toPath());
+            logger.info("Armazenamento de credenciais em arquivo '{}' removido após a migração", tokens.getPath());
+        } catch (IOException e) {
+            logger.warn("Falha ao remover o armazenamento de credenciais em arquivo '{}': {}",
+                    tokens.getPath(), e.getMessage());
+        }
     }
 }
@@ -0,0 +1,136 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.AbstractDataStoreFactory;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Armazenamento das credenciais OAuth do Gmail na tabela {@code users}, no lugar do
+ * arquivo local: as credenciais ficam visíveis para todos os nós e cada alteração grava
+ * apenas a linha do usuário. A chave é o e-mail do usuário.
+ *
+ * As leituras passam por um cache em memória, atualizado a cada gravação deste nó. Os tokens
+ * renovados por outro nó (o líder) são lidos com {@link #reload(String)}, que ignora o cache.
+ */
+@Component
+public class GmailCredentialStoreFactory extends AbstractDataStoreFactory {
+
+    private final UserRepository userRepository;
+
+    public GmailCredentialStoreFactory(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <V extends Serializable> DataStore<V> createDataStore(String id) {
+        if (!StoredCredential.DEFAULT_DATA_STORE_ID.equals(id)) {
+            throw new IllegalArgumentException("Somente credenciais são guardadas na tabela de usuários: " + id);
+        }
+        return (DataStore<V>) new UserCredentialStore(this, id, userRepository);
+    }
+
+    /**
+     * Lê a credencial direto do banco e atualiza o cache (token gravado por outro nó)
+     * @param email E-mail do usuário
+     * @return A credencial guardada, ou null se o acesso foi revogado
+     */
+    public StoredCredential reload(String email) throws IOException {
+        DataStore<StoredCredential> store = getDataStore(StoredCredential.DEFAULT_DATA_STORE_ID);
+        return ((UserCredentialStore) store).reload(email);
+    }
+
+    static final class UserCredentialStore extends AbstractDataStore<StoredCredential> {
+
+        private final UserRepository userRepository;
+        private final Map<String, StoredCredential> cache = new ConcurrentHashMap<>();
+
+        private UserCredentialStore(DataStoreFactory factory, String id, UserRepository userRepository) {
+            super(factory, id);
+            this.userRepository = userRepository;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return new HashSet<>(userRepository.findEmailsWithGmailCredential());
+        }
+
+        @Override
+        public Collection<StoredCredential> values() throws IOException {
+            List<StoredCredential> values = new ArrayList<>();
+            for (String email : keySet()) {
+                StoredCredential credential = get(email);
+                if (credential != null) values.add(credential);
+            }
+            return values;
+        }
+
+        @Override
+        public StoredCredential get(String email) {
+            if (email == null) return null;
+            StoredCredential cached = cache.get(email);
+            return cached != null ? cached : reload(email);
+        }
+
+        StoredCredential reload(String email) {
+            Optional<StoredCredential> loaded = userRepository.findByEmail(email)
+                    .filter(user -> user.getGmailRefreshToken() != null || user.getGmailAccessToken() != null)
+                    .map(UserCredentialStore::toStoredCredential);
+            if (loaded.isPresent()) {
+                cache.put(email, loaded.get());
+            } else {
+                cache.remove(email);
+            }
+            return loaded.orElse(null);
+        }
+
+        @Override
+        public DataStore<StoredCredential> set(String email, StoredCredential credential) throws IOException {
+            int updated = userRepository.updateGmailCredential(email, credential.getAccessToken(),
+                    credential.getRefreshToken(), credential.getExpirationTimeMilliseconds());
+            if (updated == 0) {
+                throw new IOException("Usuário não encontrado para guardar a credencial do Gmail: " + email);
+            }
+            cache.put(email, credential);
+            return this;
+        }
+
+        @Override
+        public DataStore<StoredCredential> clear() {
+            for (String email : keySet()) {
+                delete(email);
+            }
+            return this;
+        }
+
+        @Override
+        public DataStore<StoredCredential> delete(String email) {
+            userRepository.updateGmailCredential(email, null, null, null);
+            cache.remove(email);
+            return this;
+        }
+
+        private static StoredCredential toStoredCredential(User user) {
+            return new StoredCredential()
+                    .setAccessToken(user.getGmailAccessToken())
+                    .setRefreshToken(user.getGmailRefreshToken())
+                    .setExpirationTimeMilliseconds(user.getGmailTokenExpiresAt());
+        }
+    }
+}
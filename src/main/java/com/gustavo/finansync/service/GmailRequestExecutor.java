@@ -0,0 +1,380 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.GmailClientMetricsDTO;
+import com.gustavo.finansync.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ponto único de execução das requisições ao Gmail.
+ *
+ * <ul>
+ *   <li>Cota: cada chamada consome as unidades de cota do método em dois token buckets,
+ *       um do usuário e um do projeto inteiro. Se a espera passar do limite a chamada é recusada.</li>
+ *   <li>Repetição: respostas 429, 5xx e 403 de limite de taxa são repetidas com backoff
+ *       exponencial e jitter (respeitando o Retry-After quando enviado).</li>
+ *   <li>Bulkhead: o número de requisições simultâneas é limitado, para que um Gmail lento
+ *       não prenda todas as threads da aplicação. Quem não consegue vaga a tempo é recusado.
+ *       A vaga é ocupada só durante a requisição: a espera pela cota e o backoff ficam fora dela.</li>
+ *   <li>Tráfego: requisições e bytes recebidos (corpo já descomprimido), no total e por cliente Gmail.</li>
+ * </ul>
+ */
+@Service
+public class GmailRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(GmailRequestExecutor.class);
+    private static final Set<String> RATE_LIMIT_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded");
+
+    /**
+     * Limites de uso do Gmail
+     * @param userUnitsPerSecond    Cota por usuário (unidades/s)
+     * @param projectUnitsPerSecond Cota do projeto (unidades/s)
+     * @param maxQuotaWaitMillis    Espera máxima pela cota antes de recusar
+     * @param maxConcurrent         Requisições simultâneas
+     * @param bulkheadWaitMillis    Espera máxima por uma vaga antes de recusar
+     * @param maxAttempts           Tentativas por chamada (incluindo a primeira)
+     * @param initialBackoffMillis  Espera base da primeira repetição
+     * @param maxBackoffMillis      Espera máxima entre tentativas
+     */
+    public record Limits(double userUnitsPerSecond, double projectUnitsPerSecond, long maxQuotaWaitMillis,
+                         int maxConcurrent, long bulkheadWaitMillis,
+                         int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+
+        /**
+         * Cotas publicadas do Gmail (250 unidades/s por usuário, 1.200.000 unidades/min por projeto)
+         */
+        public static Limits defaults() {
+            return new Limits(250, 20_000, 30_000, 16, 5_000, 5, 500, 32_000);
+        }
+    }
+
+    /**
+     * Contadores de tráfego
+     * @param requests      Requisições executadas (inclusive as que falharam)
+     * @param bytesReceived Bytes de resposta lidos
+     */
+    public record Traffic(long requests, long bytesReceived) {
+
+        public Traffic minus(Traffic other) {
+            return new Traffic(requests - other.requests, bytesReceived - other.bytesReceived);
+        }
+    }
+
+    /**
+     * Chamada recusada localmente (cota ou limite de requisições simultâneas), sem chegar ao Gmail
+     */
+    public static class RejectedException extends IOException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final Limits limits;
+    private final TokenBucket projectBucket;
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Semaphore bulkhead;
+
+    private final Counter total = new Counter();
+    // A chave fraca deixa o estado ir embora junto com o cliente Gmail
+    private final Map<AbstractGoogleClient, ClientState> clients = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttledResponses = new AtomicLong();
+    private final AtomicLong quotaRejections = new AtomicLong();
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong quotaWaitNanos = new AtomicLong();
+    private final AtomicLong maxQuotaWaitNanos = new AtomicLong();
+    private final AtomicLong bulkheadWaitNanos = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public GmailRequestExecutor() {
+        this(Limits.defaults());
+    }
+
+    @Autowired
+    public GmailRequestExecutor(
+            @Value("${finansync.gmail.user-quota-units-per-second:250}") double userUnitsPerSecond,
+            @Value("${finansync.gmail.project-quota-units-per-second:20000}") double projectUnitsPerSecond,
+            @Value("${finansync.gmail.quota-max-wait-ms:30000}") long maxQuotaWaitMillis,
+            @Value("${finansync.gmail.max-concurrent-requests:16}") int maxConcurrent,
+            @Value("${finansync.gmail.bulkhead-wait-ms:5000}") long bulkheadWaitMillis,
+            @Value("${finansync.gmail.retry.max-attempts:5}") int maxAttempts,
+            @Value("${finansync.gmail.retry.initial-backoff-ms:500}") long initialBackoffMillis,
+            @Value("${finansync.gmail.retry.max-backoff-ms:32000}") long maxBackoffMillis) {
+        this(new Limits(userUnitsPerSecond, projectUnitsPerSecond, maxQuotaWaitMillis, maxConcurrent,
+                bulkheadWaitMillis, maxAttempts, initialBackoffMillis, maxBackoffMillis));
+    }
+
+    public GmailRequestExecutor(Limits limits) {
+        this.limits = limits;
+        this.projectBucket = new TokenBucket(limits.projectUnitsPerSecond(), limits.projectUnitsPerSecond());
+        this.bulkhead = new Semaphore(limits.maxConcurrent(), true);
+    }
+
+    /**
+     * Associa um cliente Gmail ao usuário dono da caixa, para aplicar a cota do usuário.
+     * Clientes não registrados têm uma cota própria.
+     */
+    public void register(AbstractGoogleClient client, String userKey) {
+        state(client).userKey = userKey;
+    }
+
+    /**
+     * Executa a requisição e converte a resposta, aplicando cota, repetições e o limite de
+     * requisições simultâneas
+     * @throws RejectedException se a cota ou o limite de requisições simultâneas não permitirem a chamada a tempo
+     */
+    public <T> T execute(AbstractGoogleClientRequest<T> request) throws IOException {
+        ClientState client = state(request.getAbstractGoogleClient());
+        int units = quotaUnits(request);
+        for (int attempt = 1; ; attempt++) {
+            awaitQuota(client, units);
+            enterBulkhead(client, units);
+            long backoff;
+            try {
+                return executeOnce(request, client);
+            } catch (GoogleJsonResponseException e) {
+                boolean throttled = isThrottled(e);
+                if (throttled) throttledResponses.incrementAndGet();
+                if (!(throttled || isServerError(e)) || attempt >= limits.maxAttempts()) throw e;
+                backoff = backoffMillis(attempt, e);
+                logger.debug("Gmail respondeu {} (tentativa {}), repetindo em {} ms", e.getStatusCode(), attempt, backoff);
+            } finally {
+                inFlight.decrementAndGet();
+                bulkhead.release();
+            }
+            retries.incrementAndGet();
+            sleep(backoff);
+        }
+    }
+
+    /**
+     * Descarta as cotas de usuários parados. Um bucket cheio é igual a um novo, então
+     * removê-lo não muda o que o usuário pode consumir.
+     */
+    @Scheduled(fixedDelayString = "${finansync.gmail.quota-eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        for (String userKey : userBuckets.keySet()) {
+            userBuckets.computeIfPresent(userKey, (key, bucket) -> bucket.isFull() ? null : bucket);
+        }
+    }
+
+    int userBucketCount() {
+        return userBuckets.size();
+    }
+
+    public Traffic total() {
+        return total.snapshot();
+    }
+
+    /**
+     * Tráfego acumulado de um cliente Gmail
+     */
+    public Traffic traffic(AbstractGoogleClient client) {
+        ClientState state = clients.get(client);
+        return state != null ? state.traffic.snapshot() : new Traffic(0, 0);
+    }
+
+    public GmailClientMetricsDTO metrics() {
+        Traffic traffic = total.snapshot();
+        return new GmailClientMetricsDTO(traffic.requests(), traffic.bytesReceived(), retries.get(),
+                throttledResponses.get(), quotaRejections.get(), bulkheadRejections.get(),
+                TimeUnit.NANOSECONDS.toMillis(quotaWaitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxQuotaWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(bulkheadWaitNanos.get()), inFlight.get(), limits.maxConcurrent());
+    }
+
+    private <T> T executeOnce(AbstractGoogleClientRequest<T> request, ClientState client) throws IOException {
+        total.requests.incrementAndGet();
+        client.traffic.requests.incrementAndGet();
+        HttpResponse response = request.executeUnparsed();
+        if (response.getContent() == null) return null;
+        InputStream content = new CountingInputStream(response.getContent(), total, client.traffic);
+        return request.getAbstractGoogleClient().getObjectParser()
+                .parseAndClose(content, response.getContentCharset(), request.getResponseClass());
+    }
+
+    /**
+     * Ocupa uma vaga do bulkhead. Se não conseguir, devolve a cota já reservada para a chamada.
+     */
+    private void enterBulkhead(ClientState client, int units) throws IOException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(limits.bulkheadWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            refundQuota(client, units);
+            throw new InterruptedIOException("Interrompido aguardando vaga para acessar o Gmail");
+        }
+        bulkheadWaitNanos.addAndGet(System.nanoTime() - start);
+        if (!acquired) {
+            refundQuota(client, units);
+            bulkheadRejections.incrementAndGet();
+            throw new RejectedException("Limite de requisições simultâneas ao Gmail atingido. Tente novamente em instantes.");
+        }
+        inFlight.incrementAndGet();
+    }
+
+    private void awaitQuota(ClientState client, int units) throws IOException {
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(limits.maxQuotaWaitMillis());
+        // Reserva dentro do compute: o bucket não é descartado entre a busca e a reserva
+        long[] reserved = new long[1];
+        userBuckets.compute(client.userKey, (key, bucket) -> {
+            TokenBucket userBucket = bucket != null ? bucket
+                    : new TokenBucket(limits.userUnitsPerSecond(), limits.userUnitsPerSecond());
+            reserved[0] = userBucket.reserve(units, maxWait);
+            return userBucket;
+        });
+        long userWait = reserved[0];
+        long projectWait = userWait < 0 ? -1 : projectBucket.reserve(units, maxWait);
+        if (userWait < 0 || projectWait < 0) {
+            if (userWait >= 0) {
+                TokenBucket userBucket = userBuckets.get(client.userKey);
+                if (userBucket != null) userBucket.refund(units);
+            }
+            quotaRejections.incrementAndGet();
+            throw new RejectedException("Cota do Gmail esgotada. Tente novamente em instantes.");
+        }
+        long wait = Math.max(userWait, projectWait);
+        if (wait > 0) {
+            quotaWaitNanos.addAndGet(wait);
+            maxQuotaWaitNanos.accumulateAndGet(wait, Math::max);
+            sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+        }
+    }
+
+    private void refundQuota(ClientState client, int units) {
+        TokenBucket userBucket = userBuckets.get(client.userKey);
+        if (userBucket != null) userBucket.refund(units);
+        projectBucket.refund(units);
+    }
+
+    private long backoffMillis(int attempt, GoogleJsonResponseException e) {
+        long exponential = Math.min(limits.maxBackoffMillis(), limits.initialBackoffMillis() << Math.min(attempt - 1, 20));
+        // Jitter: espera aleatória entre metade e o valor cheio, espalhando clientes que falharam juntos
+        long backoff = ThreadLocalRandom.current().nextLong(exponential / 2, exponential + 1);
+        long retryAfter = retryAfterMillis(e);
+        return Math.max(backoff, Math.min(retryAfter, limits.maxBackoffMillis()));
+    }
+
+    private static long retryAfterMillis(GoogleJsonResponseException e) {
+        String retryAfter = e.getHeaders() != null ? e.getHeaders().getRetryAfter() : null;
+        if (retryAfter == null) return 0;
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    private static boolean isThrottled(GoogleJsonResponseException e) {
+        if (e.getStatusCode() == 429) return true;
+        if (e.getStatusCode() != 403 || e.getDetails() == null || e.getDetails().getErrors() == null) return false;
+        for (GoogleJsonError.ErrorInfo error : e.getDetails().getErrors()) {
+            if (RATE_LIMIT_REASONS.contains(error.getReason())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isServerError(GoogleJsonResponseException e) {
+        return e.getStatusCode() >= 500 && e.getStatusCode() <= 599;
+    }
+
+    /**
+     * Unidades de cota de cada método usado (tabela de cotas da Gmail API)
+     */
+    private static int quotaUnits(AbstractGoogleClientRequest<?> request) {
+        if (request instanceof Gmail.Users.GetProfile) return 1;
+        if (request instanceof Gmail.Users.History.List) return 2;
+        return 5;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrompido aguardando o Gmail");
+        }
+    }
+
+    private ClientState state(AbstractGoogleClient client) {
+        return clients.computeIfAbsent(client, c -> new ClientState("client-" + System.identityHashCode(c)));
+    }
+
+    private static final class ClientState {
+
+        private final Counter traffic = new Counter();
+        private volatile String userKey;
+
+        private ClientState(String userKey) {
+            this.userKey = userKey;
+        }
+    }
+
+    private static final class Counter {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        Traffic snapshot() {
+            return new Traffic(requests.get(), bytes.get());
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final Counter total;
+        private final Counter client;
+
+        private CountingInputStream(InputStream in, Counter total, Counter client) {
+            super(in);
+            this.total = total;
+            this.client = client;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) add(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) add(n);
+            return n;
+        }
+
+        private void add(long n) {
+            total.bytes.addAndGet(n);
+            client.bytes.addAndGet(n);
+        }
+    }
+}
@@ -1,19 +1,92 @@
 package com.gustavo.finansync.service;
 
 import com.google.api.services.gmail.Gmail;
-import com.google.api.services.gmail.model.*;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.gustavo.finansync.util.Base64Streams;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Base64;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
 
 @Service
 public class GmailService {
 
-    public GmailService() {}
+    // Páginas da listagem de mensagens: o máximo aceito pela API
+    private static final long LIST_PAGE_SIZE = 500L;
+    // Máscaras de campos: a API devolve apenas o que é usado
+    private static final String LIST_FIELDS = "messages/id,nextPageToken";
+    private static final String HISTORY_FIELDS = "history/messagesAdded/message/id,historyId,nextPageToken";
+    private static final String METADATA_FIELDS = "id,payload/headers";
+    private static final String PARTS_FIELDS = "id,payload(" + partsMask("partId,filename,mimeType,body/attachmentId", 5) + ")";
+    private static final String INLINE_FIELDS = "payload(" + partsMask("partId,body/data", 5) + ")";
+    // Mensagens de uma chamada baixadas ao mesmo tempo, à frente do handler
+    private static final int MENSAGENS_EM_VOO = 16;
+
+    /**
+     * Pool usado nos downloads: as chamadas de um usuário esperando a resposta não disputam
+     * threads com as sincronizações em segundo plano
+     */
+    public enum Prioridade { INTERATIVA, SEGUNDO_PLANO }
+
+    private final Executor fetchExecutor;
+    private final Executor backgroundFetchExecutor;
+    private final AttachmentCacheService attachmentCache;
+    private final GmailRequestExecutor requestExecutor;
+
+    /**
+     * @param attachmentCache Cache local de anexos (null: tudo é baixado da API)
+     */
+    public GmailService(@Qualifier("gmailFetchExecutor") Executor fetchExecutor,
+                        @Qualifier("gmailBackgroundFetchExecutor") Executor backgroundFetchExecutor,
+                        AttachmentCacheService attachmentCache, GmailRequestExecutor requestExecutor) {
+        this.fetchExecutor = fetchExecutor;
+        this.backgroundFetchExecutor = backgroundFetchExecutor;
+        this.attachmentCache = attachmentCache;
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Requisições e bytes recebidos por um cliente Gmail até agora
+     */
+    public GmailRequestExecutor.Traffic trafego(Gmail gmail) {
+        return requestExecutor.traffic(gmail);
+    }
+
+    /**
+     * Anexo CSV baixado de uma mensagem do Gmail
+     * @param messageId    ID da mensagem
+     * @param attachmentId ID do anexo
+     * @param filename     Nome do arquivo
+     * @param content      Conteúdo decodificado. É fechado quando o handler que o recebeu retorna.
+     */
+    public record CsvAttachment(String messageId, String attachmentId, String filename, InputStream content) {
+
+        /**
+         * Identificador estável do arquivo (o attachmentId do Gmail muda a cada consulta)
+         */
+        public String sourceDocument() {
+            return "gmail:" + messageId + "/" + filename;
+        }
+    }
 
     /**
      * Busca anexos CSV em e-mails do Gmail usando critérios de remetente e assunto.
@@ -23,27 +96,383 @@ public class GmailService {
      * @param assunto Assunto do e-mail (ex: "Extrato Mensal")
      * @return Lista de InputStream dos arquivos CSV encontrados
      */
-    public List<InputStream> buscarAnexosCsv(Gmail gmail, String userId, String remetente, String assunto) throws Exception {
-        List<InputStream> anexos = new ArrayList<>();
-        String query = "from:" + remetente + " subject:\"" + assunto + "\" has:attachment";
-        ListMessagesResponse response = gmail.users().messages().list(userId).setQ(query).execute();
-
-        if (response.getMessages() == null) return anexos;
-
-        for (Message msg : response.getMessages()) {
-            Message message = gmail.users().messages().get(userId, msg.getId()).setFormat("full").execute();
-            List<MessagePart> parts = message.getPayload().getParts();
-            if (parts == null) continue;
-            for (MessagePart part : parts) {
-                if (part.getFilename() != null && part.getFilename().endsWith(".csv")) {
-                    String attId = part.getBody().getAttachmentId();
-                    MessagePartBody attachPart = gmail.users().messages().attachments()
-                            .get(userId, msg.getId(), attId).execute();
-                    byte[] fileByteArray = Base64.getDecoder().decode(attachPart.getData());
-                    anexos.add(new ByteArrayInputStream(fileByteArray));
+    public List<InputStream> buscarAnexosCsv(Gmail gmail, String userId, String remetente, String assunto) throws IOException {
+        List<InputStream> anexos = Collections.synchronizedList(new ArrayList<>());
+        buscarAnexosCsv(gmail, userId, remetente, assunto, anexo -> {
+            try {
+                // O conteúdo é fechado quando o handler retorna: esta versão precisa de uma cópia
+                anexos.add(new ByteArrayInputStream(anexo.content().readAllBytes()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return anexos;
+    }
+
+    /**
+     * Busca anexos CSV baixando mensagens e anexos em paralelo (limitado pelo pool
+     * {@code gmailFetchExecutor}). Os anexos de cada mensagem são entregues ao {@code handler}
+     * assim que terminam de ser baixados, permitindo processar um arquivo enquanto os outros
+     * ainda estão sendo transferidos.
+     * O handler é chamado na thread de quem chamou este método, uma mensagem por vez: a leitura
+     * e a gravação das linhas não ocupam as threads de download.
+     * @return Número de anexos entregues ao handler
+     */
+    public int buscarAnexosCsv(Gmail gmail, String userId, String remetente, String assunto,
+                               Consumer<CsvAttachment> handler) throws IOException {
+        return baixarAnexosCsv(gmail, userId, listarMensagens(gmail, userId, montarQuery(remetente, assunto)), handler);
+    }
+
+    /**
+     * Query de busca do Gmail para extratos de um remetente/assunto
+     */
+    public static String montarQuery(String remetente, String assunto) {
+        return "from:" + remetente + " subject:\"" + assunto + "\" has:attachment";
+    }
+
+    /**
+     * Lista os IDs de todas as mensagens que atendem à query, percorrendo todas as páginas
+     */
+    public List<String> listarMensagens(Gmail gmail, String userId, String query) throws IOException {
+        List<String> ids = new ArrayList<>();
+        String pageToken = null;
+        do {
+            ListMessagesResponse response = requestExecutor.execute(gmail.users().messages().list(userId)
+                    .setQ(query)
+                    .setMaxResults(LIST_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields(LIST_FIELDS));
+            if (response.getMessages() != null) {
+                response.getMessages().forEach(message -> ids.add(message.getId()));
+            }
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+        return ids;
+    }
+
+    /**
+     * Baixa em paralelo as mensagens informadas e entrega seus anexos CSV ao handler.
+     * @return Número de anexos entregues ao handler
+     */
+    public int baixarAnexosCsv(Gmail gmail, String userId, Collection<String> messageIds,
+                               Consumer<CsvAttachment> handler) throws IOException {
+        return baixarAnexosCsv(gmail, userId, null, messageIds, Prioridade.INTERATIVA, handler);
+    }
+
+    /**
+     * Igual a {@link #baixarAnexosCsv(Gmail, String, Collection, Consumer)}, consultando antes o
+     * cache local de anexos do usuário: mensagens já guardadas não geram chamadas à API e
+     * os anexos baixados são guardados no cache.
+     *
+     * No máximo {@value #MENSAGENS_EM_VOO} mensagens ficam baixadas ou em download à frente do
+     * handler: se ele for mais lento que o Gmail, os downloads esperam em vez de acumular anexos
+     * em memória.
+     * @param ownerId ID do usuário do FinanSync dono da caixa (null desativa o cache)
+     * @param prioridade Pool usado nos downloads
+     */
+    public int baixarAnexosCsv(Gmail gmail, String userId, Long ownerId, Collection<String> messageIds,
+                               Prioridade prioridade, Consumer<CsvAttachment> handler) throws IOException {
+        Executor executor = executor(prioridade);
+        BlockingQueue<CompletableFuture<List<CsvAttachment>>> prontas = new LinkedBlockingQueue<>();
+        Set<CompletableFuture<List<CsvAttachment>>> emVoo = new HashSet<>();
+        Iterator<String> pendentes = messageIds.iterator();
+        int entregues = 0;
+        boolean concluido = false;
+        try {
+            while (pendentes.hasNext() || !emVoo.isEmpty()) {
+                while (pendentes.hasNext() && emVoo.size() < MENSAGENS_EM_VOO) {
+                    CompletableFuture<List<CsvAttachment>> mensagem = baixarMensagem(gmail, userId, ownerId,
+                            pendentes.next(), executor);
+                    emVoo.add(mensagem);
+                    mensagem.whenComplete((anexos, erro) -> prontas.add(mensagem));
                 }
+                CompletableFuture<List<CsvAttachment>> pronta = prontas.take();
+                emVoo.remove(pronta);
+                entregues += entregar(pronta.join(), handler);
+            }
+            concluido = true;
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download dos anexos do Gmail interrompido");
+        } finally {
+            if (!concluido) {
+                // Os downloads em andamento terminam sozinhos: os anexos deles só são fechados
+                emVoo.forEach(mensagem -> mensagem.thenAccept(GmailService::fechar));
             }
         }
-        return anexos;
+        return entregues;
+    }
+
+    /**
+     * Mensagens adicionadas à caixa desde um historyId
+     * @param messageIds IDs das mensagens adicionadas
+     * @param historyId  historyId atual da caixa (ponto de partida da próxima consulta)
+     */
+    public record HistoryDelta(List<String> messageIds, BigInteger historyId) {}
+
+    /**
+     * Consulta a History API para obter as mensagens adicionadas após {@code startHistoryId}.
+     * Lança {@link com.google.api.client.googleapis.json.GoogleJsonResponseException} com
+     * status 404 quando o histórico já expirou e é preciso fazer uma varredura completa.
+     */
+    public HistoryDelta listarMensagensNovas(Gmail gmail, String userId, BigInteger startHistoryId) throws IOException {
+        Set<String> ids = new LinkedHashSet<>();
+        BigInteger historyId = startHistoryId;
+        String pageToken = null;
+        do {
+            ListHistoryResponse response = requestExecutor.execute(gmail.users().history().list(userId)
+                    .setStartHistoryId(startHistoryId)
+                    .setHistoryTypes(List.of("messageAdded"))
+                    .setPageToken(pageToken)
+                    .setFields(HISTORY_FIELDS));
+            if (response.getHistory() != null) {
+                for (History history : response.getHistory()) {
+                    if (history.getMessagesAdded() == null) continue;
+                    for (HistoryMessageAdded added : history.getMessagesAdded()) {
+                        ids.add(added.getMessage().getId());
+                    }
+                }
+            }
+            if (response.getHistoryId() != null) historyId = response.getHistoryId();
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+        return new HistoryDelta(List.copyOf(ids), historyId);
+    }
+
+    /**
+     * historyId atual da caixa postal
+     */
+    public BigInteger historyIdAtual(Gmail gmail, String userId) throws IOException {
+        return requestExecutor.execute(gmail.users().getProfile(userId).setFields("historyId")).getHistoryId();
+    }
+
+    /**
+     * Filtra as mensagens pelo remetente e assunto usando apenas os cabeçalhos
+     * (formato metadata), sem baixar o corpo. As consultas são feitas em paralelo.
+     */
+    public List<String> filtrarPorRemetenteEAssunto(Gmail gmail, String userId, Collection<String> messageIds,
+                                                    String remetente, String assunto, Prioridade prioridade)
+            throws IOException {
+        Executor executor = executor(prioridade);
+        String remetenteLower = remetente.toLowerCase(Locale.ROOT);
+        String assuntoLower = assunto.toLowerCase(Locale.ROOT);
+        List<CompletableFuture<String>> filtradas = new ArrayList<>();
+        for (String messageId : messageIds) {
+            filtradas.add(CompletableFuture.supplyAsync(() -> {
+                Message message = getMetadata(gmail, userId, messageId);
+                String from = header(message, "From");
+                String subject = header(message, "Subject");
+                boolean corresponde = from.toLowerCase(Locale.ROOT).contains(remetenteLower)
+                        && subject.toLowerCase(Locale.ROOT).contains(assuntoLower);
+                return corresponde ? messageId : null;
+            }, executor));
+        }
+        join(filtradas);
+        return filtradas.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+    }
+
+    private Optional<List<CsvAttachment>> buscarNoCache(Long ownerId, String messageId) {
+        if (attachmentCache == null || ownerId == null) return Optional.empty();
+        return attachmentCache.lookup(ownerId, messageId);
+    }
+
+    private Executor executor(Prioridade prioridade) {
+        return prioridade == Prioridade.SEGUNDO_PLANO ? backgroundFetchExecutor : fetchExecutor;
+    }
+
+    /**
+     * Anexos CSV de uma mensagem, do cache ou baixados da API
+     */
+    private CompletableFuture<List<CsvAttachment>> baixarMensagem(Gmail gmail, String userId, Long ownerId,
+                                                                  String messageId, Executor executor) {
+        return CompletableFuture
+                .supplyAsync(() -> buscarNoCache(ownerId, messageId), executor)
+                .thenCompose(cached -> cached.isPresent()
+                        ? CompletableFuture.completedFuture(cached.get())
+                        : CompletableFuture.supplyAsync(() -> getMessage(gmail, userId, messageId), executor)
+                                .thenCompose(message -> baixarAnexos(gmail, userId, ownerId, message, executor)));
+    }
+
+    /**
+     * Entrega os anexos em sequência; se o handler falhar, os que faltam são só fechados
+     */
+    private static int entregar(List<CsvAttachment> anexos, Consumer<CsvAttachment> handler) {
+        for (int i = 0; i < anexos.size(); i++) {
+            try {
+                entregar(anexos.get(i), handler);
+            } catch (RuntimeException e) {
+                fechar(anexos.subList(i + 1, anexos.size()));
+                throw e;
+            }
+        }
+        return anexos.size();
+    }
+
+    private static void entregar(CsvAttachment anexo, Consumer<CsvAttachment> handler) {
+        InputStream content = anexo.content();
+        try (content) {
+            handler.accept(anexo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void fechar(List<CsvAttachment> anexos) {
+        for (CsvAttachment anexo : anexos) {
+            try {
+                anexo.content().close();
+            } catch (IOException e) {
+                // Nada foi lido deste anexo
+            }
+        }
+    }
+
+    private CompletableFuture<List<CsvAttachment>> baixarAnexos(Gmail gmail, String userId, Long ownerId,
+                                                                Message message, Executor executor) {
+        List<MessagePart> csvs = new ArrayList<>();
+        coletarCsvs(message.getPayload(), csvs);
+        if (csvs.isEmpty()) return CompletableFuture.completedFuture(List.of());
+
+        List<CompletableFuture<CsvAttachment>> anexos = new ArrayList<>();
+        for (MessagePart part : csvs) {
+            String attId = part.getBody().getAttachmentId();
+            anexos.add(CompletableFuture.supplyAsync(() -> {
+                // Anexos pequenos vêm embutidos na própria mensagem, sem attachmentId
+                String data = part.getBody().getData() != null ? part.getBody().getData()
+                        : attId != null ? getAttachmentData(gmail, userId, message.getId(), attId)
+                        : getInlineData(gmail, userId, message.getId(), part.getPartId());
+                CsvAttachment anexo = null;
+                if (attachmentCache != null) {
+                    anexo = attachmentCache.store(ownerId, message.getId(), attId, part.getFilename(),
+                            Base64Streams.urlDecoding(data), csvs.size()).orElse(null);
+                }
+                if (anexo == null) {
+                    anexo = new CsvAttachment(message.getId(), attId, part.getFilename(), Base64Streams.urlDecoding(data));
+                }
+                return anexo;
+            }, executor));
+        }
+        return CompletableFuture.allOf(anexos.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((v, erro) -> {
+                    // Um anexo falhou: os já baixados da mesma mensagem não serão entregues
+                    if (erro != null) anexos.forEach(anexo -> anexo.thenAccept(a -> fechar(List.of(a))));
+                })
+                .thenApply(v -> anexos.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Percorre a árvore de partes da mensagem (multipart aninhado, como mixed > alternative)
+     * e coleta as que são anexos CSV
+     */
+    private static void coletarCsvs(MessagePart part, List<MessagePart> csvs) {
+        if (part == null) return;
+        String filename = part.getFilename();
+        if (filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".csv") && part.getBody() != null) {
+            csvs.add(part);
+        }
+        if (part.getParts() != null) {
+            for (MessagePart child : part.getParts()) {
+                coletarCsvs(child, csvs);
+            }
+        }
+    }
+
+    private Message getMetadata(Gmail gmail, String userId, String messageId) {
+        try {
+            return requestExecutor.execute(gmail.users().messages().get(userId, messageId)
+                    .setFormat("metadata")
+                    .setMetadataHeaders(List.of("From", "Subject"))
+                    .setFields(METADATA_FIELDS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String header(Message message, String name) {
+        if (message.getPayload() == null || message.getPayload().getHeaders() == null) return "";
+        for (MessagePartHeader header : message.getPayload().getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName()) && header.getValue() != null) return header.getValue();
+        }
+        return "";
+    }
+
+    private Message getMessage(Gmail gmail, String userId, String messageId) {
+        try {
+            // Só a estrutura das partes: nenhum corpo de texto/HTML é transferido
+            return requestExecutor.execute(gmail.users().messages().get(userId, messageId)
+                    .setFormat("full")
+                    .setFields(PARTS_FIELDS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Corpo de uma parte embutida na mensagem, buscando apenas os dados das partes
+     */
+    private String getInlineData(Gmail gmail, String userId, String messageId, String partId) {
+        try {
+            Message message = requestExecutor.execute(gmail.users().messages().get(userId, messageId)
+                    .setFormat("full")
+                    .setFields(INLINE_FIELDS));
+            MessagePart part = buscarParte(message.getPayload(), partId);
+            return part != null && part.getBody() != null && part.getBody().getData() != null
+                    ? part.getBody().getData() : "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessagePart buscarParte(MessagePart part, String partId) {
+        if (part == null) return null;
+        if (Objects.equals(part.getPartId(), partId)) return part;
+        if (part.getParts() == null) return null;
+        for (MessagePart child : part.getParts()) {
+            MessagePart found = buscarParte(child, partId);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    /**
+     * Máscara recursiva "campos,parts(campos,parts(...))" até a profundidade indicada
+     */
+    private static String partsMask(String fields, int depth) {
+        return depth == 0 ? fields : fields + ",parts(" + partsMask(fields, depth - 1) + ")";
+    }
+
+    /**
+     * Conteúdo do anexo ainda em Base64 URL-safe; é decodificado em streaming por quem lê
+     */
+    private String getAttachmentData(Gmail gmail, String userId, String messageId, String attachmentId) {
+        try {
+            MessagePartBody attachPart = requestExecutor.execute(gmail.users().messages().attachments()
+                    .get(userId, messageId, attachmentId)
+                    .setFields("data"));
+            return attachPart.getData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void join(List<? extends CompletableFuture<?>> futures) throws IOException {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw unwrap(e);
+        }
+    }
+
+    private static IOException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException unchecked) return unchecked.getCause();
+        if (cause instanceof IOException io) return io;
+        if (cause instanceof RuntimeException runtime) throw runtime;
+        return new IOException("Falha ao baixar anexos do Gmail", cause);
     }
 }
@@ -0,0 +1,328 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.auth.oauth2.TokenResponseException;
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.GmailSyncResult;
+import com.gustavo.finansync.dto.GmailSyncSchedulerMetricsDTO;
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.GmailSyncStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sincronização automática do Gmail em segundo plano.
+ *
+ * Cada {@link GmailSyncState} (um remetente/assunto já importado pelo usuário) é sincronizado
+ * de novo no intervalo do usuário. Os horários recebem jitter para espalhar a carga, e a fila
+ * é atendida em rodízio por usuário: uma caixa grande ocupa no máximo uma vaga por vez e não
+ * impede as demais de andar. O número de sincronizações simultâneas tem um limite global.
+ *
+ * As transações passam pela mesma gravação em lotes com deduplicação das importações manuais.
+ * Usuários sem credencial válida ficam de fora da consulta; falhas são reagendadas com backoff.
+ */
+@Service
+public class GmailSyncScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GmailSyncScheduler.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * Configuração do agendador
+     * @param enabled                Liga a sincronização automática
+     * @param defaultIntervalMinutes Intervalo para usuários sem intervalo próprio
+     * @param jitter                 Variação aleatória do intervalo (0.2 = ±20%)
+     * @param maxConcurrent          Sincronizações simultâneas em todo o nó
+     * @param batchSize              Estados vencidos lidos do banco por rodada
+     * @param maxBackoffMinutes      Espera máxima depois de falhas seguidas
+     */
+    public record Settings(boolean enabled, int defaultIntervalMinutes, double jitter, int maxConcurrent,
+                           int batchSize, int maxBackoffMinutes) {}
+
+    /**
+     * Sincronização na fila. O usuário vem carregado da consulta.
+     */
+    private record Pendente(Long stateId, User user, String sender, String subject, LocalDateTime dueAt,
+                            ClusterCoordinator.Fence fence) {}
+
+    private final GmailSyncStateRepository syncStateRepository;
+    private final GmailAuthService gmailAuthService;
+    private final GmailSyncService gmailSyncService;
+    private final CsvParsingService csvParsingService;
+    private final TransactionBulkInsertService bulkInsertService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final Executor executor;
+    private final Settings settings;
+
+    // Fila em rodízio: usuário -> suas sincronizações pendentes. Protegidos por "this"
+    private final LinkedHashMap<Long, ArrayDeque<Pendente>> fila = new LinkedHashMap<>();
+    private final Set<Long> agendados = new HashSet<>();
+    private final Set<Long> usuariosEmExecucao = new HashSet<>();
+    private int emExecucao;
+    private int tamanhoFila;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong invalidCredentials = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+    private volatile long dueBacklog;
+    private volatile LocalDateTime lastTickAt;
+
+    @Autowired
+    public GmailSyncScheduler(GmailSyncStateRepository syncStateRepository, GmailAuthService gmailAuthService,
+                              GmailSyncService gmailSyncService, CsvParsingService csvParsingService,
+                              TransactionBulkInsertService bulkInsertService, ClusterCoordinator clusterCoordinator,
+                              @Qualifier("gmailSyncExecutor") Executor executor,
+                              @Value("${finansync.gmail.sync.enabled:true}") boolean enabled,
+                              @Value("${finansync.gmail.sync.default-interval-minutes:60}") int defaultIntervalMinutes,
+                              @Value("${finansync.gmail.sync.jitter:0.2}") double jitter,
+                              @Value("${finansync.gmail.sync.max-concurrent:4}") int maxConcurrent,
+                              @Value("${finansync.gmail.sync.batch-size:200}") int batchSize,
+                              @Value("${finansync.gmail.sync.max-backoff-minutes:1440}") int maxBackoffMinutes) {
+        this(syncStateRepository, gmailAuthService, gmailSyncService, csvParsingService, bulkInsertService,
+                clusterCoordinator, executor,
+                new Settings(enabled, defaultIntervalMinutes, jitter, maxConcurrent, batchSize, maxBackoffMinutes));
+    }
+
+    public GmailSyncScheduler(GmailSyncStateRepository syncStateRepository, GmailAuthService gmailAuthService,
+                              GmailSyncService gmailSyncService, CsvParsingService csvParsingService,
+                              TransactionBulkInsertService bulkInsertService, ClusterCoordinator clusterCoordinator,
+                              Executor executor, Settings settings) {
+        this.syncStateRepository = syncStateRepository;
+        this.gmailAuthService = gmailAuthService;
+        this.gmailSyncService = gmailSyncService;
+        this.csvParsingService = csvParsingService;
+        this.bulkInsertService = bulkInsertService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.executor = executor;
+        this.settings = settings;
+    }
+
+    /**
+     * Lê as sincronizações vencidas e as coloca na fila. Estados que nunca foram agendados
+     * recebem um primeiro horário com jitter em vez de rodarem todos de uma vez.
+     * Em um cluster, cada nó lê apenas os usuários das partições que detém.
+     */
+    @Scheduled(fixedDelayString = "${finansync.gmail.sync.tick-ms:30000}",
+            initialDelayString = "${finansync.gmail.sync.tick-ms:30000}")
+    public void tick() {
+        if (!settings.enabled()) return;
+        List<Integer> shards = clusterCoordinator.ownedShards();
+        if (shards.isEmpty()) return;
+        int shardCount = clusterCoordinator.shardCount();
+        LocalDateTime now = LocalDateTime.now();
+        lastTickAt = now;
+        dueBacklog = syncStateRepository.countDueForSync(now, shardCount, shards);
+        for (GmailSyncState state : syncStateRepository.findDueForSync(now, shardCount, shards,
+                PageRequest.of(0, settings.batchSize()))) {
+            Optional<ClusterCoordinator.Fence> fence = clusterCoordinator.fence(state.getUser().getId());
+            if (fence.isEmpty()) continue;
+            if (state.getNextSyncAt() == null) {
+                agendarPrimeira(state, now);
+            } else {
+                enfileirar(new Pendente(state.getId(), state.getUser(), state.getSender(), state.getSubject(),
+                        state.getNextSyncAt(), fence.get()));
+            }
+        }
+        despachar();
+    }
+
+    public GmailSyncSchedulerMetricsDTO metrics() {
+        int fila;
+        int rodando;
+        synchronized (this) {
+            fila = tamanhoFila;
+            rodando = emExecucao;
+        }
+        long iniciadas = started.get();
+        return new GmailSyncSchedulerMetricsDTO(settings.enabled(), fila, dueBacklog, rodando, settings.maxConcurrent(),
+                completed.get(), failed.get(), invalidCredentials.get(), rowsImported.get(),
+                lastLagMillis, maxLagMillis.get(), iniciadas > 0 ? totalLagMillis.get() / iniciadas : 0, lastTickAt);
+    }
+
+    private void agendarPrimeira(GmailSyncState state, LocalDateTime now) {
+        Duration intervalo = intervalo(state.getUser());
+        LocalDateTime base = state.getLastSyncAt() != null ? state.getLastSyncAt() : now;
+        LocalDateTime primeira = base.plus(comJitter(intervalo));
+        if (primeira.isBefore(now)) {
+            // Atrasada desde antes do agendador existir: espalha dentro da janela de jitter
+            primeira = now.plus(Duration.ofMillis((long) (intervalo.toMillis() * settings.jitter()
+                    * ThreadLocalRandom.current().nextDouble())));
+        }
+        syncStateRepository.reschedule(state.getId(), primeira, state.getConsecutiveFailures(), state.getLastError());
+    }
+
+    private synchronized void enfileirar(Pendente pendente) {
+        if (!agendados.add(pendente.stateId())) return;
+        fila.computeIfAbsent(pendente.user().getId(), id -> new ArrayDeque<>()).addLast(pendente);
+        tamanhoFila++;
+    }
+
+    /**
+     * Ocupa as vagas livres escolhendo os usuários em rodízio. Um usuário com sincronização
+     * em andamento espera a vez, para não somar duas sincronizações na mesma cota.
+     */
+    private synchronized void despachar() {
+        while (emExecucao < settings.maxConcurrent()) {
+            Pendente proxima = proximaDoRodizio();
+            if (proxima == null) return;
+            emExecucao++;
+            usuariosEmExecucao.add(proxima.user().getId());
+            try {
+                executor.execute(() -> executar(proxima));
+            } catch (RejectedExecutionException e) {
+                // O pool foi desligado: a sincronização volta a ser lida na próxima rodada
+                emExecucao--;
+                usuariosEmExecucao.remove(proxima.user().getId());
+                agendados.remove(proxima.stateId());
+                return;
+            }
+        }
+    }
+
+    private Pendente proximaDoRodizio() {
+        Iterator<Map.Entry<Long, ArrayDeque<Pendente>>> it = fila.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, ArrayDeque<Pendente>> entry = it.next();
+            if (usuariosEmExecucao.contains(entry.getKey())) continue;
+            it.remove();
+            Pendente pendente = entry.getValue().pollFirst();
+            if (!entry.getValue().isEmpty()) {
+                // O usuário vai para o fim da fila
+                fila.put(entry.getKey(), entry.getValue());
+            }
+            tamanhoFila--;
+            return pendente;
+        }
+        return null;
+    }
+
+    private void executar(Pendente pendente) {
+        User user = pendente.user();
+        if (!clusterCoordinator.isValid(pendente.fence())) {
+            // A partição passou para outro nó depois que a sincronização entrou na fila
+            logger.info("Sincronização do usuário {} descartada: partição não pertence mais a este nó", user.getId());
+            liberar(pendente);
+            return;
+        }
+        long lag = Math.max(0, Duration.between(pendente.dueAt(), LocalDateTime.now()).toMillis());
+        lastLagMillis = lag;
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        started.incrementAndGet();
+        try {
+            Gmail gmail = gmailAuthService.getGmailService(user.getEmail());
+            GmailSyncService.Sincronizacao sync = gmailSyncService.sincronizar(gmail, user, pendente.sender(),
+                    pendente.subject(), false, GmailService.Prioridade.SEGUNDO_PLANO, anexo -> importar(user.getId(), anexo));
+            // Os anexos já foram gravados: as mensagens passam a contar como processadas
+            gmailSyncService.confirmar(sync.checkpoint());
+            GmailSyncResult result = sync.resultado();
+            completed.incrementAndGet();
+            syncStateRepository.reschedule(pendente.stateId(),
+                    LocalDateTime.now().plus(comJitter(intervalo(user))), 0, null);
+            logger.debug("Sincronização automática do usuário {} ({} / {}): {} anexos", user.getId(),
+                    pendente.sender(), pendente.subject(), result.attachments());
+        } catch (GmailSyncService.SyncInProgressException e) {
+            // Uma análise ou um job do usuário está sincronizando o mesmo remetente/assunto: não conta como falha
+            logger.debug("Sincronização automática do usuário {} adiada: {}", user.getId(), e.getMessage());
+            syncStateRepository.findById(pendente.stateId()).ifPresent(state -> syncStateRepository.reschedule(
+                    state.getId(), LocalDateTime.now().plus(comJitter(intervalo(user))),
+                    state.getConsecutiveFailures(), state.getLastError()));
+        } catch (Exception e) {
+            falhou(pendente, e);
+        } finally {
+            liberar(pendente);
+        }
+    }
+
+    private void liberar(Pendente pendente) {
+        synchronized (this) {
+            emExecucao--;
+            usuariosEmExecucao.remove(pendente.user().getId());
+            agendados.remove(pendente.stateId());
+        }
+        despachar();
+    }
+
+    private void importar(Long userId, GmailService.CsvAttachment anexo) {
+        TransactionBulkInsertService.Session session = bulkInsertService.openSession(userId,
+                TransactionSource.EMAIL_IMPORT, chunk -> rowsImported.addAndGet(chunk.accepted()));
+        try {
+            csvParsingService.parse(anexo.content(), dto -> session.add(dto, anexo.messageId(), anexo.sourceDocument()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            session.finish();
+        }
+    }
+
+    private void falhou(Pendente pendente, Exception e) {
+        failed.incrementAndGet();
+        User user = pendente.user();
+        if (credencialRevogada(e)) {
+            // Sem credencial o usuário sai da consulta de vencidas até autorizar de novo
+            invalidCredentials.incrementAndGet();
+            logger.warn("Credencial do Gmail de '{}' foi revogada; sincronização automática suspensa", user.getEmail());
+            gmailAuthService.revogar(user.getEmail());
+        } else {
+            logger.warn("Falha na sincronização automática do usuário {} ({} / {}): {}", user.getId(),
+                    pendente.sender(), pendente.subject(), e.getMessage());
+        }
+        int falhas = syncStateRepository.findById(pendente.stateId())
+                .map(GmailSyncState::getConsecutiveFailures).orElse(0) + 1;
+        Duration espera = intervalo(user).multipliedBy(1L << Math.min(falhas, 10));
+        Duration maxima = Duration.ofMinutes(settings.maxBackoffMinutes());
+        if (espera.compareTo(maxima) > 0) espera = maxima;
+        String erro = e.getMessage() != null && e.getMessage().length() > MAX_ERROR_LENGTH
+                ? e.getMessage().substring(0, MAX_ERROR_LENGTH) : e.getMessage();
+        syncStateRepository.reschedule(pendente.stateId(), LocalDateTime.now().plus(comJitter(espera)), falhas, erro);
+    }
+
+    private static boolean credencialRevogada(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TokenResponseException tre && tre.getDetails() != null
+                    && "invalid_grant".equals(tre.getDetails().getError())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Duration intervalo(User user) {
+        Integer minutos = user.getGmailSyncIntervalMinutes();
+        return Duration.ofMinutes(minutos != null && minutos > 0 ? minutos : settings.defaultIntervalMinutes());
+    }
+
+    private Duration comJitter(Duration intervalo) {
+        double fator = 1 + settings.jitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofMillis((long) (intervalo.toMillis() * fator));
+    }
+}
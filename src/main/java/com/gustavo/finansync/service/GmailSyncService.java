@@ -0,0 +1,229 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.GmailSyncResult;
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.GmailProcessedMessageRepository;
+import com.gustavo.finansync.repository.GmailSyncStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Sincronização incremental dos extratos no Gmail.
+ *
+ * A primeira sincronização de um remetente/assunto faz a varredura completa da busca e
+ * guarda o historyId da caixa. As seguintes usam a History API para obter apenas as
+ * mensagens adicionadas desde então; se o histórico tiver expirado (404), volta para a
+ * varredura completa. Mensagens já processadas só são baixadas de novo com fullScan.
+ *
+ * A sincronização não marca nada sozinha: devolve um {@link Checkpoint} que o chamador aplica com
+ * {@link #confirmar(Checkpoint)} quando as linhas das mensagens estiverem gravadas (fim do job,
+ * confirmação da análise). Uma análise descartada deixa as mensagens disponíveis para a próxima.
+ * Duas sincronizações do mesmo usuário/remetente/assunto não rodam ao mesmo tempo.
+ */
+@Service
+public class GmailSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GmailSyncService.class);
+    private static final String ME = "me";
+    // Limite de itens por cláusula IN na consulta de mensagens já processadas
+    private static final int LOOKUP_BATCH = 500;
+    // A mesma mensagem pode ser confirmada por duas importações (uma análise e o agendador, por exemplo)
+    private static final String MARK_PROCESSED_SQL = "INSERT IGNORE INTO gmail_processed_messages " +
+            "(user_id, message_id, processed_at) VALUES (?, ?, ?)";
+
+    /**
+     * Mensagens baixadas e historyId da caixa, a gravar quando as linhas delas forem confirmadas
+     * @param stateId   Estado de sincronização do remetente/assunto
+     * @param fullScan  Se a sincronização fez a varredura completa
+     */
+    public record Checkpoint(Long stateId, Long userId, List<String> messageIds, BigInteger historyId,
+                             boolean fullScan) {}
+
+    /**
+     * Resultado da sincronização e o ponto a confirmar depois da gravação
+     */
+    public record Sincronizacao(GmailSyncResult resultado, Checkpoint checkpoint) {}
+
+    /**
+     * Já existe uma sincronização do mesmo usuário/remetente/assunto em andamento
+     */
+    public static class SyncInProgressException extends IllegalStateException {
+        public SyncInProgressException(String message) {
+            super(message);
+        }
+    }
+
+    private final GmailService gmailService;
+    private final GmailSyncStateRepository syncStateRepository;
+    private final GmailProcessedMessageRepository processedMessageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration lockTtl;
+
+    public GmailSyncService(GmailService gmailService, GmailSyncStateRepository syncStateRepository,
+                            GmailProcessedMessageRepository processedMessageRepository, JdbcTemplate jdbcTemplate,
+                            @Value("${finansync.gmail.sync.lock-minutes:30}") long lockMinutes) {
+        this.gmailService = gmailService;
+        this.syncStateRepository = syncStateRepository;
+        this.processedMessageRepository = processedMessageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockTtl = Duration.ofMinutes(lockMinutes);
+    }
+
+    /**
+     * Sincronização em que o usuário espera a resposta (downloads no pool interativo)
+     * @see #sincronizar(Gmail, User, String, String, boolean, GmailService.Prioridade, Consumer)
+     */
+    public Sincronizacao sincronizar(Gmail gmail, User user, String remetente, String assunto,
+                                     boolean fullScan, Consumer<GmailService.CsvAttachment> handler) throws IOException {
+        return sincronizar(gmail, user, remetente, assunto, fullScan, GmailService.Prioridade.INTERATIVA, handler);
+    }
+
+    /**
+     * Baixa os anexos CSV das mensagens novas e os entrega ao handler.
+     * @param gmail Cliente Gmail autenticado do usuário
+     * @param user Usuário dono da caixa postal
+     * @param remetente Remetente dos extratos
+     * @param assunto Assunto dos extratos
+     * @param fullScan Força a varredura completa, ignorando o historyId salvo e as mensagens já processadas
+     * @param prioridade Pool usado nos downloads
+     * @param handler Recebe cada anexo, na thread que chamou este método
+     * @throws SyncInProgressException se outra sincronização do mesmo remetente/assunto estiver em andamento
+     */
+    public Sincronizacao sincronizar(Gmail gmail, User user, String remetente, String assunto, boolean fullScan,
+                                     GmailService.Prioridade prioridade, Consumer<GmailService.CsvAttachment> handler)
+            throws IOException {
+        GmailRequestExecutor.Traffic inicio = gmailService.trafego(gmail);
+        Long stateId = estado(user, remetente, assunto).getId();
+        String owner = UUID.randomUUID().toString();
+        LocalDateTime agora = LocalDateTime.now();
+        if (syncStateRepository.lock(stateId, owner, agora, agora.plus(lockTtl)) == 0) {
+            throw new SyncInProgressException("Sincronização de '" + remetente + "' / '" + assunto
+                    + "' já está em andamento");
+        }
+        try {
+            // Lido depois da trava: uma confirmação anterior pode ter avançado o historyId
+            BigInteger historyId = syncStateRepository.findById(stateId).map(GmailSyncState::getHistoryId).orElse(null);
+            Plano plano = null;
+            if (!fullScan && historyId != null) {
+                plano = planoIncremental(gmail, user, historyId, remetente, assunto, prioridade);
+            }
+            if (plano == null) {
+                plano = planoCompleto(gmail, user, remetente, assunto, fullScan);
+            }
+            List<String> candidatas = plano.candidatas();
+
+            int anexos = candidatas.isEmpty() ? 0 : gmailService.baixarAnexosCsv(gmail, ME, user.getId(), candidatas,
+                    prioridade, handler);
+
+            GmailRequestExecutor.Traffic trafego = gmailService.trafego(gmail).minus(inicio);
+            logger.info("Sincronização Gmail do usuário {} ({}): {} mensagens novas, {} anexos, {} requisições, {} bytes",
+                    user.getId(), plano.incremental() ? "incremental" : "completa", candidatas.size(), anexos,
+                    trafego.requests(), trafego.bytesReceived());
+            return new Sincronizacao(
+                    new GmailSyncResult(plano.incremental(), candidatas.size(), anexos, plano.historyId(),
+                            trafego.requests(), trafego.bytesReceived()),
+                    new Checkpoint(stateId, user.getId(), candidatas, plano.historyId(), !plano.incremental()));
+        } finally {
+            syncStateRepository.unlock(stateId, owner);
+        }
+    }
+
+    /**
+     * Marca as mensagens da sincronização como processadas e avança o historyId. Deve ser
+     * chamado só depois que as linhas das mensagens foram gravadas; dentro de uma transação,
+     * participa dela (a confirmação de uma análise grava as linhas e o ponto juntos).
+     */
+    @Transactional
+    public void confirmar(Checkpoint checkpoint) {
+        LocalDateTime agora = LocalDateTime.now();
+        if (!checkpoint.messageIds().isEmpty()) {
+            Timestamp processedAt = Timestamp.valueOf(agora);
+            jdbcTemplate.batchUpdate(MARK_PROCESSED_SQL, checkpoint.messageIds(), LOOKUP_BATCH, (ps, messageId) -> {
+                ps.setLong(1, checkpoint.userId());
+                ps.setString(2, messageId);
+                ps.setTimestamp(3, processedAt);
+            });
+        }
+        syncStateRepository.advance(checkpoint.stateId(), checkpoint.historyId(), agora,
+                checkpoint.fullScan() ? agora : null);
+    }
+
+    private GmailSyncState estado(User user, String remetente, String assunto) {
+        Optional<GmailSyncState> existente = syncStateRepository.findByUserAndSenderAndSubject(user, remetente, assunto);
+        if (existente.isPresent()) return existente.get();
+        try {
+            return syncStateRepository.saveAndFlush(new GmailSyncState(user, remetente, assunto));
+        } catch (DataIntegrityViolationException e) {
+            // Outra sincronização criou o estado ao mesmo tempo
+            return syncStateRepository.findByUserAndSenderAndSubject(user, remetente, assunto).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Mensagens a baixar e historyId a salvar ao final da sincronização
+     */
+    private record Plano(List<String> candidatas, BigInteger historyId, boolean incremental) {}
+
+    /**
+     * Usa a History API a partir do historyId salvo.
+     * @return O plano, ou null se o histórico expirou e é preciso fazer varredura completa
+     */
+    private Plano planoIncremental(Gmail gmail, User user, BigInteger historyId, String remetente, String assunto,
+                                   GmailService.Prioridade prioridade) throws IOException {
+        try {
+            GmailService.HistoryDelta delta = gmailService.listarMensagensNovas(gmail, ME, historyId);
+            List<String> novas = naoProcessadas(user, delta.messageIds());
+            List<String> candidatas = novas.isEmpty() ? novas
+                    : gmailService.filtrarPorRemetenteEAssunto(gmail, ME, novas, remetente, assunto, prioridade);
+            return new Plano(candidatas, delta.historyId(), true);
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404) throw e;
+            logger.info("Histórico do Gmail expirado para o usuário {}, fazendo varredura completa", user.getId());
+            return null;
+        }
+    }
+
+    /**
+     * @param todas Baixa também as mensagens já processadas (fullScan pedido pelo usuário)
+     */
+    private Plano planoCompleto(Gmail gmail, User user, String remetente, String assunto,
+                                boolean todas) throws IOException {
+        // O historyId é lido antes da listagem para que nada chegue "entre" as duas chamadas sem ser visto
+        BigInteger historyId = gmailService.historyIdAtual(gmail, ME);
+        List<String> encontradas = gmailService.listarMensagens(gmail, ME, GmailService.montarQuery(remetente, assunto));
+        return new Plano(todas ? encontradas : naoProcessadas(user, encontradas), historyId, false);
+    }
+
+    private List<String> naoProcessadas(User user, List<String> messageIds) {
+        if (messageIds.isEmpty()) return messageIds;
+        List<String> novas = new ArrayList<>(messageIds.size());
+        for (int i = 0; i < messageIds.size(); i += LOOKUP_BATCH) {
+            List<String> lote = messageIds.subList(i, Math.min(i + LOOKUP_BATCH, messageIds.size()));
+            Set<String> processadas = processedMessageRepository.findProcessedIds(user, lote);
+            for (String id : lote) {
+                if (!processadas.contains(id)) novas.add(id);
+            }
+        }
+        return novas;
+    }
+}
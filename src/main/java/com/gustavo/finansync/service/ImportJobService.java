@@ -0,0 +1,293 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.CsvParseReport;
+import com.gustavo.finansync.dto.GmailSyncResult;
+import com.gustavo.finansync.dto.ImportJobStatusDTO;
+import com.gustavo.finansync.dto.ImportJobStatusDTO.State;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jobs de importação em segundo plano.
+ *
+ * O job é executado no pool {@code importJobExecutor}, independente da requisição que o
+ * criou: o cliente recebe o ID na hora e acompanha o progresso consultando o status ou
+ * assinando o stream SSE. Se o cliente desconectar o job continua; ele só para se for
+ * cancelado. Os jobs ficam em memória e são descartados após o período de retenção.
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+    private static final long SSE_TIMEOUT_MILLIS = Duration.ofMinutes(30).toMillis();
+    private static final int MAX_REJECTED_SAMPLE = 100;
+
+    private final ThreadPoolTaskExecutor executor;
+    private final GmailAuthService gmailAuthService;
+    private final GmailSyncService gmailSyncService;
+    private final CsvParsingService csvParsingService;
+    private final TransactionBulkInsertService bulkInsertService;
+    private final Duration retention;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobService(@Qualifier("importJobExecutor") ThreadPoolTaskExecutor executor,
+                            GmailAuthService gmailAuthService, GmailSyncService gmailSyncService,
+                            CsvParsingService csvParsingService, TransactionBulkInsertService bulkInsertService,
+                            @Value("${finansync.import.job-retention-minutes:60}") long retentionMinutes) {
+        this.executor = executor;
+        this.gmailAuthService = gmailAuthService;
+        this.gmailSyncService = gmailSyncService;
+        this.csvParsingService = csvParsingService;
+        this.bulkInsertService = bulkInsertService;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+
+    /**
+     * Enfileira a importação dos extratos do Gmail (busca, leitura do CSV e gravação).
+     * @throws IllegalStateException se a fila de jobs estiver cheia
+     */
+    public ImportJobStatusDTO startGmailImport(User user, String remetente, String assunto, boolean fullScan) {
+        ImportJob job = new ImportJob(user.getId());
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> runGmailImport(job, user, remetente, assunto, fullScan));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            throw new IllegalStateException("Fila de importação cheia. Tente novamente em instantes.", e);
+        }
+        return job.snapshot();
+    }
+
+    public Optional<ImportJobStatusDTO> status(String jobId, Long userId) {
+        return find(jobId, userId).map(ImportJob::snapshot);
+    }
+
+    /**
+     * Solicita o cancelamento. Um job na fila é cancelado na hora; um em execução para
+     * no próximo registro lido, mantendo os lotes que já foram confirmados.
+     */
+    public Optional<ImportJobStatusDTO> cancel(String jobId, Long userId) {
+        return find(jobId, userId).map(job -> {
+            job.cancelRequested = true;
+            if (job.state == State.QUEUED && job.future != null && job.future.cancel(false)) {
+                job.finish(State.CANCELLED, null);
+            }
+            return job.snapshot();
+        });
+    }
+
+    /**
+     * Stream SSE com o progresso do job (evento "progress"). É encerrado quando o job termina.
+     */
+    public Optional<SseEmitter> subscribe(String jobId, Long userId) {
+        return find(jobId, userId).map(job -> {
+            SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+            emitter.onCompletion(() -> job.emitters.remove(emitter));
+            emitter.onTimeout(() -> job.emitters.remove(emitter));
+            emitter.onError(e -> job.emitters.remove(emitter));
+            job.emitters.add(emitter);
+            send(job, emitter, job.snapshot());
+            return emitter;
+        });
+    }
+
+    /**
+     * Publica o progresso para os assinantes e descarta jobs antigos
+     */
+    @Scheduled(fixedDelayString = "${finansync.import.job-progress-interval-ms:1000}")
+    public void publishProgress() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(retention);
+        for (ImportJob job : jobs.values()) {
+            if (!job.emitters.isEmpty()) {
+                ImportJobStatusDTO snapshot = job.snapshot();
+                for (SseEmitter emitter : job.emitters) {
+                    send(job, emitter, snapshot);
+                }
+            }
+            if (job.state.isFinal() && job.finishedAt.isBefore(expiredBefore)) {
+                jobs.remove(job.id);
+            }
+        }
+    }
+
+    private void runGmailImport(ImportJob job, User user, String remetente, String assunto, boolean fullScan) {
+        if (job.cancelRequested) {
+            job.finish(State.CANCELLED, null);
+            return;
+        }
+        job.start();
+        try {
+            Gmail gmail = gmailAuthService.getGmailService(user.getEmail());
+            GmailSyncService.Sincronizacao sync = gmailSyncService.sincronizar(gmail, user, remetente, assunto,
+                    fullScan, GmailService.Prioridade.SEGUNDO_PLANO, anexo -> importAttachment(job, anexo));
+            job.gmailSync = sync.resultado();
+            if (job.cancelRequested) {
+                job.finish(State.CANCELLED, null);
+            } else {
+                // Todos os anexos foram gravados: as mensagens passam a contar como processadas
+                gmailSyncService.confirmar(sync.checkpoint());
+                job.finish(State.COMPLETED, null);
+            }
+        } catch (CancellationException e) {
+            job.finish(State.CANCELLED, null);
+        } catch (Exception e) {
+            if (job.cancelRequested) {
+                job.finish(State.CANCELLED, null);
+            } else {
+                logger.error("Falha no job de importação {}", job.id, e);
+                job.finish(State.FAILED, e.getMessage());
+            }
+        }
+        publishFinal(job);
+    }
+
+    /**
+     * Lê e grava um anexo, na thread do job; os próximos anexos continuam sendo baixados
+     * enquanto isso. Cada anexo usa sua própria sessão de gravação.
+     */
+    private void importAttachment(ImportJob job, GmailService.CsvAttachment anexo) {
+        job.checkNotCancelled();
+        TransactionBulkInsertService.Session session =
+                bulkInsertService.openSession(job.userId, TransactionSource.EMAIL_IMPORT, job::addChunk);
+        try {
+            CsvParseReport report = csvParsingService.parse(anexo.content(), dto -> {
+                job.checkNotCancelled();
+                job.rowsParsed.incrementAndGet();
+                session.add(dto, anexo.messageId(), anexo.sourceDocument());
+            });
+            job.addRejected(anexo.sourceDocument(), report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // Confirma o que já foi lido, mesmo se o job estiver sendo cancelado
+            session.finish();
+        }
+        job.attachments.incrementAndGet();
+    }
+
+    private void publishFinal(ImportJob job) {
+        ImportJobStatusDTO snapshot = job.snapshot();
+        for (SseEmitter emitter : job.emitters) {
+            send(job, emitter, snapshot);
+        }
+    }
+
+    private void send(ImportJob job, SseEmitter emitter, ImportJobStatusDTO snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").id(job.id).data(snapshot));
+            if (snapshot.state().isFinal()) {
+                emitter.complete();
+                job.emitters.remove(emitter);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectou: o job continua normalmente
+            job.emitters.remove(emitter);
+        }
+    }
+
+    private Optional<ImportJob> find(String jobId, Long userId) {
+        ImportJob job = jobs.get(jobId);
+        return job != null && job.userId.equals(userId) ? Optional.of(job) : Optional.empty();
+    }
+
+    private static final class ImportJob {
+
+        private final String id = UUID.randomUUID().toString();
+        private final Long userId;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private final AtomicLong attachments = new AtomicLong();
+        private final AtomicLong rowsParsed = new AtomicLong();
+        private final AtomicLong rowsAccepted = new AtomicLong();
+        private final AtomicLong rowsDuplicated = new AtomicLong();
+        private final AtomicLong rowsRejected = new AtomicLong();
+        private final List<ImportJobStatusDTO.RejectedRow> rejectedSample = new CopyOnWriteArrayList<>();
+
+        private volatile State state = State.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile String error;
+        private volatile GmailSyncResult gmailSync;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+        private volatile Future<?> future;
+
+        private ImportJob(Long userId) {
+            this.userId = userId;
+        }
+
+        void start() {
+            startedAt = LocalDateTime.now();
+            startedNanos = System.nanoTime();
+            state = State.RUNNING;
+        }
+
+        synchronized void finish(State finalState, String errorMessage) {
+            if (state.isFinal()) return;
+            error = errorMessage;
+            finishedAt = LocalDateTime.now();
+            finishedNanos = System.nanoTime();
+            state = finalState;
+        }
+
+        void addChunk(BulkImportResult.ChunkResult chunk) {
+            rowsAccepted.addAndGet(chunk.accepted());
+            rowsDuplicated.addAndGet(chunk.duplicates());
+            rowsRejected.addAndGet(chunk.rejected());
+        }
+
+        /**
+         * Linhas que a leitura do CSV recusou; a amostra guarda até {@link #MAX_REJECTED_SAMPLE} por job
+         */
+        synchronized void addRejected(String sourceDocument, CsvParseReport report) {
+            rowsRejected.addAndGet(report.rejectedRows());
+            for (CsvParseReport.RowError error : report.errors()) {
+                if (rejectedSample.size() >= MAX_REJECTED_SAMPLE) break;
+                rejectedSample.add(new ImportJobStatusDTO.RejectedRow(sourceDocument, error.lineNumber(), error.reason()));
+            }
+        }
+
+        void checkNotCancelled() {
+            if (cancelRequested) throw new CancellationException("Importação cancelada");
+        }
+
+        ImportJobStatusDTO snapshot() {
+            double rowsPerSecond = 0;
+            if (startedAt != null) {
+                long end = finishedAt != null ? finishedNanos : System.nanoTime();
+                double seconds = (end - startedNanos) / 1_000_000_000d;
+                rowsPerSecond = seconds > 0 ? rowsParsed.get() / seconds : 0;
+            }
+            return new ImportJobStatusDTO(id, state, attachments.get(), rowsParsed.get(), rowsAccepted.get(),
+                    rowsDuplicated.get(), rowsRejected.get(), List.copyOf(rejectedSample), rowsPerSecond, error, gmailSync, createdAt, startedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.ImportStagingDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.ImportStaging;
+import com.gustavo.finansync.entity.ImportStagingRow;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.ImportStagingRepository;
+import com.gustavo.finansync.repository.ImportStagingRowRepository;
+import com.gustavo.finansync.util.TransactionFingerprinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Área de staging das importações analisadas.
+ *
+ * O analyze grava as linhas lidas em {@code import_staging_rows} em lotes JDBC, a prévia é
+ * paginada direto dessa tabela e a confirmação recebe apenas o token (e as linhas excluídas):
+ * a promoção para {@code transactions} lê as linhas que ainda não estão nas transações e as
+ * grava em lotes JDBC, sem o cliente reenviar os dados. Importações não confirmadas expiram após o TTL configurado.
+ */
+@Service
+public class ImportStagingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportStagingService.class);
+
+    private static final String INSERT_ROW_SQL = "INSERT INTO import_staging_rows " +
+            "(staging_token, row_index, description, category, amount, type, transaction_date, " +
+            "email_message_id, source_document, fingerprint, already_imported, excluded) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, FALSE)";
+
+    private static final String MARK_DUPLICATES_SQL = "UPDATE import_staging_rows SET already_imported = TRUE " +
+            "WHERE staging_token = ? AND fingerprint IN " +
+            "(SELECT t.fingerprint FROM transactions t WHERE t.fingerprint IS NOT NULL)";
+
+    // Linhas da importação que ainda não estão nas transações (as repetidas entre si são descartadas em promote)
+    private static final String PROMOTABLE_SQL = "SELECT s.description, s.amount, s.type, s.transaction_date, " +
+            "s.email_message_id, s.fingerprint, s.category FROM import_staging_rows s " +
+            "WHERE s.staging_token = ? AND s.excluded = FALSE " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions t WHERE t.fingerprint = s.fingerprint) ORDER BY s.row_index";
+
+    private static final String PROMOTE_SQL = "INSERT INTO transactions " +
+            "(description, amount, type, transaction_date, source, email_message_id, fingerprint, " +
+            "created_at, updated_at, user_id, category) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO import_staging_messages (staging_token, message_id) VALUES (?, ?)";
+
+    private static final int PROMOTE_ATTEMPTS = 3;
+    private static final int PROMOTE_BATCH = 500;
+
+    /**
+     * Linha da importação a gravar nas transações
+     */
+    private record Promotable(String description, BigDecimal amount, TransactionType type, Date transactionDate,
+                              String emailMessageId, String fingerprint, String category) {}
+
+    private final ImportStagingRepository stagingRepository;
+    private final ImportStagingRowRepository stagingRowRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TransactionSearchService searchService;
+    private final TransactionCounterService counterService;
+    private final TransactionRollupService rollupService;
+    private final BalanceService balanceService;
+    private final TransactionLedgerCache ledgerCache;
+    private final GmailSyncService gmailSyncService;
+    private final int chunkSize;
+    private final Duration ttl;
+
+    public ImportStagingService(ImportStagingRepository stagingRepository,
+                                ImportStagingRowRepository stagingRowRepository,
+                                JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                ClusterCoordinator clusterCoordinator, TransactionSearchService searchService,
+                                TransactionCounterService counterService, TransactionRollupService rollupService,
+                                BalanceService balanceService, TransactionLedgerCache ledgerCache,
+                                GmailSyncService gmailSyncService,
+                                @Value("${finansync.import.chunk-size:1000}") int chunkSize,
+                                @Value("${finansync.import.staging-ttl-minutes:60}") long ttlMinutes) {
+        this.stagingRepository = stagingRepository;
+        this.stagingRowRepository = stagingRowRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clusterCoordinator = clusterCoordinator;
+        this.searchService = searchService;
+        this.counterService = counterService;
+        this.rollupService = rollupService;
+        this.balanceService = balanceService;
+        this.ledgerCache = ledgerCache;
+        this.gmailSyncService = gmailSyncService;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Cria uma importação vazia para o usuário. As linhas são adicionadas com
+     * {@link Handle#openDocument(String, String)} e a análise termina com {@link #finish(Handle, int)}.
+     */
+    public Handle create(User user) {
+        ImportStaging staging = new ImportStaging(UUID.randomUUID().toString(), user, LocalDateTime.now().plus(ttl));
+        stagingRepository.save(staging);
+        return new Handle(staging.getToken(), user.getId());
+    }
+
+    /**
+     * Marca as linhas que o usuário já possui (um UPDATE para a importação inteira),
+     * grava os totais e devolve a primeira página da prévia.
+     */
+    public ImportStagingDTO finish(Handle handle, int pageSize) {
+        return finish(handle, pageSize, null);
+    }
+
+    /**
+     * Como {@link #finish(Handle, int)}, guardando o ponto de sincronização do Gmail para ser
+     * aplicado na confirmação, junto com a gravação das linhas
+     */
+    public ImportStagingDTO finish(Handle handle, int pageSize, GmailSyncService.Checkpoint checkpoint) {
+        ImportStaging staging = stagingRepository.findById(handle.token)
+                .orElseThrow(() -> new IllegalStateException("Importação não encontrada: " + handle.token));
+        if (checkpoint != null) {
+            staging.setSyncStateId(checkpoint.stateId());
+            staging.setSyncHistoryId(checkpoint.historyId());
+            staging.setSyncFullScan(checkpoint.fullScan());
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL,
+                    checkpoint.messageIds(), chunkSize, (ps, messageId) -> {
+                        ps.setString(1, handle.token);
+                        ps.setString(2, messageId);
+                    }));
+        }
+        long duplicates = transactionTemplate.execute(status -> (long) jdbcTemplate.update(MARK_DUPLICATES_SQL, handle.token));
+        staging.setTotalRows(handle.nextRow.get() - handle.rejected.get());
+        staging.setDuplicateRows(duplicates);
+        staging.setRejectedRows(handle.rejected.get());
+        stagingRepository.save(staging);
+        return toDTO(staging, 0, pageSize);
+    }
+
+    /**
+     * Página da prévia de uma importação do usuário
+     */
+    public Optional<ImportStagingDTO> page(String token, User user, int page, int size) {
+        return stagingRepository.findByTokenAndUser(token, user)
+                .filter(staging -> staging.getExpiresAt().isAfter(LocalDateTime.now()))
+                .map(staging -> toDTO(staging, page, size));
+    }
+
+    /**
+     * Promove as linhas da importação para {@code transactions} em lotes JDBC e remove a área de
+     * staging. Linhas excluídas, as que o usuário já possui e as repetidas dentro da própria
+     * importação (mesma impressão digital) não são gravadas.
+     */
+    public Optional<BulkImportResult> confirm(String token, User user, List<Integer> excludedRows) {
+        Optional<ImportStaging> found = stagingRepository.findByTokenAndUser(token, user)
+                .filter(staging -> staging.getExpiresAt().isAfter(LocalDateTime.now()));
+        if (found.isEmpty()) return Optional.empty();
+        ImportStaging staging = found.get();
+
+        long start = System.nanoTime();
+        long excluded = excludeRows(token, excludedRows);
+        int inserted = promote(token, user.getId(), checkpoint(staging, user.getId()));
+        long duplicates = Math.max(0, staging.getTotalRows() - excluded - inserted);
+        delete(token);
+
+        long elapsedNanos = System.nanoTime() - start;
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        double seconds = elapsedNanos / 1_000_000_000d;
+        double rowsPerSecond = seconds > 0 ? inserted / seconds : 0;
+        logger.info("Importação {} confirmada pelo usuário {}: {} gravadas, {} duplicadas, {} excluídas",
+                token, user.getId(), inserted, duplicates, excluded);
+        return Optional.of(new BulkImportResult(inserted, duplicates, staging.getRejectedRows(),
+                List.of(new BulkImportResult.ChunkResult(0, inserted, (int) duplicates, (int) staging.getRejectedRows(), elapsedMillis)),
+                elapsedMillis, rowsPerSecond));
+    }
+
+    /**
+     * Remove importações não confirmadas cujo prazo expirou (no cluster, só o líder)
+     */
+    @Scheduled(fixedDelayString = "${finansync.import.staging-cleanup-interval-ms:300000}")
+    public void purgeExpired() {
+        if (!clusterCoordinator.isLeader()) return;
+        List<String> expired = stagingRepository.findExpiredTokens(LocalDateTime.now());
+        expired.forEach(this::delete);
+        if (!expired.isEmpty()) {
+            logger.info("{} importações expiradas removidas da área de staging", expired.size());
+        }
+    }
+
+    /**
+     * @return Número de linhas efetivamente excluídas
+     */
+    private long excludeRows(String token, List<Integer> excludedRows) {
+        if (excludedRows == null || excludedRows.isEmpty()) return 0;
+        List<Object[]> args = excludedRows.stream().distinct().map(row -> new Object[]{token, row}).toList();
+        int[] updated = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "UPDATE import_staging_rows SET excluded = TRUE WHERE staging_token = ? AND row_index = ?", args));
+        long excluded = 0;
+        for (int count : updated) {
+            // Drivers podem devolver SUCCESS_NO_INFO (-2) em batches reescritos
+            excluded += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return excluded;
+    }
+
+    /**
+     * Ponto de sincronização do Gmail guardado pela análise (null se a importação não veio do Gmail)
+     */
+    private GmailSyncService.Checkpoint checkpoint(ImportStaging staging, Long userId) {
+        if (staging.getSyncStateId() == null) return null;
+        List<String> messageIds = jdbcTemplate.queryForList(
+                "SELECT message_id FROM import_staging_messages WHERE staging_token = ?", String.class, staging.getToken());
+        return new GmailSyncService.Checkpoint(staging.getSyncStateId(), userId, messageIds,
+                staging.getSyncHistoryId(), staging.isSyncFullScan());
+    }
+
+    /**
+     * Grava as linhas da importação que ainda não estão nas transações. As linhas são lidas uma
+     * vez e gravadas uma a uma, então as estruturas derivadas recebem exatamente o que foi gravado.
+     */
+    private int promote(String token, Long userId, GmailSyncService.Checkpoint checkpoint) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                Integer inserted = transactionTemplate.execute(status -> {
+                    List<Promotable> rows = withoutRepeated(jdbcTemplate.query(PROMOTABLE_SQL, (rs, rowNum) -> new Promotable(
+                            rs.getString("description"), rs.getBigDecimal("amount"), TransactionType.valueOf(rs.getString("type")),
+                            rs.getDate("transaction_date"), rs.getString("email_message_id"), rs.getString("fingerprint"),
+                            rs.getString("category")), token));
+                    if (!rows.isEmpty()) {
+                        jdbcTemplate.batchUpdate(PROMOTE_SQL, rows, PROMOTE_BATCH, (ps, row) -> {
+                            ps.setString(1, row.description());
+                            ps.setBigDecimal(2, row.amount());
+                            ps.setString(3, row.type().name());
+                            ps.setDate(4, row.transactionDate());
+                            ps.setString(5, TransactionSource.EMAIL_IMPORT.name());
+                            ps.setString(6, row.emailMessageId());
+                            ps.setString(7, row.fingerprint());
+                            ps.setTimestamp(8, now);
+                            ps.setTimestamp(9, now);
+                            ps.setLong(10, userId);
+                            ps.setString(11, row.category());
+                        });
+                        updateDerived(userId, rows);
+                    }
+                    // As mensagens da análise passam a contar como processadas junto com as linhas
+                    if (checkpoint != null) gmailSyncService.confirmar(checkpoint);
+                    return rows.size();
+                });
+                return inserted == null ? 0 : inserted;
+            } catch (DuplicateKeyException e) {
+                // Outra importação gravou as mesmas linhas entre a leitura e o INSERT: a nova leitura já as exclui
+                if (attempt >= PROMOTE_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    /**
+     * Primeira linha de cada impressão digital (o mesmo extrato analisado duas vezes na mesma
+     * importação), na ordem da importação
+     */
+    private static List<Promotable> withoutRepeated(List<Promotable> rows) {
+        Set<String> seen = new HashSet<>();
+        List<Promotable> unique = new ArrayList<>(rows.size());
+        for (Promotable row : rows) {
+            if (row.fingerprint() == null || seen.add(row.fingerprint())) {
+                unique.add(row);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Índice de busca, total do usuário, totais mensais e saldos diários das linhas promovidas, na mesma transação
+     */
+    private void updateDerived(Long userId, List<Promotable> rows) {
+        List<String> fingerprints = new ArrayList<>(rows.size());
+        List<Transaction.Snapshot> snapshots = new ArrayList<>(rows.size());
+        for (Promotable row : rows) {
+            fingerprints.add(row.fingerprint());
+            snapshots.add(new Transaction.Snapshot(null, userId, row.transactionDate().toLocalDate(), row.category(),
+                    row.type(), row.amount()));
+        }
+        searchService.indexByFingerprints(fingerprints);
+        counterService.add(userId, rows.size());
+        rollupService.addAll(snapshots);
+        balanceService.addAll(snapshots);
+        ledgerCache.invalidate(userId);
+    }
+
+    private void delete(String token) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM import_staging_rows WHERE staging_token = ?", token);
+            jdbcTemplate.update("DELETE FROM import_staging_messages WHERE staging_token = ?", token);
+            jdbcTemplate.update("DELETE FROM import_stagings WHERE token = ?", token);
+        });
+    }
+
+    private ImportStagingDTO toDTO(ImportStaging staging, int page, int size) {
+        Page<ImportStagingRow> rows = stagingRowRepository.findByStagingTokenOrderByRowIndex(
+                staging.getToken(), PageRequest.of(page, size));
+        List<ImportedTransactionDTO> content = rows.getContent().stream()
+                .map(row -> new ImportedTransactionDTO((long) row.getRowIndex(), row.getDescription(), row.getCategory(),
+                        row.getAmount(), row.getTransactionDate(), row.getType(), row.getEmailMessageId(),
+                        row.getSourceDocument(), row.isAlreadyImported()))
+                .toList();
+        return new ImportStagingDTO(staging.getToken(), staging.getTotalRows(), staging.getDuplicateRows(),
+                staging.getRejectedRows(), staging.getExpiresAt(), page, size, content);
+    }
+
+    /**
+     * Importação em andamento. Pode receber documentos de várias threads ao mesmo tempo;
+     * cada documento é gravado pelo seu próprio {@link DocumentWriter}.
+     */
+    public final class Handle {
+
+        private final String token;
+        private final Long userId;
+        private final AtomicInteger nextRow = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Handle(String token, Long userId) {
+            this.token = token;
+            this.userId = userId;
+        }
+
+        public String getToken() { return token; }
+
+        public DocumentWriter openDocument(String emailMessageId, String sourceDocument) {
+            return new DocumentWriter(this, emailMessageId, sourceDocument);
+        }
+    }
+
+    /**
+     * Grava as linhas de um documento na área de staging em lotes. Não é thread-safe.
+     */
+    public final class DocumentWriter implements Consumer<TransactionDTO>, AutoCloseable {
+
+        private record Row(int index, TransactionDTO dto, String fingerprint) {}
+
+        private final Handle handle;
+        private final String emailMessageId;
+        private final String sourceDocument;
+        private final TransactionFingerprinter fingerprinter;
+        private final List<Row> buffer = new ArrayList<>(chunkSize);
+
+        private DocumentWriter(Handle handle, String emailMessageId, String sourceDocument) {
+            this.handle = handle;
+            this.emailMessageId = emailMessageId;
+            this.sourceDocument = sourceDocument;
+            this.fingerprinter = new TransactionFingerprinter(handle.userId, sourceDocument);
+        }
+
+        @Override
+        public void accept(TransactionDTO dto) {
+            int index = handle.nextRow.getAndIncrement();
+            if (!TransactionBulkInsertService.isValid(dto)) {
+                handle.rejected.incrementAndGet();
+                return;
+            }
+            buffer.add(new Row(index, dto, fingerprinter.next(dto.transactionDate(), dto.amount(), dto.description())));
+            if (buffer.size() >= chunkSize) flush();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) return;
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_ROW_SQL, buffer, buffer.size(), (ps, row) -> {
+                        TransactionDTO dto = row.dto();
+                        ps.setString(1, handle.token);
+                        ps.setInt(2, row.index());
+                        ps.setString(3, dto.description().trim());
+                        ps.setString(4, dto.category());
+                        ps.setBigDecimal(5, dto.amount());
+                        ps.setString(6, TransactionBulkInsertService.typeOf(dto).name());
+                        ps.setDate(7, Date.valueOf(dto.transactionDate()));
+                        ps.setString(8, emailMessageId);
+                        ps.setString(9, sourceDocument);
+                        ps.setString(10, row.fingerprint());
+                    }));
+            buffer.clear();
+        }
+    }
+}
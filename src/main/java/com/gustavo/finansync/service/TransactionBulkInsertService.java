@@ -0,0 +1,372 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.util.TransactionFingerprinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Gravação em massa de transações importadas.
+ *
+ * As linhas são inseridas via JDBC em lotes (batch), cada lote em sua própria transação.
+ * Não passa pelo contexto de persistência do Hibernate, então o ID IDENTITY da entidade
+ * não impede o batching e a memória usada é limitada ao tamanho do lote.
+ * No MySQL o driver reescreve o batch em INSERTs multi-linha (rewriteBatchedStatements).
+ *
+ * Cada linha recebe uma impressão digital ({@link TransactionFingerprinter}); antes de gravar
+ * um lote, as que já existem são descartadas com uma única consulta.
+ *
+ * Como o JPA não participa, as linhas gravadas são indexadas para a busca
+ * ({@link TransactionSearchService}) e somadas ao total do usuário
+ * ({@link TransactionCounterService}) e aos totais mensais ({@link TransactionRollupService})
+ * na mesma transação do lote.
+ */
+@Service
+public class TransactionBulkInsertService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionBulkInsertService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO transactions " +
+            "(description, amount, type, transaction_date, source, email_message_id, fingerprint, " +
+            "created_at, updated_at, user_id, category) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionRepository transactionRepository;
+    private final TransactionSearchService searchService;
+    private final TransactionCounterService counterService;
+    private final TransactionRollupService rollupService;
+    private final BalanceService balanceService;
+    private final TransactionLedgerCache ledgerCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public TransactionBulkInsertService(JdbcTemplate jdbcTemplate, TransactionRepository transactionRepository,
+                                        TransactionSearchService searchService,
+                                        TransactionCounterService counterService,
+                                        TransactionRollupService rollupService,
+                                        BalanceService balanceService,
+                                        TransactionLedgerCache ledgerCache,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${finansync.import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionRepository = transactionRepository;
+        this.searchService = searchService;
+        this.counterService = counterService;
+        this.rollupService = rollupService;
+        this.balanceService = balanceService;
+        this.ledgerCache = ledgerCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Grava uma coleção já carregada em memória. As linhas são agrupadas por documento de
+     * origem e data antes do cálculo das impressões digitais, então a ordem enviada pelo
+     * cliente não altera o resultado da deduplicação.
+     */
+    public BulkImportResult insertAll(Collection<ImportedTransactionDTO> rows, Long userId, TransactionSource source) {
+        Session session = openSession(userId, source);
+        inDocumentOrder(rows).forEach(row ->
+                session.add(row.toTransactionDTO(), row.emailMessageId(), row.sourceDocument()));
+        return session.finish();
+    }
+
+    /**
+     * Marca as linhas que já existem nas transações do usuário (prévia da importação).
+     * As impressões digitais são conferidas em lotes, uma consulta por lote.
+     */
+    public List<ImportedTransactionDTO> markAlreadyImported(List<ImportedTransactionDTO> rows, Long userId) {
+        // Impressões digitais calculadas na ordem por documento/data, devolvidas na ordem original
+        Map<ImportedTransactionDTO, String> fingerprintByRow = new IdentityHashMap<>();
+        Map<String, TransactionFingerprinter> fingerprinters = new HashMap<>();
+        for (ImportedTransactionDTO row : inDocumentOrder(rows)) {
+            fingerprintByRow.put(row, fingerprint(fingerprinters, userId, row.toTransactionDTO(), row.sourceDocument()));
+        }
+
+        List<String> fingerprints = fingerprintByRow.values().stream().filter(Objects::nonNull).toList();
+        Set<String> existing = new HashSet<>();
+        for (int i = 0; i < fingerprints.size(); i += chunkSize) {
+            existing.addAll(transactionRepository.findExistingFingerprints(
+                    fingerprints.subList(i, Math.min(i + chunkSize, fingerprints.size()))));
+        }
+
+        List<ImportedTransactionDTO> marked = new ArrayList<>(rows.size());
+        for (ImportedTransactionDTO row : rows) {
+            marked.add(row.withAlreadyImported(existing.contains(fingerprintByRow.get(row))));
+        }
+        return marked;
+    }
+
+    /**
+     * Abre uma sessão de gravação incremental: as linhas são acumuladas até completar
+     * um lote, que é gravado e confirmado imediatamente. Útil para ligar diretamente ao
+     * parser de CSV sem manter o arquivo inteiro em memória.
+     * A sessão não é thread-safe.
+     */
+    public Session openSession(Long userId, TransactionSource source) {
+        return new Session(userId, source, chunk -> {});
+    }
+
+    /**
+     * Igual a {@link #openSession(Long, TransactionSource)}, avisando {@code onChunk} a cada lote confirmado
+     * (usado para acompanhar o progresso de importações longas).
+     */
+    public Session openSession(Long userId, TransactionSource source, Consumer<BulkImportResult.ChunkResult> onChunk) {
+        return new Session(userId, source, onChunk);
+    }
+
+    private record Row(TransactionDTO dto, String emailMessageId, String fingerprint) {}
+
+    public final class Session implements Consumer<TransactionDTO> {
+
+        private final Long userId;
+        private final TransactionSource source;
+        private final Consumer<BulkImportResult.ChunkResult> onChunk;
+        private final Map<String, TransactionFingerprinter> fingerprinters = new HashMap<>();
+        private final List<Row> buffer = new ArrayList<>(chunkSize);
+        private final List<BulkImportResult.ChunkResult> chunks = new ArrayList<>();
+        private final long startedAt = System.nanoTime();
+
+        private int pendingRejected;
+        private long accepted;
+        private long duplicates;
+        private long rejected;
+        private boolean finished;
+
+        private Session(Long userId, TransactionSource source, Consumer<BulkImportResult.ChunkResult> onChunk) {
+            this.userId = userId;
+            this.source = source;
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public void accept(TransactionDTO dto) {
+            add(dto, null, null);
+        }
+
+        /**
+         * Valida e enfileira uma linha. Linhas inválidas são contadas como rejeitadas no lote atual.
+         * @param emailMessageId ID da mensagem do Gmail de origem (pode ser null)
+         * @param sourceDocument Documento de origem, usado na impressão digital (pode ser null)
+         */
+        public void add(TransactionDTO dto, String emailMessageId, String sourceDocument) {
+            if (finished) {
+                throw new IllegalStateException("Sessão de importação já finalizada.");
+            }
+            String fingerprint = fingerprint(fingerprinters, userId, dto, sourceDocument);
+            if (!isValid(dto)) {
+                pendingRejected++;
+            } else {
+                buffer.add(new Row(dto, emailMessageId, fingerprint));
+            }
+            if (buffer.size() + pendingRejected >= chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Grava o lote pendente e devolve o resultado consolidado.
+         */
+        public BulkImportResult finish() {
+            if (!finished) {
+                flush();
+                finished = true;
+            }
+            long elapsedNanos = System.nanoTime() - startedAt;
+            long elapsedMillis = elapsedNanos / 1_000_000;
+            double seconds = elapsedNanos / 1_000_000_000d;
+            double rowsPerSecond = seconds > 0 ? (accepted + duplicates + rejected) / seconds : 0;
+            logger.info("Importação em massa do usuário {}: {} gravadas, {} duplicadas, {} rejeitadas em {} ms ({} linhas/s)",
+                    userId, accepted, duplicates, rejected, elapsedMillis, Math.round(rowsPerSecond));
+            return new BulkImportResult(accepted, duplicates, rejected, List.copyOf(chunks), elapsedMillis, rowsPerSecond);
+        }
+
+        public long getAccepted() { return accepted; }
+        public long getDuplicates() { return duplicates; }
+        public long getRejected() { return rejected + pendingRejected; }
+
+        private void flush() {
+            if (buffer.isEmpty() && pendingRejected == 0) return;
+            long chunkStart = System.nanoTime();
+            int chunkRejected = pendingRejected;
+            int chunkDuplicates = 0;
+            int chunkAccepted = 0;
+
+            List<Row> novas = withoutExisting(buffer);
+            chunkDuplicates += buffer.size() - novas.size();
+
+            if (!novas.isEmpty()) {
+                LocalDateTime now = LocalDateTime.now();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.batchUpdate(INSERT_SQL, novas, novas.size(), (ps, row) -> bind(ps, row, now));
+                        searchService.indexByFingerprints(fingerprintsOf(novas));
+                        counterService.add(userId, novas.size());
+                        List<Transaction.Snapshot> snapshots = snapshotsOf(novas);
+                        rollupService.addAll(snapshots);
+                        balanceService.addAll(snapshots);
+                        ledgerCache.invalidate(userId);
+                    });
+                    chunkAccepted = novas.size();
+                } catch (DataAccessException e) {
+                    // O lote inteiro foi desfeito: regrava linha a linha para isolar as que falham
+                    logger.warn("Falha no lote {} da importação do usuário {}, regravando linha a linha: {}",
+                            chunks.size(), userId, e.getMostSpecificCause().getMessage());
+                    int[] counts = insertOneByOne(novas, now);
+                    chunkAccepted = counts[0];
+                    chunkDuplicates += counts[1];
+                    chunkRejected += novas.size() - counts[0] - counts[1];
+                }
+            }
+
+            accepted += chunkAccepted;
+            duplicates += chunkDuplicates;
+            rejected += chunkRejected;
+            BulkImportResult.ChunkResult chunk = new BulkImportResult.ChunkResult(chunks.size(), chunkAccepted,
+                    chunkDuplicates, chunkRejected, (System.nanoTime() - chunkStart) / 1_000_000);
+            chunks.add(chunk);
+            buffer.clear();
+            pendingRejected = 0;
+            onChunk.accept(chunk);
+        }
+
+        /**
+         * Remove do lote as linhas cuja impressão digital já está gravada (uma consulta)
+         * e as repetidas dentro do próprio lote.
+         */
+        private List<Row> withoutExisting(List<Row> rows) {
+            Set<String> fingerprints = new HashSet<>();
+            for (Row row : rows) {
+                if (row.fingerprint() != null) fingerprints.add(row.fingerprint());
+            }
+            Set<String> existing = fingerprints.isEmpty() ? Set.of()
+                    : transactionRepository.findExistingFingerprints(fingerprints);
+            Set<String> seen = new HashSet<>();
+            List<Row> novas = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                String fingerprint = row.fingerprint();
+                if (fingerprint == null || (!existing.contains(fingerprint) && seen.add(fingerprint))) {
+                    novas.add(row);
+                }
+            }
+            return novas;
+        }
+
+        /**
+         * @return [gravadas, duplicadas]
+         */
+        private int[] insertOneByOne(List<Row> rows, LocalDateTime now) {
+            int[] counts = new int[2];
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Row> gravadas = new ArrayList<>(rows.size());
+                for (Row row : rows) {
+                    try {
+                        jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row, now));
+                        gravadas.add(row);
+                        counts[0]++;
+                    } catch (DuplicateKeyException duplicate) {
+                        // Gravada por outra importação concorrente
+                        counts[1]++;
+                    } catch (DataAccessException rowError) {
+                        logger.debug("Linha rejeitada na importação: {}", rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+                searchService.indexByFingerprints(fingerprintsOf(gravadas));
+                counterService.add(userId, gravadas.size());
+                List<Transaction.Snapshot> snapshots = snapshotsOf(gravadas);
+                rollupService.addAll(snapshots);
+                balanceService.addAll(snapshots);
+                ledgerCache.invalidate(userId);
+            });
+            return counts;
+        }
+
+        private List<Transaction.Snapshot> snapshotsOf(List<Row> rows) {
+            return rows.stream()
+                    .map(row -> new Transaction.Snapshot(null, userId, row.dto().transactionDate(), row.dto().category(),
+                            typeOf(row.dto()), row.dto().amount()))
+                    .toList();
+        }
+
+        private void bind(PreparedStatement ps, Row row, LocalDateTime now) throws SQLException {
+            TransactionDTO dto = row.dto();
+            Timestamp timestamp = Timestamp.valueOf(now);
+            ps.setString(1, dto.description().trim());
+            ps.setBigDecimal(2, dto.amount());
+            ps.setString(3, typeOf(dto).name());
+            ps.setDate(4, Date.valueOf(dto.transactionDate()));
+            ps.setString(5, source.name());
+            ps.setString(6, row.emailMessageId());
+            ps.setString(7, row.fingerprint());
+            ps.setTimestamp(8, timestamp);
+            ps.setTimestamp(9, timestamp);
+            ps.setLong(10, userId);
+            ps.setString(11, dto.category());
+        }
+    }
+
+    private static List<String> fingerprintsOf(List<Row> rows) {
+        return rows.stream().map(Row::fingerprint).filter(Objects::nonNull).toList();
+    }
+
+    private static String fingerprint(Map<String, TransactionFingerprinter> fingerprinters, Long userId,
+                                      TransactionDTO dto, String sourceDocument) {
+        if (dto == null || dto.transactionDate() == null || dto.amount() == null) return null;
+        String document = sourceDocument == null ? "" : sourceDocument;
+        return fingerprinters.computeIfAbsent(document, doc -> new TransactionFingerprinter(userId, doc))
+                .next(dto.transactionDate(), dto.amount(), dto.description());
+    }
+
+    private static List<ImportedTransactionDTO> inDocumentOrder(Collection<ImportedTransactionDTO> rows) {
+        List<ImportedTransactionDTO> ordered = new ArrayList<>(rows);
+        ordered.sort(Comparator
+                .comparing((ImportedTransactionDTO row) -> row.sourceDocument() == null ? "" : row.sourceDocument())
+                .thenComparing(ImportedTransactionDTO::transactionDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return ordered;
+    }
+
+    /**
+     * Mesmas regras da validação da entidade Transaction, aplicadas antes do INSERT
+     * porque a gravação via JDBC não passa pelo Bean Validation.
+     */
+    static boolean isValid(TransactionDTO dto) {
+        if (dto == null || dto.amount() == null || dto.transactionDate() == null) return false;
+        if (dto.description() == null || dto.description().isBlank()
+                || dto.description().trim().length() > MAX_TEXT_LENGTH) return false;
+        if (dto.category() != null && dto.category().length() > MAX_TEXT_LENGTH) return false;
+
+        TransactionType type = typeOf(dto);
+        if (type == TransactionType.RECEITA) return dto.amount().compareTo(BigDecimal.ZERO) > 0;
+        return dto.amount().compareTo(BigDecimal.ZERO) < 0;
+    }
+
+    static TransactionType typeOf(TransactionDTO dto) {
+        if (dto.type() != null) return dto.type();
+        return dto.amount().signum() >= 0 ? TransactionType.RECEITA : TransactionType.DESPESA;
+    }
+}
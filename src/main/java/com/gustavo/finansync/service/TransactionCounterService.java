@@ -0,0 +1,44 @@
+package com.gustavo.finansync.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Total de transações de cada usuário, mantido em {@code transaction_counters} para que as
+ * listagens não precisem de um COUNT(*) a cada página.
+ *
+ * O total é ajustado na mesma transação de cada gravação: pelo {@link TransactionWriteListener}
+ * nas inclusões e exclusões via JPA e pelo {@link TransactionBulkInsertService} nas importações.
+ * Os usuários que já existiam receberam o contador na migração V10; um usuário sem linha não
+ * tem transações, e o primeiro ajuste cria a linha com o próprio ajuste.
+ */
+@Service
+public class TransactionCounterService {
+
+    private static final String ADD_SQL = "INSERT INTO transaction_counters (user_id, transaction_count) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE transaction_count = transaction_count + ?";
+    private static final String SELECT_SQL = "SELECT transaction_count FROM transaction_counters WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionCounterService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Soma {@code delta} ao total do usuário (participa da transação em andamento)
+     */
+    public void add(Long userId, long delta) {
+        if (delta != 0) jdbcTemplate.update(ADD_SQL, userId, delta, delta);
+    }
+
+    /**
+     * Total de transações do usuário, sem contar as linhas
+     */
+    public long total(Long userId) {
+        List<Long> total = jdbcTemplate.queryForList(SELECT_SQL, Long.class, userId);
+        return total.isEmpty() ? 0 : total.get(0);
+    }
+}
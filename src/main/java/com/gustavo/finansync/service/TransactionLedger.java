@@ -0,0 +1,289 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transações de um usuário em colunas de tipos primitivos, ordenadas por (data, id): data em
+ * dias desde 1970-01-01, valor em centavos, categoria como índice no dicionário do usuário
+ * (0 = sem categoria) e tipo como o ordinal de {@link TransactionType}.
+ *
+ * As agregações são laços sobre as colunas, sem objetos por linha: o período é localizado por
+ * busca binária nas datas e só as linhas dentro dele são percorridas.
+ *
+ * A instância é imutável; as alterações ({@link #with}, {@link #without}) devolvem uma cópia,
+ * o que deixa as leituras em andamento sem sincronização. Cada cópia custa O(n), pensado para
+ * usuários com alguns milhares de transações.
+ */
+public final class TransactionLedger {
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    // Maior total absoluto primeiro; categoria e tipo desempatam, para a ordem não depender do dicionário
+    private static final Comparator<DashboardDTOs.CategoryTotal> BY_TOTAL =
+            Comparator.comparing((DashboardDTOs.CategoryTotal t) -> t.total().abs()).reversed()
+                    .thenComparing(DashboardDTOs.CategoryTotal::category, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(DashboardDTOs.CategoryTotal::type);
+    // Cabeçalho de cada array e referências do objeto, para a estimativa de memória
+    private static final long OVERHEAD_BYTES = 6 * 16 + 64;
+
+    private final long[] ids;
+    private final int[] days;
+    private final long[] cents;
+    private final int[] categoryIds;
+    private final byte[] types;
+    private final String[] categories;
+    private final long bytes;
+
+    private TransactionLedger(long[] ids, int[] days, long[] cents, int[] categoryIds, byte[] types, String[] categories) {
+        this.ids = ids;
+        this.days = days;
+        this.cents = cents;
+        this.categoryIds = categoryIds;
+        this.types = types;
+        this.categories = categories;
+        long size = OVERHEAD_BYTES + ids.length * (8L + 4 + 8 + 4 + 1);
+        for (int c = 1; c < categories.length; c++) {
+            size += 8 + 40 + 2L * categories[c].length();
+        }
+        this.bytes = size;
+    }
+
+    /**
+     * Totais do período
+     * @param category Categoria ("" para sem categoria; null não filtra)
+     * @param type Tipo (null não filtra)
+     */
+    public DashboardDTOs.PeriodTotal totals(LocalDate startDate, LocalDate endDate, String category, TransactionType type) {
+        int categoryId = category == null ? -1 : categoryId(category);
+        int typeId = type == null ? -1 : type.ordinal();
+        long total = 0;
+        long count = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        if (category == null || categoryId >= 0) {
+            for (int i = lowerBound(startDate), end = upperBound(endDate); i < end; i++) {
+                if (categoryId >= 0 && categoryIds[i] != categoryId) continue;
+                if (typeId >= 0 && types[i] != typeId) continue;
+                long value = cents[i];
+                total += value;
+                count++;
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+        }
+        return new DashboardDTOs.PeriodTotal(startDate, endDate, amount(total), count,
+                count == 0 ? null : amount(min), count == 0 ? null : amount(max));
+    }
+
+    /**
+     * Totais do período por categoria e tipo, do maior total absoluto para o menor
+     * @param type Tipo (null não filtra)
+     */
+    public List<DashboardDTOs.CategoryTotal> categories(LocalDate startDate, LocalDate endDate, TransactionType type) {
+        int typeId = type == null ? -1 : type.ordinal();
+        int groups = categories.length * TYPES.length;
+        long[] total = new long[groups];
+        long[] count = new long[groups];
+        long[] min = new long[groups];
+        long[] max = new long[groups];
+        Arrays.fill(min, Long.MAX_VALUE);
+        Arrays.fill(max, Long.MIN_VALUE);
+        for (int i = lowerBound(startDate), end = upperBound(endDate); i < end; i++) {
+            if (typeId >= 0 && types[i] != typeId) continue;
+            int group = categoryIds[i] * TYPES.length + types[i];
+            long value = cents[i];
+            total[group] += value;
+            count[group]++;
+            if (value < min[group]) min[group] = value;
+            if (value > max[group]) max[group] = value;
+        }
+
+        List<DashboardDTOs.CategoryTotal> result = new ArrayList<>();
+        for (int group = 0; group < groups; group++) {
+            if (count[group] == 0) continue;
+            int categoryId = group / TYPES.length;
+            result.add(new DashboardDTOs.CategoryTotal(categoryId == 0 ? null : categories[categoryId],
+                    TYPES[group % TYPES.length], amount(total[group]), count[group], amount(min[group]), amount(max[group])));
+        }
+        result.sort(BY_TOTAL);
+        return result;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Memória estimada das colunas e do dicionário de categorias
+     */
+    public long estimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Cópia com a transação incluída na posição da ordem (data, id)
+     */
+    public TransactionLedger with(Transaction.Snapshot transaction) {
+        String[] dictionary = categories;
+        int categoryId = transaction.category() == null ? 0 : categoryId(transaction.category());
+        if (categoryId < 0) {
+            dictionary = Arrays.copyOf(categories, categories.length + 1);
+            categoryId = categories.length;
+            dictionary[categoryId] = transaction.category();
+        }
+        int day = (int) transaction.transactionDate().toEpochDay();
+        long id = transaction.id();
+        int at = upperBound(day);
+        while (at > 0 && days[at - 1] == day && ids[at - 1] > id) at--;
+
+        int n = ids.length;
+        long[] newIds = new long[n + 1];
+        int[] newDays = new int[n + 1];
+        long[] newCents = new long[n + 1];
+        int[] newCategoryIds = new int[n + 1];
+        byte[] newTypes = new byte[n + 1];
+        System.arraycopy(ids, 0, newIds, 0, at);
+        System.arraycopy(days, 0, newDays, 0, at);
+        System.arraycopy(cents, 0, newCents, 0, at);
+        System.arraycopy(categoryIds, 0, newCategoryIds, 0, at);
+        System.arraycopy(types, 0, newTypes, 0, at);
+        newIds[at] = id;
+        newDays[at] = day;
+        newCents[at] = cents(transaction.amount());
+        newCategoryIds[at] = categoryId;
+        newTypes[at] = (byte) transaction.type().ordinal();
+        System.arraycopy(ids, at, newIds, at + 1, n - at);
+        System.arraycopy(days, at, newDays, at + 1, n - at);
+        System.arraycopy(cents, at, newCents, at + 1, n - at);
+        System.arraycopy(categoryIds, at, newCategoryIds, at + 1, n - at);
+        System.arraycopy(types, at, newTypes, at + 1, n - at);
+        return new TransactionLedger(newIds, newDays, newCents, newCategoryIds, newTypes, dictionary);
+    }
+
+    /**
+     * Cópia sem a transação; a própria instância se ela não estiver aqui
+     */
+    public TransactionLedger without(long id) {
+        int at = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                at = i;
+                break;
+            }
+        }
+        if (at < 0) return this;
+
+        int n = ids.length;
+        long[] newIds = new long[n - 1];
+        int[] newDays = new int[n - 1];
+        long[] newCents = new long[n - 1];
+        int[] newCategoryIds = new int[n - 1];
+        byte[] newTypes = new byte[n - 1];
+        System.arraycopy(ids, 0, newIds, 0, at);
+        System.arraycopy(days, 0, newDays, 0, at);
+        System.arraycopy(cents, 0, newCents, 0, at);
+        System.arraycopy(categoryIds, 0, newCategoryIds, 0, at);
+        System.arraycopy(types, 0, newTypes, 0, at);
+        System.arraycopy(ids, at + 1, newIds, at, n - at - 1);
+        System.arraycopy(days, at + 1, newDays, at, n - at - 1);
+        System.arraycopy(cents, at + 1, newCents, at, n - at - 1);
+        System.arraycopy(categoryIds, at + 1, newCategoryIds, at, n - at - 1);
+        System.arraycopy(types, at + 1, newTypes, at, n - at - 1);
+        // A categoria fica no dicionário mesmo sem transações: não aparece nas agregações
+        return new TransactionLedger(newIds, newDays, newCents, newCategoryIds, newTypes, categories);
+    }
+
+    static long cents(BigDecimal amount) {
+        // Mesmo arredondamento da coluna decimal(15,2)
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private int categoryId(String category) {
+        if (category.isEmpty()) return 0;
+        for (int c = 1; c < categories.length; c++) {
+            if (categories[c].equals(category)) return c;
+        }
+        return -1;
+    }
+
+    // Primeira linha com data >= startDate (0 se null)
+    private int lowerBound(LocalDate startDate) {
+        return startDate == null ? 0 : lowerBound((int) startDate.toEpochDay());
+    }
+
+    // Primeira linha com data > endDate (size() se null)
+    private int upperBound(LocalDate endDate) {
+        return endDate == null ? ids.length : upperBound((int) endDate.toEpochDay());
+    }
+
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int upperBound(int day) {
+        return day == Integer.MAX_VALUE ? days.length : lowerBound(day + 1);
+    }
+
+    /**
+     * Monta as colunas a partir das linhas lidas na ordem (data, id)
+     */
+    static final class Builder {
+
+        private long[] ids = new long[256];
+        private int[] days = new int[256];
+        private long[] cents = new long[256];
+        private int[] categoryIds = new int[256];
+        private byte[] types = new byte[256];
+        private final List<String> categories = new ArrayList<>(List.of(""));
+        private final Map<String, Integer> categoryIndex = new HashMap<>();
+        private int size;
+
+        void add(long id, LocalDate date, BigDecimal amount, String category, TransactionType type) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                days = Arrays.copyOf(days, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            ids[size] = id;
+            days[size] = (int) date.toEpochDay();
+            cents[size] = cents(amount);
+            categoryIds[size] = category == null || category.isEmpty() ? 0
+                    : categoryIndex.computeIfAbsent(category, c -> {
+                        categories.add(c);
+                        return categories.size() - 1;
+                    });
+            types[size] = (byte) type.ordinal();
+            size++;
+        }
+
+        TransactionLedger build() {
+            return new TransactionLedger(Arrays.copyOf(ids, size), Arrays.copyOf(days, size), Arrays.copyOf(cents, size),
+                    Arrays.copyOf(categoryIds, size), Arrays.copyOf(types, size), categories.toArray(new String[0]));
+        }
+    }
+}
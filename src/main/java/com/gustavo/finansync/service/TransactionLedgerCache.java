@@ -0,0 +1,216 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache em memória das transações de cada usuário em colunas ({@link TransactionLedger}), para
+ * as consultas analíticas (totais por período, categoria e tipo) não irem ao banco a cada
+ * chamada. O usuário é carregado na primeira consulta, com uma única leitura das colunas usadas.
+ *
+ * As gravações via JPA (ver {@link TransactionWriteListener}) são aplicadas ao cache depois do
+ * commit: inclusões e exclusões alteram as colunas e as importações em massa descartam o
+ * usuário. Um carregamento que cruze com o commit de uma gravação do mesmo usuário não é
+ * guardado, para o cache não ficar com o estado anterior a ela.
+ *
+ * A memória total é limitada por {@code finansync.ledger-cache.max-bytes} (estimativa do tamanho
+ * das colunas); ao passar do limite saem os usuários consultados há mais tempo (LRU). Com
+ * {@code finansync.ledger-cache.enabled=false} as consultas carregam as colunas a cada chamada.
+ */
+@Service
+public class TransactionLedgerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionLedgerCache.class);
+
+    private static final String LOAD_SQL = "SELECT id, transaction_date, amount, category, type " +
+            "FROM transactions WHERE user_id = ? ORDER BY transaction_date, id";
+    // Versões de gravação por faixa de usuários, para descartar carregamentos que cruzaram um commit
+    private static final int WRITE_STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxBytes;
+    private final boolean enabled;
+
+    // Acessos e alterações sob synchronized (ledgers)
+    private final LinkedHashMap<Long, TransactionLedger> ledgers = new LinkedHashMap<>(64, 0.75f, true);
+    private final long[] writeVersions = new long[WRITE_STRIPES];
+    private long usedBytes;
+
+    public TransactionLedgerCache(JdbcTemplate jdbcTemplate,
+                                  @Value("${finansync.ledger-cache.max-bytes:67108864}") long maxBytes,
+                                  @Value("${finansync.ledger-cache.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBytes = maxBytes;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Totais do período (datas null não limitam), no filtro pedido e por categoria
+     * @param category Categoria ("" para sem categoria; null não filtra os totais)
+     * @param type Tipo (null não filtra)
+     */
+    public DashboardDTOs.Analytics analytics(Long userId, LocalDate startDate, LocalDate endDate, String category,
+                                             TransactionType type) {
+        TransactionLedger ledger = ledger(userId);
+        return new DashboardDTOs.Analytics(ledger.totals(startDate, endDate, category, type),
+                ledger.categories(startDate, endDate, type));
+    }
+
+    /**
+     * Colunas do usuário, do cache ou lidas do banco
+     */
+    public TransactionLedger ledger(Long userId) {
+        if (!enabled) return load(userId);
+        long version;
+        synchronized (ledgers) {
+            TransactionLedger cached = ledgers.get(userId);
+            if (cached != null) return cached;
+            version = writeVersions[stripe(userId)];
+        }
+        TransactionLedger loaded = load(userId);
+        // Dentro de uma transação de escrita a leitura pode incluir gravações ainda não confirmadas
+        boolean writing = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!writing) {
+            synchronized (ledgers) {
+                if (writeVersions[stripe(userId)] == version && !ledgers.containsKey(userId)) {
+                    put(userId, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Inclui a transação gravada no cache do usuário, depois do commit
+     */
+    public void inserted(Transaction.Snapshot transaction) {
+        if (transaction.id() == null) {
+            invalidate(transaction.userId());
+            return;
+        }
+        afterCommit(transaction.userId(), ledger -> ledger.with(transaction));
+    }
+
+    /**
+     * Troca a transação alterada no cache do usuário, depois do commit
+     */
+    public void updated(Transaction.Snapshot before, Transaction.Snapshot after) {
+        if (after.id() == null || !after.userId().equals(before.userId())) {
+            invalidate(before.userId());
+            invalidate(after.userId());
+            return;
+        }
+        afterCommit(after.userId(), ledger -> ledger.without(after.id()).with(after));
+    }
+
+    /**
+     * Retira a transação excluída do cache do usuário, depois do commit
+     */
+    public void deleted(Transaction.Snapshot transaction) {
+        if (transaction.id() == null) {
+            invalidate(transaction.userId());
+            return;
+        }
+        afterCommit(transaction.userId(), ledger -> ledger.without(transaction.id()));
+    }
+
+    /**
+     * Descarta o cache do usuário depois do commit (gravações sem os ids, como as importações em massa)
+     */
+    public void invalidate(Long userId) {
+        afterCommit(userId, null);
+    }
+
+    public boolean isCached(Long userId) {
+        synchronized (ledgers) {
+            return ledgers.containsKey(userId);
+        }
+    }
+
+    /**
+     * Memória estimada dos usuários em cache
+     */
+    public long cachedBytes() {
+        synchronized (ledgers) {
+            return usedBytes;
+        }
+    }
+
+    private void afterCommit(Long userId, UnaryOperator<TransactionLedger> patch) {
+        if (!enabled) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, patch);
+                }
+            });
+        } else {
+            apply(userId, patch);
+        }
+    }
+
+    private void apply(Long userId, UnaryOperator<TransactionLedger> patch) {
+        synchronized (ledgers) {
+            writeVersions[stripe(userId)]++;
+            TransactionLedger cached = ledgers.remove(userId);
+            if (cached == null) return;
+            usedBytes -= cached.estimatedBytes();
+            if (patch != null) put(userId, patch.apply(cached));
+        }
+    }
+
+    // Chamado com o lock de ledgers
+    private void put(Long userId, TransactionLedger ledger) {
+        if (ledger.estimatedBytes() > maxBytes) {
+            logger.debug("Transações do usuário {} ({} bytes) não cabem no cache", userId, ledger.estimatedBytes());
+            return;
+        }
+        ledgers.put(userId, ledger);
+        usedBytes += ledger.estimatedBytes();
+        Iterator<Map.Entry<Long, TransactionLedger>> eldest = ledgers.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Long, TransactionLedger> entry = eldest.next();
+            if (entry.getKey().equals(userId)) continue;
+            usedBytes -= entry.getValue().estimatedBytes();
+            eldest.remove();
+            logger.debug("Usuário {} removido do cache de transações (LRU)", entry.getKey());
+        }
+    }
+
+    private TransactionLedger load(Long userId) {
+        long start = System.nanoTime();
+        TransactionLedger.Builder builder = new TransactionLedger.Builder();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            builder.add(rs.getLong("id"), rs.getDate("transaction_date").toLocalDate(), rs.getBigDecimal("amount"),
+                    rs.getString("category"), TransactionType.valueOf(rs.getString("type")));
+        }, userId);
+        TransactionLedger ledger = builder.build();
+        logger.debug("Transações do usuário {} carregadas em colunas: {} linhas em {} ms",
+                userId, ledger.size(), (System.nanoTime() - start) / 1_000_000);
+        return ledger;
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) WRITE_STRIPES);
+    }
+}
@@ -0,0 +1,257 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Totais mensais das transações por usuário, categoria e tipo (soma, quantidade, menor e
+ * maior valor) em {@code transaction_rollups}, para que o dashboard não precise somar as
+ * transações: o custo das leituras depende do número de meses e categorias, não de linhas.
+ *
+ * Os totais são ajustados na mesma transação de cada gravação: pelo {@link TransactionWriteListener}
+ * nas inclusões, alterações e exclusões via JPA e pelo {@link TransactionBulkInsertService} e
+ * {@link ImportStagingService} nas importações. Ao retirar uma transação que era o menor ou o
+ * maior valor do mês, os extremos são recalculados só para aquele mês, categoria e tipo.
+ *
+ * Usuários sem linha em {@code transaction_rollup_state} (anteriores à tabela) têm os totais
+ * recalculados a partir das transações na primeira leitura; {@link #rebuild} refaz os totais
+ * a qualquer momento.
+ */
+@Service
+public class TransactionRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRollupService.class);
+
+    private static final String KEY = " WHERE user_id = ? AND month_start = ? AND category = ? AND type = ?";
+    private static final String ADD_SQL = "UPDATE transaction_rollups SET total = total + ?, " +
+            "transaction_count = transaction_count + ?, min_amount = LEAST(min_amount, ?), " +
+            "max_amount = GREATEST(max_amount, ?)" + KEY;
+    private static final String INSERT_SQL = "INSERT INTO transaction_rollups (total, transaction_count, " +
+            "min_amount, max_amount, user_id, month_start, category, type) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SUBTRACT_SQL = "UPDATE transaction_rollups SET total = total - ?, " +
+            "transaction_count = transaction_count - 1" + KEY;
+    private static final String SELECT_BUCKET_SQL =
+            "SELECT transaction_count, min_amount, max_amount FROM transaction_rollups" + KEY;
+    private static final String DELETE_BUCKET_SQL = "DELETE FROM transaction_rollups" + KEY;
+    private static final String SET_BOUNDS_SQL = "UPDATE transaction_rollups SET min_amount = ?, max_amount = ?" + KEY;
+    private static final String BUCKET_BOUNDS_SQL = "SELECT MIN(amount) AS min_amount, MAX(amount) AS max_amount " +
+            "FROM transactions WHERE user_id = ? AND type = ? AND transaction_date BETWEEN ? AND ? " +
+            "AND COALESCE(category, '') = ? AND id <> ?";
+    private static final String REBUILD_SOURCE_SQL = "SELECT transaction_date, category, type, SUM(amount) AS total, " +
+            "COUNT(*) AS transaction_count, MIN(amount) AS min_amount, MAX(amount) AS max_amount " +
+            "FROM transactions WHERE user_id = ? GROUP BY transaction_date, category, type";
+    private static final String MARK_BUILT_SQL = "UPDATE transaction_rollup_state SET rebuilt_at = ? WHERE user_id = ?";
+    private static final String INSERT_STATE_SQL =
+            "INSERT INTO transaction_rollup_state (rebuilt_at, user_id) VALUES (?, ?)";
+    private static final String SUMMARY_SQL = "SELECT month_start, type, SUM(total) AS total, " +
+            "SUM(transaction_count) AS transaction_count FROM transaction_rollups " +
+            "WHERE user_id = ? AND month_start BETWEEN ? AND ? GROUP BY month_start, type";
+    private static final String CATEGORIES_SQL = "SELECT category, type, SUM(total) AS total, " +
+            "SUM(transaction_count) AS transaction_count, MIN(min_amount) AS min_amount, MAX(max_amount) AS max_amount " +
+            "FROM transaction_rollups WHERE user_id = ? AND month_start BETWEEN ? AND ? %s GROUP BY category, type";
+
+    /**
+     * Mês, categoria ('' para sem categoria) e tipo de um usuário
+     */
+    private record Key(long userId, LocalDate month, String category, TransactionType type) {
+
+        static Key of(Long userId, LocalDate date, String category, TransactionType type) {
+            return new Key(userId, date.withDayOfMonth(1), category == null ? "" : category, type);
+        }
+
+        Object[] args(Object... before) {
+            Object[] args = new Object[before.length + 4];
+            System.arraycopy(before, 0, args, 0, before.length);
+            args[before.length] = userId;
+            args[before.length + 1] = Date.valueOf(month);
+            args[before.length + 2] = category;
+            args[before.length + 3] = type.name();
+            return args;
+        }
+    }
+
+    private static final class Totals {
+        BigDecimal total = BigDecimal.ZERO;
+        long count;
+        BigDecimal min;
+        BigDecimal max;
+
+        void add(BigDecimal sum, long rows, BigDecimal low, BigDecimal high) {
+            total = total.add(sum);
+            count += rows;
+            min = min == null || low.compareTo(min) < 0 ? low : min;
+            max = max == null || high.compareTo(max) > 0 ? high : max;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate rebuildTemplate;
+
+    public TransactionRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Roda em transação própria: a reconstrução pode ser disparada por leituras somente leitura
+        this.rebuildTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Soma as transações aos totais (participa da transação em andamento)
+     */
+    public void addAll(Collection<Transaction.Snapshot> transactions) {
+        Map<Key, Totals> totals = new LinkedHashMap<>();
+        for (Transaction.Snapshot t : transactions) {
+            totals.computeIfAbsent(Key.of(t.userId(), t.transactionDate(), t.category(), t.type()), k -> new Totals())
+                    .add(t.amount(), 1, t.amount(), t.amount());
+        }
+        totals.forEach(this::apply);
+    }
+
+    public void add(Transaction.Snapshot transaction) {
+        addAll(List.of(transaction));
+    }
+
+    /**
+     * Retira uma transação dos totais (participa da transação em andamento). Os extremos são
+     * recalculados sem a linha da própria transação, que pode ainda estar com os valores antigos
+     * em {@code transactions} (o UPDATE/DELETE do Hibernate sai em lote, depois do callback).
+     */
+    public void remove(Transaction.Snapshot transaction) {
+        Key key = Key.of(transaction.userId(), transaction.transactionDate(), transaction.category(), transaction.type());
+        BigDecimal amount = transaction.amount();
+        if (jdbcTemplate.update(SUBTRACT_SQL, key.args(amount)) == 0) return;
+
+        Map<String, Object> bucket = jdbcTemplate.queryForMap(SELECT_BUCKET_SQL, key.args());
+        if (((Number) bucket.get("transaction_count")).longValue() <= 0) {
+            jdbcTemplate.update(DELETE_BUCKET_SQL, key.args());
+        } else if (amount.compareTo((BigDecimal) bucket.get("min_amount")) == 0
+                || amount.compareTo((BigDecimal) bucket.get("max_amount")) == 0) {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(BUCKET_BOUNDS_SQL, key.userId(), key.type().name(),
+                    Date.valueOf(key.month()), Date.valueOf(key.month().plusMonths(1).minusDays(1)), key.category(),
+                    transaction.id() != null ? transaction.id() : -1L);
+            jdbcTemplate.update(SET_BOUNDS_SQL, key.args(bounds.get("min_amount"), bounds.get("max_amount")));
+        }
+    }
+
+    /**
+     * Refaz os totais do usuário a partir das transações
+     */
+    public void rebuild(Long userId) {
+        long start = System.nanoTime();
+        Map<Key, Totals> totals = new LinkedHashMap<>();
+        rebuildTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM transaction_rollups WHERE user_id = ?", userId);
+            // Agrupado por dia no banco e por mês aqui, sem depender de funções de data do SQL
+            jdbcTemplate.query(REBUILD_SOURCE_SQL, rs -> {
+                Key key = Key.of(userId, rs.getDate("transaction_date").toLocalDate(), rs.getString("category"),
+                        TransactionType.valueOf(rs.getString("type")));
+                totals.computeIfAbsent(key, k -> new Totals()).add(rs.getBigDecimal("total"),
+                        rs.getLong("transaction_count"), rs.getBigDecimal("min_amount"), rs.getBigDecimal("max_amount"));
+            }, userId);
+            List<Object[]> rows = new ArrayList<>(totals.size());
+            totals.forEach((key, t) -> rows.add(key.args(t.total, t.count, t.min, t.max)));
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            if (jdbcTemplate.update(MARK_BUILT_SQL, now, userId) == 0) {
+                jdbcTemplate.update(INSERT_STATE_SQL, now, userId);
+            }
+        });
+        logger.info("Totais mensais do usuário {} recalculados: {} grupos em {} ms",
+                userId, totals.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Receitas, despesas e saldo do período, no total e mês a mês
+     */
+    public DashboardDTOs.Summary summary(Long userId, YearMonth start, YearMonth end) {
+        ensureBuilt(userId);
+        Map<YearMonth, BigDecimal[]> amounts = new TreeMap<>();
+        Map<YearMonth, Long> counts = new TreeMap<>();
+        jdbcTemplate.query(SUMMARY_SQL, rs -> {
+            YearMonth month = YearMonth.from(rs.getDate("month_start").toLocalDate());
+            BigDecimal[] byType = amounts.computeIfAbsent(month, m -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            byType[TransactionType.valueOf(rs.getString("type")) == TransactionType.RECEITA ? 0 : 1] = rs.getBigDecimal("total");
+            counts.merge(month, rs.getLong("transaction_count"), Long::sum);
+        }, userId, Date.valueOf(start.atDay(1)), Date.valueOf(end.atDay(1)));
+
+        BigDecimal income = BigDecimal.ZERO;
+        BigDecimal expenses = BigDecimal.ZERO;
+        long count = 0;
+        List<DashboardDTOs.MonthTotal> months = new ArrayList<>(amounts.size());
+        for (Map.Entry<YearMonth, BigDecimal[]> month : amounts.entrySet()) {
+            BigDecimal[] byType = month.getValue();
+            long monthCount = counts.get(month.getKey());
+            months.add(new DashboardDTOs.MonthTotal(month.getKey(), byType[0], byType[1], byType[0].add(byType[1]), monthCount));
+            income = income.add(byType[0]);
+            expenses = expenses.add(byType[1]);
+            count += monthCount;
+        }
+        return new DashboardDTOs.Summary(start, end, income, expenses, income.add(expenses), count, months);
+    }
+
+    /**
+     * Totais por categoria no período, das maiores para as menores em valor absoluto
+     * @param type Tipo das transações (null para ambos)
+     */
+    public List<DashboardDTOs.CategoryTotal> categories(Long userId, YearMonth start, YearMonth end, TransactionType type) {
+        ensureBuilt(userId);
+        List<Object> args = new ArrayList<>(List.of(userId, Date.valueOf(start.atDay(1)), Date.valueOf(end.atDay(1))));
+        if (type != null) args.add(type.name());
+        List<DashboardDTOs.CategoryTotal> totals = jdbcTemplate.query(
+                String.format(CATEGORIES_SQL, type != null ? "AND type = ?" : ""),
+                (rs, rowNum) -> {
+                    String category = rs.getString("category");
+                    return new DashboardDTOs.CategoryTotal(category.isEmpty() ? null : category,
+                            TransactionType.valueOf(rs.getString("type")), rs.getBigDecimal("total"),
+                            rs.getLong("transaction_count"), rs.getBigDecimal("min_amount"), rs.getBigDecimal("max_amount"));
+                }, args.toArray());
+        return totals.stream()
+                .sorted(Comparator.comparing((DashboardDTOs.CategoryTotal t) -> t.total().abs()).reversed())
+                .toList();
+    }
+
+    private void ensureBuilt(Long userId) {
+        Integer built = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transaction_rollup_state WHERE user_id = ?", Integer.class, userId);
+        if (built != null && built > 0) return;
+        try {
+            rebuild(userId);
+        } catch (DuplicateKeyException e) {
+            // Outra requisição reconstruiu os totais ao mesmo tempo
+        }
+    }
+
+    private void apply(Key key, Totals totals) {
+        Object[] args = key.args(totals.total, totals.count, totals.min, totals.max);
+        if (jdbcTemplate.update(ADD_SQL, args) > 0) return;
+        try {
+            jdbcTemplate.update(INSERT_SQL, args);
+        } catch (DuplicateKeyException e) {
+            // Criado por outra transação entre o UPDATE e o INSERT
+            jdbcTemplate.update(ADD_SQL, args);
+        }
+    }
+}
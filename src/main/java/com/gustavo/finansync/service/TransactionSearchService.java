@@ -0,0 +1,203 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionSpecifications;
+import com.gustavo.finansync.util.TextNormalizer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Índice de busca das descrições das transações.
+ *
+ * Cada transação guarda a descrição normalizada (minúsculas, sem acentos) em {@code search_text}
+ * e os trigramas das suas palavras em {@code transaction_search_grams}, por usuário. Uma busca
+ * parte dos trigramas das palavras digitadas para chegar às candidatas e só então confere o
+ * trecho no texto (ver {@link TransactionSpecifications#filtered}), então o custo depende das
+ * transações que contêm os trigramas, e não do total de transações do usuário.
+ *
+ * O índice é atualizado na mesma transação do banco em toda gravação: pelo
+ * {@link TransactionWriteListener} nas gravações via JPA e pelo
+ * {@link TransactionBulkInsertService} nas importações. As linhas gravadas antes do índice
+ * existir são indexadas na migração (V8); as que ainda aparecerem sem {@code search_text}
+ * (gravadas por um nó da versão anterior durante a atualização) são indexadas em segundo plano
+ * pelo líder do cluster.
+ */
+@Service
+public class TransactionSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionSearchService.class);
+
+    private static final String DELETE_GRAMS_SQL = "DELETE FROM transaction_search_grams WHERE transaction_id IN (%s)";
+    private static final String INSERT_GRAM_SQL =
+            "INSERT INTO transaction_search_grams (user_id, gram, transaction_id) VALUES (?, ?, ?)";
+    private static final String UPDATE_TEXT_SQL = "UPDATE transactions SET search_text = ? WHERE id = ?";
+    private static final String SELECT_BY_FINGERPRINT_SQL =
+            "SELECT id, user_id, description FROM transactions WHERE fingerprint IN (%s)";
+    private static final String SELECT_PENDING_SQL = "SELECT id, user_id, description FROM transactions " +
+            "WHERE id > ? AND search_text IS NULL ORDER BY id LIMIT ?";
+
+    private static final RowMapper<Document> DOCUMENT_MAPPER = (rs, rowNum) ->
+            new Document(rs.getLong("id"), rs.getLong("user_id"), rs.getString("description"));
+
+    /**
+     * Descrição de uma transação a indexar
+     */
+    record Document(long id, long userId, String description) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterCoordinator clusterCoordinator;
+    private final int backfillBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Posição da indexação em segundo plano (id da última linha conferida)
+    private long backfillAfterId;
+    private volatile boolean backfillDone;
+
+    public TransactionSearchService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    ClusterCoordinator clusterCoordinator,
+                                    @Value("${finansync.search.backfill-batch:1000}") int backfillBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clusterCoordinator = clusterCoordinator;
+        this.backfillBatchSize = Math.max(1, backfillBatchSize);
+    }
+
+    /**
+     * Página das transações do usuário que contêm todas as palavras da busca, da mais relevante
+     * para a menos relevante: palavras encontradas no início de uma palavra da descrição
+     * valem mais que no meio, e a descrição que começa pela busca vem primeiro. Empates saem
+     * das mais recentes para as mais antigas.
+     *
+     * A relevância é calculada pelo banco (CASE sobre o texto normalizado) e a ordenação e a
+     * paginação vão no próprio SELECT, então só as linhas da página chegam à aplicação; as
+     * candidatas continuam vindo do índice de trigramas ({@link TransactionSpecifications#filtered}).
+     * @param query Texto digitado; maiúsculas e acentos são ignorados
+     */
+    public List<TransactionDTO> rank(User user, String query, long offset, int limit) {
+        String normalized = TextNormalizer.normalize(query);
+        if (normalized.isEmpty()) return List.of();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionDTO> criteria = cb.createQuery(TransactionDTO.class);
+        Root<Transaction> root = criteria.from(Transaction.class);
+        criteria.select(cb.construct(TransactionDTO.class, root.get("id"), root.get("description"),
+                        root.get("category"), root.get("amount"), root.get("transactionDate"), root.get("type")))
+                .where(TransactionSpecifications.filtered(user, normalized, null, null).toPredicate(root, criteria, cb))
+                .orderBy(cb.desc(score(cb, root.get("searchText"), normalized)),
+                        cb.desc(root.get("transactionDate")), cb.desc(root.get("id")));
+        return entityManager.createQuery(criteria)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList();
+    }
+
+    /**
+     * Indexa uma transação gravada via JPA (participa da transação em andamento)
+     */
+    public void index(Transaction transaction) {
+        index(List.of(new Document(transaction.getId(), transaction.getUser().getId(), transaction.getDescription())));
+    }
+
+    /**
+     * Indexa as transações com as impressões digitais informadas (linhas gravadas via JDBC)
+     */
+    public void indexByFingerprints(Collection<String> fingerprints) {
+        if (fingerprints.isEmpty()) return;
+        List<Document> documents = jdbcTemplate.query(
+                String.format(SELECT_BY_FINGERPRINT_SQL, placeholders(fingerprints.size())),
+                DOCUMENT_MAPPER, fingerprints.toArray());
+        index(documents);
+    }
+
+    /**
+     * Indexa um lote das linhas que ainda não têm texto de busca. Percorre a tabela uma vez
+     * por inicialização, pela chave primária, e só roda no líder.
+     */
+    @Scheduled(fixedDelayString = "${finansync.search.backfill-ms:5000}",
+            initialDelayString = "${finansync.search.backfill-ms:5000}")
+    public synchronized void indexPending() {
+        if (backfillDone || !clusterCoordinator.isLeader()) return;
+        List<Document> documents = jdbcTemplate.query(SELECT_PENDING_SQL, DOCUMENT_MAPPER,
+                backfillAfterId, backfillBatchSize);
+        if (documents.isEmpty()) {
+            backfillDone = true;
+            logger.info("Índice de busca das transações completo (até o id {})", backfillAfterId);
+            return;
+        }
+        index(documents);
+        backfillAfterId = documents.get(documents.size() - 1).id();
+    }
+
+    boolean isBackfillDone() {
+        return backfillDone;
+    }
+
+    /**
+     * Regrava o texto normalizado e os trigramas das transações, em uma transação
+     * (ou na transação em andamento)
+     */
+    void index(List<Document> documents) {
+        if (documents.isEmpty()) return;
+        List<Object[]> grams = new ArrayList<>();
+        List<Object[]> texts = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String text = TextNormalizer.normalize(document.description());
+            texts.add(new Object[]{text, document.id()});
+            for (String gram : TextNormalizer.trigrams(text)) {
+                grams.add(new Object[]{document.userId(), gram, document.id()});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(String.format(DELETE_GRAMS_SQL, placeholders(documents.size())),
+                    documents.stream().map(Document::id).toArray());
+            jdbcTemplate.batchUpdate(INSERT_GRAM_SQL, grams);
+            jdbcTemplate.batchUpdate(UPDATE_TEXT_SQL, texts);
+        });
+    }
+
+    /**
+     * Relevância: 1 se o texto começa pela busca, mais 2 por palavra encontrada no início de uma
+     * palavra do texto e 1 por palavra encontrada no meio
+     */
+    private static Expression<Integer> score(CriteriaBuilder cb, Expression<String> text, String normalized) {
+        Expression<Integer> score = cb.<Integer>selectCase()
+                .when(cb.like(text, TransactionSpecifications.escapeLike(normalized) + "%", '\\'), 1)
+                .otherwise(0);
+        for (String word : normalized.split(" ")) {
+            String escaped = TransactionSpecifications.escapeLike(word);
+            score = cb.sum(score, cb.<Integer>selectCase()
+                    .when(cb.or(cb.like(text, escaped + "%", '\\'), cb.like(text, "% " + escaped + "%", '\\')), 2)
+                    .otherwise(1));
+        }
+        return score;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -1,42 +1,64 @@
 package com.gustavo.finansync.service;
 
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.CursorPageDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
 import com.gustavo.finansync.dto.TransactionDTO;
 import com.gustavo.finansync.entity.Transaction;
 import com.gustavo.finansync.entity.TransactionSource;
 import com.gustavo.finansync.entity.User;
 import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.TransactionSpecifications;
 import com.gustavo.finansync.repository.UserRepository;
-import jakarta.persistence.criteria.Predicate;
+import com.gustavo.finansync.util.TextNormalizer;
+import com.gustavo.finansync.util.TransactionCursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import java.time.LocalDate;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
+    // Maior página aceita na listagem por keyset
+    private static final int MAX_CURSOR_PAGE_SIZE = 500;
+
     private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
-
-    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository) {
+    private final TransactionBulkInsertService bulkInsertService;
+    private final TransactionSearchService searchService;
+    private final TransactionCounterService counterService;
+    private final int streamFetchSize;
+
+    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository,
+                              TransactionBulkInsertService bulkInsertService, TransactionSearchService searchService,
+                              TransactionCounterService counterService,
+                              @Value("${finansync.transactions.stream-fetch-size:500}") int streamFetchSize) {
         this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
+        this.bulkInsertService = bulkInsertService;
+        this.searchService = searchService;
+        this.counterService = counterService;
+        this.streamFetchSize = Math.max(1, streamFetchSize);
     }
 
     @Transactional
     public TransactionDTO create(TransactionDTO dto, Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Usuário não encontrado"));
+        // O id vem do token: uma referência basta para gravar a chave estrangeira, sem SELECT
+        User user = userRepository.getReferenceById(userId);
 
         Transaction transaction = new Transaction();
         // Mapeamento do DTO para a entidade
@@ -53,35 +75,14 @@ public class TransactionService {
 
     @Transactional(readOnly = true)
     public Page<TransactionDTO> findAll(String description, int page, int size, Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Usuário não encontrado"));
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-
-        Page<Transaction> transactionPage;
-        if (description != null && !description.isEmpty()) {
-            transactionPage = transactionRepository.findByUserAndDescriptionContainingIgnoreCaseOrderByTransactionDateDesc(user, description, pageable);
-        } else {
-            transactionPage = transactionRepository.findAll(pageable);
-        }
-
-        return transactionPage.map(this::toDTO);
+        // O id vem do token: as consultas só precisam da chave, sem SELECT do usuário
+        return findAllByUser(userRepository.getReferenceById(userId), description, page, size);
     }
 
     // NOVO: usado pelo controller passando o User autenticado
     @Transactional(readOnly = true)
     public Page<TransactionDTO> findAllByUser(User user, String description, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-
-        Page<Transaction> transactionPage;
-        if (description != null && !description.isEmpty()) {
-            transactionPage = transactionRepository
-                    .findByUserAndDescriptionContainingIgnoreCaseOrderByTransactionDateDesc(user, description, pageable);
-        } else {
-            transactionPage = transactionRepository
-                    .findByUserOrderByTransactionDateDesc(user, pageable);
-        }
-        return transactionPage.map(this::toDTO);
+        return findByDateRange(user, description, null, null, page, size);
     }
 
     @Transactional
@@ -143,21 +144,20 @@ public class TransactionService {
         );
     }
 
-    @Transactional
-    public void saveImportedTransactions(List<TransactionDTO> dtos, User user) {
-        for (TransactionDTO dto : dtos) {
-            Transaction transaction = new Transaction();
-            transaction.setDescription(dto.description());
-            transaction.setCategory(dto.category());
-            transaction.setAmount(dto.amount());
-            transaction.setTransactionDate(dto.transactionDate());
-            transaction.setType(dto.type());
-            transaction.setUser(user);
-            transaction.setSource(TransactionSource.EMAIL_IMPORT); // Marca como importada por email
-            transactionRepository.save(transaction);
-        }
+    /**
+     * Grava as transações importadas em lotes via JDBC (ver {@link TransactionBulkInsertService}).
+     * Linhas que já existem (mesma impressão digital) são ignoradas e contadas como duplicadas.
+     * Cada lote é confirmado separadamente; o resultado traz os totais por lote.
+     */
+    public BulkImportResult saveImportedTransactions(List<ImportedTransactionDTO> dtos, User user) {
+        return bulkInsertService.insertAll(dtos, user.getId(), TransactionSource.EMAIL_IMPORT);
     }
 
+    /**
+     * Listagem paginada por offset (com contagem total; sem filtros o total vem do contador do
+     * usuário). Para páginas profundas prefira {@link #findByDateRangeAfter}, cujo custo não
+     * cresce com a posição.
+     */
     @Transactional(readOnly = true)
     public Page<TransactionDTO> findByDateRange(
             User user,
@@ -167,87 +167,133 @@ public class TransactionService {
             int page,
             int size
     ) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> transactionPage;
-
-        if (startDate != null && endDate != null) {
-            if (description != null && !description.isEmpty()) {
-                transactionPage = transactionRepository
-                        .findByUserAndDescriptionContainingIgnoreCaseAndTransactionDateBetweenOrderByTransactionDateDesc(
-                                user, description, startDate, endDate, pageable);
-            } else {
-                transactionPage = transactionRepository
-                        .findByUserAndTransactionDateBetweenOrderByTransactionDateDesc(
-                                user, startDate, endDate, pageable);
-            }
-        } else if (startDate != null) {
-            if (description != null && !description.isEmpty()) {
-                transactionPage = transactionRepository
-                        .findByUserAndDescriptionContainingIgnoreCaseAndTransactionDateGreaterThanEqualOrderByTransactionDateDesc(
-                                user, description, startDate, pageable);
-            } else {
-                transactionPage = transactionRepository
-                        .findByUserAndTransactionDateGreaterThanEqualOrderByTransactionDateDesc(
-                                user, startDate, pageable);
-            }
-        } else if (endDate != null) {
-            if (description != null && !description.isEmpty()) {
-                transactionPage = transactionRepository
-                        .findByUserAndDescriptionContainingIgnoreCaseAndTransactionDateLessThanEqualOrderByTransactionDateDesc(
-                                user, description, endDate, pageable);
-            } else {
-                transactionPage = transactionRepository
-                        .findByUserAndTransactionDateLessThanEqualOrderByTransactionDateDesc(
-                                user, endDate, pageable);
-            }
-        } else {
-            if (description != null && !description.isEmpty()) {
-                transactionPage = transactionRepository
-                        .findByUserAndDescriptionContainingIgnoreCaseOrderByTransactionDateDesc(
-                                user, description, pageable);
-            } else {
-                transactionPage = transactionRepository
-                        .findByUserOrderByTransactionDateDesc(user, pageable);
-            }
+        Pageable pageable = PageRequest.of(page, size, TransactionSpecifications.NEWEST_FIRST);
+        Specification<Transaction> spec = TransactionSpecifications.filtered(user, description, startDate, endDate);
+        List<TransactionDTO> content = transactionRepository.findDTOs(spec, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize());
+        // Sem filtros o total é o contador do usuário; com filtros só há COUNT se a página não o revelar
+        if (!isFiltered(description, startDate, endDate)) {
+            return new PageImpl<>(content, pageable, counterService.total(user.getId()));
         }
+        return PageableExecutionUtils.getPage(content, pageable, () -> transactionRepository.count(spec));
+    }
 
-        return transactionPage.map(this::toDTO);
+    /**
+     * Listagem paginada sem total: lê {@code size + 1} linhas para saber se há próxima página,
+     * sem o COUNT da {@link #findByDateRange}. Para o total use {@link #countByDateRange}.
+     */
+    @Transactional(readOnly = true)
+    public Slice<TransactionDTO> findByDateRangeSlice(
+            User user,
+            String description,
+            LocalDate startDate,
+            LocalDate endDate,
+            int page,
+            int size
+    ) {
+        Pageable pageable = PageRequest.of(page, size, TransactionSpecifications.NEWEST_FIRST);
+        List<TransactionDTO> rows = transactionRepository.findDTOs(
+                TransactionSpecifications.filtered(user, description, startDate, endDate),
+                pageable.getSort(), pageable.getOffset(), size + 1);
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, pageable, hasNext);
     }
 
+    /**
+     * Total de transações que atendem aos filtros. Sem filtros vem do contador do usuário
+     * ({@link TransactionCounterService}); com filtros é contado no banco.
+     */
     @Transactional(readOnly = true)
-    public List<TransactionDTO> findAllByUserNoPagination(User user, String description, LocalDate startDate, LocalDate endDate) {
-        // Usa Specification para criar uma query dinâmica
-        Specification<Transaction> spec = (root, query, criteriaBuilder) -> {
-            List<Predicate> predicates = new ArrayList<>();
+    public long countByDateRange(User user, String description, LocalDate startDate, LocalDate endDate) {
+        if (!isFiltered(description, startDate, endDate)) {
+            return counterService.total(user.getId());
+        }
+        return transactionRepository.count(TransactionSpecifications.filtered(user, description, startDate, endDate));
+    }
 
-            // Filtro obrigatório por usuário
-            predicates.add(criteriaBuilder.equal(root.get("user"), user));
+    private static boolean isFiltered(String description, LocalDate startDate, LocalDate endDate) {
+        return !TextNormalizer.normalize(description).isEmpty() || startDate != null || endDate != null;
+    }
 
-            // Filtro opcional por descrição
-            if (description != null && !description.isEmpty()) {
-                predicates.add(criteriaBuilder.like(criteriaBuilder.lower(root.get("description")), "%" + description.toLowerCase() + "%"));
-            }
+    /**
+     * Listagem por keyset na ordem (transactionDate DESC, id DESC): cada página continua de onde
+     * o cursor parou, com {@code size + 1} linhas lidas para saber se há próxima e sem COUNT.
+     * @param cursor Cursor devolvido pela página anterior (null ou vazio para a primeira)
+     * @throws IllegalArgumentException se o cursor for inválido
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<TransactionDTO> findByDateRangeAfter(
+            User user,
+            String description,
+            LocalDate startDate,
+            LocalDate endDate,
+            String cursor,
+            int size
+    ) {
+        int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        Specification<Transaction> spec = TransactionSpecifications.filtered(user, description, startDate, endDate);
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(TransactionSpecifications.after(TransactionCursor.decode(cursor)));
+        }
+        List<TransactionDTO> rows = transactionRepository.findDTOs(spec, TransactionSpecifications.NEWEST_FIRST,
+                0, limit + 1);
+
+        boolean hasNext = rows.size() > limit;
+        List<TransactionDTO> content = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            TransactionDTO last = content.get(content.size() - 1);
+            nextCursor = new TransactionCursor(last.transactionDate(), last.id()).encode();
+        }
+        return new CursorPageDTO<>(List.copyOf(content), limit, hasNext, nextCursor);
+    }
 
-            // Filtro opcional por data de início
-            if (startDate != null) {
-                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("transactionDate"), startDate));
-            }
+    @Transactional(readOnly = true)
+    public List<TransactionDTO> findAllByUserNoPagination(User user, String description, LocalDate startDate, LocalDate endDate) {
+        // Busca todas as transações que correspondem aos filtros, sem paginação, já como DTO
+        try (Stream<TransactionDTO> rows = transactionRepository.streamDTOs(
+                TransactionSpecifications.filtered(user, description, startDate, endDate),
+                TransactionSpecifications.NEWEST_FIRST, streamFetchSize)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
 
-            // Filtro opcional por data de fim
-            if (endDate != null) {
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("transactionDate"), endDate));
+    /**
+     * Mesmo resultado de {@link #findAllByUserNoPagination}, entregue linha a linha ao
+     * {@code consumer} à medida que é lido do banco. As linhas são projetadas direto em
+     * TransactionDTO (nenhuma entidade entra no contexto de persistência) e lidas por um
+     * cursor somente-avanço em blocos de {@code finansync.transactions.stream-fetch-size}
+     * (no MySQL, com useCursorFetch=true na URL), então a memória não cresce com o resultado.
+     * @return Número de transações entregues
+     */
+    @Transactional(readOnly = true)
+    public long streamAllByUser(User user, String description, LocalDate startDate, LocalDate endDate,
+                                Consumer<TransactionDTO> consumer) {
+        long count = 0;
+        try (Stream<TransactionDTO> rows = transactionRepository.streamDTOs(
+                TransactionSpecifications.filtered(user, description, startDate, endDate),
+                TransactionSpecifications.NEWEST_FIRST, streamFetchSize)) {
+            for (TransactionDTO row : (Iterable<TransactionDTO>) rows::iterator) {
+                consumer.accept(row);
+                count++;
             }
+        }
+        return count;
+    }
 
-            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-        };
-
-        // Busca todas as transações que correspondem aos filtros, sem paginação
-        List<Transaction> transactions = transactionRepository.findAll(spec);
-
-        // Converte a lista de entidades para uma lista de DTOs
-        return transactions.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    /**
+     * Busca por trechos da descrição, ordenada por relevância (ver {@link TransactionSearchService#rank}).
+     * Maiúsculas e acentos são ignorados: "acucar" encontra "Pão de Açúcar". O total só é
+     * contado quando a página não o revela.
+     */
+    @Transactional(readOnly = true)
+    public Page<TransactionDTO> search(User user, String query, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        List<TransactionDTO> content = searchService.rank(user, query, pageable.getOffset(), size);
+        if (TextNormalizer.normalize(query).isEmpty()) {
+            return new PageImpl<>(content, pageable, 0);
+        }
+        return PageableExecutionUtils.getPage(content, pageable, () -> transactionRepository.count(
+                TransactionSpecifications.filtered(user, query, null, null)));
     }
 }
-
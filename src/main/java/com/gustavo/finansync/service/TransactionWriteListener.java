@@ -0,0 +1,116 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.entity.Transaction;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener de eventos do Hibernate para a entidade Transaction: mantém as estruturas derivadas
+ * das transações (índice de busca, total por usuário, totais mensais, saldos diários) em dia com
+ * as gravações feitas via JPA, na mesma transação do banco; o cache em colunas
+ * ({@link TransactionLedgerCache}) é atualizado depois do commit. As gravações em massa via JDBC
+ * não passam por aqui (ver {@link TransactionBulkInsertService}).
+ *
+ * Registrado direto no registro de eventos do Hibernate, sem a entidade depender da camada de
+ * serviço. Os eventos chegam para todas as entidades; só as transações são tratadas.
+ *
+ * Nas exclusões os trigramas são removidos em cascata pelo banco. Alterações e exclusões
+ * desfazem nos totais os valores que estavam no banco ({@link Transaction#getPersisted()}).
+ */
+@Component
+public class TransactionWriteListener implements PostLoadEventListener, PostInsertEventListener,
+        PostUpdateEventListener, PostDeleteEventListener {
+
+    private final TransactionSearchService searchService;
+    private final TransactionCounterService counterService;
+    private final TransactionRollupService rollupService;
+    private final BalanceService balanceService;
+    private final TransactionLedgerCache ledgerCache;
+
+    public TransactionWriteListener(EntityManagerFactory entityManagerFactory,
+                                    TransactionSearchService searchService,
+                                    TransactionCounterService counterService,
+                                    TransactionRollupService rollupService,
+                                    BalanceService balanceService,
+                                    TransactionLedgerCache ledgerCache) {
+        this.searchService = searchService;
+        this.counterService = counterService;
+        this.rollupService = rollupService;
+        this.balanceService = balanceService;
+        this.ledgerCache = ledgerCache;
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, this);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        if (event.getEntity() instanceof Transaction transaction) {
+            transaction.markPersisted();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof Transaction transaction)) return;
+        searchService.index(transaction);
+        counterService.add(transaction.getUser().getId(), 1);
+        rollupService.add(transaction.snapshot());
+        balanceService.add(transaction.snapshot());
+        ledgerCache.inserted(transaction.snapshot());
+        transaction.markPersisted();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Transaction transaction)) return;
+        searchService.index(transaction);
+        Transaction.Snapshot before = transaction.getPersisted();
+        Transaction.Snapshot after = transaction.snapshot();
+        if (before != null && !before.equals(after)) {
+            rollupService.remove(before);
+            rollupService.add(after);
+        }
+        // O saldo só depende da data e do valor
+        if (before != null && (!before.transactionDate().equals(after.transactionDate())
+                || before.amount().compareTo(after.amount()) != 0)) {
+            balanceService.remove(before);
+            balanceService.add(after);
+        }
+        if (before == null || !before.equals(after)) {
+            ledgerCache.updated(before != null ? before : after, after);
+        }
+        transaction.markPersisted();
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Transaction transaction)) return;
+        counterService.add(transaction.getUser().getId(), -1);
+        Transaction.Snapshot before = transaction.getPersisted();
+        Transaction.Snapshot removed = before != null ? before : transaction.snapshot();
+        rollupService.remove(removed);
+        balanceService.remove(removed);
+        ledgerCache.deleted(removed);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
@@ -3,18 +3,41 @@ package com.gustavo.finansync.service;
 import com.gustavo.finansync.dto.AuthDTOs;
 import com.gustavo.finansync.entity.User;
 import com.gustavo.finansync.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final int cacheMaxEntries;
+    private final long cacheTtlNanos;
+
+    /**
+     * Usuários completos já lidos, por id (ordem de acesso, os menos usados saem primeiro)
+     */
+    private record CachedUser(User user, long loadedAt) {}
+
+    private final LinkedHashMap<Long, CachedUser> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedUser> eldest) {
+            return size() > cacheMaxEntries;
+        }
+    };
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       @Value("${finansync.users.cache-max-entries:10000}") int cacheMaxEntries,
+                       @Value("${finansync.users.cache-ttl-seconds:300}") long cacheTtlSeconds) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.cacheMaxEntries = Math.max(1, cacheMaxEntries);
+        this.cacheTtlNanos = Duration.ofSeconds(cacheTtlSeconds).toNanos();
     }
 
     /**
@@ -58,4 +81,58 @@ public class UserService {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new IllegalStateException("Usuário autenticado não encontrado no banco de dados."));
     }
+
+    /**
+     * Referência ao usuário pelo id, sem consulta ao banco: basta para gravar relacionamentos
+     * e filtrar consultas. Ler outros campos além do id exige a sessão que a criou aberta.
+     */
+    public User reference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
+    /**
+     * Usuário completo pelo id, vindo do cache quando lido há menos de
+     * {@code finansync.users.cache-ttl-seconds}. Cada chamada recebe a sua cópia desanexada
+     * (sem as transações), então as requisições concorrentes não compartilham a instância; as
+     * alterações devem ser gravadas a partir de uma cópia gerenciada seguida de {@link #evict}.
+     */
+    public User findCached(Long id) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            CachedUser cached = cache.get(id);
+            if (cached != null && now - cached.loadedAt() < cacheTtlNanos) {
+                return copyOf(cached.user());
+            }
+        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("Usuário autenticado não encontrado no banco de dados."));
+        User cached = copyOf(user);
+        synchronized (cache) {
+            cache.put(id, new CachedUser(cached, now));
+        }
+        return copyOf(cached);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user.getName(), user.getEmail(), user.getPasswordHash());
+        copy.setId(user.getId());
+        copy.setGoogleId(user.getGoogleId());
+        copy.setGmailRefreshToken(user.getGmailRefreshToken());
+        copy.setGmailAccessToken(user.getGmailAccessToken());
+        copy.setGmailTokenExpiresAt(user.getGmailTokenExpiresAt());
+        copy.setGmailSyncIntervalMinutes(user.getGmailSyncIntervalMinutes());
+        copy.setIsActive(user.getIsActive());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+
+    /**
+     * Remove o usuário do cache (depois de alterações no cadastro)
+     */
+    public void evict(Long id) {
+        synchronized (cache) {
+            cache.remove(id);
+        }
+    }
 }
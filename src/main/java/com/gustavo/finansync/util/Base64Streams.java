@@ -0,0 +1,53 @@
+package com.gustavo.finansync.util;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Decodifica em streaming um texto em Base64 URL-safe (o formato usado pelo Gmail), com ou
+ * sem padding. Os caracteres são lidos direto do texto, sem copiá-lo para um byte[]: o uso
+ * de memória é o buffer de quem lê, independente do tamanho do conteúdo.
+ */
+public final class Base64Streams {
+
+    private Base64Streams() {}
+
+    public static InputStream urlDecoding(CharSequence base64) {
+        return Base64.getUrlDecoder().wrap(new AsciiInputStream(base64));
+    }
+
+    /**
+     * Expõe os caracteres ASCII de um texto como bytes
+     */
+    private static final class AsciiInputStream extends InputStream {
+
+        private final CharSequence text;
+        private int position;
+
+        private AsciiInputStream(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? text.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            int remaining = text.length() - position;
+            if (remaining <= 0) return -1;
+            int n = Math.min(len, remaining);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) text.charAt(position++);
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return text.length() - position;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gustavo.finansync.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Escreve objetos em JSON um a um em uma resposta em streaming: como um array JSON
+ * ({@code [a,b,c]}) ou como NDJSON (um objeto por linha). O primeiro objeto é enviado
+ * assim que chega e depois a saída é descarregada a cada {@value #FLUSH_EVERY} objetos.
+ * Não é thread-safe.
+ */
+public class JsonStreamWriter<T> implements Consumer<T> {
+
+    private static final int FLUSH_EVERY = 200;
+
+    private final JsonGenerator generator;
+    private final OutputStream out;
+    private final boolean ndjson;
+    private long written;
+
+    public JsonStreamWriter(OutputStream out, ObjectMapper objectMapper, boolean ndjson) throws IOException {
+        this.out = out;
+        this.ndjson = ndjson;
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        // A resposta é fechada pelo container, não pelo gerador
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (ndjson) {
+            this.generator.setRootValueSeparator(null);
+        } else {
+            this.generator.writeStartArray();
+        }
+    }
+
+    @Override
+    public void accept(T value) {
+        try {
+            generator.writeObject(value);
+            if (ndjson) generator.writeRaw('\n');
+            written++;
+            if (written == 1 || written % FLUSH_EVERY == 0) generator.flush();
+        } catch (IOException e) {
+            // Cliente desconectou: interrompe a leitura do banco
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fecha o array (no modo JSON) e descarrega o que falta
+     */
+    public void finish() throws IOException {
+        if (!ndjson) generator.writeEndArray();
+        generator.flush();
+        out.flush();
+    }
+
+    public long getWritten() { return written; }
+}
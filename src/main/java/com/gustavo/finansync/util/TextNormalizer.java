@@ -0,0 +1,41 @@
+package com.gustavo.finansync.util;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalização de textos para comparação e busca: minúsculas, sem acentos e
+ * com espaços consecutivos reduzidos a um só ("  Pão de AÇÚCAR " -> "pao de acucar").
+ */
+public final class TextNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private TextNormalizer() {}
+
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String semAcentos = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(semAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Trigramas distintos das palavras de um texto já normalizado
+     * ("pao de acucar" -> pao, acu, cuc, uca, car). Palavras com menos de três letras não geram trigramas.
+     */
+    public static Set<String> trigrams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : normalized.split(" ")) {
+            // Por code point, para não partir caracteres fora do BMP
+            int[] chars = word.codePoints().toArray();
+            for (int i = 0; i + 3 <= chars.length; i++) {
+                grams.add(new String(chars, i, 3));
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,62 @@
+package com.gustavo.finansync.util;
+
+/**
+ * Token bucket com reserva antecipada: quem pede mais tokens do que há disponível fica
+ * "devendo" e recebe o tempo que precisa esperar até a dívida ser reposta. Assim os
+ * pedidos são atendidos na ordem em que chegam, sem busy-wait.
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity        Rajada máxima (tokens acumulados no máximo)
+     * @param tokensPerSecond Taxa de reposição
+     */
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Reserva {@code amount} tokens.
+     * @param maxWaitNanos Espera máxima aceita
+     * @return Nanossegundos a esperar antes de usar os tokens (0 se já disponíveis),
+     *         ou -1 se a espera passaria do limite (nesse caso nada é reservado)
+     */
+    public synchronized long reserve(double amount, long maxWaitNanos) {
+        refill();
+        double missing = amount - tokens;
+        long waitNanos = missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+        if (waitNanos > maxWaitNanos) return -1;
+        tokens -= amount;
+        return waitNanos;
+    }
+
+    /**
+     * Devolve tokens reservados e não usados
+     */
+    public synchronized void refund(double amount) {
+        refill();
+        tokens = Math.min(capacity, tokens + amount);
+    }
+
+    /**
+     * Se o bucket está cheio, sem reservas pendentes (igual a um bucket novo)
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,34 @@
+package com.gustavo.finansync.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursor opaco da paginação por keyset das transações: a posição da última linha entregue
+ * na ordem (transactionDate DESC, id DESC), codificada como "data|id" em Base64 URL-safe.
+ * A próxima página começa logo depois dessa posição, sem ler as linhas anteriores.
+ */
+public record TransactionCursor(LocalDate transactionDate, Long id) {
+
+    public String encode() {
+        String raw = transactionDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @throws IllegalArgumentException se o cursor não foi gerado por {@link #encode()}
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf('|');
+            if (separator < 0) throw new IllegalArgumentException("Cursor inválido");
+            return new TransactionCursor(LocalDate.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
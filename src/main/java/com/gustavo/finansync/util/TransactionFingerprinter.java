@@ -0,0 +1,54 @@
+package com.gustavo.finansync.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Gera a impressão digital (SHA-256 em hexadecimal) das linhas importadas de um documento,
+ * usada para não gravar a mesma transação duas vezes quando um extrato é reimportado.
+ *
+ * A chave é usuário + data + valor em centavos + descrição normalizada + documento de origem.
+ * Linhas idênticas dentro do mesmo documento (duas compras iguais no mesmo dia) recebem um
+ * número de ocorrência, então continuam distintas entre si mas estáveis entre reimportações.
+ * Os contadores valem para o documento inteiro e nunca são zerados: um extrato fora de ordem
+ * de data (D1 X, D2 Y, D1 X) numera as duas linhas X como 0 e 1, igual a um extrato ordenado.
+ * A memória cresce com as linhas distintas do documento. Uma instância por documento; não é
+ * thread-safe.
+ */
+public final class TransactionFingerprinter {
+
+    private final String prefix;
+    private final MessageDigest digest;
+    // (data, valor, descrição) -> linhas já vistas no documento
+    private final Map<String, Integer> occurrences = new HashMap<>();
+
+    public TransactionFingerprinter(Long userId, String sourceDocument) {
+        this.prefix = userId + "|" + (sourceDocument == null ? "" : sourceDocument) + "|";
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    /**
+     * Impressão digital da próxima linha do documento
+     */
+    public String next(LocalDate date, BigDecimal amount, String description) {
+        String key = date + "|" + toCents(amount) + "|" + TextNormalizer.normalize(description);
+        int occurrence = occurrences.merge(key, 1, Integer::sum) - 1;
+        byte[] hash = digest.digest((prefix + key + "|" + occurrence).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash);
+    }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,49 @@
+package db.migration;
+
+import com.gustavo.finansync.util.TextNormalizer;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Preenche o índice de busca (search_text e trigramas) das transações gravadas antes dele
+ * existir. Sem isso, o filtro por descrição não encontraria essas linhas até a indexação em
+ * segundo plano chegar a elas. Usa a mesma normalização da aplicação ({@link TextNormalizer}).
+ *
+ * Percorre a tabela pela chave primária em lotes, para não carregar tudo em memória.
+ */
+public class V8__index_transaction_search extends BaseJavaMigration {
+
+    private static final int BATCH = 1000;
+    private static final String SELECT_PENDING_SQL = "SELECT id, user_id, description FROM transactions " +
+            "WHERE id > ? AND search_text IS NULL ORDER BY id LIMIT ?";
+
+    private record Row(long id, long userId, String description) {}
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        long afterId = 0;
+        while (true) {
+            List<Row> rows = jdbc.query(SELECT_PENDING_SQL, (rs, rowNum) ->
+                    new Row(rs.getLong("id"), rs.getLong("user_id"), rs.getString("description")), afterId, BATCH);
+            if (rows.isEmpty()) return;
+            List<Object[]> texts = new ArrayList<>(rows.size());
+            List<Object[]> grams = new ArrayList<>();
+            for (Row row : rows) {
+                String text = TextNormalizer.normalize(row.description());
+                texts.add(new Object[]{text, row.id()});
+                for (String gram : TextNormalizer.trigrams(text)) {
+                    grams.add(new Object[]{row.userId(), gram, row.id()});
+                }
+            }
+            jdbc.batchUpdate("INSERT INTO transaction_search_grams (user_id, gram, transaction_id) VALUES (?, ?, ?)", grams);
+            jdbc.batchUpdate("UPDATE transactions SET search_text = ? WHERE id = ?", texts);
+            afterId = rows.get(rows.size() - 1).id();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+-- Contador de todos os usuários recalculado de uma vez, com a aplicação parada. Daqui em diante
+-- um usuário sem linha é um usuário sem transações: o primeiro ajuste cria a linha, sem COUNT(*)
+-- em paralelo com as gravações (os contadores criados na primeira leitura podiam perder ajustes).
+delete from transaction_counters;
+
+insert into transaction_counters (user_id, transaction_count)
+select u.id, (select count(*) from transactions t where t.user_id = u.id)
+from users u;
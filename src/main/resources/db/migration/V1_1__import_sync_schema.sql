@@ -0,0 +1,116 @@
+-- Importações do Gmail e de arquivos, credenciais do Gmail, sincronização automática, cache de
+-- anexos e coordenação entre nós: colunas e tabelas que não existiam no schema inicial (V1).
+-- Também chega aos bancos marcados pelo baseline, que só tinham users e transactions.
+
+-- Credenciais do Gmail e intervalo da sincronização automática
+alter table users add column gmail_access_token TEXT;
+alter table users add column gmail_token_expires_at bigint;
+alter table users add column gmail_sync_interval_minutes integer;
+
+-- Impressão digital das linhas importadas e a nova origem (upload de arquivo)
+alter table transactions add column fingerprint varchar(64);
+alter table transactions modify column source enum ('EMAIL_IMPORT','FILE_UPLOAD','MANUAL');
+
+create table attachment_blobs (
+    created_at datetime(6) not null,
+    last_accessed_at datetime(6) not null,
+    size_bytes bigint not null,
+    stored_bytes bigint not null,
+    sha256 varchar(64) not null,
+    primary key (sha256)
+) engine=InnoDB;
+
+create table cached_attachments (
+    message_attachments integer not null,
+    cached_at datetime(6) not null,
+    id bigint not null auto_increment,
+    user_id bigint not null,
+    message_id varchar(64) not null,
+    sha256 varchar(64) not null,
+    attachment_id varchar(1024),
+    filename varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table cluster_leases (
+    expires_at datetime(6),
+    fencing_token bigint not null,
+    name varchar(64) not null,
+    owner_node_id varchar(100),
+    primary key (name)
+) engine=InnoDB;
+
+create table cluster_nodes (
+    last_heartbeat_at datetime(6) not null,
+    started_at datetime(6) not null,
+    node_id varchar(100) not null,
+    primary key (node_id)
+) engine=InnoDB;
+
+create table gmail_processed_messages (
+    id bigint not null auto_increment,
+    processed_at datetime(6) not null,
+    user_id bigint not null,
+    message_id varchar(64) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table gmail_sync_states (
+    consecutive_failures integer not null,
+    history_id decimal(20,0),
+    id bigint not null auto_increment,
+    last_full_scan_at datetime(6),
+    last_sync_at datetime(6),
+    next_sync_at datetime(6),
+    user_id bigint not null,
+    sender varchar(150) not null,
+    last_error varchar(500),
+    subject varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table import_staging_rows (
+    already_imported bit not null,
+    amount decimal(15,2) not null,
+    excluded bit not null,
+    row_index integer not null,
+    transaction_date date not null,
+    id bigint not null auto_increment,
+    staging_token varchar(36) not null,
+    fingerprint varchar(64),
+    category varchar(255),
+    description varchar(255) not null,
+    email_message_id varchar(255),
+    source_document varchar(255),
+    type enum ('DESPESA','RECEITA') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table import_stagings (
+    created_at datetime(6) not null,
+    duplicate_rows bigint not null,
+    expires_at datetime(6) not null,
+    rejected_rows bigint not null,
+    total_rows bigint not null,
+    user_id bigint not null,
+    token varchar(36) not null,
+    primary key (token)
+) engine=InnoDB;
+
+-- Índices e restrições
+create index idx_attachment_blobs_last_accessed on attachment_blobs (last_accessed_at);
+create index idx_cached_attachments_sha256 on cached_attachments (sha256);
+alter table cached_attachments add constraint uk_cached_attachment unique (user_id, message_id, filename);
+create index idx_cluster_nodes_heartbeat on cluster_nodes (last_heartbeat_at);
+alter table gmail_processed_messages add constraint uk_gmail_processed_user_message unique (user_id, message_id);
+create index idx_gmail_sync_next on gmail_sync_states (next_sync_at);
+alter table gmail_sync_states add constraint uk_gmail_sync_user_query unique (user_id, sender, subject);
+alter table import_staging_rows add constraint uk_staging_row unique (staging_token, row_index);
+create index idx_transactions_user_date_id on transactions (user_id, transaction_date, id);
+alter table transactions add constraint uk_transactions_fingerprint unique (fingerprint);
+
+-- Chaves estrangeiras
+alter table cached_attachments add constraint FKnienpolurxbh9pvobpnnt931 foreign key (user_id) references users (id);
+alter table gmail_processed_messages add constraint FKdj9mv4vra4608xrq6yeyfj6m7 foreign key (user_id) references users (id);
+alter table gmail_sync_states add constraint FKjfxtjk1ukmy521s7yox1bvuuo foreign key (user_id) references users (id);
+alter table import_stagings add constraint FKrwo7u7nb6o7vg780l2j8i25 foreign key (user_id) references users (id);
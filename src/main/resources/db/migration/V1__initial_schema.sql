@@ -0,0 +1,35 @@
+-- Schema inicial do FinanSync: users e transactions como o Hibernate os gerava com
+-- ddl-auto=update antes das migrações. Bancos que já existiam são marcados nesta versão pelo
+-- baseline do Flyway; tudo o que veio depois fica nas migrações seguintes.
+
+create table transactions (
+    amount decimal(15,2) not null,
+    transaction_date date not null,
+    created_at datetime(6) not null,
+    id bigint not null auto_increment,
+    updated_at datetime(6),
+    user_id bigint not null,
+    category varchar(255),
+    description varchar(255) not null,
+    email_message_id varchar(255),
+    source enum ('EMAIL_IMPORT','MANUAL'),
+    type enum ('DESPESA','RECEITA') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table users (
+    is_active bit,
+    created_at datetime(6) not null,
+    id bigint not null auto_increment,
+    updated_at datetime(6),
+    google_id varchar(100),
+    name varchar(100) not null,
+    email varchar(150) not null,
+    gmail_refresh_token TEXT,
+    password_hash varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table users add constraint UKovh8xmu9ac27t18m56gri58i1 unique (google_id);
+alter table users add constraint UK6dotkott2kjsp8vw4d0m25fb7 unique (email);
+alter table transactions add constraint FKqwv7rmvc8va8rep7piikrojds foreign key (user_id) references users (id);
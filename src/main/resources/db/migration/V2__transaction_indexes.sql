@@ -0,0 +1,9 @@
+-- Índices das consultas por usuário em transactions.
+-- Listagens por período já usam idx_transactions_user_date_id (user_id, transaction_date, id).
+
+-- Totais do dashboard: usuário + tipo + período
+create index idx_transactions_user_type_date on transactions (user_id, type, transaction_date);
+
+-- Importação do Gmail: um e-mail gera várias transações (uma por linha do CSV), por isso o
+-- índice não é único; a unicidade das linhas importadas é garantida pelo fingerprint
+create index idx_transactions_email_message on transactions (email_message_id);
@@ -0,0 +1,15 @@
+-- Busca por trechos da descrição: texto normalizado (minúsculas, sem acentos) e um índice
+-- invertido de trigramas por usuário, mantidos pela aplicação a cada gravação.
+-- Linhas com search_text nulo ainda não foram indexadas (o líder as indexa em segundo plano).
+alter table transactions add column search_text varchar(255);
+
+create table transaction_search_grams (
+    user_id bigint not null,
+    gram varchar(3) not null,
+    transaction_id bigint not null,
+    primary key (user_id, gram, transaction_id)
+) engine=InnoDB;
+
+create index idx_search_grams_transaction on transaction_search_grams (transaction_id);
+alter table transaction_search_grams add constraint fk_search_grams_transaction
+    foreign key (transaction_id) references transactions (id) on delete cascade;
@@ -0,0 +1,10 @@
+-- Total de transações por usuário, atualizado a cada inclusão e exclusão. A linha de um
+-- usuário é criada com um COUNT(*) na primeira leitura.
+create table transaction_counters (
+    user_id bigint not null,
+    transaction_count bigint not null,
+    primary key (user_id)
+) engine=InnoDB;
+
+alter table transaction_counters add constraint fk_transaction_counters_user
+    foreign key (user_id) references users (id) on delete cascade;
@@ -0,0 +1,25 @@
+-- Totais mensais por usuário, categoria e tipo, atualizados a cada gravação. Servem o
+-- dashboard sem somar as transações. Transações sem categoria ficam com category = ''.
+-- Um usuário sem linha em transaction_rollup_state tem os totais recalculados na primeira leitura.
+create table transaction_rollups (
+    user_id bigint not null,
+    month_start date not null,
+    category varchar(255) not null,
+    type enum ('DESPESA','RECEITA') not null,
+    total decimal(19,2) not null,
+    transaction_count bigint not null,
+    min_amount decimal(15,2) not null,
+    max_amount decimal(15,2) not null,
+    primary key (user_id, month_start, category, type)
+) engine=InnoDB;
+
+create table transaction_rollup_state (
+    user_id bigint not null,
+    rebuilt_at datetime(6) not null,
+    primary key (user_id)
+) engine=InnoDB;
+
+alter table transaction_rollups add constraint fk_transaction_rollups_user
+    foreign key (user_id) references users (id) on delete cascade;
+alter table transaction_rollup_state add constraint fk_transaction_rollup_state_user
+    foreign key (user_id) references users (id) on delete cascade;
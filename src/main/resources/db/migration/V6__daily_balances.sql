@@ -0,0 +1,22 @@
+-- Saldo por dia de cada usuário: o líquido do dia (soma dos valores) e o saldo acumulado até
+-- o fim do dia (soma de prefixo). Só há linhas nos dias com transações; o saldo em uma data
+-- é o running_balance do último dia até ela, lido pela chave primária.
+-- Um usuário sem linha em daily_balance_state tem os saldos recalculados na primeira leitura.
+create table daily_balances (
+    user_id bigint not null,
+    balance_date date not null,
+    net_amount decimal(19,2) not null,
+    running_balance decimal(19,2) not null,
+    primary key (user_id, balance_date)
+) engine=InnoDB;
+
+create table daily_balance_state (
+    user_id bigint not null,
+    rebuilt_at datetime(6) not null,
+    primary key (user_id)
+) engine=InnoDB;
+
+alter table daily_balances add constraint fk_daily_balances_user
+    foreign key (user_id) references users (id) on delete cascade;
+alter table daily_balance_state add constraint fk_daily_balance_state_user
+    foreign key (user_id) references users (id) on delete cascade;
@@ -0,0 +1,16 @@
+-- Sincronização do Gmail em duas etapas: as mensagens só entram em gmail_processed_messages
+-- (e o historyId só avança) quando as linhas delas são gravadas. Uma análise guarda o ponto
+-- de sincronização na importação até ser confirmada.
+alter table import_stagings add column sync_state_id bigint;
+alter table import_stagings add column sync_history_id decimal(20,0);
+alter table import_stagings add column sync_full_scan bit not null default 0;
+
+create table import_staging_messages (
+    staging_token varchar(36) not null,
+    message_id varchar(64) not null,
+    primary key (staging_token, message_id)
+) engine=InnoDB;
+
+-- Trava de uma sincronização em andamento por usuário/remetente/assunto (análise, job ou agendador)
+alter table gmail_sync_states add column sync_owner varchar(36);
+alter table gmail_sync_states add column sync_locked_until datetime(6);
@@ -0,0 +1,17 @@
+-- Índice do cache de anexos por volume (diretório do cache em disco): cada nó só enxerga e
+-- remove as linhas dos arquivos que estão no seu disco. As linhas antigas não dizem em qual
+-- nó o arquivo está e são descartadas; os anexos voltam ao cache no próximo download.
+delete from cached_attachments;
+delete from attachment_blobs;
+
+alter table attachment_blobs add column volume varchar(36) not null;
+alter table attachment_blobs drop primary key;
+alter table attachment_blobs add primary key (volume, sha256);
+drop index idx_attachment_blobs_last_accessed on attachment_blobs;
+create index idx_attachment_blobs_volume_last_accessed on attachment_blobs (volume, last_accessed_at);
+
+alter table cached_attachments add column volume varchar(36) not null;
+alter table cached_attachments add constraint uk_cached_attachment_volume unique (user_id, message_id, filename, volume);
+alter table cached_attachments drop constraint uk_cached_attachment;
+drop index idx_cached_attachments_sha256 on cached_attachments;
+create index idx_cached_attachments_volume_sha256 on cached_attachments (volume, sha256);
@@ -0,0 +1,106 @@
+package com.gustavo.finansync.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import com.gustavo.finansync.service.UserService;
+import com.gustavo.finansync.support.SqlCapture;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * O usuário das requisições vem das claims do JWT: as rotas de transações não consultam
+ * a tabela users (o SQL do Hibernate é capturado durante as chamadas).
+ */
+@SpringBootTest(properties = SqlCapture.PROPERTY)
+@AutoConfigureMockMvc
+class TransactionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void hotEndpointsResolveTheUserFromTheTokenWithoutLookingItUp() throws Exception {
+        User user = userRepository.save(new User("Jwt", "jwt-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        RequestPostProcessor token = jwt().jwt(j -> j.subject(user.getEmail()).claim("userId", user.getId()));
+        SqlCapture.start();
+
+        TransactionDTO dto = new TransactionDTO(null, "Mercado", null, BigDecimal.valueOf(-50),
+                LocalDate.of(2024, 1, 1), TransactionType.DESPESA);
+        String body = mockMvc.perform(post("/api/transactions").with(token)
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(body, TransactionDTO.class).id();
+
+        mockMvc.perform(get("/api/transactions").with(token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(id));
+        mockMvc.perform(get("/api/transactions/slice").with(token)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions/cursor").with(token)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions/search").param("q", "mercado").with(token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(id));
+        mockMvc.perform(delete("/api/transactions/" + id).with(token)).andExpect(status().isNoContent());
+
+        List<String> consultas = SqlCapture.stop();
+        assertThat(transactionRepository.countByUser(user)).isZero();
+        assertThat(consultas).isNotEmpty().noneMatch(sql -> sql.toLowerCase().matches("(?s).*\\bfrom users\\b.*"));
+
+        // Sem a claim (tokens antigos) o usuário é buscado pelo e-mail
+        mockMvc.perform(get("/api/transactions/slice").with(jwt().jwt(j -> j.subject(user.getEmail()))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void fullUsersComeFromTheCacheUntilEvicted() {
+        User user = userRepository.save(new User("Cache", "cache-user-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+
+        User primeiro = userService.findCached(user.getId());
+        SqlCapture.start();
+        User segundo = userService.findCached(user.getId());
+        assertThat(SqlCapture.stop()).noneMatch(sql -> sql.toLowerCase().contains("from users"));
+        assertThat(segundo.getEmail()).isEqualTo(user.getEmail());
+        // Cada chamada recebe a sua cópia: alterar uma não muda o cache
+        assertThat(segundo).isNotSameAs(primeiro);
+        primeiro.setName("Alterado");
+        assertThat(userService.findCached(user.getId()).getName()).isEqualTo("Cache");
+
+        userService.evict(user.getId());
+        SqlCapture.start();
+        userService.findCached(user.getId());
+        assertThat(SqlCapture.stop()).anyMatch(sql -> sql.toLowerCase().contains("from users"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.gustavo.finansync.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationTest {
+
+    @Test
+    void baselinedDatabasesReceiveEveryLaterMigration() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:baseline-" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        // Banco criado pelo ddl-auto=update antes das migrações: só users e transactions, sem histórico do Flyway
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__initial_schema.sql")).execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("INSERT INTO users (id, name, email, password_hash, created_at) VALUES (1, 'Antigo', 'antigo@finansync.com', 'x', NOW())");
+        jdbc.update("INSERT INTO transactions (user_id, description, amount, type, transaction_date, created_at) " +
+                "VALUES (1, '  Pão de AÇÚCAR ', -12.50, 'DESPESA', DATE '2023-05-01', NOW())");
+
+        Flyway flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
+        flyway.migrate();
+
+        assertThat(flyway.info().pending()).isEmpty();
+        assertThat(columns(jdbc, "transactions")).contains("fingerprint", "search_text");
+        assertThat(columns(jdbc, "users")).contains("gmail_access_token", "gmail_token_expires_at",
+                "gmail_sync_interval_minutes");
+        assertThat(jdbc.queryForList("SELECT index_name FROM information_schema.indexes " +
+                "WHERE table_name = 'transactions'", String.class))
+                .contains("idx_transactions_user_date_id", "idx_transactions_user_type_date");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.tables WHERE table_name IN " +
+                "('gmail_sync_states', 'import_stagings', 'cluster_leases', 'attachment_blobs')", Integer.class))
+                .isEqualTo(4);
+
+        // Linhas anteriores ao índice de busca já saem da migração indexadas
+        assertThat(jdbc.queryForObject("SELECT search_text FROM transactions WHERE user_id = 1", String.class))
+                .isEqualTo("pao de acucar");
+        assertThat(jdbc.queryForList("SELECT gram FROM transaction_search_grams WHERE user_id = 1", String.class))
+                .containsExactlyInAnyOrder("pao", "acu", "cuc", "uca", "car");
+        // E com o contador já criado: os ajustes nunca encontram um usuário antigo sem linha
+        assertThat(jdbc.queryForObject("SELECT transaction_count FROM transaction_counters WHERE user_id = 1", Long.class))
+                .isEqualTo(1);
+    }
+
+    private static List<String> columns(JdbcTemplate jdbc, String table) {
+        return jdbc.queryForList("SELECT column_name FROM information_schema.columns WHERE table_name = ?",
+                String.class, table);
+    }
+}
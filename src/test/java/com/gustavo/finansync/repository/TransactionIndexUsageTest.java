@@ -0,0 +1,129 @@
+package com.gustavo.finansync.repository;
+
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.service.TransactionSearchService;
+import com.gustavo.finansync.support.SqlCapture;
+import com.gustavo.finansync.support.TransactionFixtures;
+import com.gustavo.finansync.util.TransactionCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Executa as consultas do TransactionRepository e da busca ({@link TransactionSearchService#rank})
+ * sobre o schema criado pelas migrações, captura o SQL gerado pelo Hibernate e confere com
+ * EXPLAIN que nenhuma delas varre a tabela.
+ */
+@SpringBootTest(properties = SqlCapture.PROPERTY)
+class TransactionIndexUsageTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private TransactionFixtures fixtures;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionSearchService searchService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void everyTransactionQueryUsesAnIndex() throws Exception {
+        User user = fixtures.userWithTransactions("explain", 200, START, 60);
+        fixtures.userWithTransactions("vizinho", 200, START, 60);
+        SqlCapture.start();
+
+        Long id = transactionRepository.findAll(TransactionSpecifications.filtered(user, "", null, null),
+                PageRequest.of(0, 20, TransactionSpecifications.NEWEST_FIRST)).getContent().get(0).getId();
+        transactionRepository.findAll(TransactionSpecifications.filtered(user, "mercado", START, START.plusDays(9),
+                TransactionType.DESPESA), PageRequest.of(1, 20, TransactionSpecifications.NEWEST_FIRST));
+        transactionRepository.findBy(TransactionSpecifications.filtered(user, "", null, null),
+                q -> q.sortBy(TransactionSpecifications.NEWEST_FIRST).slice(PageRequest.of(3, 20)));
+        transactionRepository.findBy(TransactionSpecifications.filtered(user, "", START, null)
+                        .and(TransactionSpecifications.after(new TransactionCursor(START.plusDays(5), id))),
+                q -> q.sortBy(TransactionSpecifications.NEWEST_FIRST).limit(21).all());
+        transactionRepository.findByIdAndUser(id, user);
+        transactionRepository.sumAmountByUserAndTypeAndDateBetween(user, TransactionType.DESPESA,
+                START, START.plusDays(30));
+        transactionRepository.existsByEmailMessageId("msg-1");
+        transactionRepository.findExistingFingerprints(List.of("fp-explain-1", "fp-explain-2"));
+        transactionRepository.countByUser(user);
+        transactionRepository.findDTOs(TransactionSpecifications.filtered(user, "", START, null),
+                TransactionSpecifications.NEWEST_FIRST, 20, 20);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<?> rows = transactionRepository.streamDTOs(TransactionSpecifications.filtered(user, "salario",
+                    null, null, TransactionType.RECEITA), TransactionSpecifications.NEWEST_FIRST, 100)) {
+                assertThat(rows.count()).isPositive();
+            }
+        });
+        transactionRepository.findDTOsByIdIn(List.of(id));
+        assertThat(searchService.rank(user, "merc", 0, 20)).isNotEmpty();
+
+        List<String> consultas = SqlCapture.stop().stream()
+                .filter(sql -> sql.toLowerCase().startsWith("select") && sql.contains("transactions"))
+                .distinct()
+                .toList();
+        assertThat(consultas).hasSizeGreaterThanOrEqualTo(13);
+        // A relevância da busca é ordenada e paginada no banco
+        assertThat(consultas).anyMatch(sql -> sql.contains("order by (case when") && sql.contains("fetch first"));
+
+        Map<String, String> planos = new TreeMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (String sql : consultas) {
+                planos.put(sql, explain(connection, sql));
+            }
+        }
+        assertThat(planos).allSatisfy((sql, plano) -> assertThat(plano)
+                .as("Plano de %s", sql)
+                // Índice escolhido pelo H2 e as condições que ele resolve: /* public.idx_...: user_id = ?1 */
+                .containsPattern("/\\* public\\.\\w+: ")
+                .doesNotContain("tableScan"));
+        // As buscas por texto chegam às candidatas pelo índice de trigramas (subconsulta em transaction_search_grams)
+        Map<String, String> buscas = new TreeMap<>(planos);
+        buscas.keySet().removeIf(sql -> !sql.contains("transaction_search_grams"));
+        assertThat(buscas).hasSizeGreaterThanOrEqualTo(3)
+                .allSatisfy((sql, plano) -> assertThat(plano)
+                        .as("Plano de %s", sql)
+                        .containsPattern("transaction_search_grams\"? \"?\\w+\"?\\s*/\\* public\\.\\w+: user_id = "));
+    }
+
+    /**
+     * Plano do H2 para a consulta; os parâmetros ficam nulos, o que não muda a escolha do índice
+     */
+    private static String explain(Connection connection, String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            int parametros = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parametros; i++) {
+                statement.setObject(i, null);
+            }
+            StringBuilder plano = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) plano.append(rs.getString(1));
+            }
+            return plano.toString();
+        }
+    }
+}
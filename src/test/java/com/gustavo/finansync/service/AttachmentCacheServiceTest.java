@@ -0,0 +1,165 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.entity.CachedAttachment;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.AttachmentBlobRepository;
+import com.gustavo.finansync.repository.CachedAttachmentRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AttachmentCacheServiceTest {
+
+    @Autowired
+    private AttachmentBlobRepository blobRepository;
+
+    @Autowired
+    private CachedAttachmentRepository cachedAttachmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path cacheDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void servesCachedMessagesWithoutCallingTheApiAndReparsesFromDisk() throws IOException {
+        User user = userRepository.save(new User("Cache", "cache-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox();
+        AttachmentCacheService cache = cache(1024 * 1024);
+        GmailService service = new GmailService(executor, executor, cache, new GmailRequestExecutor());
+        List<String> ids = List.of("m0", "m1", "m2", "m3", "m4", "m5");
+
+        assertThat(service.baixarAnexosCsv(gmail.client(), "me", user.getId(), ids,
+                GmailService.Prioridade.INTERATIVA, parseInto(new AtomicInteger()))).isEqualTo(6);
+        int requisicoes = gmail.requestCount();
+
+        AtomicInteger linhas = new AtomicInteger();
+        assertThat(service.baixarAnexosCsv(gmail.client(), "me", user.getId(), ids,
+                GmailService.Prioridade.INTERATIVA, parseInto(linhas))).isEqualTo(6);
+        assertThat(gmail.requestCount()).isEqualTo(requisicoes);
+        assertThat(linhas).hasValue(12);
+
+        // Os 6 anexos têm o mesmo conteúdo: um único arquivo em disco
+        List<CachedAttachment> entradas = cachedAttachmentRepository.findByVolumeAndUserIdOrderByCachedAtAscIdAsc(
+                cache.volume(), user.getId());
+        assertThat(entradas).hasSize(6);
+        assertThat(entradas.stream().map(CachedAttachment::getSha256).distinct()).hasSize(1);
+
+        AtomicInteger reprocessadas = new AtomicInteger();
+        assertThat(cache.forEachCached(user.getId(), parseInto(reprocessadas))).isEqualTo(6);
+        assertThat(reprocessadas).hasValue(12);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedContentOverBudget() throws IOException {
+        User user = userRepository.save(new User("Lru", "lru-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        AttachmentCacheService cache = cache(0);
+
+        cache.store(user.getId(), "lru-1", "a1", "extrato.csv", new ByteArrayInputStream("conteudo 1".getBytes(StandardCharsets.UTF_8)), 1);
+
+        assertThat(cache.lookup(user.getId(), "lru-1")).isEmpty();
+        assertThat(cachedAttachmentRepository.findByVolumeAndUserIdAndMessageId(cache.volume(), user.getId(), "lru-1")).isEmpty();
+        assertThat(blobRepository.sumStoredBytes(cache.volume())).isZero();
+    }
+
+    @Test
+    void contentBeingReadIsNotEvicted() throws IOException {
+        User user = userRepository.save(new User("Lease", "lease-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        cache(1024 * 1024).store(user.getId(), "lease-1", "a1", "extrato.csv",
+                new ByteArrayInputStream("conteudo".getBytes(StandardCharsets.UTF_8)), 1);
+        // Mesmo diretório, sem espaço: tudo que não estiver em leitura sai
+        AttachmentCacheService cache = cache(0);
+
+        List<GmailService.CsvAttachment> anexos = cache.lookup(user.getId(), "lease-1").orElseThrow();
+        cache.evictToBudget();
+        try (InputStream content = anexos.get(0).content()) {
+            assertThat(new String(content.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("conteudo");
+        }
+
+        cache.evictToBudget();
+        assertThat(cache.lookup(user.getId(), "lease-1")).isEmpty();
+        assertThat(blobRepository.sumStoredBytes(cache.volume())).isZero();
+    }
+
+    @Test
+    void aMissingLocalFileIsDownloadedAgainWithoutTouchingOtherVolumes(@TempDir Path otherDir) throws IOException {
+        User user = userRepository.save(new User("Volume", "volume-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox();
+        AttachmentCacheService local = cache(1024 * 1024);
+        AttachmentCacheService other = new AttachmentCacheService(blobRepository, cachedAttachmentRepository, userRepository,
+                otherDir.toString(), 1024 * 1024, true);
+        GmailService service = new GmailService(executor, executor, local, new GmailRequestExecutor());
+        List<String> ids = List.of("m0");
+        service.baixarAnexosCsv(gmail.client(), "me", user.getId(), ids,
+                GmailService.Prioridade.INTERATIVA, parseInto(new AtomicInteger()));
+        new GmailService(executor, executor, other, new GmailRequestExecutor())
+                .baixarAnexosCsv(gmail.client(), "me", user.getId(), ids,
+                        GmailService.Prioridade.INTERATIVA, parseInto(new AtomicInteger()));
+        assertThat(local.volume()).isNotEqualTo(other.volume());
+
+        // O arquivo some do disco deste nó: falta local, as linhas ficam
+        String sha256 = cachedAttachmentRepository.findByVolumeAndUserIdAndMessageId(local.volume(), user.getId(), "m0")
+                .get(0).getSha256();
+        Path blob = cacheDir.resolve(sha256.substring(0, 2)).resolve(sha256 + ".gz");
+        Files.delete(blob);
+        assertThat(local.lookup(user.getId(), "m0")).isEmpty();
+        assertThat(cachedAttachmentRepository.findByVolumeAndUserIdAndMessageId(local.volume(), user.getId(), "m0")).hasSize(1);
+        Optional<List<GmailService.CsvAttachment>> noOutroNo = other.lookup(user.getId(), "m0");
+        assertThat(noOutroNo).isPresent();
+        noOutroNo.get().forEach(anexo -> parseInto(new AtomicInteger()).accept(anexo));
+
+        // O próximo download regrava o arquivo e a mensagem volta a ser servida do cache
+        int requisicoes = gmail.requestCount();
+        AtomicInteger linhas = new AtomicInteger();
+        service.baixarAnexosCsv(gmail.client(), "me", user.getId(), ids,
+                GmailService.Prioridade.INTERATIVA, parseInto(linhas));
+        assertThat(gmail.requestCount()).isGreaterThan(requisicoes);
+        assertThat(linhas).hasValue(2);
+        assertThat(blob).exists();
+        assertThat(local.lookup(user.getId(), "m0")).isPresent();
+    }
+
+    private AttachmentCacheService cache(long maxBytes) {
+        return new AttachmentCacheService(blobRepository, cachedAttachmentRepository, userRepository,
+                cacheDir.toString(), maxBytes, true);
+    }
+
+    private static Consumer<GmailService.CsvAttachment> parseInto(AtomicInteger linhas) {
+        CsvParsingService parser = new CsvParsingService();
+        return anexo -> {
+            try {
+                parser.parse(anexo.content(), dto -> linhas.incrementAndGet());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
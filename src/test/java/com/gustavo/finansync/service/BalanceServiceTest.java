@@ -0,0 +1,102 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BalanceDTOs;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.support.TransactionFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class BalanceServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+
+    @Autowired
+    private TransactionFixtures fixtures;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void balancesMatchTheSumOfTheTransactions() {
+        User user = fixtures.userWithTransactions("saldo", 200, START, 100);
+
+        for (LocalDate date : List.of(START.minusDays(1), START, START.plusDays(45), START.plusDays(99), END)) {
+            assertThat(balanceService.balanceAt(user.getId(), date).balance()).isEqualByComparingTo(sumUntil(user, date));
+        }
+
+        BalanceDTOs.Series series = balanceService.series(user.getId(), START.plusDays(10), START.plusDays(30));
+        assertThat(series.openingBalance()).isEqualByComparingTo(sumUntil(user, START.plusDays(9)));
+        assertThat(series.closingBalance()).isEqualByComparingTo(sumUntil(user, START.plusDays(30)));
+        assertThat(series.points()).hasSize(21);
+        BigDecimal running = series.openingBalance();
+        for (BalanceDTOs.Point point : series.points()) {
+            running = running.add(point.net());
+            assertThat(point.balance()).isEqualByComparingTo(running);
+        }
+    }
+
+    @Test
+    void backdatedWritesKeepTheBalancesEqualToARebuild() {
+        User user = fixtures.userWithTransactions("retroativo", 120, START, 100);
+        balanceService.balanceAt(user.getId(), END);
+
+        // Antes de todas as transações e num dia sem transações
+        TransactionDTO antiga = transactionService.create(new TransactionDTO(null, "Aluguel atrasado", "Moradia",
+                BigDecimal.valueOf(-1_500), START.minusMonths(2), TransactionType.DESPESA), user.getId());
+        assertMatchesRebuild(user);
+        transactionService.updateForUser(antiga.id(), new TransactionDTO(null, "Aluguel atrasado", "Moradia",
+                BigDecimal.valueOf(-1_200), START.plusDays(50), TransactionType.DESPESA), user);
+        assertMatchesRebuild(user);
+        // Só a categoria muda: o saldo fica igual
+        transactionService.updateForUser(antiga.id(), new TransactionDTO(null, "Aluguel atrasado", "Casa",
+                BigDecimal.valueOf(-1_200), START.plusDays(50), TransactionType.DESPESA), user);
+        assertMatchesRebuild(user);
+        transactionService.deleteForUser(antiga.id(), user);
+        assertMatchesRebuild(user);
+
+        bulkInsertService.insertAll(List.of(
+                new ImportedTransactionDTO(null, "Posto", "Transporte", BigDecimal.valueOf(-90), START.plusDays(3),
+                        TransactionType.DESPESA, null, "extrato.csv", false),
+                new ImportedTransactionDTO(null, "Reembolso", null, BigDecimal.valueOf(90), START.plusDays(3),
+                        TransactionType.RECEITA, null, "extrato.csv", false),
+                new ImportedTransactionDTO(null, "Salário", null, BigDecimal.valueOf(5_000), START.plusDays(200),
+                        TransactionType.RECEITA, null, "extrato.csv", false)), user.getId(), TransactionSource.FILE_UPLOAD);
+        assertMatchesRebuild(user);
+        assertThat(balanceService.balanceAt(user.getId(), END).balance()).isEqualByComparingTo(sumUntil(user, END));
+    }
+
+    private void assertMatchesRebuild(User user) {
+        BalanceDTOs.Series series = balanceService.series(user.getId(), START.minusYears(1), END);
+        balanceService.rebuild(user.getId());
+        assertThat(balanceService.series(user.getId(), START.minusYears(1), END)).isEqualTo(series);
+    }
+
+    private BigDecimal sumUntil(User user, LocalDate date) {
+        return transactionService.findAllByUserNoPagination(user, "", null, date).stream()
+                .map(TransactionDTO::amount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,102 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.FinanSyncApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sobe dois nós (dois contextos da aplicação) sobre o mesmo banco H2
+ */
+class ClusterCoordinatorTest {
+
+    private static final long LEASE_TTL_MILLIS = 2_000;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void splitsShardsAcrossLiveNodesAndTakesOverWhenANodeDies() throws Exception {
+        ClusterCoordinator a = node("node-a");
+        ClusterCoordinator b = node("node-b");
+        equilibrar(a, b);
+
+        assertThat(a.ownedShards()).hasSize(4).doesNotContainAnyElementsOf(b.ownedShards());
+        assertThat(b.ownedShards()).hasSize(4);
+        assertThat(a.isLeader()).isNotEqualTo(b.isLeader());
+        assertThat(LongStream.rangeClosed(1, 200).boxed())
+                .allMatch(userId -> a.ownsUser(userId) != b.ownsUser(userId));
+
+        long userDeB = LongStream.rangeClosed(1, 200).filter(b::ownsUser).findFirst().orElseThrow();
+        ClusterCoordinator.Fence antiga = b.fence(userDeB).orElseThrow();
+        assertThat(b.isValid(antiga)).isTrue();
+
+        // b para de enviar heartbeats: depois do prazo ele deixa de se considerar dono e a assume tudo
+        Thread.sleep(LEASE_TTL_MILLIS + 200);
+        assertThat(b.ownedShards()).isEmpty();
+        a.heartbeat();
+
+        assertThat(a.ownedShards()).hasSize(8);
+        assertThat(a.isLeader()).isTrue();
+        ClusterCoordinator.Fence nova = a.fence(userDeB).orElseThrow();
+        assertThat(nova.lease()).isEqualTo(antiga.lease());
+        assertThat(nova.token()).isGreaterThan(antiga.token());
+        assertThat(b.isValid(antiga)).isFalse();
+        assertThat(a.isValid(nova)).isTrue();
+    }
+
+    @Test
+    void handsShardsOverImmediatelyOnShutdown() {
+        ClusterCoordinator a = node("node-a");
+        ConfigurableApplicationContext contextoB = start("node-b");
+        ClusterCoordinator b = contextoB.getBean(ClusterCoordinator.class);
+        equilibrar(a, b);
+        assertThat(a.ownedShards()).hasSize(4);
+
+        contextoB.close();
+        a.heartbeat();
+
+        assertThat(a.ownedShards()).hasSize(8);
+        assertThat(a.isLeader()).isTrue();
+    }
+
+    /**
+     * Alterna heartbeats até as partições ficarem divididas (o nó que entrou depois pode ter
+     * encontrado as concessões do outro vencidas durante a inicialização)
+     */
+    private static void equilibrar(ClusterCoordinator a, ClusterCoordinator b) {
+        for (int i = 0; i < 3; i++) {
+            a.heartbeat();
+            b.heartbeat();
+        }
+    }
+
+    private ClusterCoordinator node(String nodeId) {
+        return start(nodeId).getBean(ClusterCoordinator.class);
+    }
+
+    private ConfigurableApplicationContext start(String nodeId) {
+        // Argumentos de linha de comando: têm precedência sobre o application.properties dos testes
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FinanSyncApplication.class).run(
+                "--server.port=0",
+                "--finansync.cluster.enabled=true",
+                "--finansync.cluster.node-id=" + nodeId,
+                "--finansync.cluster.shards=8",
+                "--finansync.cluster.lease-ttl-ms=" + LEASE_TTL_MILLIS,
+                // Heartbeats disparados pelo teste
+                "--finansync.cluster.heartbeat-ms=3600000");
+        contexts.add(context);
+        return context;
+    }
+}
@@ -0,0 +1,131 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.CsvParseReport;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvParsingServiceTest {
+
+    private static final String HEADER = "Extrato\nConta\nAgência\nPeríodo\nData;Histórico;Descrição;Valor;Saldo\n\n";
+
+    private final CsvParsingService csvParsingService = new CsvParsingService();
+
+    @Test
+    void quotedFieldsKeepSeparatorsNewlinesAndQuotes() throws IOException {
+        List<TransactionDTO> rows = new ArrayList<>();
+        CsvParseReport report = parse(HEADER +
+                "01/03/2024;\"PIX; parcela 1/3\";\"Loja \"\"Centro\"\"\nFilial 2\";\"-1.234,56\";0\n" +
+                "  \"02/03/2024\" ;TED;Salário;5.000,00;0\n" +
+                "03/03/2024;PIX;Padaria;abc;0\n", rows);
+
+        assertThat(rows).extracting(TransactionDTO::description)
+                .containsExactly("PIX; parcela 1/3 - Loja \"Centro\"\nFilial 2", "TED - Salário");
+        assertThat(rows.get(0).amount()).isEqualByComparingTo("-1234.56");
+        assertThat(rows.get(0).type()).isEqualTo(TransactionType.DESPESA);
+        assertThat(rows.get(1).transactionDate()).isEqualTo(LocalDate.of(2024, 3, 2));
+        // O registro com a quebra de linha ocupa as linhas 7 e 8 do arquivo
+        assertThat(report.linesRead()).isEqualTo(10);
+        assertThat(report.errors()).containsExactly(new CsvParseReport.RowError(10, "Valor inválido: 'abc'"));
+    }
+
+    @Test
+    void recordsSplitAcrossReadBuffersAreParsedWhole() throws IOException {
+        String row = "04/03/2024;\"Compra; cartão\";\"Mercado\r\nBairro\";-9,90;0\r\n";
+        // Desloca o registro caractere a caractere sobre o fim do primeiro buffer de leitura (8192)
+        for (int shift = 0; shift <= row.length(); shift++) {
+            int filler = 8192 - HEADER.length() - row.length() - "01/03/2024;PIX;;-1,00;0\r\n".length() + shift;
+            String csv = HEADER + "01/03/2024;PIX;" + "x".repeat(filler) + ";-1,00;0\r\n" + row + row;
+
+            List<TransactionDTO> rows = new ArrayList<>();
+            CsvParseReport report = parse(csv, rows);
+
+            assertThat(report.rejectedRows()).as("deslocamento %d", shift).isZero();
+            assertThat(rows).as("deslocamento %d", shift).hasSize(3);
+            assertThat(rows.subList(1, 3)).allSatisfy(dto -> {
+                assertThat(dto.description()).isEqualTo("Compra; cartão - Mercado\r\nBairro");
+                assertThat(dto.amount()).isEqualByComparingTo("-9.90");
+            });
+            assertThat(report.linesRead()).isEqualTo(11);
+        }
+    }
+
+    @Test
+    void datesAreParsedOnlyInTheBankFormat() {
+        assertThat(date("01/02/2024")).isEqualTo(LocalDate.of(2024, 2, 1));
+        assertThat(date("29/02/2024")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(date("29/02/2023")).isNull();
+        assertThat(date("31/04/2024")).isNull();
+        assertThat(date("1/2/2024")).isNull();
+        assertThat(date("2024-02-01")).isNull();
+        assertThat(date("01-02-2024")).isNull();
+        assertThat(date("aa/02/2024")).isNull();
+        assertThat(date("")).isNull();
+    }
+
+    @Test
+    void amountsAreParsedInTheBrazilianFormat() {
+        assertThat(amount("-1.234,56")).isEqualTo(new BigDecimal("-1234.56"));
+        assertThat(amount("5.000,00")).isEqualTo(new BigDecimal("5000.00"));
+        assertThat(amount("+10")).isEqualTo(new BigDecimal("10"));
+        assertThat(amount("0,5")).isEqualTo(new BigDecimal("0.5"));
+        assertThat(amount("1.000.000")).isEqualTo(new BigDecimal("1000000"));
+        assertThat(amount("123456789012345678")).isEqualTo(new BigDecimal("123456789012345678"));
+        assertThat(amount("1234567890123456789")).isNull();
+        assertThat(amount("1,2,3")).isNull();
+        assertThat(amount("1,000.5")).isNull();
+        assertThat(amount("R$ 10,00")).isNull();
+        assertThat(amount("-")).isNull();
+        assertThat(amount("")).isNull();
+    }
+
+    @Test
+    void rejectedRowsAreReportedWithLineNumbersUpToTheLimit() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER)
+                .append("01/03/2024;PIX;Mercado;-10,00;0\n")
+                .append("\n")
+                .append("Total;;;-10,00\n")
+                .append("32/03/2024;PIX;Mercado;-10,00;0\n")
+                .append("02/03/2024;PIX;").append("x".repeat(70 * 1024)).append(";-10,00;0\n");
+        for (int i = 0; i < 150; i++) {
+            csv.append("03/03/2024;PIX;Mercado;dez;0\n");
+        }
+
+        List<TransactionDTO> rows = new ArrayList<>();
+        CsvParseReport report = parse(csv.toString(), rows);
+
+        assertThat(rows).hasSize(1);
+        assertThat(report.parsedRows()).isEqualTo(1);
+        // Linhas em branco e rodapés com menos colunas não contam como rejeitadas
+        assertThat(report.rejectedRows()).isEqualTo(152);
+        assertThat(report.errors()).hasSize(100);
+        assertThat(report.errorsTruncated()).isTrue();
+        assertThat(report.errors().subList(0, 3)).containsExactly(
+                new CsvParseReport.RowError(10, "Data inválida: '32/03/2024'"),
+                new CsvParseReport.RowError(11, "Linha excede 65536 caracteres"),
+                new CsvParseReport.RowError(12, "Valor inválido: 'dez'"));
+        assertThat(report.linesRead()).isEqualTo(161);
+    }
+
+    private CsvParseReport parse(String csv, List<TransactionDTO> rows) throws IOException {
+        return csvParsingService.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), rows::add);
+    }
+
+    private static LocalDate date(String value) {
+        return CsvParsingService.parseDate(value.toCharArray(), 0, value.length());
+    }
+
+    private static BigDecimal amount(String value) {
+        return CsvParsingService.parseAmount(value.toCharArray(), 0, value.length());
+    }
+}
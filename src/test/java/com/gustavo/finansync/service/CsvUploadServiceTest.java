@@ -0,0 +1,83 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.CsvUploadResultDTO;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CsvUploadServiceTest {
+
+    private static final DateTimeFormatter BR_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    @Autowired
+    private CsvUploadService csvUploadService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamsLargeFileIntoTheDatabase() throws IOException {
+        User user = userRepository.save(new User("Upload", "upload-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        int rows = 30_000;
+        Path csv = writeStatement(rows);
+
+        CsvUploadResultDTO result;
+        try (InputStream in = Files.newInputStream(csv)) {
+            result = csvUploadService.importCsv(in, "extrato-2023.csv", user.getId());
+        }
+
+        assertThat(result.bytesRead()).isEqualTo(Files.size(csv));
+        assertThat(result.parse().parsedRows()).isEqualTo(rows);
+        assertThat(result.parse().rejectedRows()).isEqualTo(1);
+        assertThat(result.result().accepted()).isEqualTo(rows);
+        assertThat(result.rowsPerSecond()).isPositive();
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows);
+
+        // Reenviar o mesmo arquivo não duplica as transações
+        try (InputStream in = Files.newInputStream(csv)) {
+            result = csvUploadService.importCsv(in, "extrato-2023.csv", user.getId());
+        }
+        assertThat(result.result().accepted()).isZero();
+        assertThat(result.result().duplicates()).isEqualTo(rows);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows);
+    }
+
+    /**
+     * Gera um extrato no layout do banco: 6 linhas de cabeçalho e uma linha com data inválida
+     */
+    private Path writeStatement(int rows) throws IOException {
+        Path csv = tempDir.resolve("extrato.csv");
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("Conta;12345\nAgência;0001\nPeríodo;2023\nSaldo;0,00\nData;Lançamento;Detalhes;Valor;Saldo\n\n");
+            writer.write("31/02/2023;Data inválida;;-1,00;0,00\n");
+            for (int i = 0; i < rows; i++) {
+                String amount = (i % 3 == 0 ? "" : "-") + (1 + i % 900) + "," + String.format("%02d", i % 100);
+                writer.write(start.plusDays(i % 365).format(BR_DATE) + ";Compra;Loja " + i + ";" + amount + ";0,00\r\n");
+            }
+        }
+        return csv;
+    }
+}
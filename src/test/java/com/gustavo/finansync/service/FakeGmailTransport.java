@@ -0,0 +1,93 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.Gmail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Gmail falso para testes: responde às rotas registradas sem acessar a rede e
+ * registra quantas requisições foram feitas e quantas estiveram em andamento ao mesmo tempo.
+ */
+class FakeGmailTransport extends MockHttpTransport {
+
+    private record Route(String method, Pattern path, Function<GenericUrl, MockLowLevelHttpResponse> handler) {}
+
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+    private final List<String> requestedUrls = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long latencyMillis;
+
+    /**
+     * Registra uma rota. Rotas registradas depois têm prioridade, o que permite sobrescrever
+     * as rotas de uma caixa pronta como {@link GmailServiceTest#fakeMailbox()}.
+     */
+    FakeGmailTransport on(String method, String pathRegex, Function<GenericUrl, MockLowLevelHttpResponse> handler) {
+        routes.add(0, new Route(method, Pattern.compile(pathRegex), handler));
+        return this;
+    }
+
+    FakeGmailTransport withLatency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    Gmail client() {
+        return new Gmail.Builder(this, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("FinanSync-Test")
+                .build();
+    }
+
+    List<String> requestedUrls() { return requestedUrls; }
+    int requestCount() { return requestedUrls.size(); }
+    int maxInFlight() { return maxInFlight.get(); }
+
+    static MockLowLevelHttpResponse json(String body) {
+        return status(200, body);
+    }
+
+    static MockLowLevelHttpResponse status(int code, String body) {
+        return new MockLowLevelHttpResponse()
+                .setStatusCode(code)
+                .setContentType("application/json; charset=UTF-8")
+                .setContent(body);
+    }
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+            @Override
+            public LowLevelHttpResponse execute() {
+                requestedUrls.add(method + " " + url);
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                try {
+                    if (latencyMillis > 0) Thread.sleep(latencyMillis);
+                    GenericUrl parsed = new GenericUrl(url);
+                    for (Route route : routes) {
+                        if (route.method().equals(method) && route.path().matcher(parsed.getRawPath()).matches()) {
+                            return route.handler().apply(parsed);
+                        }
+                    }
+                    return status(404, "{\"error\":{\"code\":404,\"message\":\"Not Found\"}}");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return status(500, "{}");
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class GmailAuthServiceTest {
+
+    @Autowired
+    private GmailAuthService gmailAuthService;
+
+    @Autowired
+    private GmailCredentialStoreFactory credentialStoreFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void cachedClientsPickUpTokensRenewedByAnotherNode() throws Exception {
+        String email = "seguidor-" + System.nanoTime() + "@finansync.com";
+        userRepository.save(new User("Seguidor", email, "senha-segura"));
+        StoredCredential.getDefaultDataStore(credentialStoreFactory).set(email, new StoredCredential()
+                .setAccessToken("access-1")
+                .setRefreshToken("refresh-1")
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() + 60_000));
+        Gmail gmail = gmailAuthService.getGmailService(email);
+
+        // O líder renova o token e grava direto no banco, sem passar pelo cache deste nó
+        long renewedExpiresAt = System.currentTimeMillis() + 3_600_000;
+        userRepository.updateGmailCredential(email, "access-2", "refresh-1", renewedExpiresAt);
+
+        assertThat(gmailAuthService.getGmailService(email)).isSameAs(gmail);
+        assertThat(gmailAuthService.getCredential(email).getAccessToken()).isEqualTo("access-2");
+        assertThat(gmailAuthService.getCredential(email).getExpirationTimeMilliseconds()).isEqualTo(renewedExpiresAt);
+    }
+
+    @Test
+    void cachedClientsAreDroppedWhenTheCredentialWasRevokedElsewhere() throws Exception {
+        String email = "revogado-" + System.nanoTime() + "@finansync.com";
+        userRepository.save(new User("Revogado", email, "senha-segura"));
+        StoredCredential.getDefaultDataStore(credentialStoreFactory).set(email, new StoredCredential()
+                .setAccessToken("access-1")
+                .setRefreshToken("refresh-1")
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() + 60_000));
+        gmailAuthService.getGmailService(email);
+
+        userRepository.updateGmailCredential(email, null, null, null);
+
+        assertThatThrownBy(() -> gmailAuthService.getGmailService(email)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void fileCredentialsAreCopiedToTheDatabaseAndTheFileStoreIsRemoved(@TempDir Path dir) throws Exception {
+        String email = "arquivo-" + System.nanoTime() + "@finansync.com";
+        userRepository.save(new User("Arquivo", email, "senha-segura"));
+        File tokens = dir.resolve("tokens").toFile();
+        StoredCredential.getDefaultDataStore(new FileDataStoreFactory(tokens)).set(email, new StoredCredential()
+                .setAccessToken("access-1")
+                .setRefreshToken("refresh-1")
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() + 60_000));
+
+        gmailAuthService.migrarCredenciaisDoArquivo(tokens);
+
+        assertThat(StoredCredential.getDefaultDataStore(credentialStoreFactory).get(email).getRefreshToken())
+                .isEqualTo("refresh-1");
+        assertThat(tokens).doesNotExist();
+    }
+}
@@ -0,0 +1,62 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.DataStore;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class GmailCredentialStoreFactoryTest {
+
+    @Autowired
+    private GmailCredentialStoreFactory credentialStoreFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void storesCredentialsInTheUsersTableAndFindsExpiringTokens() throws IOException {
+        String email = "credencial-" + System.nanoTime() + "@finansync.com";
+        userRepository.save(new User("Credencial", email, "senha-segura"));
+        DataStore<StoredCredential> store = StoredCredential.getDefaultDataStore(credentialStoreFactory);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+
+        store.set(email, new StoredCredential()
+                .setAccessToken("access-1")
+                .setRefreshToken("refresh-1")
+                .setExpirationTimeMilliseconds(expiresAt));
+
+        User user = userRepository.findByEmail(email).orElseThrow();
+        assertThat(user.getGmailAccessToken()).isEqualTo("access-1");
+        assertThat(user.getGmailRefreshToken()).isEqualTo("refresh-1");
+        assertThat(user.getGmailTokenExpiresAt()).isEqualTo(expiresAt);
+        assertThat(store.get(email).getRefreshToken()).isEqualTo("refresh-1");
+        assertThat(store.keySet()).contains(email);
+
+        // Vence em 1 minuto: entra na renovação com antecedência de 5 minutos, não na de 30 segundos
+        assertThat(userRepository.findEmailsWithGmailTokenExpiringBefore(
+                System.currentTimeMillis() + 300_000, PageRequest.of(0, 1_000))).contains(email);
+        assertThat(userRepository.findEmailsWithGmailTokenExpiringBefore(
+                System.currentTimeMillis() + 30_000, PageRequest.of(0, 1_000))).doesNotContain(email);
+
+        store.delete(email);
+        assertThat(store.get(email)).isNull();
+        assertThat(userRepository.findByEmail(email).orElseThrow().getGmailRefreshToken()).isNull();
+    }
+
+    @Test
+    void rejectsCredentialsOfUnknownUsers() {
+        assertThatThrownBy(() -> StoredCredential.getDefaultDataStore(credentialStoreFactory)
+                .set("ninguem-" + System.nanoTime() + "@finansync.com", new StoredCredential().setRefreshToken("x")))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,173 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.GmailClientMetricsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GmailRequestExecutorTest {
+
+    private static final String PROFILE = ".*/users/me/profile";
+    private static final String RATE_LIMITED = "{\"error\":{\"code\":403,\"message\":\"Rate Limit Exceeded\"," +
+            "\"errors\":[{\"reason\":\"userRateLimitExceeded\",\"message\":\"Rate Limit Exceeded\"}]}}";
+
+    @Test
+    void retriesThrottledAndServerErrorsWithBackoff() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        FakeGmailTransport gmail = new FakeGmailTransport().on("GET", PROFILE, url -> switch (calls.incrementAndGet()) {
+            case 1 -> FakeGmailTransport.status(429, "{\"error\":{\"code\":429,\"message\":\"Too Many Requests\"}}");
+            case 2 -> FakeGmailTransport.status(403, RATE_LIMITED);
+            case 3 -> FakeGmailTransport.status(503, "{\"error\":{\"code\":503,\"message\":\"Backend Error\"}}");
+            default -> FakeGmailTransport.json("{\"historyId\":\"42\"}");
+        });
+        GmailRequestExecutor executor = new GmailRequestExecutor(limits(1_000, 1_000, 4, 0, 5));
+
+        BigInteger historyId = executor.execute(gmail.client().users().getProfile("me")).getHistoryId();
+
+        assertThat(historyId).isEqualTo(BigInteger.valueOf(42));
+        GmailClientMetricsDTO metrics = executor.metrics();
+        assertThat(metrics.requests()).isEqualTo(4);
+        assertThat(metrics.retries()).isEqualTo(3);
+        assertThat(metrics.throttledResponses()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRetryClientErrorsAndGivesUpAfterMaxAttempts() {
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", ".*/users/me/messages/ausente", url -> FakeGmailTransport.status(404, "{\"error\":{\"code\":404}}"))
+                .on("GET", PROFILE, url -> FakeGmailTransport.status(429, "{\"error\":{\"code\":429}}"));
+        GmailRequestExecutor executor = new GmailRequestExecutor(limits(1_000, 1_000, 4, 0, 3));
+        Gmail client = gmail.client();
+
+        assertThatThrownBy(() -> executor.execute(client.users().messages().get("me", "ausente")))
+                .isInstanceOf(GoogleJsonResponseException.class);
+        assertThat(gmail.requestCount()).isEqualTo(1);
+
+        assertThatThrownBy(() -> executor.execute(client.users().getProfile("me")))
+                .isInstanceOfSatisfying(GoogleJsonResponseException.class, e -> assertThat(e.getStatusCode()).isEqualTo(429));
+        assertThat(gmail.requestCount()).isEqualTo(1 + 3);
+    }
+
+    @Test
+    void userTokenBucketDelaysCallsAndRejectsWhenTheWaitIsTooLong() throws Exception {
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", PROFILE, url -> FakeGmailTransport.json("{\"historyId\":\"1\"}"));
+        // getProfile custa 1 unidade; o usuário tem 10 unidades/s (rajada de 10)
+        GmailRequestExecutor executor = new GmailRequestExecutor(limits(10, 1_000, 4, 0, 1));
+        Gmail client = gmail.client();
+        executor.register(client, "usuario@finansync.com");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 13; i++) {
+            executor.execute(client.users().getProfile("me"));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 3 unidades além da rajada a 10/s: ~300 ms de espera, menos o que as próprias requisições levaram
+        long quotaWaitMillis = executor.metrics().quotaWaitMillis();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(250);
+        assertThat(quotaWaitMillis).isPositive();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(quotaWaitMillis);
+
+        // Com espera máxima de 50 ms, uma rajada acima da cota é recusada sem chamar o Gmail
+        GmailRequestExecutor impaciente = new GmailRequestExecutor(
+                new GmailRequestExecutor.Limits(10, 1_000, 50, 4, 0, 1, 1, 1));
+        int requisicoes = gmail.requestCount();
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 20; i++) impaciente.execute(client.users().getProfile("me"));
+        }).isInstanceOf(GmailRequestExecutor.RejectedException.class);
+        assertThat(impaciente.metrics().quotaRejections()).isEqualTo(1);
+        assertThat(gmail.requestCount() - requisicoes).isLessThan(20);
+    }
+
+    @Test
+    void bulkheadCapsConcurrentRequests() throws Exception {
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", PROFILE, url -> FakeGmailTransport.json("{\"historyId\":\"1\"}"))
+                .withLatency(300);
+        GmailRequestExecutor executor = new GmailRequestExecutor(limits(1_000, 1_000, 1, 0, 1));
+        Gmail client = gmail.client();
+
+        CompletableFuture<?> lenta = CompletableFuture.runAsync(() -> {
+            try {
+                executor.execute(client.users().getProfile("me"));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        while (executor.metrics().inFlight() == 0) Thread.onSpinWait();
+
+        assertThatThrownBy(() -> executor.execute(client.users().getProfile("me")))
+                .isInstanceOf(GmailRequestExecutor.RejectedException.class);
+        lenta.join();
+        assertThat(executor.metrics().bulkheadRejections()).isEqualTo(1);
+        assertThat(gmail.maxInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesTheBulkheadSlotDuringBackoff() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", PROFILE, url -> calls.incrementAndGet() == 1
+                        ? FakeGmailTransport.status(503, "{\"error\":{\"code\":503}}")
+                        : FakeGmailTransport.json("{\"historyId\":\"1\"}"))
+                .on("GET", ".*/users/me/messages/m1", url -> FakeGmailTransport.json("{\"id\":\"m1\"}"));
+        // Uma vaga, sem espera por ela, e backoff longo depois do 503
+        GmailRequestExecutor executor = new GmailRequestExecutor(
+                new GmailRequestExecutor.Limits(1_000, 1_000, 10_000, 1, 0, 2, 600, 600));
+        Gmail client = gmail.client();
+
+        CompletableFuture<?> repetindo = CompletableFuture.runAsync(() -> {
+            try {
+                executor.execute(client.users().getProfile("me"));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        while (calls.get() == 0) Thread.onSpinWait();
+        while (executor.metrics().inFlight() > 0) Thread.onSpinWait();
+
+        // A chamada em backoff não ocupa a vaga
+        assertThat(executor.execute(client.users().messages().get("me", "m1")).getId()).isEqualTo("m1");
+        repetindo.join();
+        assertThat(executor.metrics().bulkheadRejections()).isZero();
+        assertThat(executor.metrics().retries()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOnlyIdleUserBuckets() throws Exception {
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", PROFILE, url -> FakeGmailTransport.json("{\"historyId\":\"1\"}"));
+        // 2 unidades/s: a unidade de um getProfile volta em 500 ms
+        GmailRequestExecutor executor = new GmailRequestExecutor(limits(2, 1_000, 4, 0, 1));
+        Gmail ativo = gmail.client();
+        Gmail parado = gmail.client();
+        executor.register(ativo, "ativo@finansync.com");
+        executor.register(parado, "parado@finansync.com");
+
+        executor.execute(parado.users().getProfile("me"));
+        Thread.sleep(600);
+        executor.execute(ativo.users().getProfile("me"));
+        assertThat(executor.userBucketCount()).isEqualTo(2);
+
+        // O bucket parado já está cheio; o ativo acabou de consumir
+        executor.evictIdleBuckets();
+        assertThat(executor.userBucketCount()).isEqualTo(1);
+        Thread.sleep(600);
+        executor.evictIdleBuckets();
+        assertThat(executor.userBucketCount()).isZero();
+    }
+
+    private static GmailRequestExecutor.Limits limits(double userUnits, double projectUnits, int maxConcurrent,
+                                                      long bulkheadWaitMillis, int maxAttempts) {
+        return new GmailRequestExecutor.Limits(userUnits, projectUnits, 10_000, maxConcurrent,
+                bulkheadWaitMillis, maxAttempts, 1, 10);
+    }
+}
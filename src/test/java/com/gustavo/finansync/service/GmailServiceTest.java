@@ -0,0 +1,137 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.dto.TransactionDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GmailServiceTest {
+
+    private static final int MESSAGES = 6;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fetchesMessagesAndAttachmentsConcurrentlyAndParsesAsTheyArrive() throws IOException {
+        FakeGmailTransport gmail = fakeMailbox().withLatency(50);
+        GmailService service = new GmailService(executor, executor, null, new GmailRequestExecutor());
+        CsvParsingService parser = new CsvParsingService();
+
+        List<TransactionDTO> parsed = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        int anexos = service.buscarAnexosCsv(gmail.client(), "me", "banco@exemplo.com", "Extrato", anexo -> {
+            threads.add(Thread.currentThread());
+            try {
+                parser.parse(anexo.content(), parsed::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertThat(anexos).isEqualTo(MESSAGES);
+        assertThat(parsed).hasSize(MESSAGES * 2);
+        // 1 listagem + 1 mensagem e 1 anexo por e-mail
+        assertThat(gmail.requestCount()).isEqualTo(1 + MESSAGES * 2);
+        assertThat(gmail.maxInFlight()).isGreaterThan(1).isLessThanOrEqualTo(4);
+        // A leitura dos anexos fica na thread de quem chamou, fora do pool de download
+        assertThat(threads).containsOnly(Thread.currentThread());
+    }
+
+    @Test
+    void followsEveryPageAndRequestsOnlyTheNeededFields() throws IOException {
+        FakeGmailTransport gmail = fakeMailbox()
+                .on("GET", ".*/users/me/messages", url -> "p2".equals(url.getFirst("pageToken"))
+                        ? FakeGmailTransport.json("{\"messages\":[{\"id\":\"m3\"},{\"id\":\"m4\"},{\"id\":\"m5\"}]}")
+                        : FakeGmailTransport.json("{\"messages\":[{\"id\":\"m0\"},{\"id\":\"m1\"},{\"id\":\"m2\"}]," +
+                        "\"nextPageToken\":\"p2\"}"));
+        GmailService service = new GmailService(executor, executor, null, new GmailRequestExecutor());
+        Gmail client = gmail.client();
+
+        int anexos = service.buscarAnexosCsv(client, "me", "banco@exemplo.com", "Extrato", anexo -> {});
+
+        assertThat(anexos).isEqualTo(MESSAGES);
+        // 2 páginas da listagem + 1 mensagem e 1 anexo por e-mail
+        assertThat(gmail.requestCount()).isEqualTo(2 + MESSAGES * 2);
+        assertThat(gmail.requestedUrls()).allMatch(url -> url.contains("fields="));
+        GmailRequestExecutor.Traffic trafego = service.trafego(client);
+        assertThat(trafego.requests()).isEqualTo(gmail.requestCount());
+        assertThat(trafego.bytesReceived()).isPositive();
+    }
+
+    @Test
+    void decodesUrlSafeAttachmentsFromNestedAndInlineParts() throws IOException {
+        String csv = "Extrato\nConta\nAgência\nPeríodo\nData;Histórico;Descrição;Valor;Saldo\n\n" +
+                "05/03/2024;PIX;Padaria ~~~ ??? ÿÿ;-9,90;0\n";
+        String data = Base64.getUrlEncoder().withoutPadding().encodeToString(csv.getBytes(StandardCharsets.UTF_8));
+        assertThat(data).containsAnyOf("-", "_");
+        // mixed > (alternative > texto) + related > anexo; o segundo CSV vem embutido na mensagem
+        FakeGmailTransport gmail = new FakeGmailTransport()
+                .on("GET", ".*/users/me/messages/n1", url -> FakeGmailTransport.json("{\"id\":\"n1\",\"payload\":{" +
+                        "\"mimeType\":\"multipart/mixed\",\"parts\":[" +
+                        "{\"mimeType\":\"multipart/alternative\",\"parts\":[{\"mimeType\":\"text/plain\",\"body\":{\"size\":0}}]}," +
+                        "{\"mimeType\":\"multipart/related\",\"parts\":[{\"mimeType\":\"text/csv\",\"filename\":\"EXTRATO.CSV\"," +
+                        "\"body\":{\"attachmentId\":\"a-n1\"}}]}," +
+                        "{\"mimeType\":\"text/csv\",\"filename\":\"inline.csv\",\"body\":{\"data\":\"" + data + "\"}}]}}"))
+                .on("GET", ".*/users/me/messages/n1/attachments/.*",
+                        url -> FakeGmailTransport.json("{\"data\":\"" + data + "\"}"));
+        GmailService service = new GmailService(executor, executor, null, new GmailRequestExecutor());
+        CsvParsingService parser = new CsvParsingService();
+
+        List<TransactionDTO> parsed = Collections.synchronizedList(new ArrayList<>());
+        int anexos = service.baixarAnexosCsv(gmail.client(), "me", List.of("n1"), anexo -> {
+            try {
+                parser.parse(anexo.content(), parsed::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertThat(anexos).isEqualTo(2);
+        assertThat(parsed).extracting(TransactionDTO::description).containsOnly("PIX - Padaria ~~~ ??? ÿÿ");
+        // 1 mensagem + 1 anexo (o embutido não gera requisição)
+        assertThat(gmail.requestCount()).isEqualTo(2);
+    }
+
+    static FakeGmailTransport fakeMailbox() {
+        String csv = "Extrato\nConta\nAgência\nPeríodo\nData;Histórico;Descrição;Valor;Saldo\n\n" +
+                "01/03/2024;PIX;Mercado;-120,50;0\n" +
+                "02/03/2024;TED;Salário;5.000,00;0\n";
+        String data = Base64.getUrlEncoder().withoutPadding().encodeToString(csv.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder list = new StringBuilder("{\"messages\":[");
+        for (int i = 0; i < MESSAGES; i++) {
+            if (i > 0) list.append(',');
+            list.append("{\"id\":\"m").append(i).append("\",\"threadId\":\"t").append(i).append("\"}");
+        }
+        list.append("]}");
+
+        return new FakeGmailTransport()
+                .on("GET", ".*/users/me/messages", url -> FakeGmailTransport.json(list.toString()))
+                .on("GET", ".*/users/me/messages/m\\d+", url -> {
+                    String id = url.getPathParts().get(url.getPathParts().size() - 1);
+                    return FakeGmailTransport.json("{\"id\":\"" + id + "\",\"payload\":{\"mimeType\":\"multipart/mixed\"," +
+                            "\"parts\":[{\"partId\":\"0\",\"mimeType\":\"text/plain\",\"filename\":\"\",\"body\":{\"size\":0}}," +
+                            "{\"partId\":\"1\",\"mimeType\":\"text/csv\",\"filename\":\"extrato.csv\"," +
+                            "\"body\":{\"attachmentId\":\"a-" + id + "\",\"size\":" + csv.length() + "}}]}}");
+                })
+                .on("GET", ".*/users/me/messages/m\\d+/attachments/.*",
+                        url -> FakeGmailTransport.json("{\"size\":" + csv.length() + ",\"data\":\"" + data + "\"}"));
+    }
+}
@@ -0,0 +1,131 @@
+package com.gustavo.finansync.service;
+
+import com.google.api.services.gmail.Gmail;
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.GmailProcessedMessageRepository;
+import com.gustavo.finansync.repository.GmailSyncStateRepository;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class GmailSyncSchedulerTest {
+
+    @Autowired
+    private GmailSyncStateRepository syncStateRepository;
+
+    @Autowired
+    private GmailProcessedMessageRepository processedMessageRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CsvParsingService csvParsingService;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService fetchExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdown() {
+        fetchExecutor.shutdownNow();
+        syncExecutor.shutdownNow();
+    }
+
+    @Test
+    void servesUsersRoundRobinAndImportsThroughTheBulkWriter() throws Exception {
+        User pesado = conectado("pesado");
+        User leve = conectado("leve");
+        User semCredencial = userRepository.save(new User("Sem", "sem-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        LocalDateTime agora = LocalDateTime.now();
+        for (int i = 0; i < 3; i++) {
+            vencido(pesado, "Extrato " + i, agora.minusHours(3).plusMinutes(i));
+        }
+        GmailSyncState doLeve = vencido(leve, "Extrato", agora.minusHours(1));
+        vencido(semCredencial, "Extrato", agora.minusHours(5));
+
+        List<String> ordem = Collections.synchronizedList(new ArrayList<>());
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox()
+                .on("GET", ".*/users/me/profile", url -> FakeGmailTransport.json("{\"historyId\":\"100\"}"));
+        GmailAuthService auth = new GmailAuthService() {
+            @Override
+            public Gmail getGmailService(String email) throws IOException {
+                if (!email.equals(pesado.getEmail()) && !email.equals(leve.getEmail())) {
+                    throw new IOException("Usuário de outro teste: " + email);
+                }
+                ordem.add(email);
+                return gmail.client();
+            }
+        };
+        GmailSyncService syncService = new GmailSyncService(new GmailService(fetchExecutor, fetchExecutor, null, new GmailRequestExecutor()),
+                syncStateRepository, processedMessageRepository, jdbcTemplate, 30);
+        // Uma única vaga: a ordem de execução mostra o rodízio entre usuários
+        GmailSyncScheduler scheduler = new GmailSyncScheduler(syncStateRepository, auth, syncService, csvParsingService,
+                bulkInsertService, ClusterCoordinator.standalone(), syncExecutor,
+                new GmailSyncScheduler.Settings(true, 60, 0.2, 1, 200, 1440));
+
+        scheduler.tick();
+        aguardar(scheduler);
+
+        assertThat(ordem).containsExactly(pesado.getEmail(), leve.getEmail(), pesado.getEmail(), pesado.getEmail());
+        assertThat(scheduler.metrics().completed()).isEqualTo(4);
+        assertThat(scheduler.metrics().maxLagMillis()).isGreaterThanOrEqualTo(3 * 3_600_000L - 60_000);
+        assertThat(transactionRepository.countByUser(pesado)).isPositive();
+        assertThat(transactionRepository.countByUser(leve)).isEqualTo(transactionRepository.countByUser(pesado));
+
+        // Próxima sincronização agendada dentro do intervalo com jitter
+        GmailSyncState reagendado = syncStateRepository.findById(doLeve.getId()).orElseThrow();
+        assertThat(reagendado.getNextSyncAt()).isBetween(agora.plusMinutes(47), agora.plusMinutes(73));
+        assertThat(reagendado.getHistoryId()).isNotNull();
+        assertThat(reagendado.getConsecutiveFailures()).isZero();
+
+        // Nada vencido: uma nova rodada não sincroniza ninguém
+        scheduler.tick();
+        aguardar(scheduler);
+        assertThat(ordem).hasSize(4);
+    }
+
+    private User conectado(String nome) {
+        User user = new User(nome, nome + "-" + System.nanoTime() + "@finansync.com", "senha-segura");
+        user.setGmailRefreshToken("refresh-" + nome);
+        return userRepository.save(user);
+    }
+
+    private GmailSyncState vencido(User user, String assunto, LocalDateTime nextSyncAt) {
+        GmailSyncState state = new GmailSyncState(user, "banco@exemplo.com", assunto);
+        state.setNextSyncAt(nextSyncAt);
+        return syncStateRepository.save(state);
+    }
+
+    private static void aguardar(GmailSyncScheduler scheduler) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (scheduler.metrics().inFlight() > 0 || scheduler.metrics().queueDepth() > 0) {
+            if (System.currentTimeMillis() > limite) throw new AssertionError("Sincronizações não terminaram");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.GmailSyncResult;
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.GmailProcessedMessageRepository;
+import com.gustavo.finansync.repository.GmailSyncStateRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class GmailSyncServiceTest {
+
+    @Autowired
+    private GmailSyncStateRepository syncStateRepository;
+
+    @Autowired
+    private GmailProcessedMessageRepository processedMessageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void usesHistoryAfterFirstFullScanAndFallsBackWhenHistoryExpires() throws Exception {
+        User user = userRepository.save(new User("Sync", "sync-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        AtomicBoolean historyExpired = new AtomicBoolean(false);
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox()
+                .on("GET", ".*/users/me/profile", url -> FakeGmailTransport.json("{\"historyId\":\"100\"}"))
+                .on("GET", ".*/users/me/history", url -> historyExpired.get()
+                        ? FakeGmailTransport.status(404, "{\"error\":{\"code\":404,\"message\":\"Not Found\"}}")
+                        : FakeGmailTransport.json("{\"historyId\":\"120\",\"history\":[{\"id\":\"110\"," +
+                        "\"messagesAdded\":[{\"message\":{\"id\":\"m0\"}},{\"message\":{\"id\":\"x9\"}}]}]}"))
+                .on("GET", ".*/users/me/messages/x9", url -> FakeGmailTransport.json("{\"id\":\"x9\",\"payload\":{" +
+                        "\"headers\":[{\"name\":\"From\",\"value\":\"Outro <outro@exemplo.com>\"}," +
+                        "{\"name\":\"Subject\",\"value\":\"Promoção\"}]}}"));
+        GmailSyncService service = service();
+        AtomicInteger anexos = new AtomicInteger();
+
+        GmailSyncService.Sincronizacao sync = service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato",
+                false, anexo -> anexos.incrementAndGet());
+        service.confirmar(sync.checkpoint());
+        GmailSyncResult primeira = sync.resultado();
+        assertThat(primeira.incremental()).isFalse();
+        assertThat(primeira.attachments()).isEqualTo(6);
+        assertThat(primeira.historyId()).isEqualTo(BigInteger.valueOf(100));
+
+        // m0 já foi processada e x9 não é do remetente: nada é baixado
+        int requisicoes = gmail.requestCount();
+        GmailSyncResult segunda = service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", false,
+                anexo -> anexos.incrementAndGet()).resultado();
+        assertThat(segunda.incremental()).isTrue();
+        assertThat(segunda.messagesFetched()).isZero();
+        assertThat(segunda.historyId()).isEqualTo(BigInteger.valueOf(120));
+        assertThat(gmail.requestCount() - requisicoes).isEqualTo(2);
+        assertThat(segunda.requests()).isEqualTo(2);
+        assertThat(segunda.bytesReceived()).isPositive();
+
+        historyExpired.set(true);
+        GmailSyncResult terceira = service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", false,
+                anexo -> anexos.incrementAndGet()).resultado();
+        assertThat(terceira.incremental()).isFalse();
+        assertThat(terceira.messagesFetched()).isZero();
+        assertThat(anexos.get()).isEqualTo(6);
+    }
+
+    @Test
+    void messagesCountAsProcessedOnlyAfterConfirmation() throws Exception {
+        User user = userRepository.save(new User("Pendente", "pendente-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox()
+                .on("GET", ".*/users/me/profile", url -> FakeGmailTransport.json("{\"historyId\":\"100\"}"));
+        GmailSyncService service = service();
+        AtomicInteger anexos = new AtomicInteger();
+
+        // Análise descartada: nada fica marcado e a próxima sincronização baixa tudo de novo
+        service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", false, anexo -> anexos.incrementAndGet());
+        GmailSyncState state = syncStateRepository.findByUserAndSenderAndSubject(user, "banco@exemplo.com", "Extrato")
+                .orElseThrow();
+        assertThat(state.getHistoryId()).isNull();
+        assertThat(processedMessageRepository.findProcessedIds(user, List.of("m0", "m1"))).isEmpty();
+
+        GmailSyncService.Sincronizacao sync = service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato",
+                false, anexo -> anexos.incrementAndGet());
+        assertThat(anexos.get()).isEqualTo(12);
+        service.confirmar(sync.checkpoint());
+        // Confirmar duas vezes (análise e job das mesmas mensagens) não falha nem volta o historyId
+        service.confirmar(new GmailSyncService.Checkpoint(state.getId(), user.getId(), List.of("m0"),
+                BigInteger.valueOf(50), false));
+        assertThat(processedMessageRepository.findProcessedIds(user, List.of("m0", "m5"))).containsExactlyInAnyOrder("m0", "m5");
+        assertThat(syncStateRepository.findById(state.getId()).orElseThrow().getHistoryId()).isEqualTo(BigInteger.valueOf(100));
+
+        // fullScan ignora as mensagens já processadas
+        GmailSyncResult completa = service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", true,
+                anexo -> anexos.incrementAndGet()).resultado();
+        assertThat(completa.messagesFetched()).isEqualTo(6);
+        assertThat(anexos.get()).isEqualTo(18);
+    }
+
+    @Test
+    void rejectsASecondSyncOfTheSameQueryWhileOneIsRunning() throws Exception {
+        User user = userRepository.save(new User("Trava", "trava-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        FakeGmailTransport gmail = GmailServiceTest.fakeMailbox()
+                .on("GET", ".*/users/me/profile", url -> FakeGmailTransport.json("{\"historyId\":\"100\"}"));
+        GmailSyncService service = service();
+        GmailSyncState state = syncStateRepository.save(new GmailSyncState(user, "banco@exemplo.com", "Extrato"));
+        LocalDateTime agora = LocalDateTime.now();
+        assertThat(syncStateRepository.lock(state.getId(), "outro-no", agora, agora.plusMinutes(5))).isEqualTo(1);
+
+        assertThatThrownBy(() -> service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", false,
+                anexo -> {})).isInstanceOf(GmailSyncService.SyncInProgressException.class);
+        // Outro assunto do mesmo usuário não é afetado
+        assertThat(service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Fatura", false, anexo -> {})
+                .resultado().attachments()).isEqualTo(6);
+
+        // Trava vencida (nó que caiu no meio da sincronização) é retomada
+        assertThat(syncStateRepository.unlock(state.getId(), "outro-no")).isEqualTo(1);
+        assertThat(syncStateRepository.lock(state.getId(), "outro-no", agora.minusMinutes(10), agora.minusMinutes(5)))
+                .isEqualTo(1);
+        assertThat(service.sincronizar(gmail.client(), user, "banco@exemplo.com", "Extrato", false, anexo -> {})
+                .resultado().attachments()).isEqualTo(6);
+        assertThat(syncStateRepository.findById(state.getId()).orElseThrow().getSyncOwner()).isNull();
+    }
+
+    private GmailSyncService service() {
+        return new GmailSyncService(new GmailService(executor, executor, null, new GmailRequestExecutor()),
+                syncStateRepository, processedMessageRepository, jdbcTemplate, 30);
+    }
+}
@@ -0,0 +1,150 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.ImportStagingDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.GmailSyncState;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.GmailProcessedMessageRepository;
+import com.gustavo.finansync.repository.GmailSyncStateRepository;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ImportStagingServiceTest {
+
+    @Autowired
+    private ImportStagingService stagingService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GmailSyncStateRepository syncStateRepository;
+
+    @Autowired
+    private GmailProcessedMessageRepository processedMessageRepository;
+
+    @Autowired
+    private TransactionCounterService counterService;
+
+    @Test
+    void stagesPagesAndConfirmsByToken() {
+        User user = userRepository.save(new User("Staging", "staging-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        int rows = 2_500;
+
+        ImportStagingDTO analyzed = stage(user, rows);
+        assertThat(analyzed.totalRows()).isEqualTo(rows);
+        assertThat(analyzed.rejectedRows()).isEqualTo(1);
+        assertThat(analyzed.duplicateRows()).isZero();
+        assertThat(analyzed.rows()).hasSize(50);
+
+        ImportStagingDTO last = stagingService.page(analyzed.token(), user, 49, 50).orElseThrow();
+        assertThat(last.rows()).extracting(ImportedTransactionDTO::id).containsExactly(
+                LongStream.rangeClosed(2_451, 2_500).boxed().toArray(Long[]::new));
+
+        BulkImportResult confirmed = stagingService.confirm(analyzed.token(), user, List.of(1, 2, 3)).orElseThrow();
+        assertThat(confirmed.accepted()).isEqualTo(rows - 3);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows - 3);
+        // O token é consumido na confirmação
+        assertThat(stagingService.page(analyzed.token(), user, 0, 50)).isEmpty();
+
+        // Uma nova análise do mesmo extrato marca as linhas já importadas
+        ImportStagingDTO again = stage(user, rows);
+        assertThat(again.duplicateRows()).isEqualTo(rows - 3);
+        BulkImportResult reconfirmed = stagingService.confirm(again.token(), user, null).orElseThrow();
+        assertThat(reconfirmed.accepted()).isEqualTo(3);
+        assertThat(reconfirmed.duplicates()).isEqualTo(rows - 3);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows);
+        // Só as linhas gravadas nesta confirmação entram nas estruturas derivadas
+        assertThat(counterService.total(user.getId())).isEqualTo(rows);
+    }
+
+    @Test
+    void confirmationMarksTheAnalyzedGmailMessagesAsProcessed() {
+        User user = userRepository.save(new User("Checkpoint", "checkpoint-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        GmailSyncState state = syncStateRepository.save(new GmailSyncState(user, "banco@exemplo.com", "Extrato"));
+        ImportStagingService.Handle handle = stagingService.create(user);
+        try (ImportStagingService.DocumentWriter writer = handle.openDocument("msg-1", "gmail:msg-1/extrato.csv")) {
+            writer.accept(new TransactionDTO(null, "Padaria", null, BigDecimal.valueOf(-9.9),
+                    LocalDate.of(2024, 3, 5), TransactionType.DESPESA));
+        }
+        ImportStagingDTO analyzed = stagingService.finish(handle, 50, new GmailSyncService.Checkpoint(state.getId(),
+                user.getId(), List.of("msg-1", "msg-sem-csv"), BigInteger.valueOf(300), true));
+
+        // Até a confirmação nada é marcado
+        assertThat(processedMessageRepository.findProcessedIds(user, List.of("msg-1", "msg-sem-csv"))).isEmpty();
+        assertThat(syncStateRepository.findById(state.getId()).orElseThrow().getHistoryId()).isNull();
+
+        stagingService.confirm(analyzed.token(), user, null).orElseThrow();
+        assertThat(processedMessageRepository.findProcessedIds(user, List.of("msg-1", "msg-sem-csv")))
+                .containsExactlyInAnyOrder("msg-1", "msg-sem-csv");
+        GmailSyncState advanced = syncStateRepository.findById(state.getId()).orElseThrow();
+        assertThat(advanced.getHistoryId()).isEqualTo(BigInteger.valueOf(300));
+        assertThat(advanced.getLastFullScanAt()).isNotNull();
+    }
+
+    @Test
+    void theSameDocumentStagedTwiceIsPromotedOnce() {
+        User user = userRepository.save(new User("Repetido", "repetido-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        ImportStagingService.Handle handle = stagingService.create(user);
+        for (int copy = 0; copy < 2; copy++) {
+            try (ImportStagingService.DocumentWriter writer = handle.openDocument("msg-1", "gmail:msg-1/extrato.csv")) {
+                for (int i = 0; i < 20; i++) {
+                    writer.accept(new TransactionDTO(null, "Compra " + i, null, BigDecimal.valueOf(-(i + 1)),
+                            LocalDate.of(2024, 3, 1 + i), TransactionType.DESPESA));
+                }
+            }
+        }
+        ImportStagingDTO analyzed = stagingService.finish(handle, 50);
+        assertThat(analyzed.totalRows()).isEqualTo(40);
+
+        BulkImportResult confirmed = stagingService.confirm(analyzed.token(), user, null).orElseThrow();
+        assertThat(confirmed.accepted()).isEqualTo(20);
+        assertThat(confirmed.duplicates()).isEqualTo(20);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(20);
+        assertThat(counterService.total(user.getId())).isEqualTo(20);
+    }
+
+    @Test
+    void tokenOfAnotherUserIsNotFound() {
+        User owner = userRepository.save(new User("Dono", "dono-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        User other = userRepository.save(new User("Outro", "outro-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        ImportStagingDTO analyzed = stage(owner, 10);
+
+        assertThat(stagingService.page(analyzed.token(), other, 0, 50)).isEmpty();
+        assertThat(stagingService.confirm(analyzed.token(), other, null)).isEmpty();
+    }
+
+    /**
+     * Grava {@code rows} linhas válidas e uma inválida (a primeira) em um único documento
+     */
+    private ImportStagingDTO stage(User user, int rows) {
+        ImportStagingService.Handle handle = stagingService.create(user);
+        LocalDate start = LocalDate.of(2021, 1, 1);
+        try (ImportStagingService.DocumentWriter writer = handle.openDocument("msg-1", "gmail:msg-1/extrato.csv")) {
+            writer.accept(new TransactionDTO(null, " ", null, BigDecimal.ONE, start, TransactionType.RECEITA));
+            for (int i = 0; i < rows; i++) {
+                BigDecimal amount = BigDecimal.valueOf(-(i + 1), 2);
+                writer.accept(new TransactionDTO(null, "Compra " + i, null, amount, start.plusDays(i % 365), TransactionType.DESPESA));
+            }
+        }
+        return stagingService.finish(handle, 50);
+    }
+}
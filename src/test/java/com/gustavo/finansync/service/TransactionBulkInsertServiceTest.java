@@ -0,0 +1,85 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.BulkImportResult;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TransactionBulkInsertServiceTest {
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void insertsInChunksAndSkipsRowsAlreadyImported() {
+        User user = userRepository.save(new User("Bulk", "bulk-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        int rows = 20_000;
+        List<ImportedTransactionDTO> dtos = new ArrayList<>(rows);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            BigDecimal amount = BigDecimal.valueOf(i % 2 == 0 ? -(i + 1) : i + 1, 2);
+            TransactionType type = amount.signum() > 0 ? TransactionType.RECEITA : TransactionType.DESPESA;
+            dtos.add(row(new TransactionDTO(null, "Linha " + i, null, amount, start.plusDays(i % 1500), type)));
+        }
+        // Receita com valor zero e linha sem descrição devem ser rejeitadas
+        dtos.add(row(new TransactionDTO(null, "Zero", null, BigDecimal.ZERO, start, TransactionType.RECEITA)));
+        dtos.add(row(new TransactionDTO(null, " ", null, BigDecimal.ONE, start, TransactionType.RECEITA)));
+
+        BulkImportResult result = bulkInsertService.insertAll(dtos, user.getId(), TransactionSource.EMAIL_IMPORT);
+
+        assertThat(result.accepted()).isEqualTo(rows);
+        assertThat(result.duplicates()).isZero();
+        assertThat(result.rejected()).isEqualTo(2);
+        assertThat(result.chunks()).hasSize(21);
+        assertThat(result.chunks().stream().mapToLong(BulkImportResult.ChunkResult::accepted).sum()).isEqualTo(rows);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows);
+        // Reimportar o mesmo extrato não duplica nada
+        BulkImportResult reimport = bulkInsertService.insertAll(dtos, user.getId(), TransactionSource.EMAIL_IMPORT);
+        assertThat(reimport.accepted()).isZero();
+        assertThat(reimport.duplicates()).isEqualTo(rows);
+        assertThat(bulkInsertService.markAlreadyImported(dtos.subList(0, 10), user.getId()))
+                .allMatch(ImportedTransactionDTO::alreadyImported);
+        assertThat(transactionRepository.countByUser(user)).isEqualTo(rows);
+
+        LoggerFactory.getLogger(TransactionBulkInsertServiceTest.class).info(
+                "Bulk insert H2: {} linhas em {} ms ({} linhas/s)",
+                rows, result.elapsedMillis(), Math.round(result.rowsPerSecond()));
+    }
+
+    @Test
+    void identicalRowsInTheSameStatementAreKept() {
+        User user = userRepository.save(new User("Dup", "dup-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        TransactionDTO cafe = new TransactionDTO(null, "Café", null, new BigDecimal("-5.00"),
+                LocalDate.of(2024, 3, 1), TransactionType.DESPESA);
+        List<ImportedTransactionDTO> dtos = List.of(row(cafe), row(cafe));
+
+        assertThat(bulkInsertService.insertAll(dtos, user.getId(), TransactionSource.EMAIL_IMPORT).accepted()).isEqualTo(2);
+        assertThat(bulkInsertService.insertAll(dtos, user.getId(), TransactionSource.EMAIL_IMPORT).duplicates()).isEqualTo(2);
+    }
+
+    private static ImportedTransactionDTO row(TransactionDTO dto) {
+        return ImportedTransactionDTO.of(dto, "msg-1", "gmail:msg-1/extrato.csv");
+    }
+}
@@ -0,0 +1,111 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.support.TransactionFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TransactionLedgerCacheTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private TransactionFixtures fixtures;
+
+    @Autowired
+    private TransactionLedgerCache ledgerCache;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void writesPatchTheCachedColumnsAfterCommit() {
+        User user = fixtures.userWithTransactions("colunas", 250, START, 100);
+        TransactionLedgerCache uncached = new TransactionLedgerCache(jdbcTemplate, 0, false);
+
+        DashboardDTOs.PeriodTotal despesas = ledgerCache.analytics(user.getId(), START, START.plusDays(99), null,
+                TransactionType.DESPESA).totals();
+        assertThat(despesas.total()).isEqualByComparingTo(transactionRepository.sumAmountByUserAndTypeAndDateBetween(
+                user, TransactionType.DESPESA, START, START.plusDays(99)));
+        assertThat(ledgerCache.isCached(user.getId())).isTrue();
+        assertMatchesDatabase(user, uncached);
+
+        // Categoria nova, no meio do período e depois alterada de dia e de valor
+        TransactionDTO nova = transactionService.create(new TransactionDTO(null, "Farmácia", "Saúde",
+                BigDecimal.valueOf(-42.5), START.plusDays(30), TransactionType.DESPESA), user.getId());
+        assertThat(ledgerCache.isCached(user.getId())).isTrue();
+        assertMatchesDatabase(user, uncached);
+        transactionService.updateForUser(nova.id(), new TransactionDTO(null, "Farmácia", "Saúde",
+                BigDecimal.valueOf(-10), START.plusDays(5), TransactionType.DESPESA), user);
+        assertMatchesDatabase(user, uncached);
+        transactionService.deleteForUser(nova.id(), user);
+        assertThat(ledgerCache.isCached(user.getId())).isTrue();
+        assertMatchesDatabase(user, uncached);
+
+        // Importações não têm os ids das linhas: o usuário sai do cache e é recarregado
+        bulkInsertService.insertAll(List.of(new ImportedTransactionDTO(null, "Posto", "Transporte",
+                BigDecimal.valueOf(-90), START.plusDays(3), TransactionType.DESPESA, null, "extrato.csv", false)),
+                user.getId(), TransactionSource.FILE_UPLOAD);
+        assertThat(ledgerCache.isCached(user.getId())).isFalse();
+        assertMatchesDatabase(user, uncached);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedUsersOverTheBudget() {
+        User a = fixtures.userWithTransactions("lru-a", 100, START, 100);
+        User b = fixtures.userWithTransactions("lru-b", 100, START, 100);
+        User c = fixtures.userWithTransactions("lru-c", 100, START, 100);
+        long perUser = new TransactionLedgerCache(jdbcTemplate, 0, false).ledger(a.getId()).estimatedBytes();
+        TransactionLedgerCache cache = new TransactionLedgerCache(jdbcTemplate, perUser * 2 + perUser / 2, true);
+
+        cache.ledger(a.getId());
+        cache.ledger(b.getId());
+        cache.ledger(a.getId());
+        cache.ledger(c.getId());
+
+        assertThat(cache.isCached(a.getId())).isTrue();
+        assertThat(cache.isCached(b.getId())).isFalse();
+        assertThat(cache.isCached(c.getId())).isTrue();
+        assertThat(cache.cachedBytes()).isLessThanOrEqualTo(perUser * 2 + perUser / 2);
+
+        // Usuário maior que o orçamento inteiro: respondido, mas não guardado
+        TransactionLedgerCache tiny = new TransactionLedgerCache(jdbcTemplate, perUser / 2, true);
+        assertThat(tiny.ledger(a.getId()).size()).isEqualTo(100);
+        assertThat(tiny.isCached(a.getId())).isFalse();
+    }
+
+    private void assertMatchesDatabase(User user, TransactionLedgerCache uncached) {
+        for (String category : new String[]{null, "Mercado", "", "Saúde"}) {
+            for (TransactionType type : new TransactionType[]{null, TransactionType.RECEITA, TransactionType.DESPESA}) {
+                assertThat(ledgerCache.analytics(user.getId(), START.plusDays(3), START.plusDays(60), category, type))
+                        .isEqualTo(uncached.analytics(user.getId(), START.plusDays(3), START.plusDays(60), category, type));
+            }
+        }
+        assertThat(ledgerCache.analytics(user.getId(), null, null, null, null))
+                .isEqualTo(uncached.analytics(user.getId(), null, null, null, null));
+    }
+}
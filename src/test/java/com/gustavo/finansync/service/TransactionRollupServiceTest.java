@@ -0,0 +1,118 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.DashboardDTOs;
+import com.gustavo.finansync.dto.ImportStagingDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.support.TransactionFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TransactionRollupServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final YearMonth FROM = YearMonth.of(2024, 1);
+    private static final YearMonth TO = YearMonth.of(2024, 12);
+
+    @Autowired
+    private TransactionFixtures fixtures;
+
+    @Autowired
+    private TransactionRollupService rollupService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private ImportStagingService stagingService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void summaryMatchesTheRawTransactions() {
+        User user = fixtures.userWithTransactions("resumo", 300, START, 300);
+
+        DashboardDTOs.Summary summary = rollupService.summary(user.getId(), FROM, TO);
+        assertThat(summary.income()).isEqualByComparingTo(transactionRepository.sumAmountByUserAndTypeAndDateBetween(
+                user, TransactionType.RECEITA, START, START.plusYears(1).minusDays(1)));
+        assertThat(summary.expenses()).isEqualByComparingTo(transactionRepository.sumAmountByUserAndTypeAndDateBetween(
+                user, TransactionType.DESPESA, START, START.plusYears(1).minusDays(1)));
+        assertThat(summary.balance()).isEqualByComparingTo(summary.income().add(summary.expenses()));
+        assertThat(summary.transactionCount()).isEqualTo(300);
+        assertThat(summary.months()).hasSize(10);
+
+        List<TransactionDTO> mercado = transactionService.findAllByUserNoPagination(user, "", null, null).stream()
+                .filter(t -> "Mercado".equals(t.category()))
+                .toList();
+        DashboardDTOs.CategoryTotal categoria = rollupService.categories(user.getId(), FROM, TO, TransactionType.DESPESA)
+                .stream().filter(t -> "Mercado".equals(t.category())).findFirst().orElseThrow();
+        assertThat(categoria.transactionCount()).isEqualTo(mercado.size());
+        assertThat(categoria.total()).isEqualByComparingTo(
+                mercado.stream().map(TransactionDTO::amount).reduce(BigDecimal.ZERO, BigDecimal::add));
+        assertThat(categoria.minAmount()).isEqualByComparingTo(
+                mercado.stream().map(TransactionDTO::amount).min(BigDecimal::compareTo).orElseThrow());
+        assertThat(rollupService.categories(user.getId(), FROM, TO, null))
+                .anyMatch(t -> t.category() == null && t.type() == TransactionType.RECEITA);
+    }
+
+    @Test
+    void everyWritePathKeepsTheRollupsEqualToARebuild() {
+        User user = fixtures.userWithTransactions("incremental", 120, START, 300);
+        rollupService.summary(user.getId(), FROM, TO);
+
+        // O menor valor de janeiro em Mercado muda de mês, categoria e valor
+        TransactionDTO menor = transactionService.create(new TransactionDTO(null, "Compra grande", "Mercado",
+                BigDecimal.valueOf(-9_999), START, TransactionType.DESPESA), user.getId());
+        assertMatchesRebuild(user);
+        transactionService.updateForUser(menor.id(), new TransactionDTO(null, "Compra grande", "Lazer",
+                BigDecimal.valueOf(-500), START.plusMonths(3), TransactionType.DESPESA), user);
+        assertMatchesRebuild(user);
+        transactionService.deleteForUser(menor.id(), user);
+        assertMatchesRebuild(user);
+
+        bulkInsertService.insertAll(List.of(
+                new ImportedTransactionDTO(null, "Posto", "Transporte", BigDecimal.valueOf(-90), START.plusDays(40),
+                        TransactionType.DESPESA, null, "extrato.csv", false),
+                new ImportedTransactionDTO(null, "Salário", null, BigDecimal.valueOf(5_000), START.plusDays(40),
+                        TransactionType.RECEITA, null, "extrato.csv", false)), user.getId(), TransactionSource.FILE_UPLOAD);
+        assertMatchesRebuild(user);
+
+        ImportStagingService.Handle handle = stagingService.create(user);
+        try (ImportStagingService.DocumentWriter writer = handle.openDocument("msg-1", "gmail:msg-1/extrato.csv")) {
+            for (int i = 0; i < 30; i++) {
+                writer.accept(new TransactionDTO(null, "Importada " + i, i % 2 == 0 ? "Mercado" : null,
+                        BigDecimal.valueOf(-(i + 1)), START.plusDays(i * 7), TransactionType.DESPESA));
+            }
+        }
+        ImportStagingDTO staged = stagingService.finish(handle, 10);
+        assertThat(stagingService.confirm(staged.token(), user, null).orElseThrow().accepted()).isEqualTo(30);
+        assertMatchesRebuild(user);
+        assertThat(rollupService.summary(user.getId(), FROM, TO).transactionCount())
+                .isEqualTo(transactionRepository.countByUser(user));
+    }
+
+    private void assertMatchesRebuild(User user) {
+        DashboardDTOs.Summary summary = rollupService.summary(user.getId(), FROM, TO);
+        List<DashboardDTOs.CategoryTotal> categories = rollupService.categories(user.getId(), FROM, TO, null);
+        rollupService.rebuild(user.getId());
+        assertThat(rollupService.summary(user.getId(), FROM, TO)).isEqualTo(summary);
+        assertThat(rollupService.categories(user.getId(), FROM, TO, null)).isEqualTo(categories);
+    }
+}
@@ -0,0 +1,128 @@
+package com.gustavo.finansync.service;
+
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TransactionSearchServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 3, 1);
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void findsSubstringsIgnoringCaseAndAccentsRankedAndPaged() {
+        User user = user("busca");
+        User vizinho = user("vizinho");
+        TransactionDTO padaria = create(user, "PADARIA PÃO QUENTE", 3);
+        TransactionDTO acucar = create(user, "Pão de Açúcar", 1);
+        TransactionDTO supermercado = create(user, "Supermercado Pãozinho", 2);
+        create(user, "Farmácia São João", 4);
+        create(vizinho, "Pão de açúcar", 5);
+
+        // A descrição que começa pela busca vem primeiro; depois as mais recentes
+        assertThat(ids(transactionService.search(user, "pao", 0, 10)))
+                .containsExactly(acucar.id(), padaria.id(), supermercado.id());
+        assertThat(ids(transactionService.search(user, "ACUCAR", 0, 10))).containsExactly(acucar.id());
+        assertThat(ids(transactionService.search(user, "ercad", 0, 10))).containsExactly(supermercado.id());
+        assertThat(ids(transactionService.search(user, "quente pão", 0, 10))).containsExactly(padaria.id());
+        // Palavras curtas não têm trigramas e são conferidas só pelo texto normalizado
+        assertThat(ids(transactionService.search(user, "de", 0, 10))).containsExactly(acucar.id());
+        assertThat(transactionService.search(user, "pao%", 0, 10)).isEmpty();
+
+        Page<TransactionDTO> primeira = transactionService.search(user, "pao", 0, 2);
+        Page<TransactionDTO> segunda = transactionService.search(user, "pao", 1, 2);
+        assertThat(primeira.getTotalElements()).isEqualTo(3);
+        assertThat(ids(primeira)).containsExactly(acucar.id(), padaria.id());
+        assertThat(ids(segunda)).containsExactly(supermercado.id());
+
+        // As listagens filtradas pela descrição usam o mesmo índice
+        assertThat(transactionService.findAllByUserNoPagination(user, "sao joao", null, null))
+                .extracting(TransactionDTO::description).containsExactly("Farmácia São João");
+
+        // Alterações e exclusões atualizam o índice
+        transactionService.updateForUser(padaria.id(), new TransactionDTO(null, "Padaria Central", null,
+                padaria.amount(), padaria.transactionDate(), padaria.type()), user);
+        assertThat(ids(transactionService.search(user, "quente", 0, 10))).isEmpty();
+        assertThat(ids(transactionService.search(user, "central", 0, 10))).containsExactly(padaria.id());
+
+        transactionService.deleteForUser(acucar.id(), user);
+        assertThat(ids(transactionService.search(user, "acucar", 0, 10))).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transaction_search_grams WHERE transaction_id = ?", Long.class, acucar.id()))
+                .isZero();
+    }
+
+    @Test
+    void indexesBulkImportsAndRowsWrittenBeforeTheIndex() {
+        User user = user("importacao");
+        List<ImportedTransactionDTO> rows = List.of(
+                imported("Posto Ipiranga", -150, 1),
+                imported("Restaurante Sabor Caseiro", -42, 2));
+        assertThat(bulkInsertService.insertAll(rows, user.getId(), TransactionSource.FILE_UPLOAD).accepted()).isEqualTo(2);
+
+        assertThat(transactionService.search(user, "ipiranga", 0, 10).getContent())
+                .extracting(TransactionDTO::description).containsExactly("Posto Ipiranga");
+
+        // Linha gravada sem texto de busca: só aparece depois da indexação em segundo plano
+        jdbcTemplate.update("INSERT INTO transactions (description, amount, type, transaction_date, source, " +
+                        "created_at, updated_at, user_id) VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, ?)",
+                "Mecânica Irmãos Lopes", BigDecimal.valueOf(-300), "DESPESA", START, "MANUAL", user.getId());
+        assertThat(transactionService.search(user, "mecanica", 0, 10)).isEmpty();
+
+        TransactionSearchService backfill = new TransactionSearchService(jdbcTemplate, transactionManager,
+                ClusterCoordinator.standalone(), 100);
+        while (!backfill.isBackfillDone()) {
+            backfill.indexPending();
+        }
+        assertThat(transactionService.search(user, "mecanica", 0, 10).getContent())
+                .extracting(TransactionDTO::description).containsExactly("Mecânica Irmãos Lopes");
+    }
+
+    private User user(String name) {
+        return userRepository.save(new User(name, name + "-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+    }
+
+    private TransactionDTO create(User user, String description, int day) {
+        return transactionService.create(new TransactionDTO(null, description, null, BigDecimal.valueOf(-10),
+                START.plusDays(day), TransactionType.DESPESA), user.getId());
+    }
+
+    private static ImportedTransactionDTO imported(String description, long amount, int day) {
+        return new ImportedTransactionDTO(null, description, null, BigDecimal.valueOf(amount), START.plusDays(day),
+                TransactionType.DESPESA, null, "extrato.csv", false);
+    }
+
+    private static List<Long> ids(Page<TransactionDTO> page) {
+        return page.getContent().stream().map(TransactionDTO::id).toList();
+    }
+}
@@ -0,0 +1,239 @@
+package com.gustavo.finansync.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gustavo.finansync.dto.CursorPageDTO;
+import com.gustavo.finansync.dto.ImportedTransactionDTO;
+import com.gustavo.finansync.dto.TransactionDTO;
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionSource;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.TransactionSpecifications;
+import com.gustavo.finansync.support.TransactionFixtures;
+import com.gustavo.finansync.util.JsonStreamWriter;
+import com.sun.management.ThreadMXBean;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class TransactionServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private TransactionFixtures fixtures;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionBulkInsertService bulkInsertService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void cursorPagesWalkTheSameOrderAsOffsetPagesWithoutGapsOrRepeats() {
+        User user = fixtures.userWithTransactions("cursor", 103, START, 17);
+        fixtures.userWithTransactions("vizinho", 10, START, 17);
+
+        List<TransactionDTO> porOffset = new ArrayList<>();
+        for (int page = 0; ; page++) {
+            Page<TransactionDTO> pagina = transactionService.findByDateRange(user, "", null, null, page, 20);
+            porOffset.addAll(pagina.getContent());
+            if (!pagina.hasNext()) break;
+        }
+
+        List<TransactionDTO> porCursor = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            CursorPageDTO<TransactionDTO> pagina = transactionService.findByDateRangeAfter(user, "", null, null, cursor, 20);
+            porCursor.addAll(pagina.content());
+            cursor = pagina.nextCursor();
+            paginas++;
+            assertThat(pagina.hasNext()).isEqualTo(cursor != null);
+        } while (cursor != null);
+
+        assertThat(paginas).isEqualTo(6);
+        assertThat(porCursor).hasSize(103).doesNotHaveDuplicates().isEqualTo(porOffset);
+        // Vários lançamentos por dia: o id desempata dentro da mesma data
+        for (int i = 1; i < porCursor.size(); i++) {
+            TransactionDTO anterior = porCursor.get(i - 1);
+            TransactionDTO atual = porCursor.get(i);
+            assertThat(atual.transactionDate()).isBeforeOrEqualTo(anterior.transactionDate());
+            if (atual.transactionDate().equals(anterior.transactionDate())) {
+                assertThat(atual.id()).isLessThan(anterior.id());
+            }
+        }
+    }
+
+    @Test
+    void combinesAnyFiltersInOneQuery() {
+        User user = fixtures.userWithTransactions("filtros", 60, START, 17);
+        LocalDate inicio = START.plusDays(5);
+        LocalDate fim = START.plusDays(10);
+
+        List<TransactionDTO> todas = transactionService.findAllByUserNoPagination(user, "", null, null);
+        assertThat(todas).hasSize(60);
+
+        List<TransactionDTO> esperadas = todas.stream()
+                .filter(t -> t.description().toLowerCase().contains("mercado"))
+                .filter(t -> !t.transactionDate().isBefore(inicio) && !t.transactionDate().isAfter(fim))
+                .toList();
+        assertThat(esperadas).isNotEmpty();
+
+        assertThat(transactionService.findByDateRange(user, "MERCADO", inicio, fim, 0, 100).getContent())
+                .isEqualTo(esperadas);
+        assertThat(transactionService.findByDateRangeAfter(user, "MERCADO", inicio, fim, null, 100).content())
+                .isEqualTo(esperadas);
+        assertThat(transactionService.findByDateRange(user, "", inicio, null, 0, 100).getContent())
+                .allMatch(t -> !t.transactionDate().isBefore(inicio));
+        assertThat(transactionService.findByDateRange(user, "", null, fim, 0, 100).getContent())
+                .allMatch(t -> !t.transactionDate().isAfter(fim));
+        // Curingas do LIKE digitados pelo usuário são texto literal
+        assertThat(transactionService.findByDateRange(user, "%", null, null, 0, 100).getContent()).isEmpty();
+
+        assertThatThrownBy(() -> transactionService.findByDateRangeAfter(user, "", null, null, "nao-e-um-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void streamsTheSameRowsAsTheListWithoutManagedEntities() throws Exception {
+        User user = fixtures.userWithTransactions("stream", 1_250, START, 17);
+        List<TransactionDTO> lista = transactionService.findAllByUserNoPagination(user, "mercado", null, null);
+
+        List<TransactionDTO> streamed = new ArrayList<>();
+        List<Long> gerenciadas = new ArrayList<>();
+        long count = transactionService.streamAllByUser(user, "mercado", null, null, dto -> {
+            streamed.add(dto);
+            gerenciadas.add((long) entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+        });
+
+        assertThat(count).isEqualTo(lista.size()).isGreaterThan(400);
+        assertThat(streamed).isEqualTo(lista);
+        assertThat(gerenciadas).containsOnly(0L);
+
+        // Array JSON (formato padrão) e NDJSON com o mesmo conteúdo
+        ByteArrayOutputStream array = new ByteArrayOutputStream();
+        JsonStreamWriter<TransactionDTO> arrayWriter = new JsonStreamWriter<>(array, objectMapper, false);
+        transactionService.streamAllByUser(user, "mercado", null, null, arrayWriter);
+        arrayWriter.finish();
+        assertThat(objectMapper.readValue(array.toByteArray(), TransactionDTO[].class)).containsExactlyElementsOf(lista);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        JsonStreamWriter<TransactionDTO> ndjsonWriter = new JsonStreamWriter<>(ndjson, objectMapper, true);
+        transactionService.streamAllByUser(user, "mercado", null, null, ndjsonWriter);
+        ndjsonWriter.finish();
+        List<TransactionDTO> linhas = new ArrayList<>();
+        for (String linha : ndjson.toString().split("\n")) {
+            linhas.add(objectMapper.readValue(linha, TransactionDTO.class));
+        }
+        assertThat(linhas).isEqualTo(lista);
+        assertThat(ndjsonWriter.getWritten()).isEqualTo(lista.size());
+    }
+
+    @Test
+    void slicesWithoutCountingAndKeepsTheUserTotalUpToDate() {
+        User user = fixtures.userWithTransactions("slice", 45, START, 17);
+
+        Slice<TransactionDTO> primeira = transactionService.findByDateRangeSlice(user, "", null, null, 0, 20);
+        Slice<TransactionDTO> ultima = transactionService.findByDateRangeSlice(user, "", null, null, 2, 20);
+        assertThat(primeira.hasNext()).isTrue();
+        assertThat(ultima.hasNext()).isFalse();
+        assertThat(ultima.getContent()).hasSize(5);
+        assertThat(primeira.getContent())
+                .isEqualTo(transactionService.findByDateRange(user, "", null, null, 0, 20).getContent());
+
+        assertThat(transactionService.countByDateRange(user, "", null, null)).isEqualTo(45);
+        assertThat(transactionService.findByDateRange(user, "", null, null, 0, 20).getTotalElements()).isEqualTo(45);
+        assertThat(transactionService.countByDateRange(user, "mercado", null, null))
+                .isEqualTo(transactionService.findAllByUserNoPagination(user, "mercado", null, null).size());
+
+        // Inclusões, exclusões e importações ajustam o contador
+        TransactionDTO nova = transactionService.create(new TransactionDTO(null, "Cinema", null,
+                BigDecimal.valueOf(-30), START, TransactionType.DESPESA), user.getId());
+        assertThat(transactionService.countByDateRange(user, "", null, null)).isEqualTo(46);
+        transactionService.deleteForUser(nova.id(), user);
+        assertThat(transactionService.countByDateRange(user, "", null, null)).isEqualTo(45);
+        bulkInsertService.insertAll(List.of(
+                new ImportedTransactionDTO(null, "Posto", null, BigDecimal.valueOf(-90), START, TransactionType.DESPESA,
+                        null, "extrato.csv", false),
+                new ImportedTransactionDTO(null, "Salário", null, BigDecimal.valueOf(5000), START, TransactionType.RECEITA,
+                        null, "extrato.csv", false)), user.getId(), TransactionSource.FILE_UPLOAD);
+        assertThat(transactionService.countByDateRange(user, "", null, null))
+                .isEqualTo(47)
+                .isEqualTo(transactionRepository.countByUser(user));
+    }
+
+    /**
+     * Antes/depois por página de 100 linhas (sem o COUNT): entidades gerenciadas convertidas em DTO
+     * contra a projeção direta em DTO. Bytes alocados pela thread e tempo médio vão para o log.
+     */
+    @Test
+    void projectedPagesAllocateLessThanManagedEntities() {
+        User user = fixtures.userWithTransactions("projecao", 2_000, START, 17);
+        Specification<Transaction> spec = TransactionSpecifications.filtered(user, "", null, null);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        IntFunction<List<TransactionDTO>> entidades = page -> readOnly.execute(status -> transactionRepository
+                .findAll(spec, PageRequest.of(page, 100, TransactionSpecifications.NEWEST_FIRST)).getContent().stream()
+                .map(t -> new TransactionDTO(t.getId(), t.getDescription(), t.getCategory(), t.getAmount(),
+                        t.getTransactionDate(), t.getType()))
+                .toList());
+        IntFunction<List<TransactionDTO>> projecao = page -> readOnly.execute(status -> transactionRepository
+                .findDTOs(spec, TransactionSpecifications.NEWEST_FIRST, page * 100L, 100));
+        assertThat(projecao.apply(7)).isEqualTo(entidades.apply(7));
+
+        long[] antes = measurePages(entidades);
+        long[] depois = measurePages(projecao);
+        LoggerFactory.getLogger(TransactionServiceTest.class).info(
+                "Página de 100 transações: entidades {} bytes/{} µs, projeção {} bytes/{} µs",
+                antes[0], antes[1] / 1_000, depois[0], depois[1] / 1_000);
+        assertThat(depois[0]).isLessThan(antes[0]);
+    }
+
+    // Média por página de bytes alocados pela thread e de nanossegundos, após o aquecimento
+    private static long[] measurePages(IntFunction<List<TransactionDTO>> pages) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 50; i++) pages.apply(i % 20);
+        int rounds = 100;
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) pages.apply(i % 20);
+        long elapsed = System.nanoTime() - start;
+        return new long[] {(threads.getCurrentThreadAllocatedBytes() - bytes) / rounds, elapsed / rounds};
+    }
+}
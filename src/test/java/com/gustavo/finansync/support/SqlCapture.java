@@ -0,0 +1,51 @@
+package com.gustavo.finansync.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guarda o SQL das instruções preparadas pelo Hibernate na thread que chamou {@link #start()}
+ * (as tarefas em segundo plano ficam de fora). Ativado no teste pela propriedade
+ * {@link #PROPERTY}.
+ */
+public class SqlCapture implements StatementInspector {
+
+    public static final String PROPERTY = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "com.gustavo.finansync.support.SqlCapture";
+
+    private static final List<String> SQL = new ArrayList<>();
+    private static volatile Thread recording;
+
+    @Override
+    public String inspect(String sql) {
+        if (Thread.currentThread() == recording) {
+            synchronized (SQL) {
+                SQL.add(sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Descarta o SQL anterior e passa a gravar o da thread atual
+     */
+    public static void start() {
+        synchronized (SQL) {
+            SQL.clear();
+        }
+        recording = Thread.currentThread();
+    }
+
+    /**
+     * Para a gravação
+     * @return Instruções gravadas desde {@link #start()}, na ordem em que foram preparadas
+     */
+    public static List<String> stop() {
+        recording = null;
+        synchronized (SQL) {
+            return List.copyOf(SQL);
+        }
+    }
+}
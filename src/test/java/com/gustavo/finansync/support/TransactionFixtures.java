@@ -0,0 +1,58 @@
+package com.gustavo.finansync.support;
+
+import com.gustavo.finansync.entity.Transaction;
+import com.gustavo.finansync.entity.TransactionType;
+import com.gustavo.finansync.entity.User;
+import com.gustavo.finansync.repository.TransactionRepository;
+import com.gustavo.finansync.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Massa de transações para os testes com o contexto do Spring (registrada pela varredura de
+ * componentes da aplicação, que também alcança as classes de teste).
+ */
+@Component
+public class TransactionFixtures {
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+
+    public TransactionFixtures(UserRepository userRepository, TransactionRepository transactionRepository) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+    }
+
+    /**
+     * Cria um usuário com {@code count} transações gravadas via JPA, repetindo a cada 3 linhas:
+     * despesa "Mercado i" (categoria Mercado), despesa "Transporte i" ou "Lazer i" (mesma
+     * categoria) e receita "Salário i" (sem categoria). As despesas valem -(10 + i), as receitas
+     * 100 + i e o e-mail de origem agrupa 10 linhas.
+     * @param start Data da primeira transação
+     * @param days  Quantidade de datas distintas: a linha i fica em {@code start + (i % days)}
+     */
+    public User userWithTransactions(String name, int count, LocalDate start, int days) {
+        User user = userRepository.save(new User(name, name + "-" + System.nanoTime() + "@finansync.com", "senha-segura"));
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate date = start.plusDays(i % days);
+            Transaction transaction;
+            if (i % 3 == 2) {
+                transaction = new Transaction("Salário " + i, BigDecimal.valueOf(100 + i), TransactionType.RECEITA,
+                        date, user, null);
+            } else {
+                String category = i % 3 == 0 ? "Mercado" : i % 2 == 0 ? "Transporte" : "Lazer";
+                transaction = new Transaction(category + " " + i, BigDecimal.valueOf(-10 - i), TransactionType.DESPESA,
+                        date, user, category);
+            }
+            transaction.setEmailMessageId("msg-" + name + "-" + i / 10);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        return user;
+    }
+}
@@ -0,0 +1,39 @@
+package com.gustavo.finansync.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionFingerprinterTest {
+
+    private static final LocalDate D1 = LocalDate.of(2024, 3, 1);
+    private static final LocalDate D2 = LocalDate.of(2024, 3, 2);
+
+    @Test
+    void repeatedRowsStayDistinctInAnUnorderedStatement() {
+        // D1 X, D2 Y, D1 X: a segunda compra X não pode colidir com a primeira
+        TransactionFingerprinter desordenado = new TransactionFingerprinter(1L, "extrato.csv");
+        String x1 = desordenado.next(D1, new BigDecimal("-10.00"), "Padaria");
+        String y = desordenado.next(D2, new BigDecimal("-25.50"), "Mercado");
+        String x2 = desordenado.next(D1, new BigDecimal("-10"), "PADARIA");
+        assertThat(List.of(x1, y, x2)).doesNotHaveDuplicates();
+
+        // O mesmo extrato em ordem de data gera as mesmas impressões digitais
+        TransactionFingerprinter ordenado = new TransactionFingerprinter(1L, "extrato.csv");
+        assertThat(ordenado.next(D1, new BigDecimal("-10.00"), "Padaria")).isEqualTo(x1);
+        assertThat(ordenado.next(D1, new BigDecimal("-10.00"), "Padaria")).isEqualTo(x2);
+        assertThat(ordenado.next(D2, new BigDecimal("-25.50"), "Mercado")).isEqualTo(y);
+    }
+
+    @Test
+    void fingerprintDependsOnUserAndDocument() {
+        String base = new TransactionFingerprinter(1L, "extrato.csv").next(D1, BigDecimal.TEN, "Pix");
+        assertThat(new TransactionFingerprinter(1L, "extrato.csv").next(D1, BigDecimal.TEN, "Pix")).isEqualTo(base);
+        assertThat(new TransactionFingerprinter(2L, "extrato.csv").next(D1, BigDecimal.TEN, "Pix")).isNotEqualTo(base);
+        assertThat(new TransactionFingerprinter(1L, "outro.csv").next(D1, BigDecimal.TEN, "Pix")).isNotEqualTo(base);
+    }
+}